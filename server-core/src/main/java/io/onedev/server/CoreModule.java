@@ -166,10 +166,16 @@ import io.onedev.server.entitymanager.impl.DefaultUserAuthorizationManager;
 import io.onedev.server.entitymanager.impl.DefaultUserManager;
 import io.onedev.server.git.GitFilter;
 import io.onedev.server.git.GitSshCommandCreator;
+import io.onedev.server.git.cache.DefaultDiffCacheManager;
+import io.onedev.server.git.cache.DefaultLastCommitsCacheManager;
+import io.onedev.server.git.cache.DiffCacheManager;
+import io.onedev.server.git.cache.LastCommitsCacheManager;
 import io.onedev.server.git.config.GitConfig;
 import io.onedev.server.git.hookcallback.GitPostReceiveCallback;
 import io.onedev.server.git.hookcallback.GitPreReceiveCallback;
+import io.onedev.server.infomanager.CodeCommentInfoManager;
 import io.onedev.server.infomanager.CommitInfoManager;
+import io.onedev.server.infomanager.DefaultCodeCommentInfoManager;
 import io.onedev.server.infomanager.DefaultCommitInfoManager;
 import io.onedev.server.infomanager.DefaultPullRequestInfoManager;
 import io.onedev.server.infomanager.DefaultUserInfoManager;
@@ -230,19 +236,25 @@ import io.onedev.server.security.CodePullAuthorizationSource;
 import io.onedev.server.security.DefaultFilterChainResolver;
 import io.onedev.server.security.DefaultPasswordService;
 import io.onedev.server.security.DefaultRememberMeManager;
+import io.onedev.server.security.DefaultVerifiedCredentialManager;
 import io.onedev.server.security.DefaultWebSecurityManager;
 import io.onedev.server.security.FilterChainConfigurator;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.security.VerifiedCredentialManager;
 import io.onedev.server.security.realm.AbstractAuthorizingRealm;
 import io.onedev.server.ssh.DefaultKeyPairProvider;
 import io.onedev.server.ssh.DefaultSshAuthenticator;
 import io.onedev.server.ssh.SshAuthenticator;
 import io.onedev.server.ssh.SshCommandCreator;
 import io.onedev.server.ssh.SshServerLauncher;
+import io.onedev.server.storage.ArtifactStorageManager;
 import io.onedev.server.storage.AttachmentStorageManager;
+import io.onedev.server.storage.DefaultArtifactStorageManager;
 import io.onedev.server.storage.DefaultAttachmentStorageManager;
 import io.onedev.server.storage.DefaultStorageManager;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.beanclass.BeanClassManager;
+import io.onedev.server.util.beanclass.DefaultBeanClassManager;
 import io.onedev.server.util.jackson.ObjectMapperConfigurator;
 import io.onedev.server.util.jackson.ObjectMapperProvider;
 import io.onedev.server.util.jackson.git.GitObjectMapperConfigurator;
@@ -291,6 +303,8 @@ import io.onedev.server.web.page.layout.DefaultMainMenuCustomization;
 import io.onedev.server.web.page.layout.MainMenuCustomization;
 import io.onedev.server.web.page.project.blob.render.BlobRendererContribution;
 import io.onedev.server.web.page.test.TestPage;
+import io.onedev.server.web.pagestore.DefaultPageStoreManager;
+import io.onedev.server.web.pagestore.PageStoreManager;
 import io.onedev.server.web.websocket.BuildEventBroadcaster;
 import io.onedev.server.web.websocket.CodeCommentEventBroadcaster;
 import io.onedev.server.web.websocket.CommitIndexedBroadcaster;
@@ -374,7 +388,9 @@ public class CoreModule extends AbstractPluginModule {
 		bind(PullRequestChangeManager.class).to(DefaultPullRequestChangeManager.class);
 		bind(CodeCommentReplyManager.class).to(DefaultCodeCommentReplyManager.class);
 		bind(AttachmentStorageManager.class).to(DefaultAttachmentStorageManager.class);
+		bind(ArtifactStorageManager.class).to(DefaultArtifactStorageManager.class);
 		bind(PullRequestInfoManager.class).to(DefaultPullRequestInfoManager.class);
+		bind(CodeCommentInfoManager.class).to(DefaultCodeCommentInfoManager.class);
 		bind(WorkExecutor.class).to(DefaultWorkExecutor.class);
 		bind(PullRequestNotificationManager.class);
 		bind(CommitNotificationManager.class);
@@ -421,6 +437,9 @@ public class CoreModule extends AbstractPluginModule {
         
 		bind(IndexManager.class).to(DefaultIndexManager.class);
 		bind(SearchManager.class).to(DefaultSearchManager.class);
+		bind(DiffCacheManager.class).to(DefaultDiffCacheManager.class);
+		bind(LastCommitsCacheManager.class).to(DefaultLastCommitsCacheManager.class);
+		bind(BeanClassManager.class).to(DefaultBeanClassManager.class);
 		
 		bind(EntityValidator.class).to(DefaultEntityValidator.class);
 		
@@ -527,6 +546,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(BasicAuthenticationFilter.class);
 		bind(BearerAuthenticationFilter.class);
 		bind(PasswordService.class).to(DefaultPasswordService.class);
+		bind(VerifiedCredentialManager.class).to(DefaultVerifiedCredentialManager.class);
 		bind(ShiroFilter.class);
 		install(new ShiroAopModule());
         contribute(FilterChainConfigurator.class, new FilterChainConfigurator() {
@@ -580,6 +600,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(WebSocketPolicy.class).toProvider(WebSocketPolicyProvider.class);
 		bind(EditSupportRegistry.class).to(DefaultEditSupportRegistry.class);
 		bind(WebSocketManager.class).to(DefaultWebSocketManager.class);
+		bind(PageStoreManager.class).to(DefaultPageStoreManager.class);
 
 		contributeFromPackage(EditSupport.class, EditSupport.class);
 		
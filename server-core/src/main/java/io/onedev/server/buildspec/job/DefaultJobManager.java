@@ -61,6 +61,7 @@ import io.onedev.server.buildspec.job.paramspec.SecretParam;
 import io.onedev.server.buildspec.job.paramsupply.ParamSupply;
 import io.onedev.server.buildspec.job.retrycondition.RetryCondition;
 import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.entitymanager.BuildMetricManager;
 import io.onedev.server.entitymanager.BuildParamManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
@@ -131,6 +132,8 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	
 	private final BuildParamManager buildParamManager;
 	
+	private final BuildMetricManager buildMetricManager;
+	
 	private final Validator validator;
 	
 	private volatile List<JobExecutor> jobExecutors;
@@ -141,7 +144,7 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	public DefaultJobManager(BuildManager buildManager, UserManager userManager, ListenerRegistry listenerRegistry, 
 			SettingManager settingManager, TransactionManager transactionManager, LogManager logManager, 
 			ExecutorService executorService, SessionManager sessionManager, BuildParamManager buildParamManager, 
-			ProjectManager projectManager, Validator validator) {
+			ProjectManager projectManager, BuildMetricManager buildMetricManager, Validator validator) {
 		this.settingManager = settingManager;
 		this.buildManager = buildManager;
 		this.userManager = userManager;
@@ -151,6 +154,7 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		this.executorService = executorService;
 		this.sessionManager = sessionManager;
 		this.buildParamManager = buildParamManager;
+		this.buildMetricManager = buildMetricManager;
 		this.projectManager = projectManager;
 		this.validator = validator;
 	}
@@ -674,6 +678,8 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		if (build.isFinished()) {
         	validate(build.getProject(), build.getCommitId());
 			
+			buildMetricManager.excludeFromRollups(build);
+			
 			build.setStatus(Build.Status.WAITING);
 			build.setFinishDate(null);
 			build.setPendingDate(null);
@@ -187,6 +187,10 @@ public class ParamSupply implements Serializable {
 		validateParamMatrix(getParamSpecMap(paramSpecs), paramMap);
 	}
 	
+	/*
+	 * Class name encodes param specs so that the class can be defined again from its name 
+	 * when deserialized, see loadBeanClass
+	 */
 	@SuppressWarnings("unchecked")
 	public static Class<? extends Serializable> defineBeanClass(Collection<ParamSpec> paramSpecs) {
 		byte[] bytes = SerializationUtils.serialize((Serializable) paramSpecs);
@@ -43,6 +43,10 @@ public interface BuildManager extends EntityManager<Build> {
 	Collection<Build> query(Project project, ObjectId commitId);
 
 	Map<ObjectId, Map<String, Collection<StatusInfo>>> queryStatus(Project project, Collection<ObjectId> commitIds);
+	
+	long getStatusCacheHitCount();
+	
+	long getStatusCacheMissCount();
 
 	void create(Build build);
 
@@ -4,13 +4,25 @@ import java.util.Collection;
 import java.util.Map;
 
 import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Build;
 import io.onedev.server.model.Project;
 import io.onedev.server.search.buildmetric.BuildMetricQuery;
+import io.onedev.server.util.BuildMetricStats;
 
 public interface BuildMetricManager {
 
-	<T extends AbstractEntity> Map<Integer, T> queryStats(Project project, Class<T> metricClass, BuildMetricQuery query);
+	/**
+	 * Query average metrics per period. Rollups of the coarsest granularity fitting the queried range 
+	 * are used if query criteria can be applied to them, otherwise raw metrics are queried per day
+	 */
+	<T extends AbstractEntity> BuildMetricStats<T> queryStats(Project project, Class<T> metricClass, BuildMetricQuery query);
 	
 	Map<String, Collection<String>> getAccessibleReportNames(Project project, Class<?> metricClass);
 	
+	/**
+	 * Exclude metrics of specified finished build from rollups. This should be called before the build is 
+	 * reset for resubmission, as metrics are rolled up into the period of build finish day 
+	 */
+	void excludeFromRollups(Build build);
+	
 }
@@ -12,6 +12,8 @@ import io.onedev.server.model.Project;
 import io.onedev.server.persistence.dao.EntityManager;
 import io.onedev.server.search.entity.EntityQuery;
 import io.onedev.server.search.entity.issue.IssueCriteria;
+import io.onedev.server.search.entity.issue.IssueQuery;
+import io.onedev.server.util.BoardColumnIssues;
 import io.onedev.server.util.MilestoneAndState;
 import io.onedev.server.util.ProjectScopedNumber;
 import io.onedev.server.web.component.issue.workflowreconcile.UndefinedFieldResolution;
@@ -58,4 +60,23 @@ public interface IssueManager extends EntityManager<Issue> {
 	Collection<Long> getIssueNumbers(Long projectId);
 	
 	Collection<MilestoneAndState> queryMilestoneAndStates(Project project, Collection<Milestone> milestones);
+	
+	/**
+	 * Query issue count and first page of issues of specified board columns. Counts of all 
+	 * columns are calculated with a single grouped query, and first page of issues of all 
+	 * columns are loaded together with their fields. Result is cached until issues are 
+	 * changed
+	 * 
+	 * @param boardQuery
+	 * 			query of the board, without column criteria
+	 * @param identifyField
+	 * 			{@link Issue#NAME_STATE}, or name of a single value field identifying board columns
+	 * @param columns
+	 * 			columns to query. A <tt>null</tt> column stands for issues with empty value of 
+	 * 			identify field
+	 * @return
+	 * 			map of column to its issues
+	 */
+	Map<String, BoardColumnIssues> queryBoardColumns(Project project, IssueQuery boardQuery, 
+			String identifyField, List<String> columns, int pageSize);
 }
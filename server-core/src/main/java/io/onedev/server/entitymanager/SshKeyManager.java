@@ -13,5 +13,14 @@ public interface SshKeyManager extends EntityManager<SshKey> {
     @Nullable
     SshKey findByDigest(String digest);
     
+    /**
+     * Find owner of ssh key with specified digest without loading the key
+     * 
+     * @return
+     * 			id of key owner, or <tt>null</tt> if no key found with specified digest
+     */
+    @Nullable
+    Long findOwnerIdByDigest(String digest);
+    
     void syncSshKeys(User user, Collection<String> sshKeys);
 }
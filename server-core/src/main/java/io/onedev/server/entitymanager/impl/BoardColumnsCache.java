@@ -0,0 +1,153 @@
+package io.onedev.server.entitymanager.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Cache of issue board columns. Entries are keyed by project and user, and can be invalidated
+ * per project (for instance when an issue of the project changes) or per user (for instance when
+ * membership of the user changes).
+ *
+ * Each key also carries versions of its project, its user and of the whole cache read before
+ * loading. Invalidation increases the relevant version before removing entries, so that a board
+ * loaded concurrently from stale data is stored under a key which will never be looked up again.
+ */
+class BoardColumnsCache<V> {
+
+	private static final int MAX_ENTRIES = 1000;
+
+	private final Cache<Key, V> cache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_ENTRIES)
+			.expireAfterWrite(10, TimeUnit.MINUTES)
+			.build();
+
+	private final AtomicLong version = new AtomicLong(0);
+
+	private final Map<Long, AtomicLong> projectVersions = new ConcurrentHashMap<>();
+
+	private final Map<Long, AtomicLong> userVersions = new ConcurrentHashMap<>();
+
+	private long getVersion(Map<Long, AtomicLong> versions, @Nullable Long id) {
+		AtomicLong version = id!=null?versions.get(id):null;
+		return version!=null?version.get():0;
+	}
+
+	public V get(Long projectId, @Nullable Long userId, String boardQuery, String identifyField,
+			List<String> columns, int pageSize, Callable<V> loader) {
+		Key key = new Key(projectId, userId, boardQuery, identifyField, columns, pageSize,
+				version.get(), getVersion(projectVersions, projectId), getVersion(userVersions, userId));
+		try {
+			return cache.get(key, loader);
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	public void invalidateAll() {
+		version.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	public void invalidateProject(Long projectId) {
+		projectVersions.computeIfAbsent(projectId, it->new AtomicLong(0)).incrementAndGet();
+		cache.asMap().keySet().removeIf(it->it.projectId.equals(projectId));
+	}
+
+	public void invalidateUser(Long userId) {
+		userVersions.computeIfAbsent(userId, it->new AtomicLong(0)).incrementAndGet();
+		cache.asMap().keySet().removeIf(it->Objects.equals(it.userId, userId));
+	}
+
+	long size() {
+		return cache.size();
+	}
+
+	private static class Key {
+
+		private final Long projectId;
+
+		private final Long userId;
+
+		private final String boardQuery;
+
+		private final String identifyField;
+
+		private final List<String> columns;
+
+		private final int pageSize;
+
+		private final long version;
+
+		private final long projectVersion;
+
+		private final long userVersion;
+
+		public Key(Long projectId, @Nullable Long userId, String boardQuery, String identifyField,
+				List<String> columns, int pageSize, long version, long projectVersion, long userVersion) {
+			this.projectId = projectId;
+			this.userId = userId;
+			this.boardQuery = boardQuery;
+			this.identifyField = identifyField;
+			this.columns = new ArrayList<>(columns);
+			this.pageSize = pageSize;
+			this.version = version;
+			this.projectVersion = projectVersion;
+			this.userVersion = userVersion;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false;
+			if (this == other)
+				return true;
+			Key otherKey = (Key) other;
+			return new EqualsBuilder()
+					.append(projectId, otherKey.projectId)
+					.append(userId, otherKey.userId)
+					.append(boardQuery, otherKey.boardQuery)
+					.append(identifyField, otherKey.identifyField)
+					.append(columns, otherKey.columns)
+					.append(pageSize, otherKey.pageSize)
+					.append(version, otherKey.version)
+					.append(projectVersion, otherKey.projectVersion)
+					.append(userVersion, otherKey.userVersion)
+					.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37)
+					.append(projectId)
+					.append(userId)
+					.append(boardQuery)
+					.append(identifyField)
+					.append(columns)
+					.append(pageSize)
+					.append(version)
+					.append(projectVersion)
+					.append(userVersion)
+					.toHashCode();
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+package io.onedev.server.entitymanager.impl;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import io.onedev.server.event.RefUpdated;
+
+/**
+ * Collects numbers of issues fixed by new commits of updated branches. All branches are
+ * walked with a single rev walk, with new commits of branches as start points and old
+ * commits as uninteresting, so that commits shared by these branches are only parsed
+ * once. Fixed issues of each branch are then collected from new commits reachable from
+ * its new commit.
+ */
+class BranchFixedIssues {
+
+	/**
+	 * @param branchUpdates
+	 * 			updates of branches, with new commit ids being non-zero
+	 * @param fixedIssueParser
+	 * 			function to parse fixed issue numbers from commit message
+	 * @param maxFixedIssues
+	 * 			new commits will no longer be walked once issue numbers parsed from them
+	 * 			exceeds this value
+	 * @return
+	 * 			map of branch ref name to numbers of issues fixed by new commits of the branch
+	 */
+	public static Map<String, Set<Long>> collect(Repository repository, Collection<RefUpdated> branchUpdates,
+			Function<String, Collection<Long>> fixedIssueParser, int maxFixedIssues) throws IOException {
+		Map<String, Set<Long>> fixedIssueNumbers = new HashMap<>();
+		if (branchUpdates.isEmpty())
+			return fixedIssueNumbers;
+
+		Map<RevCommit, Collection<Long>> newCommits = new HashMap<>();
+		try (RevWalk revWalk = new RevWalk(repository)) {
+			Set<String> refNames = new HashSet<>();
+			boolean branchCreated = false;
+			for (RefUpdated branchUpdate: branchUpdates) {
+				refNames.add(branchUpdate.getRefName());
+				revWalk.markStart(revWalk.lookupCommit(branchUpdate.getNewCommitId()));
+				if (branchUpdate.getOldCommitId().equals(ObjectId.zeroId()))
+					branchCreated = true;
+				else
+					revWalk.markUninteresting(revWalk.lookupCommit(branchUpdate.getOldCommitId()));
+			}
+			if (branchCreated) {
+				/*
+				 * In case a new branch is pushed, we only process new commits not in any existing branches
+				 * for performance reason. This is reasonable as state of fixed issues by commits in
+				 * existing branches most probably is already transited
+				 */
+				for (Ref ref: repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+					if (!refNames.contains(ref.getName()))
+						revWalk.markUninteresting(revWalk.lookupCommit(ref.getObjectId()));
+				}
+			}
+
+			int count = 0;
+			RevCommit commit;
+			while ((commit = revWalk.next()) != null) {
+				Collection<Long> issueNumbers = fixedIssueParser.apply(commit.getFullMessage());
+				newCommits.put(commit, issueNumbers);
+				count += issueNumbers.size();
+				if (count > maxFixedIssues)
+					break;
+			}
+
+			/*
+			 * A new commit reachable from new commit of a branch is only reachable via other
+			 * new commits, as otherwise it will be an ancestor of some uninteresting commit
+			 */
+			for (RefUpdated branchUpdate: branchUpdates) {
+				Set<Long> issueNumbersOfBranch = new HashSet<>();
+				Set<RevCommit> visited = new HashSet<>();
+				Deque<RevCommit> stack = new ArrayDeque<>();
+				stack.push(revWalk.lookupCommit(branchUpdate.getNewCommitId()));
+				while (!stack.isEmpty()) {
+					RevCommit current = stack.pop();
+					Collection<Long> issueNumbers = newCommits.get(current);
+					if (issueNumbers != null && visited.add(current)) {
+						issueNumbersOfBranch.addAll(issueNumbers);
+						for (RevCommit parent: current.getParents())
+							stack.push(parent);
+					}
+				}
+				fixedIssueNumbers.put(branchUpdate.getRefName(), issueNumbersOfBranch);
+			}
+		}
+		return fixedIssueNumbers;
+	}
+
+}
@@ -0,0 +1,103 @@
+package io.onedev.server.entitymanager.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import io.onedev.server.model.BuildMetricRollup.Granularity;
+
+/**
+ * Accumulates metrics into rollups of all granularities. Values of each rollup key are count of
+ * metrics followed by sums of metric indicators. Metrics are counted into the period containing
+ * finish day of their builds.
+ */
+class BuildMetricRollups {
+
+	private final Map<Key, long[]> values = new HashMap<>();
+
+	/**
+	 * Add metrics to rollups
+	 *
+	 * @param count
+	 * 			number of metrics, negative to subtract metrics
+	 * @param indicatorSums
+	 * 			sums of indicators of the metrics, negative to subtract metrics
+	 */
+	public void add(Long projectId, Class<?> metricClass, String jobName, String reportName,
+			int finishDay, long count, long[] indicatorSums) {
+		for (Granularity granularity: Granularity.values()) {
+			Key key = new Key(projectId, metricClass, jobName, reportName,
+					granularity, granularity.getPeriod(finishDay));
+			long[] valuesOfKey = values.get(key);
+			if (valuesOfKey == null) {
+				valuesOfKey = new long[indicatorSums.length+1];
+				values.put(key, valuesOfKey);
+			}
+			valuesOfKey[0] += count;
+			for (int i=0; i<indicatorSums.length; i++)
+				valuesOfKey[i+1] += indicatorSums[i];
+		}
+	}
+
+	public Map<Key, long[]> getValues() {
+		return values;
+	}
+
+	static class Key {
+
+		final Long projectId;
+
+		final Class<?> metricClass;
+
+		final String jobName;
+
+		final String reportName;
+
+		final Granularity granularity;
+
+		final int period;
+
+		public Key(Long projectId, Class<?> metricClass, String jobName, String reportName,
+				Granularity granularity, int period) {
+			this.projectId = projectId;
+			this.metricClass = metricClass;
+			this.jobName = jobName;
+			this.reportName = reportName;
+			this.granularity = granularity;
+			this.period = period;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false;
+			if (this == other)
+				return true;
+			Key otherKey = (Key) other;
+			return new EqualsBuilder()
+				.append(projectId, otherKey.projectId)
+				.append(metricClass, otherKey.metricClass)
+				.append(jobName, otherKey.jobName)
+				.append(reportName, otherKey.reportName)
+				.append(granularity, otherKey.granularity)
+				.append(period, otherKey.period)
+				.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37)
+				.append(projectId)
+				.append(metricClass)
+				.append(jobName)
+				.append(reportName)
+				.append(granularity)
+				.append(period)
+				.toHashCode();
+		}
+
+	}
+
+}
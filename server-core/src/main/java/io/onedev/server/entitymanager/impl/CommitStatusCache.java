@@ -0,0 +1,108 @@
+package io.onedev.server.entitymanager.impl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import io.onedev.server.util.StatusInfo;
+
+/**
+ * Cache of build statuses of commits, keyed by project id and commit hash. Cached statuses
+ * are immutable as they are shared by all callers.
+ *
+ * Callers get a stamp before querying statuses of a commit, and pass it when putting them.
+ * Invalidation of a commit records current stamp of the commit, so that statuses queried
+ * before invalidation of the same commit are not cached, while invalidation of other commits
+ * does not affect caching.
+ */
+class CommitStatusCache {
+
+	private static final int MAX_ENTRIES = 50000;
+
+	private static final int EXPIRE_HOURS = 1;
+
+	private final Cache<String, Map<String, Collection<StatusInfo>>> cache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_ENTRIES)
+			.expireAfterWrite(EXPIRE_HOURS, TimeUnit.HOURS)
+			.recordStats()
+			.build();
+
+	private final AtomicLong stamp = new AtomicLong(0);
+
+	/*
+	 * Stamps at which commits are invalidated. A query running longer than expiration of
+	 * these stamps is not expected
+	 */
+	private final Cache<String, Long> invalidatedStamps = CacheBuilder.newBuilder()
+			.expireAfterWrite(EXPIRE_HOURS, TimeUnit.HOURS)
+			.build();
+
+	private String getKey(Long projectId, String commitHash) {
+		return projectId + ":" + commitHash;
+	}
+
+	public long getStamp() {
+		return stamp.get();
+	}
+
+	@Nullable
+	public Map<String, Collection<StatusInfo>> get(Long projectId, String commitHash) {
+		return cache.getIfPresent(getKey(projectId, commitHash));
+	}
+
+	/**
+	 * Put statuses of specified commit
+	 *
+	 * @param stamp
+	 * 			stamp got before querying the statuses
+	 * @return
+	 * 			immutable copy of specified statuses
+	 */
+	public Map<String, Collection<StatusInfo>> put(Long projectId, String commitHash,
+			Map<String, Collection<StatusInfo>> statuses, long stamp) {
+		ImmutableMap.Builder<String, Collection<StatusInfo>> builder = ImmutableMap.builder();
+		for (Map.Entry<String, Collection<StatusInfo>> entry: statuses.entrySet())
+			builder.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+		Map<String, Collection<StatusInfo>> copy = builder.build();
+
+		String key = getKey(projectId, commitHash);
+		cache.put(key, copy);
+
+		/*
+		 * Check after put, so that either this check sees a concurrent invalidation, or
+		 * the invalidation sees the cached entry
+		 */
+		Long invalidatedStamp = invalidatedStamps.getIfPresent(key);
+		if (invalidatedStamp != null && invalidatedStamp > stamp)
+			cache.asMap().remove(key, copy);
+		return copy;
+	}
+
+	public void invalidate(Long projectId, String commitHash) {
+		String key = getKey(projectId, commitHash);
+		invalidatedStamps.put(key, stamp.incrementAndGet());
+		cache.invalidate(key);
+	}
+
+	public void invalidateProject(Long projectId) {
+		String prefix = projectId + ":";
+		cache.asMap().keySet().removeIf(it -> it.startsWith(prefix));
+	}
+
+	public long getHitCount() {
+		return cache.stats().hitCount();
+	}
+
+	public long getMissCount() {
+		return cache.stats().missCount();
+	}
+
+}
@@ -51,6 +51,7 @@ import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.entitymanager.BuildParamManager;
 import io.onedev.server.entitymanager.GroupManager;
 import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.build.BuildEvent;
 import io.onedev.server.event.entity.EntityPersisted;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
@@ -121,6 +122,11 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	
 	private final ReadWriteLock jobNamesLock = new ReentrantReadWriteLock();
 	
+	/*
+	 * Build statuses of commits shared across requests
+	 */
+	private final CommitStatusCache commitStatusCache = new CommitStatusCache();
+	
 	private String taskId;
 	
 	@Inject
@@ -214,12 +220,16 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	@Transactional
 	@Listen
 	public void on(EntityRemoved event) {
-		if (event.getEntity() instanceof Project) {
+		if (event.getEntity() instanceof Build) {
+			Build build = (Build) event.getEntity();
+			invalidateCommitStatusNowAndAfterCommit(build.getProject().getId(), build.getCommitHash());
+		} else if (event.getEntity() instanceof Project) {
 			Long projectId = event.getEntity().getId();
 			transactionManager.runAfterCommit(new Runnable() {
 
 				@Override
 				public void run() {
+					commitStatusCache.invalidateProject(projectId);
 					buildsLock.writeLock().lock();
 					try {
 						for (Iterator<Map.Entry<Long, BuildFacade>> it = builds.entrySet().iterator(); it.hasNext();) {
@@ -548,23 +558,74 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	public Map<ObjectId, Map<String, Collection<StatusInfo>>> queryStatus(Project project, Collection<ObjectId> commitIds) {
 		Map<ObjectId, Map<String, Collection<StatusInfo>>> commitStatuses = new HashMap<>();
 		
-		Collection<ObjectId> batch = new HashSet<>();
+		long stamp = commitStatusCache.getStamp();
+		Collection<ObjectId> uncachedCommitIds = new HashSet<>();
 		for (ObjectId commitId: commitIds) {
-			batch.add(commitId);
-			if (batch.size() == STATUS_QUERY_BATCH) {
-				fillStatus(project, batch, commitStatuses);
-				batch.clear();
-			}
+			Map<String, Collection<StatusInfo>> commitStatus = 
+					commitStatusCache.get(project.getId(), commitId.name());
+			if (commitStatus != null)
+				commitStatuses.put(commitId, commitStatus);
+			else
+				uncachedCommitIds.add(commitId);
 		}
-		if (!batch.isEmpty())
-			fillStatus(project, batch, commitStatuses);
-		for (ObjectId commitId: commitIds) {
-			if (!commitStatuses.containsKey(commitId))
-				commitStatuses.put(commitId, new HashMap<>());
+		
+		if (!uncachedCommitIds.isEmpty()) {
+			Map<ObjectId, Map<String, Collection<StatusInfo>>> queriedStatuses = new HashMap<>();
+			Collection<ObjectId> batch = new HashSet<>();
+			for (ObjectId commitId: uncachedCommitIds) {
+				batch.add(commitId);
+				if (batch.size() == STATUS_QUERY_BATCH) {
+					fillStatus(project, batch, queriedStatuses);
+					batch.clear();
+				}
+			}
+			if (!batch.isEmpty())
+				fillStatus(project, batch, queriedStatuses);
+			for (ObjectId commitId: uncachedCommitIds) {
+				if (!queriedStatuses.containsKey(commitId))
+					queriedStatuses.put(commitId, new HashMap<>());
+			}
+			
+			for (Map.Entry<ObjectId, Map<String, Collection<StatusInfo>>> entry: queriedStatuses.entrySet()) {
+				commitStatuses.put(entry.getKey(), commitStatusCache.put(
+						project.getId(), entry.getKey().name(), entry.getValue(), stamp));
+			}
 		}
 		return commitStatuses;
 	}
 	
+	/*
+	 * Invalidate again after commit in case status of the commit is queried and cached 
+	 * by another request before the change is committed 
+	 */
+	private void invalidateCommitStatusNowAndAfterCommit(Long projectId, String commitHash) {
+		commitStatusCache.invalidate(projectId, commitHash);
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				commitStatusCache.invalidate(projectId, commitHash);
+			}
+			
+		});
+	}
+	
+	@Listen
+	public void on(BuildEvent event) {
+		Build build = event.getBuild();
+		invalidateCommitStatusNowAndAfterCommit(build.getProject().getId(), build.getCommitHash());
+	}
+	
+	@Override
+	public long getStatusCacheHitCount() {
+		return commitStatusCache.getHitCount();
+	}
+
+	@Override
+	public long getStatusCacheMissCount() {
+		return commitStatusCache.getMissCount();
+	}
+	
 	@SuppressWarnings("unchecked")
 	private void fillStatus(Project project, Collection<ObjectId> commitIds, 
 			Map<ObjectId, Map<String, Collection<StatusInfo>>> commitStatuses) {
@@ -697,6 +758,7 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 			Build build = (Build) event.getEntity();
 			Long projectId = build.getProject().getId();
 			String jobName = build.getJobName();
+			invalidateCommitStatusNowAndAfterCommit(projectId, build.getCommitHash());
 			transactionManager.runAfterCommit(new Runnable() {
 
 				@Override
@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.persistence.EntityManagerFactory;
@@ -20,6 +21,7 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
@@ -27,7 +29,9 @@ import javax.persistence.metamodel.EntityType;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.FlushMode;
 import org.hibernate.query.Query;
+import org.joda.time.Days;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,11 +40,14 @@ import com.google.common.base.Preconditions;
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.server.entitymanager.BuildMetricManager;
 import io.onedev.server.entitymanager.GroupManager;
+import io.onedev.server.event.build.BuildFinished;
 import io.onedev.server.event.entity.EntityPersisted;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.model.AbstractEntity;
 import io.onedev.server.model.Build;
+import io.onedev.server.model.BuildMetricRollup;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
 import io.onedev.server.model.Group;
 import io.onedev.server.model.GroupAuthorization;
 import io.onedev.server.model.Project;
@@ -57,6 +64,8 @@ import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.permission.AccessBuildReports;
 import io.onedev.server.security.permission.JobPermission;
 import io.onedev.server.util.BeanUtils;
+import io.onedev.server.util.BuildMetricStats;
+import io.onedev.server.util.Day;
 import io.onedev.server.util.MetricIndicator;
 
 @Singleton
@@ -64,6 +73,13 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultBuildMetricManager.class);
 	
+	// Use finest granularity still resulting in a reasonable number of points on charts 
+	private static final int MAX_DAYS_BY_DAY = 92;
+	
+	private static final int MAX_DAYS_BY_WEEK = 731;
+	
+	private static final int BACKFILL_BATCH_SIZE = 500;
+	
 	private final Dao dao;
 	
 	private final TransactionManager transactionManager;
@@ -81,19 +97,9 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 		this.groupManager = groupManager;
 	}
 	
-	@SuppressWarnings("resource")
-	@Sessional
-	@Override
-	public <T extends AbstractEntity> Map<Integer, T> queryStats(Project project, Class<T> metricClass, BuildMetricQuery query) {
-		CriteriaBuilder builder = dao.getSession().getCriteriaBuilder();
-		CriteriaQuery<Object[]> criteriaQuery = builder.createQuery(Object[].class);
-		Root<T> metricRoot = criteriaQuery.from(metricClass);
-
-		List<Predicate> predicates = new ArrayList<>();
-		
-		Join<?, ?> buildJoin = metricRoot.join(BuildMetric.PROP_BUILD, JoinType.INNER);
-		predicates.add(builder.equal(buildJoin.get(Build.PROP_PROJECT), project));
-		
+	@Nullable
+	private Predicate getAccessPredicate(Project project, Class<?> metricClass, Path<String> jobAttribute, 
+			Path<String> reportAttribute, CriteriaBuilder builder) {
 		if (!SecurityUtils.canManageBuilds(project)) {
 			reportNamesLock.readLock().lock();
 			try {
@@ -107,13 +113,13 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 						if (availableReportNamesOfJob != null) {
 							if (entry.getValue().containsAll(availableReportNamesOfJob)) {
 								jobsWithAllReports.add(entry.getKey());
-								jobPredicates.add(builder.equal(buildJoin.get(Build.PROP_JOB), entry.getKey()));
+								jobPredicates.add(builder.equal(jobAttribute, entry.getKey()));
 							} else {
 								List<Predicate> reportPredicates = new ArrayList<>();
 								for (String reportName: entry.getValue()) 
-									reportPredicates.add(builder.equal(metricRoot.get(BuildMetric.PROP_REPORT), reportName));
+									reportPredicates.add(builder.equal(reportAttribute, reportName));
 								jobPredicates.add(builder.and(
-										builder.equal(buildJoin.get(Build.PROP_JOB), entry.getKey()), 
+										builder.equal(jobAttribute, entry.getKey()), 
 										builder.or(reportPredicates.toArray(new Predicate[reportPredicates.size()]))));
 							}
 						} else {
@@ -121,12 +127,157 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 						}
 					}
 					if (!jobsWithAllReports.containsAll(availableReportNames.keySet()))
-						predicates.add(builder.or(jobPredicates.toArray(new Predicate[jobPredicates.size()])));
+						return builder.or(jobPredicates.toArray(new Predicate[jobPredicates.size()]));
 				}
 			} finally {
 				reportNamesLock.readLock().unlock();
 			}
 		}
+		return null;
+	}
+	
+	private List<Method> getIndicatorGetters(Class<?> metricClass) {
+		List<Method> getters = new ArrayList<>();
+		for (Method getter: BeanUtils.findGetters(metricClass)) {
+			if (getter.getAnnotation(MetricIndicator.class) != null) 
+				getters.add(getter);
+		}
+		return getters;
+	}
+	
+	private Collection<Class<?>> getMetricClasses() {
+		Collection<Class<?>> metricClasses = new ArrayList<>();
+		EntityManagerFactory emf = (EntityManagerFactory)dao.getSession().getEntityManagerFactory();
+		for (EntityType<?> entityType: emf.getMetamodel().getEntities()) {
+			Class<?> entityClass = entityType.getJavaType();
+			if (BuildMetric.class.isAssignableFrom(entityClass))
+				metricClasses.add(entityClass);
+		}
+		return metricClasses;
+	}
+	
+	@Sessional
+	@Override
+	public <T extends AbstractEntity> BuildMetricStats<T> queryStats(Project project, Class<T> metricClass, BuildMetricQuery query) {
+		BuildMetricStats<T> stats = queryRollupStats(project, metricClass, query);
+		if (stats == null)
+			stats = new BuildMetricStats<>(Granularity.DAY, queryRawStats(project, metricClass, query));
+		return stats;
+	}
+	
+	/**
+	 * @return
+	 * 			rollup predicates of specified query, or <tt>null</tt> if criteria of the query 
+	 * 			can not be evaluated against rollups
+	 */
+	@Nullable
+	private Predicate[] getRollupPredicates(Project project, Class<?> metricClass, BuildMetricQuery query, 
+			Root<BuildMetricRollup> rollupRoot, Granularity granularity, CriteriaBuilder builder) {
+		List<Predicate> predicates = new ArrayList<>();
+		predicates.add(builder.equal(rollupRoot.get(BuildMetricRollup.PROP_PROJECT), project));
+		predicates.add(builder.equal(rollupRoot.get(BuildMetricRollup.PROP_METRIC_TYPE), metricClass.getSimpleName()));
+		predicates.add(builder.equal(rollupRoot.get(BuildMetricRollup.PROP_GRANULARITY), granularity));
+		
+		Predicate accessPredicate = getAccessPredicate(project, metricClass, 
+				rollupRoot.get(BuildMetricRollup.PROP_JOB), rollupRoot.get(BuildMetricRollup.PROP_REPORT), builder);
+		if (accessPredicate != null)
+			predicates.add(accessPredicate);
+		
+		if (query.getCriteria() != null) {
+			Predicate criteriaPredicate = query.getCriteria().getRollupPredicate(rollupRoot, granularity, builder);
+			if (criteriaPredicate == null)
+				return null;
+			predicates.add(criteriaPredicate);
+		}
+		return predicates.toArray(new Predicate[0]);
+	}
+	
+	private Granularity getGranularity(int firstDay, int lastDay) {
+		int days = Days.daysBetween(new Day(firstDay).getDate(), new Day(lastDay).getDate()).getDays();
+		if (days <= MAX_DAYS_BY_DAY)
+			return Granularity.DAY;
+		else if (days <= MAX_DAYS_BY_WEEK)
+			return Granularity.WEEK;
+		else
+			return Granularity.MONTH;
+	}
+	
+	@Nullable
+	private <T extends AbstractEntity> BuildMetricStats<T> queryRollupStats(Project project, Class<T> metricClass, 
+			BuildMetricQuery query) {
+		CriteriaBuilder builder = dao.getSession().getCriteriaBuilder();
+		
+		CriteriaQuery<Object[]> rangeQuery = builder.createQuery(Object[].class);
+		Root<BuildMetricRollup> rangeRoot = rangeQuery.from(BuildMetricRollup.class);
+		Predicate[] rangePredicates = getRollupPredicates(project, metricClass, query, rangeRoot, Granularity.DAY, builder);
+		if (rangePredicates == null)
+			return null;
+		rangeQuery.where(rangePredicates);
+		Path<Integer> dayAttribute = rangeRoot.get(BuildMetricRollup.PROP_PERIOD);
+		rangeQuery.multiselect(builder.min(dayAttribute), builder.max(dayAttribute));
+		Object[] range = dao.getSession().createQuery(rangeQuery).uniqueResult();
+		
+		Map<Integer, T> metrics = new HashMap<>();
+		if (range == null || range[0] == null) 
+			return new BuildMetricStats<>(Granularity.DAY, metrics);
+		
+		Granularity granularity = getGranularity((int)range[0], (int)range[1]);
+		
+		CriteriaQuery<Object[]> criteriaQuery = builder.createQuery(Object[].class);
+		Root<BuildMetricRollup> rollupRoot = criteriaQuery.from(BuildMetricRollup.class);
+		
+		// criteria may only be evaluated against rollups by day, for instance a negated date criteria 
+		Predicate[] predicates = getRollupPredicates(project, metricClass, query, rollupRoot, granularity, builder);
+		if (predicates == null)
+			return null;
+		criteriaQuery.where(predicates);
+		
+		Map<String, Method> setters = new HashMap<>();
+		for (Method getter: getIndicatorGetters(metricClass)) 
+			setters.put(BeanUtils.getPropertyName(getter), Preconditions.checkNotNull(BeanUtils.findSetter(getter)));
+		
+		Path<Integer> periodAttribute = rollupRoot.get(BuildMetricRollup.PROP_PERIOD);
+		Path<String> indicatorAttribute = rollupRoot.get(BuildMetricRollup.PROP_INDICATOR);
+		criteriaQuery.groupBy(periodAttribute, indicatorAttribute);
+		criteriaQuery.multiselect(periodAttribute, indicatorAttribute, 
+				builder.sum(rollupRoot.<Long>get(BuildMetricRollup.PROP_TOTAL)), 
+				builder.sum(rollupRoot.<Integer>get(BuildMetricRollup.PROP_COUNT)));
+		
+		for (Object[] fields: dao.getSession().createQuery(criteriaQuery).list()) {
+			Method setter = setters.get((String)fields[1]);
+			long count = ((Number)fields[3]).longValue();
+			if (setter != null && count > 0) {
+				try {
+					int period = (int)fields[0];
+					T metric = metrics.get(period);
+					if (metric == null) {
+						metric = metricClass.newInstance();
+						metrics.put(period, metric);
+					}
+					setter.invoke(metric, (int)(((Number)fields[2]).longValue() / count));
+				} catch (Exception e) {
+					throw unchecked(e);
+				}
+			}
+		}
+		return new BuildMetricStats<>(granularity, metrics);
+	}
+	
+	private <T extends AbstractEntity> Map<Integer, T> queryRawStats(Project project, Class<T> metricClass, 
+			BuildMetricQuery query) {
+		CriteriaBuilder builder = dao.getSession().getCriteriaBuilder();
+		CriteriaQuery<Object[]> criteriaQuery = builder.createQuery(Object[].class);
+		Root<T> metricRoot = criteriaQuery.from(metricClass);
+
+		List<Predicate> predicates = new ArrayList<>();
+		
+		Join<?, ?> buildJoin = metricRoot.join(BuildMetric.PROP_BUILD, JoinType.INNER);
+		predicates.add(builder.equal(buildJoin.get(Build.PROP_PROJECT), project));
+		
+		Predicate accessPredicate = getAccessPredicate(project, metricClass, 
+				buildJoin.get(Build.PROP_JOB), metricRoot.get(BuildMetric.PROP_REPORT), builder);
+		if (accessPredicate != null)
+			predicates.add(accessPredicate);
 		
 		if (query.getCriteria() != null)
 			predicates.add(query.getCriteria().getPredicate(metricRoot, buildJoin, builder));
@@ -136,11 +287,9 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 		
 		List<Method> setters = new ArrayList<>();
 		List<Selection<?>> selections = new ArrayList<>();
-		for (Method getter: BeanUtils.findGetters(metricClass)) {
-			if (getter.getAnnotation(MetricIndicator.class) != null) {
-				selections.add(builder.avg(metricRoot.get(BeanUtils.getPropertyName(getter))));
-				setters.add(Preconditions.checkNotNull(BeanUtils.findSetter(getter)));
-			}
+		for (Method getter: getIndicatorGetters(metricClass)) {
+			selections.add(builder.avg(metricRoot.get(BeanUtils.getPropertyName(getter))));
+			setters.add(Preconditions.checkNotNull(BeanUtils.findSetter(getter)));
 		}
 		
 		selections.add(buildJoin.get(Build.PROP_FINISH_DAY));
@@ -164,23 +313,175 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 		}
 		return metrics;
 	}
+	
+	/**
+	 * Add (sign is 1) or subtract (sign is -1) metrics of specified build to/from rollups. Metrics 
+	 * are counted into the period containing finish day of the build
+	 */
+	@SuppressWarnings("unchecked")
+	private void updateRollups(Build build, int sign) {
+		Integer finishDay = build.getFinishDay();
+		if (finishDay == null)
+			return;
+		
+		BuildMetricRollups rollups = new BuildMetricRollups();
+		Map<Class<?>, List<String>> indicatorsOfClasses = new HashMap<>();
+		for (Class<?> metricClass: getMetricClasses()) {
+			List<Method> getters = getIndicatorGetters(metricClass);
+			List<String> indicators = new ArrayList<>();
+			for (Method getter: getters)
+				indicators.add(BeanUtils.getPropertyName(getter));
+			indicatorsOfClasses.put(metricClass, indicators);
+			
+			StringBuilder queryString = new StringBuilder("select metric.").append(BuildMetric.PROP_REPORT);
+			for (Method getter: getters)
+				queryString.append(", metric.").append(BeanUtils.getPropertyName(getter));
+			queryString.append(String.format(" from %s metric where metric.%s=:build", 
+					metricClass.getSimpleName(), BuildMetric.PROP_BUILD));
+			Query<?> query = dao.getSession().createQuery(queryString.toString());
+			query.setParameter("build", build);
+			
+			// Metrics might be scheduled for deletion together with the build, read them as is
+			query.setHibernateFlushMode(FlushMode.MANUAL);
+			
+			for (Object[] fields: (List<Object[]>)query.list()) {
+				long[] indicatorSums = new long[indicators.size()];
+				for (int i=0; i<indicatorSums.length; i++)
+					indicatorSums[i] = sign * ((Number)fields[i+1]).longValue();
+				rollups.add(build.getProject().getId(), metricClass, build.getJobName(), (String)fields[0], 
+						finishDay, sign, indicatorSums);
+			}
+		}
+		
+		for (Map.Entry<BuildMetricRollups.Key, long[]> entry: rollups.getValues().entrySet()) {
+			BuildMetricRollups.Key key = entry.getKey();
+			List<String> indicators = indicatorsOfClasses.get(key.metricClass);
+			for (int i=0; i<indicators.size(); i++) {
+				updateRollup(build.getProject(), key.metricClass, key.jobName, key.reportName, key.granularity, 
+						key.period, indicators.get(i), entry.getValue()[i+1], (int)entry.getValue()[0]);
+			}
+		}
+	}
+	
+	private void updateRollup(Project project, Class<?> metricClass, String jobName, String reportName, 
+			Granularity granularity, int period, String indicator, long value, int count) {
+		String queryString = String.format("select id from %s where %s=:project and %s=:metricType and %s=:jobName "
+				+ "and %s=:reportName and %s=:granularity and %s=:period and %s=:indicator", 
+				BuildMetricRollup.class.getSimpleName(), BuildMetricRollup.PROP_PROJECT, 
+				BuildMetricRollup.PROP_METRIC_TYPE, BuildMetricRollup.PROP_JOB, BuildMetricRollup.PROP_REPORT, 
+				BuildMetricRollup.PROP_GRANULARITY, BuildMetricRollup.PROP_PERIOD, BuildMetricRollup.PROP_INDICATOR);
+		Query<Long> query = dao.getSession().createQuery(queryString, Long.class);
+		query.setParameter("project", project);
+		query.setParameter("metricType", metricClass.getSimpleName());
+		query.setParameter("jobName", jobName);
+		query.setParameter("reportName", reportName);
+		query.setParameter("granularity", granularity);
+		query.setParameter("period", period);
+		query.setParameter("indicator", indicator);
+		query.setMaxResults(1);
+		Long rollupId = query.uniqueResult();
+		
+		if (rollupId != null) {
+			// Update in place so that concurrent updates of same rollup do not overwrite each other
+			queryString = String.format("update %s set %s=%s+:value, %s=%s+:count where id=:id", 
+					BuildMetricRollup.class.getSimpleName(), 
+					BuildMetricRollup.PROP_TOTAL, BuildMetricRollup.PROP_TOTAL, 
+					BuildMetricRollup.PROP_COUNT, BuildMetricRollup.PROP_COUNT);
+			Query<?> updateQuery = dao.getSession().createQuery(queryString);
+			updateQuery.setParameter("value", value);
+			updateQuery.setParameter("count", count);
+			updateQuery.setParameter("id", rollupId);
+			updateQuery.executeUpdate();
+		} else if (count > 0) {
+			BuildMetricRollup rollup = new BuildMetricRollup();
+			rollup.setProject(project);
+			rollup.setMetricType(metricClass.getSimpleName());
+			rollup.setJobName(jobName);
+			rollup.setReportName(reportName);
+			rollup.setGranularity(granularity);
+			rollup.setPeriodDay(period);
+			rollup.setIndicator(indicator);
+			rollup.setValueSum(value);
+			rollup.setValueCount(count);
+			dao.persist(rollup);
+		}
+	}
+	
+	/**
+	 * Populate rollups from existing metrics, for instance after upgrading from a version without rollups
+	 */
+	@SuppressWarnings("unchecked")
+	private void backfillRollups() {
+		BuildMetricRollups rollups = new BuildMetricRollups();
+		Map<Class<?>, List<String>> indicatorsOfClasses = new HashMap<>();
+		for (Class<?> metricClass: getMetricClasses()) {
+			List<String> indicators = new ArrayList<>();
+			for (Method getter: getIndicatorGetters(metricClass))
+				indicators.add(BeanUtils.getPropertyName(getter));
+			indicatorsOfClasses.put(metricClass, indicators);
+			
+			StringBuilder queryString = new StringBuilder(String.format("select build.%s.id, build.%s, metric.%s, build.%s, count(*)", 
+					Build.PROP_PROJECT, Build.PROP_JOB, BuildMetric.PROP_REPORT, Build.PROP_FINISH_DAY));
+			for (String indicator: indicators)
+				queryString.append(", sum(metric.").append(indicator).append(")");
+			queryString.append(String.format(" from %s metric inner join metric.%s build where build.%s is not null "
+					+ "group by build.%s.id, build.%s, metric.%s, build.%s", 
+					metricClass.getSimpleName(), BuildMetric.PROP_BUILD, Build.PROP_FINISH_DAY, 
+					Build.PROP_PROJECT, Build.PROP_JOB, BuildMetric.PROP_REPORT, Build.PROP_FINISH_DAY));
+			Query<?> query = dao.getSession().createQuery(queryString.toString());
+			for (Object[] fields: (List<Object[]>)query.list()) {
+				long[] indicatorSums = new long[indicators.size()];
+				for (int i=0; i<indicatorSums.length; i++)
+					indicatorSums[i] = ((Number)fields[i+5]).longValue();
+				rollups.add((Long)fields[0], metricClass, (String)fields[1], (String)fields[2], 
+						(int)fields[3], ((Number)fields[4]).longValue(), indicatorSums);
+			}
+		}
 
+		if (!rollups.getValues().isEmpty()) {
+			logger.info("Rolling up build metrics...");
+			int count = 0;
+			for (Map.Entry<BuildMetricRollups.Key, long[]> entry: rollups.getValues().entrySet()) {
+				BuildMetricRollups.Key key = entry.getKey();
+				List<String> indicators = indicatorsOfClasses.get(key.metricClass);
+				for (int i=0; i<indicators.size(); i++) {
+					BuildMetricRollup rollup = new BuildMetricRollup();
+					rollup.setProject(dao.load(Project.class, key.projectId));
+					rollup.setMetricType(key.metricClass.getSimpleName());
+					rollup.setJobName(key.jobName);
+					rollup.setReportName(key.reportName);
+					rollup.setGranularity(key.granularity);
+					rollup.setPeriodDay(key.period);
+					rollup.setIndicator(indicators.get(i));
+					rollup.setValueCount((int)entry.getValue()[0]);
+					rollup.setValueSum(entry.getValue()[i+1]);
+					dao.persist(rollup);
+					if (++count % BACKFILL_BATCH_SIZE == 0) {
+						dao.getSession().flush();
+						dao.getSession().clear();
+					}
+				}
+			}
+		}
+	}
+
+	@Transactional
 	@SuppressWarnings("unchecked")
 	@Listen
 	public void on(SystemStarted event) {
 		logger.info("Caching build metric info...");
 		
-		EntityManagerFactory emf = (EntityManagerFactory)dao.getSession().getEntityManagerFactory();
-		for (EntityType<?> entityType: emf.getMetamodel().getEntities()) {
-			Class<?> entityClass = entityType.getJavaType();
-			if (BuildMetric.class.isAssignableFrom(entityClass)) {
-				String queryString = String.format("select build.%s.id, build.%s, metric.%s from %s metric inner join metric.%s build", 
-						Build.PROP_PROJECT, Build.PROP_JOB, BuildMetric.PROP_REPORT, entityClass.getSimpleName(), BuildMetric.PROP_BUILD);
-				Query<?> query = dao.getSession().createQuery(queryString);
-				for (Object[] fields: (List<Object[]>)query.list()) 
-					populateReportNames(new Key((Long)fields[0], entityClass), (String)fields[1], (String)fields[2]);
-			}
+		for (Class<?> metricClass: getMetricClasses()) {
+			String queryString = String.format("select build.%s.id, build.%s, metric.%s from %s metric inner join metric.%s build", 
+					Build.PROP_PROJECT, Build.PROP_JOB, BuildMetric.PROP_REPORT, metricClass.getSimpleName(), BuildMetric.PROP_BUILD);
+			Query<?> query = dao.getSession().createQuery(queryString);
+			for (Object[] fields: (List<Object[]>)query.list()) 
+				populateReportNames(new Key((Long)fields[0], metricClass), (String)fields[1], (String)fields[2]);
 		}
+		
+		String queryString = String.format("select count(*) from %s", BuildMetricRollup.class.getSimpleName());
+		if (dao.getSession().createQuery(queryString, Long.class).uniqueResult() == 0)
+			backfillRollups();
 	}
 	
 	@Transactional
@@ -203,9 +504,23 @@ public class DefaultBuildMetricManager implements BuildMetricManager {
 					}
 				}
 			});
+		} else if (event.getEntity() instanceof Build) {
+			updateRollups((Build) event.getEntity(), -1);
 		}
 	}
 	
+	@Transactional
+	@Listen
+	public void on(BuildFinished event) {
+		updateRollups(event.getBuild(), 1);
+	}
+	
+	@Transactional
+	@Override
+	public void excludeFromRollups(Build build) {
+		updateRollups(build, -1);
+	}
+	
 	@Transactional
 	@Listen
 	public void on(EntityPersisted event) {
@@ -31,6 +31,8 @@ import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
@@ -40,17 +42,24 @@ import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.launcher.loader.ListenerRegistry;
 import io.onedev.commons.utils.PlanarRange;
 import io.onedev.server.entitymanager.CodeCommentManager;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
 import io.onedev.server.event.codecomment.CodeCommentCreated;
 import io.onedev.server.event.codecomment.CodeCommentEvent;
 import io.onedev.server.event.codecomment.CodeCommentUpdated;
 import io.onedev.server.event.pullrequest.PullRequestCodeCommentCreated;
+import io.onedev.server.git.Blob;
 import io.onedev.server.git.BlobIdent;
+import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.command.RevListCommand;
+import io.onedev.server.infomanager.CodeCommentInfoManager;
 import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.support.Mark;
+import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.persistence.dao.BaseEntityManager;
@@ -61,25 +70,48 @@ import io.onedev.server.search.entity.EntitySort;
 import io.onedev.server.search.entity.EntitySort.Direction;
 import io.onedev.server.search.entity.codecomment.CodeCommentQuery;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.concurrent.Prioritized;
 import io.onedev.server.util.diff.DiffUtils;
 import io.onedev.server.util.diff.WhitespaceOption;
+import io.onedev.server.util.work.BatchWorkManager;
+import io.onedev.server.util.work.BatchWorker;
 
 @Singleton
 public class DefaultCodeCommentManager extends BaseEntityManager<CodeComment> implements CodeCommentManager {
 
+	private static final Logger logger = LoggerFactory.getLogger(DefaultCodeCommentManager.class);
+	
 	private final int MAX_HISTORY_COMMITS_TO_CHECK = 50000;
 	
 	private final int MAX_HISTORY_FILES_TO_CHECK = 500;
 	
+	private final int MAX_PATHS_TO_MAP = 1000;
+	
+	private static final int MAPPING_PRIORITY = 200;
+	
 	private final ListenerRegistry listenerRegistry;
 	
 	private final CommitInfoManager commitInfoManager;
 	
+	private final CodeCommentInfoManager codeCommentInfoManager;
+	
+	private final ProjectManager projectManager;
+	
+	private final BatchWorkManager batchWorkManager;
+	
+	private final SessionManager sessionManager;
+	
 	@Inject
-	public DefaultCodeCommentManager(Dao dao, ListenerRegistry listenerRegistry, CommitInfoManager commitInfoManager) {
+	public DefaultCodeCommentManager(Dao dao, ListenerRegistry listenerRegistry, CommitInfoManager commitInfoManager, 
+			CodeCommentInfoManager codeCommentInfoManager, ProjectManager projectManager, 
+			BatchWorkManager batchWorkManager, SessionManager sessionManager) {
 		super(dao);
 		this.listenerRegistry = listenerRegistry;
 		this.commitInfoManager = commitInfoManager;
+		this.codeCommentInfoManager = codeCommentInfoManager;
+		this.projectManager = projectManager;
+		this.batchWorkManager = batchWorkManager;
+		this.sessionManager = sessionManager;
 	}
 
 	@Transactional
@@ -147,11 +179,14 @@ public class DefaultCodeCommentManager extends BaseEntityManager<CodeComment> im
 		return query(criteria);
 	}
 	
+	@Sessional
 	@Override
 	public Map<CodeComment, PlanarRange> queryInHistory(Project project, ObjectId commitId, String path) {
-		Map<CodeComment, PlanarRange> comments = new HashMap<>();
-		
-		Map<String, Map<String, List<CodeComment>>> possibleComments = new HashMap<>();
+		return queryInHistory(project, commitId, path, null);
+	}
+	
+	private Map<CodeComment, PlanarRange> queryInHistory(Project project, ObjectId commitId, String path, 
+			@Nullable Set<String> revisions) {
 		Collection<String> possiblePaths = Sets.newHashSet(path);
 		possiblePaths.addAll(commitInfoManager.getHistoryPaths(project, path));
 		
@@ -159,16 +194,32 @@ public class DefaultCodeCommentManager extends BaseEntityManager<CodeComment> im
 		criteria.add(Restrictions.eq(CodeComment.PROP_PROJECT, project));
 		criteria.add(Restrictions.in(CodeComment.PROP_MARK + "." + Mark.PROP_PATH, possiblePaths));
 		
-		for (CodeComment comment: query(criteria)) {
+		return mapInHistory(project, commitId, path, query(criteria), revisions);
+	}
+	
+	/**
+	 * @param possibleComments
+	 * 			comments on specified path and its history paths
+	 * @param revisions
+	 * 			revisions reachable from specified commit. Pass <tt>null</tt> to calculate 
+	 * 			on demand
+	 */
+	private Map<CodeComment, PlanarRange> mapInHistory(Project project, ObjectId commitId, String path, 
+			Collection<CodeComment> possibleComments, @Nullable Set<String> revisions) {
+		Map<CodeComment, PlanarRange> comments = new HashMap<>();
+		
+		Map<String, Map<String, List<CodeComment>>> historyComments = new HashMap<>();
+		Collection<Long> possibleCommentIds = new HashSet<>();
+		for (CodeComment comment: possibleComments) {
 			String possiblePath = comment.getMark().getPath();
 			if (comment.getMark().getCommitHash().equals(commitId.name()) && possiblePath.equals(path)) {
 				comments.put(comment, comment.getMark().getRange());
 			} else {
 				Map<String, List<CodeComment>> commentsOnCommit = 
-						possibleComments.get(comment.getMark().getCommitHash());
+						historyComments.get(comment.getMark().getCommitHash());
 				if (commentsOnCommit == null) {
 					commentsOnCommit = new HashMap<>();
-					possibleComments.put(comment.getMark().getCommitHash(), commentsOnCommit);
+					historyComments.put(comment.getMark().getCommitHash(), commentsOnCommit);
 				}
 				List<CodeComment> commentsOnPath = commentsOnCommit.get(possiblePath);
 				if (commentsOnPath == null) {
@@ -176,13 +227,14 @@ public class DefaultCodeCommentManager extends BaseEntityManager<CodeComment> im
 					commentsOnCommit.put(possiblePath, commentsOnPath);
 				}
 				commentsOnPath.add(comment);
+				possibleCommentIds.add(comment.getId());
 			}
 		}
 
 		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
 			Date oldestDate = null;
 			List<RevCommit> historyCommits = new ArrayList<>();
-			for (Map.Entry<String, Map<String, List<CodeComment>>> entry: possibleComments.entrySet()) {
+			for (Map.Entry<String, Map<String, List<CodeComment>>> entry: historyComments.entrySet()) {
 				try {
 					RevCommit commit = revWalk.parseCommit(ObjectId.fromString(entry.getKey()));
 					historyCommits.add(commit);
@@ -196,16 +248,50 @@ public class DefaultCodeCommentManager extends BaseEntityManager<CodeComment> im
 			}
 			
 			if (oldestDate != null) {
-				RevListCommand command = new RevListCommand(project.getRepository().getDirectory());
-				command.after(DateUtils.addDays(oldestDate, -1));
-				command.revisions(Lists.newArrayList(commitId.name()));
-				command.count(MAX_HISTORY_COMMITS_TO_CHECK);
-				Set<String> revisions = new HashSet<>(command.call());
+				/*
+				 * Reachability of history commits is persisted along with mapped ranges, so that 
+				 * native rev-list is only run when comments on new commits are encountered
+				 */
+				Map<ObjectId, Boolean> reachabilities = codeCommentInfoManager.getReachabilities(
+						project, commitId, historyCommits);
+				Map<ObjectId, Boolean> newReachabilities = new HashMap<>();
+				for (RevCommit historyCommit: historyCommits) {
+					if (!reachabilities.containsKey(historyCommit)) {
+						if (revisions == null) {
+							RevListCommand command = new RevListCommand(project.getRepository().getDirectory());
+							command.after(DateUtils.addDays(oldestDate, -1));
+							command.revisions(Lists.newArrayList(commitId.name()));
+							command.count(MAX_HISTORY_COMMITS_TO_CHECK);
+							revisions = new HashSet<>(command.call());
+						}
+						boolean reachable = revisions.contains(historyCommit.name());
+						if (!reachable) {
+							/*
+							 * Revisions are limited by count and commit date, so a commit not 
+							 * listed may still be reachable. Confirm with a full walk before 
+							 * persisting, as persisted reachability is never recalculated
+							 */
+							reachable = revWalk.isMergedInto(historyCommit, revWalk.parseCommit(commitId));
+						}
+						newReachabilities.put(historyCommit.copy(), reachable);
+					}
+				}
+				reachabilities.putAll(newReachabilities);
+				codeCommentInfoManager.saveReachabilities(project, commitId, newReachabilities);
+				
+				BlobIdent blobIdent = new BlobIdent(commitId.name(), path, FileMode.REGULAR_FILE.getBits());
+				ObjectId blobId = project.getBlob(blobIdent, true).getBlobId();
+				
+				/*
+				 * Mapped ranges only depend on blobs of comment and current file, so they are 
+				 * persisted and reused for all subsequent views of the same file content 
+				 */
+				Map<Long, PlanarRange> mappedRanges = codeCommentInfoManager.getMappedRanges(
+						project, blobId, possibleCommentIds);
+				Map<Long, PlanarRange> newMappedRanges = new HashMap<>();
+				
+				List<String> newLines = null;
 				
-				List<String> newLines = Preconditions.checkNotNull(project.readLines(
-						new BlobIdent(commitId.name(), path, FileMode.REGULAR_FILE.getBits()), 
-						WhitespaceOption.DEFAULT, true));
-
 				Collections.sort(historyCommits, new Comparator<RevCommit>() {
 
 					@Override
@@ -216,27 +302,48 @@ public class DefaultCodeCommentManager extends BaseEntityManager<CodeComment> im
 				});
 				int checkedHistoryFiles = 0;
 				for (RevCommit historyCommit: historyCommits) {
-					if (revisions.contains(historyCommit.name())) {
+					if (reachabilities.get(historyCommit)) {
 						Map<String, List<CodeComment>> commentsOnCommit = 
-								Preconditions.checkNotNull(possibleComments.get(historyCommit.name()));
+								Preconditions.checkNotNull(historyComments.get(historyCommit.name()));
 						for (Map.Entry<String, List<CodeComment>> pathEntry: commentsOnCommit.entrySet()) {
+							List<CodeComment> unmappedComments = new ArrayList<>();
+							for (CodeComment comment: pathEntry.getValue()) {
+								if (mappedRanges.containsKey(comment.getId())) {
+									PlanarRange mappedRange = mappedRanges.get(comment.getId());
+									if (mappedRange != null)
+										comments.put(comment, mappedRange);
+								} else {
+									unmappedComments.add(comment);
+								}
+							}
+							if (unmappedComments.isEmpty())
+								continue;
+							
+							if (checkedHistoryFiles == MAX_HISTORY_FILES_TO_CHECK) 
+								break;
+							
+							if (newLines == null) {
+								newLines = Preconditions.checkNotNull(project.readLines(
+										blobIdent, WhitespaceOption.DEFAULT, true));
+							}
 							List<String> oldLines = project.readLines( 
 									new BlobIdent(historyCommit.name(), pathEntry.getKey(), FileMode.REGULAR_FILE.getBits()), 
 									WhitespaceOption.DEFAULT, false);
 							if (oldLines != null) {
 								Map<Integer, Integer> lineMapping = DiffUtils.mapLines(oldLines, newLines);
-								for (CodeComment comment: pathEntry.getValue()) {
+								for (CodeComment comment: unmappedComments) {
 									PlanarRange newRange = DiffUtils.mapRange(lineMapping, comment.getMark().getRange());
 									if (newRange != null) 
 										comments.put(comment, newRange);
+									newMappedRanges.put(comment.getId(), newRange);
 								}
-								if (++checkedHistoryFiles == MAX_HISTORY_FILES_TO_CHECK) {
-									return comments;
-								}
+								checkedHistoryFiles++;
 							}
 						}
 					}
 				}
+				
+				codeCommentInfoManager.saveMappedRanges(project, blobId, newMappedRanges);
 			} 
 			
 			return comments;
@@ -245,6 +352,146 @@ public class DefaultCodeCommentManager extends BaseEntityManager<CodeComment> im
 		} 
 
 	}
+	
+	@Sessional
+	@Listen
+	public void on(RefUpdated event) {
+		if (!event.isBatched())
+			submitMappingWorks(event.getProject(), Lists.newArrayList(event));
+	}
+	
+	@Sessional
+	@Listen
+	public void on(RefsUpdated event) {
+		submitMappingWorks(event.getProject(), event.getRefUpdates());
+	}
+	
+	/*
+	 * Open pull requests of the project are queried only once for all updated refs
+	 */
+	private void submitMappingWorks(Project project, List<RefUpdated> refUpdates) {
+		Collection<String> pullRequestBranches = null;
+		for (RefUpdated refUpdated: refUpdates) {
+			String branch = GitUtils.ref2branch(refUpdated.getRefName());
+			if (branch != null && !refUpdated.getNewCommitId().equals(ObjectId.zeroId())) {
+				if (pullRequestBranches == null)
+					pullRequestBranches = getOpenPullRequestBranches(project);
+				if (pullRequestBranches.contains(branch)) {
+					batchWorkManager.submit(getBatchWorker(project.getId()), 
+							new MappingWork(MAPPING_PRIORITY, refUpdated.getNewCommitId()));
+				}
+			}
+		}
+	}
+	
+	private Collection<String> getOpenPullRequestBranches(Project project) {
+		EntityCriteria<PullRequest> criteria = EntityCriteria.of(PullRequest.class);
+		criteria.add(PullRequest.CriterionHelper.ofOpen());
+		criteria.add(Restrictions.or(
+				PullRequest.CriterionHelper.ofSourceProject(project), 
+				PullRequest.CriterionHelper.ofTargetProject(project)));
+		Collection<String> branches = new HashSet<>();
+		for (PullRequest request: dao.query(criteria)) {
+			if (project.equals(request.getTargetProject()))
+				branches.add(request.getTargetBranch());
+			if (project.equals(request.getSourceProject()))
+				branches.add(request.getSourceBranch());
+		}
+		return branches;
+	}
+	
+	private BatchWorker getBatchWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-mapCodeComments") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				Set<ObjectId> commitIds = new HashSet<>();
+				for (Prioritized work: works)
+					commitIds.add(((MappingWork) work).getCommitId());
+				sessionManager.run(new Runnable() {
+
+					@Override
+					public void run() {
+						Project project = projectManager.load(projectId);
+						for (ObjectId commitId: commitIds) 
+							mapComments(project, commitId);
+					}
+					
+				});
+			}
+			
+		};
+	}
+	
+	/**
+	 * Map code comments of files at specified commit in advance, so that viewers of branches 
+	 * with open pull requests get them from persisted mappings
+	 */
+	@SuppressWarnings("unchecked")
+	private void mapComments(Project project, ObjectId commitId) {
+		logger.debug("Mapping code comments (project: {}, commit: {})...", project.getName(), commitId.name());
+		
+		Query<String> query = getSession().createQuery(String.format(
+				"select distinct %s.%s from CodeComment where %s=:project", 
+				CodeComment.PROP_MARK, Mark.PROP_PATH, CodeComment.PROP_PROJECT));
+		query.setParameter("project", project);
+		query.setMaxResults(MAX_PATHS_TO_MAP);
+		List<String> paths = query.getResultList();
+		if (paths.isEmpty())
+			return;
+		
+		// Load comments of all paths at once instead of querying them path by path
+		EntityCriteria<CodeComment> criteria = EntityCriteria.of(CodeComment.class);
+		criteria.add(Restrictions.eq(CodeComment.PROP_PROJECT, project));
+		criteria.add(Restrictions.in(CodeComment.PROP_MARK + "." + Mark.PROP_PATH, paths));
+		Map<String, List<CodeComment>> commentsOnPaths = new HashMap<>();
+		for (CodeComment comment: query(criteria)) {
+			String path = comment.getMark().getPath();
+			List<CodeComment> commentsOnPath = commentsOnPaths.get(path);
+			if (commentsOnPath == null) {
+				commentsOnPath = new ArrayList<>();
+				commentsOnPaths.put(path, commentsOnPath);
+			}
+			commentsOnPath.add(comment);
+		}
+		
+		RevListCommand command = new RevListCommand(project.getRepository().getDirectory());
+		command.revisions(Lists.newArrayList(commitId.name()));
+		command.count(MAX_HISTORY_COMMITS_TO_CHECK);
+		Set<String> revisions = new HashSet<>(command.call());
+		
+		for (String path: paths) {
+			BlobIdent blobIdent = new BlobIdent(commitId.name(), path, FileMode.REGULAR_FILE.getBits());
+			Blob blob = project.getBlob(blobIdent, false);
+			if (blob != null && blob.getText() != null) {
+				Collection<String> possiblePaths = Sets.newHashSet(path);
+				possiblePaths.addAll(commitInfoManager.getHistoryPaths(project, path));
+				List<CodeComment> possibleComments = new ArrayList<>();
+				for (String possiblePath: possiblePaths) {
+					List<CodeComment> commentsOnPath = commentsOnPaths.get(possiblePath);
+					if (commentsOnPath != null)
+						possibleComments.addAll(commentsOnPath);
+				}
+				mapInHistory(project, commitId, path, possibleComments, revisions);
+			}
+		}
+		logger.debug("Mapped code comments (project: {}, commit: {})", project.getName(), commitId.name());
+	}
+	
+	private static class MappingWork extends Prioritized {
+
+		private final ObjectId commitId;
+		
+		public MappingWork(int priority, ObjectId commitId) {
+			super(priority);
+			this.commitId = commitId;
+		}
+
+		public ObjectId getCommitId() {
+			return commitId;
+		}
+		
+	}
 
 	private Predicate[] getPredicates(Project project, 
 			@Nullable io.onedev.server.search.entity.EntityCriteria<CodeComment> criteria, 
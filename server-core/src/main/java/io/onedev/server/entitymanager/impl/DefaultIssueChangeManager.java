@@ -1,27 +1,25 @@
 package io.onedev.server.entitymanager.impl;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.wicket.util.lang.Objects;
-import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 import org.joda.time.DateTime;
 import org.quartz.CronScheduleBuilder;
 import org.quartz.ScheduleBuilder;
@@ -29,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.launcher.loader.ListenerRegistry;
@@ -42,6 +41,7 @@ import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.PullRequestManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
 import io.onedev.server.event.build.BuildFinished;
 import io.onedev.server.event.issue.IssueChangeEvent;
 import io.onedev.server.event.pullrequest.PullRequestChangeEvent;
@@ -426,115 +426,142 @@ public class DefaultIssueChangeManager extends BaseEntityManager<IssueChange>
 	@Transactional
 	@Listen
 	public void on(RefUpdated event) {
-		String refName = event.getRefName();
-		String branchName = GitUtils.ref2branch(refName);
-		ObjectId newCommitId = event.getNewCommitId();
-		if (!newCommitId.equals(ObjectId.zeroId()) && branchName != null) {
-			/*
-			 * Transit states of issues fixed by commits under the new branch. Note that ideally 
-			 * we should also transit states of issues fixed by builds under the new branch. 
-			 * However that will be very cost. To work around this, when a branch is pushed, new 
-			 * builds should be running on that branch in order to get issue states transited 
-			 */
-			Project project = event.getProject();
-			Long projectId = project.getId();
-			ObjectId oldCommitId = event.getOldCommitId();
-			
-			transactionManager.runAfterCommit(new Runnable() {
+		if (!event.isBatched())
+			transitFixedIssuesAsync(event.getProject(), Lists.newArrayList(event));
+	}
+	
+	@Transactional
+	@Listen
+	public void on(RefsUpdated event) {
+		transitFixedIssuesAsync(event.getProject(), event.getRefUpdates());
+	}
+	
+	private void transitFixedIssuesAsync(Project project, List<RefUpdated> refUpdates) {
+		List<RefUpdated> branchUpdates = new ArrayList<>();
+		for (RefUpdated refUpdated: refUpdates) {
+			if (!refUpdated.getNewCommitId().equals(ObjectId.zeroId()) 
+					&& GitUtils.ref2branch(refUpdated.getRefName()) != null) {
+				branchUpdates.add(refUpdated);
+			}
+		}
+		if (branchUpdates.isEmpty())
+			return;
+		
+		/*
+		 * Transit states of issues fixed by commits under the new branch. Note that ideally 
+		 * we should also transit states of issues fixed by builds under the new branch. 
+		 * However that will be very cost. To work around this, when a branch is pushed, new 
+		 * builds should be running on that branch in order to get issue states transited 
+		 */
+		Long projectId = project.getId();
+		
+		transactionManager.runAfterCommit(new Runnable() {
 
-				@Override
-				public void run() {
-					executorService.execute(new Runnable() {
+			@Override
+			public void run() {
+				executorService.execute(new Runnable() {
 
-						@Override
-						public void run() {
-				        	LockUtils.call(getLockKey(projectId), new Callable<Void>() {
+					@Override
+					public void run() {
+			        	LockUtils.call(getLockKey(projectId), new Callable<Void>() {
 
-								@Override
-								public Void call() throws Exception {
-									transactionManager.run(new Runnable() {
+							@Override
+							public Void call() throws Exception {
+								transactionManager.run(new Runnable() {
 
-										@Override
-										public void run() {
-											try {
-												SecurityUtils.bindAsSystem();
-												Project project = projectManager.load(projectId);
-												Set<Long> fixedIssueNumbers = new HashSet<>();
-												try (RevWalk revWalk = new RevWalk(project.getRepository())) {
-													revWalk.markStart(revWalk.lookupCommit(newCommitId));
-													if (oldCommitId.equals(ObjectId.zeroId())) {
-														/*
-														 * In case a new branch is pushed, we only process new commits not in any existing branches
-														 * for performance reason. This is reasonable as state of fixed issues by commits in 
-														 * existing branches most probably is already transited        
-														 */
-														for (Ref ref: project.getRepository().getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
-															if (!ref.getName().equals(refName))
-																revWalk.markUninteresting(revWalk.lookupCommit(ref.getObjectId()));
-														}
-													} else {
-														revWalk.markUninteresting(revWalk.lookupCommit(oldCommitId));
-													}
-													RevCommit commit;
-													while ((commit = revWalk.next()) != null) {
-														fixedIssueNumbers.addAll(IssueUtils.parseFixedIssueNumbers(project, commit.getFullMessage()));
-														if (fixedIssueNumbers.size() > MAX_FIXED_ISSUES)
-															break;
-													}
-												} 
-												for (TransitionSpec transition: getTransitionSpecs()) {
-													if (transition.getTrigger() instanceof BranchUpdateTrigger) {
-														BranchUpdateTrigger trigger = (BranchUpdateTrigger) transition.getTrigger();
-														String branches = trigger.getBranches();
-														Matcher matcher = new PathMatcher();
-														if (branches == null || PatternSet.parse(branches).matches(matcher, branchName)) {
-															IssueQuery query = IssueQuery.parse(project, trigger.getIssueQuery(), 
-																	true, false, false, false, true);
-															List<IssueCriteria> criterias = new ArrayList<>();
-															
-															List<IssueCriteria> fromStateCriterias = new ArrayList<>();
-															for (String fromState: transition.getFromStates()) 
-																fromStateCriterias.add(new StateCriteria(fromState));
-															
-															criterias.add(IssueCriteria.or(fromStateCriterias));
-															if (query.getCriteria() != null)
-																criterias.add(query.getCriteria());
-															query = new IssueQuery(IssueCriteria.and(criterias), new ArrayList<>());
-															ProjectScopedCommit.push(new ProjectScopedCommit(project, newCommitId) {
+									@Override
+									public void run() {
+										try {
+											SecurityUtils.bindAsSystem();
+											Project project = projectManager.load(projectId);
+											transitFixedIssues(project, branchUpdates);
+										} catch (Exception e) {
+											logger.error("Error changing issue state", e);
+										}
+									}
+								});
+								return null;
+							}
+			        		
+			        	});							
+					}
+					
+				});
+			}
+		});
+	}
+	
+	private void transitFixedIssues(Project project, List<RefUpdated> branchUpdates) throws IOException {
+		List<TransitionSpec> transitions = new ArrayList<>();
+		for (TransitionSpec transition: getTransitionSpecs()) {
+			if (transition.getTrigger() instanceof BranchUpdateTrigger)
+				transitions.add(transition);
+		}
+		if (transitions.isEmpty())
+			return;
+		
+		Map<RefUpdated, List<TransitionSpec>> branchTransitions = new LinkedHashMap<>();
+		for (RefUpdated branchUpdate: branchUpdates) {
+			String branchName = GitUtils.ref2branch(branchUpdate.getRefName());
+			List<TransitionSpec> transitionsOfBranch = new ArrayList<>();
+			for (TransitionSpec transition: transitions) {
+				String branches = ((BranchUpdateTrigger) transition.getTrigger()).getBranches();
+				Matcher matcher = new PathMatcher();
+				if (branches == null || PatternSet.parse(branches).matches(matcher, branchName)) 
+					transitionsOfBranch.add(transition);
+			}
+			if (!transitionsOfBranch.isEmpty())
+				branchTransitions.put(branchUpdate, transitionsOfBranch);
+		}
+		if (branchTransitions.isEmpty())
+			return;
+		
+		Map<String, Set<Long>> branchFixedIssueNumbers = BranchFixedIssues.collect(project.getRepository(), 
+				branchTransitions.keySet(), new Function<String, Collection<Long>>() {
 
-																private static final long serialVersionUID = 1L;
+					@Override
+					public Collection<Long> apply(String commitMessage) {
+						return IssueUtils.parseFixedIssueNumbers(project, commitMessage);
+					}
+					
+				}, MAX_FIXED_ISSUES);
+		
+		for (Map.Entry<RefUpdated, List<TransitionSpec>> entry: branchTransitions.entrySet()) {
+			ObjectId newCommitId = entry.getKey().getNewCommitId();
+			Set<Long> fixedIssueNumbers = branchFixedIssueNumbers.get(entry.getKey().getRefName());
+			for (TransitionSpec transition: entry.getValue()) {
+				BranchUpdateTrigger trigger = (BranchUpdateTrigger) transition.getTrigger();
+				IssueQuery query = IssueQuery.parse(project, trigger.getIssueQuery(), 
+						true, false, false, false, true);
+				List<IssueCriteria> criterias = new ArrayList<>();
+				
+				List<IssueCriteria> fromStateCriterias = new ArrayList<>();
+				for (String fromState: transition.getFromStates()) 
+					fromStateCriterias.add(new StateCriteria(fromState));
+				
+				criterias.add(IssueCriteria.or(fromStateCriterias));
+				if (query.getCriteria() != null)
+					criterias.add(query.getCriteria());
+				query = new IssueQuery(IssueCriteria.and(criterias), new ArrayList<>());
+				ProjectScopedCommit.push(new ProjectScopedCommit(project, newCommitId) {
 
-																@Override
-																public Collection<Long> getFixedIssueNumbers() {
-																	return fixedIssueNumbers;
-																}
-																
-															});
-															try {
-																for (Issue issue: issueManager.query(project, query, 0, Integer.MAX_VALUE, true)) {
-																	changeState(issue, transition.getToState(), new HashMap<>(), 
-																			transition.getRemoveFields(), null);
-																}
-															} finally {
-																ProjectScopedCommit.pop();
-															}
-														}
-													}
-												}
-											} catch (Exception e) {
-												logger.error("Error changing issue state", e);
-											}
-										}
-									});
-									return null;
-								}
-				        		
-				        	});							
-						}
-						
-					});
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Collection<Long> getFixedIssueNumbers() {
+						return fixedIssueNumbers;
+					}
+					
+				});
+				try {
+					for (Issue issue: issueManager.query(project, query, 0, Integer.MAX_VALUE, true)) {
+						changeState(issue, transition.getToState(), new HashMap<>(), 
+								transition.getRemoveFields(), null);
+					}
+				} finally {
+					ProjectScopedCommit.pop();
 				}
-			});
+			}
 		}
 	}
 
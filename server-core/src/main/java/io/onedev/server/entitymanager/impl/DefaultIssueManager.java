@@ -7,6 +7,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -17,11 +18,14 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
@@ -42,17 +46,25 @@ import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.RoleManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityPersisted;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.issue.IssueChangeEvent;
 import io.onedev.server.event.issue.IssueEvent;
 import io.onedev.server.event.issue.IssueOpened;
 import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Group;
+import io.onedev.server.model.GroupAuthorization;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.IssueField;
 import io.onedev.server.model.IssueQuerySetting;
+import io.onedev.server.model.Membership;
 import io.onedev.server.model.Milestone;
 import io.onedev.server.model.Project;
+import io.onedev.server.model.Role;
+import io.onedev.server.model.Setting;
 import io.onedev.server.model.User;
+import io.onedev.server.model.UserAuthorization;
 import io.onedev.server.model.support.LastUpdate;
 import io.onedev.server.model.support.administration.GlobalIssueSetting;
 import io.onedev.server.model.support.inputspec.choiceinput.choiceprovider.SpecifiedChoices;
@@ -75,6 +87,7 @@ import io.onedev.server.search.entity.issue.IssueCriteria;
 import io.onedev.server.search.entity.issue.IssueQuery;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.permission.AccessProject;
+import io.onedev.server.util.BoardColumnIssues;
 import io.onedev.server.util.MilestoneAndState;
 import io.onedev.server.util.ProjectScopedNumber;
 import io.onedev.server.util.facade.IssueFacade;
@@ -108,6 +121,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	
 	private final ReadWriteLock issuesLock = new ReentrantReadWriteLock();
 	
+	private final BoardColumnsCache<Map<String, ColumnIssueIds>> boardColumnsCache = new BoardColumnsCache<>();
+	
 	@Inject
 	public DefaultIssueManager(Dao dao, IssueFieldManager issueFieldManager, 
 			TransactionManager transactionManager, IssueQuerySettingManager issueQuerySettingManager, 
@@ -195,6 +210,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 				} finally {
 					issuesLock.writeLock().unlock();
 				}
+				boardColumnsCache.invalidateProject(facade.getProjectId());
 			}
 			
 		});
@@ -225,9 +241,15 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		Root<Issue> root = query.from(Issue.class);
 		
 		query.where(getPredicates(project, issueQuery.getCriteria(), root, builder));
-
+		query.orderBy(getOrders(issueQuery.getSorts(), root, builder));
+		
+		return query;
+	}
+	
+	private List<javax.persistence.criteria.Order> getOrders(List<EntitySort> sorts, 
+			Root<Issue> root, CriteriaBuilder builder) {
 		List<javax.persistence.criteria.Order> orders = new ArrayList<>();
-		for (EntitySort sort: issueQuery.getSorts()) {
+		for (EntitySort sort: sorts) {
 			if (Issue.ORDER_FIELDS.containsKey(sort.getField())) {
 				if (sort.getDirection() == Direction.ASCENDING)
 					orders.add(builder.asc(IssueQuery.getPath(root, Issue.ORDER_FIELDS.get(sort.getField()))));
@@ -246,9 +268,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		if (orders.isEmpty()) {
 			orders.add(builder.desc(IssueQuery.getPath(root, Issue.PROP_LAST_UPDATE + "." + LastUpdate.PROP_DATE)));
 		}
-		query.orderBy(orders);
-		
-		return query;
+		return orders;
 	}
 	
 	private GlobalIssueSetting getIssueSetting() {
@@ -285,6 +305,63 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 
 		if (!(event instanceof IssueOpened || minorChange))
 			event.getIssue().setLastUpdate(event.getLastUpdate());
+		
+		Long projectId = event.getIssue().getProject().getId();
+		transactionManager.runAfterCommit(() -> boardColumnsCache.invalidateProject(projectId));
+	}
+	
+	private void invalidateBoardsAfterCommit() {
+		transactionManager.runAfterCommit(() -> boardColumnsCache.invalidateAll());
+	}
+	
+	/*
+	 * Boards are cached per project and user, drop affected boards when entities 
+	 * affecting board content or what a user can see change 
+	 */
+	private void invalidateBoardsAfterCommit(AbstractEntity entity) {
+		Long projectId;
+		Long userId;
+		if (entity instanceof Project) {
+			projectId = entity.getId();
+			userId = null;
+		} else if (entity instanceof Milestone) {
+			projectId = ((Milestone) entity).getProject().getId();
+			userId = null;
+		} else if (entity instanceof UserAuthorization) {
+			projectId = ((UserAuthorization) entity).getProject().getId();
+			userId = null;
+		} else if (entity instanceof GroupAuthorization) {
+			projectId = ((GroupAuthorization) entity).getProject().getId();
+			userId = null;
+		} else if (entity instanceof User) {
+			projectId = null;
+			userId = entity.getId();
+		} else if (entity instanceof Membership) {
+			projectId = null;
+			userId = ((Membership) entity).getUser().getId();
+		} else if (entity instanceof Role || entity instanceof Group || entity instanceof Setting) {
+			invalidateBoardsAfterCommit();
+			return;
+		} else {
+			return;
+		}
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				if (projectId != null)
+					boardColumnsCache.invalidateProject(projectId);
+				if (userId != null)
+					boardColumnsCache.invalidateUser(userId);
+			}
+			
+		});
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityPersisted event) {
+		invalidateBoardsAfterCommit(event.getEntity());
 	}
 	
 	@Sessional
@@ -420,6 +497,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	@Transactional
 	@Override
 	public void fixUndefinedStates(Map<String, UndefinedStateResolution> resolutions) {
+		invalidateBoardsAfterCommit();
+		
 		getIssueSetting().fixUndefinedStates(resolutions);
 		
 		for (Map.Entry<String, UndefinedStateResolution> entry: resolutions.entrySet()) {
@@ -485,6 +564,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	@Transactional
 	@Override
 	public void fixUndefinedFields(Map<String, UndefinedFieldResolution> resolutions) {
+		invalidateBoardsAfterCommit();
+		
 		roleManager.fixUndefinedIssueFields(resolutions);
 		
 		for (Map.Entry<String, UndefinedFieldResolution> entry: resolutions.entrySet()) {
@@ -536,6 +617,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	@Transactional
 	@Override
 	public void fixUndefinedFieldValues(Map<String, UndefinedFieldValuesResolution> resolutions) {
+		invalidateBoardsAfterCommit();
+		
 		for (Map.Entry<String, UndefinedFieldValuesResolution> resolutionEntry: resolutions.entrySet()) {
 			for (String deletion: resolutionEntry.getValue().getDeletions()) {
 				Query query = getSession().createQuery("delete from IssueField where name=:fieldName and value=:fieldValue");
@@ -588,6 +671,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	@Transactional
 	@Override
 	public void fixFieldValueOrders() {
+		invalidateBoardsAfterCommit();
+		
 		Query query = getSession().createQuery("select distinct name, value, ordinal from IssueField where type=:choice");
 		query.setParameter("choice", FieldSpec.ENUMERATION);
 
@@ -652,6 +737,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		super.delete(issue);
 		
 		Long issueId = issue.getId();
+		Long projectId = issue.getProject().getId();
 		transactionManager.runAfterCommit(new Runnable() {
 
 			@Override
@@ -662,6 +748,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 				} finally {
 					issuesLock.writeLock().unlock();
 				}
+				boardColumnsCache.invalidateProject(projectId);
 			}
 		});
 	}
@@ -669,6 +756,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	@Transactional
 	@Listen
 	public void on(EntityRemoved event) {
+		invalidateBoardsAfterCommit(event.getEntity());
 		if (event.getEntity() instanceof Project) {
 			Long projectId = event.getEntity().getId();
 			transactionManager.runAfterCommit(new Runnable() {
@@ -726,4 +814,137 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		return getSession().createQuery(criteriaQuery).getResultList();
 	}
 
+	@Sessional
+	@Override
+	public Map<String, BoardColumnIssues> queryBoardColumns(Project project, IssueQuery boardQuery, 
+			String identifyField, List<String> columns, int pageSize) {
+		User user = User.get();
+		Map<String, ColumnIssueIds> columnIssueIds = boardColumnsCache.get(project.getId(), 
+				user!=null?user.getId():null, boardQuery.toString(), identifyField, columns, pageSize, 
+				() -> queryBoardColumnIssueIds(project, boardQuery, identifyField, columns, pageSize));
+
+		Map<Long, Issue> loadedIssues = new HashMap<>();
+		Collection<Long> issueIds = new HashSet<>();
+		for (ColumnIssueIds each: columnIssueIds.values())
+			issueIds.addAll(each.getFirstPage());
+		if (!issueIds.isEmpty()) {
+			EntityCriteria<Issue> criteria = newCriteria();
+			criteria.add(Restrictions.in(Issue.PROP_ID, issueIds));
+			for (Issue issue: query(criteria))
+				loadedIssues.put(issue.getId(), issue);
+			issueFieldManager.populateFields(loadedIssues.values());
+		}
+		
+		Map<String, BoardColumnIssues> columnIssues = new HashMap<>();
+		for (String column: columns) {
+			ColumnIssueIds ids = columnIssueIds.get(column);
+			List<Issue> firstPage = ids.getFirstPage().stream()
+					.map(it->loadedIssues.get(it))
+					.filter(Objects::nonNull)
+					.collect(Collectors.toList());
+			columnIssues.put(column, new BoardColumnIssues(ids.getCount(), firstPage));
+		}
+		return columnIssues;
+	}
+	
+	private Map<String, ColumnIssueIds> queryBoardColumnIssueIds(Project project, IssueQuery boardQuery, 
+			String identifyField, List<String> columns, int pageSize) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+
+		CriteriaQuery<Object[]> countQuery = builder.createQuery(Object[].class);
+		Root<Issue> countRoot = countQuery.from(Issue.class);
+		Expression<String> countColumn = getBoardColumn(countRoot, builder, identifyField);
+		countQuery.where(getPredicates(project, boardQuery.getCriteria(), countRoot, builder));
+		countQuery.multiselect(countColumn, builder.count(countRoot));
+		countQuery.groupBy(countColumn);
+		
+		Map<String, Integer> counts = new HashMap<>();
+		for (Object[] row: getSession().createQuery(countQuery).getResultList())
+			counts.put((String) row[0], ((Long) row[1]).intValue());
+		
+		Map<String, List<Long>> firstPages = new HashMap<>();
+		int remaining = 0;
+		for (String column: columns) {
+			firstPages.put(column, new ArrayList<>());
+			remaining += Math.min(counts.getOrDefault(column, 0), pageSize);
+		}
+		
+		if (remaining != 0) {
+			/*
+			 * Load first page of all columns with a single ordered query of issue ids, and stop 
+			 * reading as soon as all columns are filled up
+			 */
+			CriteriaQuery<Object[]> idQuery = builder.createQuery(Object[].class);
+			Root<Issue> idRoot = idQuery.from(Issue.class);
+			Expression<String> idColumn = getBoardColumn(idRoot, builder, identifyField);
+			
+			List<Predicate> predicates = new ArrayList<>();
+			for (Predicate predicate: getPredicates(project, boardQuery.getCriteria(), idRoot, builder))
+				predicates.add(predicate);
+			List<Predicate> columnPredicates = new ArrayList<>();
+			List<String> nonNullColumns = columns.stream().filter(Objects::nonNull).collect(Collectors.toList());
+			if (!nonNullColumns.isEmpty())
+				columnPredicates.add(idColumn.in(nonNullColumns));
+			if (nonNullColumns.size() != columns.size())
+				columnPredicates.add(builder.isNull(idColumn));
+			predicates.add(builder.or(columnPredicates.toArray(new Predicate[0])));
+			
+			idQuery.where(predicates.toArray(new Predicate[0]));
+			idQuery.multiselect(idRoot.get(Issue.PROP_ID), idColumn);
+			idQuery.orderBy(getOrders(boardQuery.getSorts(), idRoot, builder));
+			
+			Query<Object[]> query = getSession().createQuery(idQuery);
+			query.setFetchSize(pageSize);
+			ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+			try {
+				while (remaining != 0 && results.next()) {
+					Long issueId = (Long) results.get(0);
+					List<Long> firstPage = firstPages.get((String) results.get(1));
+					if (firstPage != null && firstPage.size() < pageSize && !firstPage.contains(issueId)) {
+						firstPage.add(issueId);
+						remaining--;
+					}
+				}
+			} finally {
+				results.close();
+			}
+		}
+		
+		Map<String, ColumnIssueIds> columnIssueIds = new HashMap<>();
+		for (String column: columns) 
+			columnIssueIds.put(column, new ColumnIssueIds(counts.getOrDefault(column, 0), firstPages.get(column)));
+		return columnIssueIds;
+	}
+	
+	private Expression<String> getBoardColumn(Root<Issue> root, CriteriaBuilder builder, String identifyField) {
+		if (identifyField.equals(Issue.NAME_STATE)) {
+			return root.get(Issue.PROP_STATE);
+		} else {
+			Join<Issue, IssueField> join = root.join(Issue.PROP_FIELDS, JoinType.LEFT);
+			join.on(builder.equal(join.get(IssueField.PROP_NAME), identifyField));
+			return join.get(IssueField.PROP_VALUE);
+		}
+	}
+	
+	private static class ColumnIssueIds {
+		
+		private final int count;
+		
+		private final List<Long> firstPage;
+		
+		public ColumnIssueIds(int count, List<Long> firstPage) {
+			this.count = count;
+			this.firstPage = firstPage;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public List<Long> getFirstPage() {
+			return firstPage;
+		}
+		
+	}
+	
 }
@@ -67,6 +67,7 @@ import io.onedev.server.entitymanager.PullRequestManager;
 import io.onedev.server.entitymanager.PullRequestReviewManager;
 import io.onedev.server.entitymanager.PullRequestUpdateManager;
 import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
 import io.onedev.server.event.build.BuildEvent;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.pullrequest.PullRequestBuildEvent;
@@ -544,12 +545,33 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest> im
 	@Transactional
 	@Listen
 	public void on(RefUpdated event) {
-		String branch = GitUtils.ref2branch(event.getRefName());
-		if (branch != null && !event.getOldCommitId().equals(ObjectId.zeroId())) {
-			ProjectAndBranch projectAndBranch = new ProjectAndBranch(event.getProject(), branch);
+		if (!event.isBatched())
+			checkAsync(event.getProject(), Lists.newArrayList(event));
+	}
+
+	@Transactional
+	@Listen
+	public void on(RefsUpdated event) {
+		checkAsync(event.getProject(), event.getRefUpdates());
+	}
+	
+	/*
+	 * Check open requests from or to all updated branches, loaded with a single query 
+	 */
+	private void checkAsync(Project project, List<RefUpdated> refUpdates) {
+		Collection<Criterion> criterions = new ArrayList<>();
+		for (RefUpdated refUpdated: refUpdates) {
+			String branch = GitUtils.ref2branch(refUpdated.getRefName());
+			if (branch != null && !refUpdated.getOldCommitId().equals(ObjectId.zeroId())) {
+				ProjectAndBranch projectAndBranch = new ProjectAndBranch(project, branch);
+				criterions.add(ofSource(projectAndBranch));
+				criterions.add(ofTarget(projectAndBranch));
+			}
+		}
+		if (!criterions.isEmpty()) {
 			Criterion criterion = Restrictions.and(
 					ofOpen(), 
-					Restrictions.or(ofSource(projectAndBranch), ofTarget(projectAndBranch)));
+					Restrictions.or(criterions.toArray(new Criterion[0])));
 			checkAsync(query(EntityCriteria.of(PullRequest.class).add(criterion)));
 		}
 	}
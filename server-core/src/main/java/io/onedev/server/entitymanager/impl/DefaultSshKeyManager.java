@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -20,9 +21,14 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.MapDifference;
 import com.google.common.collect.Maps;
 
+import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.server.entitymanager.SshKeyManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.model.SshKey;
 import io.onedev.server.model.User;
+import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.persistence.dao.BaseEntityManager;
@@ -36,18 +42,122 @@ public class DefaultSshKeyManager extends BaseEntityManager<SshKey> implements S
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultSshKeyManager.class);
 	
+	private final TransactionManager transactionManager;
+	
+	/*
+	 * Keys by digest, loaded at system start and maintained via entity events, so that 
+	 * ssh authentication does not hit database 
+	 */
+	private final Map<String, KeyEntry> keysByDigest = new ConcurrentHashMap<>();
+	
+	private final Map<Long, String> digestsById = new ConcurrentHashMap<>();
+	
+	private volatile boolean keysLoaded;
+	
     @Inject
-    public DefaultSshKeyManager(Dao dao) {
+    public DefaultSshKeyManager(Dao dao, TransactionManager transactionManager) {
         super(dao);
+        this.transactionManager = transactionManager;
     }
     
     @Sessional
     @Override
     public SshKey findByDigest(String digest) {
-        SimpleExpression eq = Restrictions.eq("digest", digest);
-        EntityCriteria<SshKey> entityCriteria = EntityCriteria.of(SshKey.class).add(eq);
-        entityCriteria.setCacheable(true);
-        return find(entityCriteria);
+    	if (keysLoaded) {
+    		KeyEntry entry = keysByDigest.get(digest);
+    		return entry != null? get(entry.keyId): null;
+    	} else {
+	        SimpleExpression eq = Restrictions.eq("digest", digest);
+	        EntityCriteria<SshKey> entityCriteria = EntityCriteria.of(SshKey.class).add(eq);
+	        entityCriteria.setCacheable(true);
+	        return find(entityCriteria);
+    	}
+    }
+    
+    @Sessional
+    @Override
+    public Long findOwnerIdByDigest(String digest) {
+    	if (keysLoaded) {
+    		KeyEntry entry = keysByDigest.get(digest);
+    		return entry != null? entry.ownerId: null;
+    	} else {
+    		SshKey sshKey = findByDigest(digest);
+    		return sshKey != null? sshKey.getOwner().getId(): null;
+    	}
+    }
+    
+    @Sessional
+    @Listen
+    public void on(SystemStarted event) {
+    	for (SshKey sshKey: query()) 
+    		cacheKey(sshKey.getId(), sshKey.getDigest(), sshKey.getOwner().getId());
+    	keysLoaded = true;
+    }
+    
+    @Listen
+    public void on(EntityPersisted event) {
+    	if (event.getEntity() instanceof SshKey) {
+    		SshKey sshKey = (SshKey) event.getEntity();
+    		Long keyId = sshKey.getId();
+    		String digest = sshKey.getDigest();
+    		Long ownerId = sshKey.getOwner().getId();
+    		transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					cacheKey(keyId, digest, ownerId);
+				}
+    			
+    		});
+    	}
+    }
+    
+    @Listen
+    public void on(EntityRemoved event) {
+    	if (event.getEntity() instanceof SshKey) {
+    		Long keyId = event.getEntity().getId();
+    		transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					uncacheKey(keyId);
+				}
+    			
+    		});
+    	} else if (event.getEntity() instanceof User) {
+    		// Keys are removed by cascade when owner is removed 
+    		Long ownerId = event.getEntity().getId();
+    		transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					uncacheKeysOf(ownerId);
+				}
+    			
+    		});
+    	}
+    }
+    
+    private synchronized void cacheKey(Long keyId, String digest, Long ownerId) {
+    	uncacheKey(keyId);
+    	keysByDigest.put(digest, new KeyEntry(keyId, ownerId));
+    	digestsById.put(keyId, digest);
+    }
+    
+    private synchronized void uncacheKey(Long keyId) {
+    	String digest = digestsById.remove(keyId);
+    	if (digest != null) {
+    		KeyEntry entry = keysByDigest.get(digest);
+    		if (entry != null && entry.keyId.equals(keyId))
+    			keysByDigest.remove(digest);
+    	}
+    }
+    
+    private synchronized void uncacheKeysOf(Long ownerId) {
+    	for (KeyEntry entry: keysByDigest.values().toArray(new KeyEntry[0])) {
+    		if (entry.ownerId.equals(ownerId))
+    			uncacheKey(entry.keyId);
+    	}
     }
     
     @Transactional
@@ -86,4 +196,17 @@ public class DefaultSshKeyManager extends BaseEntityManager<SshKey> implements S
 		
     }
 
+    private static class KeyEntry {
+    	
+    	final Long keyId;
+    	
+    	final Long ownerId;
+    	
+    	KeyEntry(Long keyId, Long ownerId) {
+    		this.keyId = keyId;
+    		this.ownerId = ownerId;
+    	}
+    	
+    }
+    
 }
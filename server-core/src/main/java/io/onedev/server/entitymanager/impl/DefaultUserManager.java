@@ -8,8 +8,11 @@ import static io.onedev.server.model.support.SsoInfo.PROP_SUBJECT;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -19,10 +22,14 @@ import org.hibernate.ReplicationMode;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
 
+import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.server.entitymanager.IssueFieldManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.model.support.BranchProtection;
@@ -30,6 +37,7 @@ import io.onedev.server.model.support.SsoInfo;
 import io.onedev.server.model.support.TagProtection;
 import io.onedev.server.model.support.administration.jobexecutor.JobExecutor;
 import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.persistence.dao.BaseEntityManager;
@@ -48,15 +56,31 @@ public class DefaultUserManager extends BaseEntityManager<User> implements UserM
     
     private final IdManager idManager;
     
+    private final TransactionManager transactionManager;
+    
+    /*
+     * In-memory directory of user names and emails, loaded at system start and maintained 
+     * via entity events, so that looking up users by name or email does not hit database 
+     */
+    private final Map<Long, DirectoryEntry> directory = new ConcurrentHashMap<>();
+    
+    private final Map<String, Long> idsByName = new ConcurrentHashMap<>();
+    
+    private final Map<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    
+    private volatile boolean directoryLoaded;
+    
 	@Inject
     public DefaultUserManager(Dao dao, ProjectManager projectManager, SettingManager settingManager, 
-    		IssueFieldManager issueFieldManager, IdManager idManager) {
+    		IssueFieldManager issueFieldManager, IdManager idManager, 
+    		TransactionManager transactionManager) {
         super(dao);
         
         this.projectManager = projectManager;
         this.settingManager = settingManager;
         this.issueFieldManager = issueFieldManager;
         this.idManager = idManager;
+        this.transactionManager = transactionManager;
     }
 
 	@Transactional
@@ -218,10 +242,15 @@ public class DefaultUserManager extends BaseEntityManager<User> implements UserM
 	@Sessional
     @Override
     public User findByName(String userName) {
-		EntityCriteria<User> criteria = newCriteria();
-		criteria.add(Restrictions.ilike(User.PROP_NAME, userName));
-		criteria.setCacheable(true);
-		return find(criteria);
+		if (directoryLoaded) {
+			Long userId = idsByName.get(userName.toLowerCase());
+			return userId != null? get(userId): null;
+		} else {
+			EntityCriteria<User> criteria = newCriteria();
+			criteria.add(Restrictions.ilike(User.PROP_NAME, userName));
+			criteria.setCacheable(true);
+			return find(criteria);
+		}
     }
 
 	@Sessional
@@ -259,12 +288,76 @@ public class DefaultUserManager extends BaseEntityManager<User> implements UserM
 	@Sessional
     @Override
     public User findByEmail(String email) {
-		EntityCriteria<User> criteria = newCriteria();
-		criteria.add(Restrictions.ilike(User.PROP_EMAIL, email));
-		criteria.setCacheable(true);
-		return find(criteria);
+		if (directoryLoaded) {
+			Long userId = idsByEmail.get(email.toLowerCase());
+			return userId != null? get(userId): null;
+		} else {
+			EntityCriteria<User> criteria = newCriteria();
+			criteria.add(Restrictions.ilike(User.PROP_EMAIL, email));
+			criteria.setCacheable(true);
+			return find(criteria);
+		}
     }
 	
+	@Sessional
+	@Listen
+	public void on(SystemStarted event) {
+		for (User user: query(newCriteria())) 
+			cacheUser(user.getId(), user.getName(), user.getEmail());
+		directoryLoaded = true;
+	}
+	
+	@Listen
+	public void on(EntityPersisted event) {
+		if (event.getEntity() instanceof User) {
+			User user = (User) event.getEntity();
+			Long userId = user.getId();
+			String userName = user.getName();
+			String email = user.getEmail();
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					cacheUser(userId, userName, email);
+				}
+				
+			});
+		}
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof User) {
+			Long userId = event.getEntity().getId();
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					uncacheUser(userId);
+				}
+				
+			});
+		}
+	}
+	
+	private synchronized void cacheUser(Long userId, String userName, @Nullable String email) {
+		uncacheUser(userId);
+		DirectoryEntry entry = new DirectoryEntry(userName.toLowerCase(), email!=null?email.toLowerCase():null);
+		directory.put(userId, entry);
+		idsByName.put(entry.name, userId);
+		if (entry.email != null)
+			idsByEmail.put(entry.email, userId);
+	}
+	
+	private synchronized void uncacheUser(Long userId) {
+		DirectoryEntry entry = directory.remove(userId);
+		if (entry != null) {
+			idsByName.remove(entry.name, userId);
+			if (entry.email != null)
+				idsByEmail.remove(entry.email, userId);
+		}
+	}
+	
     @Sessional
     @Override
     public User find(PersonIdent person) {
@@ -306,4 +399,17 @@ public class DefaultUserManager extends BaseEntityManager<User> implements UserM
     	query.executeUpdate();
 	}
 
+	private static class DirectoryEntry {
+		
+		final String name;
+		
+		final String email;
+		
+		DirectoryEntry(String name, @Nullable String email) {
+			this.name = name;
+			this.email = email;
+		}
+		
+	}
+	
 }
\ No newline at end of file
@@ -16,13 +16,21 @@ public class RefUpdated extends ProjectEvent implements CommitAware {
 	
 	private final ObjectId newCommitId;
 	
+	private final boolean batched;
+	
 	private transient ProjectScopedCommit commit;
 	
-	public RefUpdated(Project project, String refName, ObjectId oldCommitId, ObjectId newCommitId) {
+	public RefUpdated(Project project, String refName, ObjectId oldCommitId, ObjectId newCommitId, 
+			boolean batched) {
 		super(null, new Date(), project);
 		this.refName = refName;
 		this.oldCommitId = oldCommitId;
 		this.newCommitId = newCommitId;
+		this.batched = batched;
+	}
+	
+	public RefUpdated(Project project, String refName, ObjectId oldCommitId, ObjectId newCommitId) {
+		this(project, refName, oldCommitId, newCommitId, false);
 	}
 
 	public String getRefName() {
@@ -37,6 +45,15 @@ public class RefUpdated extends ProjectEvent implements CommitAware {
 		return newCommitId;
 	}
 
+	/**
+	 * @return
+	 * 			<tt>true</tt> if this ref update will also be posted as part of a {@link RefsUpdated} 
+	 * 			event
+	 */
+	public boolean isBatched() {
+		return batched;
+	}
+
 	@Override
 	public ProjectScopedCommit getCommit() {
 		if (commit == null)
@@ -0,0 +1,33 @@
+package io.onedev.server.event;
+
+import java.util.Date;
+import java.util.List;
+
+import io.onedev.server.model.Project;
+
+/**
+ * Ref updates of a single push, posted after {@link RefUpdated} events of individual refs. 
+ * Listeners doing expensive work for each ref update may handle this event to process 
+ * all refs at once, and ignore {@link RefUpdated} events marked as batched. 
+ */
+public class RefsUpdated extends Event {
+
+	private final Project project;
+	
+	private final List<RefUpdated> refUpdates;
+	
+	public RefsUpdated(Project project, List<RefUpdated> refUpdates) {
+		super(null, new Date());
+		this.project = project;
+		this.refUpdates = refUpdates;
+	}
+
+	public Project getProject() {
+		return project;
+	}
+
+	public List<RefUpdated> getRefUpdates() {
+		return refUpdates;
+	}
+	
+}
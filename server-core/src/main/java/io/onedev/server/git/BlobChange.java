@@ -18,7 +18,9 @@ import com.google.common.base.Preconditions;
 
 import io.onedev.commons.jsyntax.Tokenized;
 import io.onedev.commons.utils.PlanarRange;
+import io.onedev.server.OneDev;
 import io.onedev.server.code.CodeProblem;
+import io.onedev.server.git.cache.DiffCacheManager;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.support.Mark;
@@ -77,11 +79,11 @@ public abstract class BlobChange implements Serializable {
 				if (type == ChangeType.ADD || type == ChangeType.COPY) {
 					if (getNewText() != null) {
 						List<String> newLines = getNewText().getLines();
-						if (newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+						if (newLines.size() <= WebConstants.MAX_DIFF_FILE_LINES) {
 							List<String> oldLines = new ArrayList<>();
-							diffBlocks = DiffUtils.diff(
-									oldLines, "a.txt", 
-									newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
+							diffBlocks = getDiffCacheManager().getDiffBlocks(
+									ObjectId.zeroId(), "a.txt", oldLines, 
+									getNewBlob().getBlobId(), newBlobIdent.isFile()?newBlobIdent.path:"b.txt", newLines, 
 									WhitespaceOption.DEFAULT);
 						} else {
 							diffBlocks = new ArrayList<>();
@@ -92,11 +94,11 @@ public abstract class BlobChange implements Serializable {
 				} else if (type == ChangeType.DELETE) {
 					if (getOldText() != null) {
 						List<String> oldLines = getOldText().getLines();
-						if (oldLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+						if (oldLines.size() <= WebConstants.MAX_DIFF_FILE_LINES) {
 							List<String> newLines = new ArrayList<>();
-							diffBlocks = DiffUtils.diff(
-									oldLines, oldBlobIdent.isFile()?oldBlobIdent.path:"a.txt", 
-									newLines, "b.txt", 
+							diffBlocks = getDiffCacheManager().getDiffBlocks(
+									getOldBlob().getBlobId(), oldBlobIdent.isFile()?oldBlobIdent.path:"a.txt", oldLines, 
+									ObjectId.zeroId(), "b.txt", newLines, 
 									WhitespaceOption.DEFAULT);
 						} else {
 							diffBlocks = new ArrayList<>();
@@ -108,10 +110,10 @@ public abstract class BlobChange implements Serializable {
 					if (getOldText() != null && getNewText() != null) {
 						List<String> oldLines = getOldText().getLines();
 						List<String> newLines = getNewText().getLines();
-						if (oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							diffBlocks = DiffUtils.diff(
-									oldLines, oldBlobIdent.isFile()?newBlobIdent.path:"a.txt", 
-									newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
+						if (oldLines.size() + newLines.size() <= WebConstants.MAX_DIFF_FILE_LINES) {
+							diffBlocks = getDiffCacheManager().getDiffBlocks(
+									getOldBlob().getBlobId(), oldBlobIdent.isFile()?newBlobIdent.path:"a.txt", oldLines, 
+									getNewBlob().getBlobId(), newBlobIdent.isFile()?newBlobIdent.path:"b.txt", newLines, 
 									whitespaceOption);
 						} else { 
 							diffBlocks = new ArrayList<>();
@@ -127,22 +129,16 @@ public abstract class BlobChange implements Serializable {
 		return diffBlocks;
 	}
 	
+	private DiffCacheManager getDiffCacheManager() {
+		return OneDev.getInstance(DiffCacheManager.class);
+	}
+	
 	public int getAdditions() {
-		int additions = 0;
-		for (DiffBlock<Tokenized> diff: getDiffBlocks()) {
-			if (diff.getOperation() == Operation.INSERT)
-				additions += diff.getUnits().size();
-		}
-		return additions;
+		return DiffUtils.getUnitCount(getDiffBlocks(), Operation.INSERT);
 	}
 
 	public int getDeletions() {
-		int deletions = 0;
-		for (DiffBlock<Tokenized> diff: getDiffBlocks()) {
-			if (diff.getOperation() == Operation.DELETE)
-				deletions += diff.getUnits().size();
-		}
-		return deletions;
+		return DiffUtils.getUnitCount(getDiffBlocks(), Operation.DELETE);
 	}
 	
 	public Blob getOldBlob() {
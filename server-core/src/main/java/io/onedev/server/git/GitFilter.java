@@ -6,7 +6,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -27,6 +26,8 @@ import org.apache.shiro.authz.UnauthorizedException;
 import org.eclipse.jgit.http.server.GitSmartHttpTools;
 import org.eclipse.jgit.http.server.ServletUtils;
 import org.eclipse.jgit.transport.PacketLineOut;
+import org.eclipse.jgit.transport.ReceivePack;
+import org.eclipse.jgit.transport.RefAdvertiser;
 import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,18 +36,15 @@ import io.onedev.commons.utils.command.ErrorCollector;
 import io.onedev.commons.utils.command.ExecutionResult;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.ProjectManager;
-import io.onedev.server.entitymanager.SettingManager;
-import io.onedev.server.git.command.AdvertiseReceiveRefsCommand;
 import io.onedev.server.git.command.AdvertiseUploadRefsCommand;
-import io.onedev.server.git.command.ReceivePackCommand;
 import io.onedev.server.git.command.UploadPackCommand;
 import io.onedev.server.git.exception.GitException;
+import io.onedev.server.git.hookcallback.GitReceiveHooks;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.security.CodePullAuthorizationSource;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.storage.StorageManager;
-import io.onedev.server.util.ServerConfig;
 import io.onedev.server.util.concurrent.PrioritizedRunnable;
 import io.onedev.server.util.work.WorkExecutor;
 
@@ -67,26 +65,23 @@ public class GitFilter implements Filter {
 	
 	private final WorkExecutor workExecutor;
 	
-	private final ServerConfig serverConfig;
-	
-	private final SettingManager settingManager;
-	
 	private final SessionManager sessionManager;
 	
 	private final Set<CodePullAuthorizationSource> codePullAuthorizationSources;
 	
+	private final GitReceiveHooks receiveHooks;
+	
 	@Inject
 	public GitFilter(OneDev oneDev, StorageManager storageManager, ProjectManager projectManager, 
-			WorkExecutor workExecutor, ServerConfig serverConfig, SettingManager settingManager,
-			SessionManager sessionManager, Set<CodePullAuthorizationSource> codePullAuthorizationSources) {
+			WorkExecutor workExecutor, SessionManager sessionManager, 
+			Set<CodePullAuthorizationSource> codePullAuthorizationSources, GitReceiveHooks receiveHooks) {
 		this.oneDev = oneDev;
 		this.storageManager = storageManager;
 		this.projectManager = projectManager;
 		this.workExecutor = workExecutor;
-		this.serverConfig = serverConfig;
-		this.settingManager = settingManager;
 		this.sessionManager = sessionManager;
 		this.codePullAuthorizationSources = codePullAuthorizationSources;
+		this.receiveHooks = receiveHooks;
 	}
 	
 	private String getPathInfo(HttpServletRequest request) {
@@ -119,7 +114,8 @@ public class GitFilter implements Filter {
 			throws ServletException, IOException, InterruptedException, ExecutionException {
 		File gitDir;
 		boolean upload;
-		Map<String, String> environments = new HashMap<>();
+		Long userId = SecurityUtils.getUserId();
+		ReceivePack receivePack;
 		
 		sessionManager.openSession();
 		try {
@@ -133,32 +129,17 @@ public class GitFilter implements Filter {
 			doNotCache(response);
 			response.setHeader("Content-Type", "application/x-" + service + "-result");			
 
-			String serverUrl;
-	        if (serverConfig.getHttpPort() != 0)
-	            serverUrl = "http://localhost:" + serverConfig.getHttpPort();
-	        else 
-	            serverUrl = "https://localhost:" + serverConfig.getHttpsPort();
-
-	        environments.put("ONEDEV_CURL", settingManager.getSystemSetting().getCurlConfig().getExecutable());
-			environments.put("ONEDEV_URL", serverUrl);
-			environments.put("ONEDEV_USER_ID", SecurityUtils.getUserId().toString());
-			environments.put("ONEDEV_REPOSITORY_ID", project.getId().toString());
-			
-			// to be compatible with old repository
-	        environments.put("GITPLEX_CURL", settingManager.getSystemSetting().getCurlConfig().getExecutable());
-			environments.put("GITPLEX_URL", serverUrl);
-			environments.put("GITPLEX_USER_ID", SecurityUtils.getUserId().toString());
-			environments.put("GITPLEX_REPOSITORY_ID", project.getId().toString());
-			
 			gitDir = storageManager.getProjectGitDir(project.getId());
 
 			if (GitSmartHttpTools.isUploadPack(request)) {
 				checkPullPermission(request, project);
 				upload = true;
+				receivePack = null;
 			} else {
 				if (!SecurityUtils.canWriteCode(project))
 					throw new UnauthorizedException("You do not have permission to push to this project.");
 				upload = false;
+				receivePack = receiveHooks.newReceivePack(project, userId);
 			}			
 		} finally {
 			sessionManager.closeSession();
@@ -189,7 +170,7 @@ public class GitFilter implements Filter {
 							}
 							
 						};
-						UploadPackCommand upload = new UploadPackCommand(gitDir, environments);
+						UploadPackCommand upload = new UploadPackCommand(gitDir, new HashMap<>());
 						upload.stdin(stdin).stdout(stdout).stderr(stderr).statelessRpc(true);
 						ExecutionResult result = upload.call();
 						result.setStderr(stderr.getMessage());
@@ -207,27 +188,21 @@ public class GitFilter implements Filter {
 				
 				@Override
 				public void run() {
-					try {
-						InputStream stdin = ServletUtils.getInputStream(request);
-						OutputStream stdout = response.getOutputStream();
-						
-						ErrorCollector stderr = new ErrorCollector(StandardCharsets.UTF_8.name()) {
+					receiveHooks.runAs(userId, new Runnable() {
 
-							@Override
-							public void consume(String line) {
-								super.consume(line);
-								logger.error(line);
+						@Override
+						public void run() {
+							try {
+								InputStream stdin = ServletUtils.getInputStream(request);
+								OutputStream stdout = response.getOutputStream();
+								receivePack.setBiDirectionalPipe(false);
+								receivePack.receive(stdin, stdout, null);
+							} catch (IOException e) {
+								throw new RuntimeException(e);
 							}
-							
-						};
-						ReceivePackCommand receive = new ReceivePackCommand(gitDir, environments);
-						receive.stdin(stdin).stdout(stdout).stderr(stderr).statelessRpc(true);
-						ExecutionResult result = receive.call();
-						result.setStderr(stderr.getMessage());
-						result.checkReturnCode();
-					} catch (IOException e) {
-						throw new RuntimeException(e);
-					}
+						}
+						
+					});
 				}
 				
 			}).get();
@@ -244,6 +219,15 @@ public class GitFilter implements Filter {
 		pack.end();
 	}
 	
+	private void advertiseReceiveRefs(ReceivePack receivePack, OutputStream output) throws IOException {
+		receivePack.setBiDirectionalPipe(false);
+		try {
+			receivePack.sendAdvertisedRefs(new RefAdvertiser.PacketLineOutRefAdvertiser(new PacketLineOut(output)));
+		} finally {
+			receivePack.getRevWalk().close();
+		}
+	}
+	
 	private void checkPullPermission(HttpServletRequest request, Project project) {
 		if (!SecurityUtils.canReadCode(project)) {
 			boolean isAuthorized = false;
@@ -261,6 +245,7 @@ public class GitFilter implements Filter {
 	protected void processRefs(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		File gitDir;
 		boolean upload;
+		ReceivePack receivePack;
 		
 		sessionManager.openSession();
 		try {
@@ -277,11 +262,13 @@ public class GitFilter implements Filter {
 				checkPullPermission(request, project);
 				writeInitial(response, service);
 				upload = true;
+				receivePack = null;
 			} else {
 				if (!SecurityUtils.canWriteCode(project))
 					throw new UnauthorizedException("You do not have permission to push to this project.");
 				writeInitial(response, service);
 				upload = false;
+				receivePack = receiveHooks.newReceivePack(project, SecurityUtils.getUserId());
 			}
 		} finally {
 			sessionManager.closeSession();
@@ -289,7 +276,7 @@ public class GitFilter implements Filter {
 		if (upload)
 			new AdvertiseUploadRefsCommand(gitDir).output(response.getOutputStream()).call();
 		else
-			new AdvertiseReceiveRefsCommand(gitDir).output(response.getOutputStream()).call();
+			advertiseReceiveRefs(receivePack, response.getOutputStream());
 	}
 
 	@Override
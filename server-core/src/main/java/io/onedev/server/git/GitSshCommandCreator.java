@@ -6,7 +6,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
@@ -20,22 +19,20 @@ import org.apache.sshd.server.ExitCallback;
 import org.apache.sshd.server.SessionAware;
 import org.apache.sshd.server.command.Command;
 import org.apache.sshd.server.session.ServerSession;
+import org.eclipse.jgit.transport.ReceivePack;
 import org.eclipse.jgit.transport.RemoteConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.onedev.commons.utils.StringUtils;
-import io.onedev.commons.utils.command.ExecutionResult;
 import io.onedev.server.entitymanager.ProjectManager;
-import io.onedev.server.entitymanager.SettingManager;
-import io.onedev.server.git.command.ReceivePackCommand;
 import io.onedev.server.git.command.UploadPackCommand;
+import io.onedev.server.git.hookcallback.GitReceiveHooks;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.ssh.SshAuthenticator;
 import io.onedev.server.ssh.SshCommandCreator;
-import io.onedev.server.util.ServerConfig;
 import io.onedev.server.util.concurrent.PrioritizedRunnable;
 import io.onedev.server.util.work.WorkExecutor;
 
@@ -44,10 +41,6 @@ public class GitSshCommandCreator implements SshCommandCreator {
 
 	private static final Logger logger = LoggerFactory.getLogger(GitSshCommandCreator.class);
 
-	private final ServerConfig serverConfig;
-	
-	private final SettingManager settingManager;
-	
 	private final ProjectManager projectManager;
 	
 	private final SessionManager sessionManager;
@@ -56,16 +49,17 @@ public class GitSshCommandCreator implements SshCommandCreator {
 	
 	private final WorkExecutor workExecutor;
 	
+	private final GitReceiveHooks receiveHooks;
+	
 	@Inject
-	public GitSshCommandCreator(ServerConfig serverConfig, SettingManager settingManager, 
-			ProjectManager projectManager, SessionManager sessionManager, 
-			WorkExecutor workExecutor, SshAuthenticator authenticator) {
-		this.serverConfig = serverConfig;
-		this.settingManager = settingManager;
+	public GitSshCommandCreator(ProjectManager projectManager, SessionManager sessionManager, 
+			WorkExecutor workExecutor, SshAuthenticator authenticator, 
+			GitReceiveHooks receiveHooks) {
 		this.projectManager = projectManager;
 		this.sessionManager = sessionManager;
 		this.workExecutor = workExecutor;
 		this.authenticator = authenticator;
+		this.receiveHooks = receiveHooks;
 	}
 	
 	@Override
@@ -74,12 +68,13 @@ public class GitSshCommandCreator implements SshCommandCreator {
 			return new GitSshCommand(command) {
 
 				@Override
-				protected ExecutionResult execute(File gitDir, Map<String, String> gitEnvs) {
-		            return new UploadPackCommand(gitDir, gitEnvs)
+				protected int execute(File gitDir) {
+		            return new UploadPackCommand(gitDir, new HashMap<>())
 		            		.stdin(inputStream)
 		            		.stdout(outputStream)
 		            		.stderr(errorStream)
-		            		.call();
+		            		.call()
+		            		.getReturnCode();
 		        }
 
 				@Override
@@ -94,13 +89,28 @@ public class GitSshCommandCreator implements SshCommandCreator {
 		} else if (command.startsWith(RemoteConfig.DEFAULT_RECEIVE_PACK)) {
 			return new GitSshCommand(command) {
 
+				private ReceivePack receivePack;
+				
 				@Override
-				protected ExecutionResult execute(File gitDir, Map<String, String> gitEnvs) {
-		            return new ReceivePackCommand(gitDir, gitEnvs)
-		            		.stdin(inputStream)
-		            		.stdout(outputStream)
-		            		.stderr(errorStream)
-		            		.call();
+				protected void prepare(Project project) {
+					receivePack = receiveHooks.newReceivePack(project, userId);
+				}
+				
+				@Override
+				protected int execute(File gitDir) {
+					receiveHooks.runAs(userId, new Runnable() {
+
+						@Override
+						public void run() {
+							try {
+								receivePack.receive(inputStream, outputStream, errorStream);
+							} catch (IOException e) {
+								throw new RuntimeException(e);
+							}
+						}
+						
+					});
+					return 0;
 				}
 
 				@Override
@@ -135,32 +145,18 @@ public class GitSshCommandCreator implements SshCommandCreator {
 		
 		Future<?> commandFuture;
 		
+		Long userId;
+		
 		GitSshCommand(String command) {
 			this.command = command;
 		}
 		
-	    private Map<String, String> buildGitEnvs(Project project) {
-			Map<String, String> environments = new HashMap<>();
-			
-			String serverUrl;
-	        if (serverConfig.getHttpPort() != 0)
-	            serverUrl = "http://localhost:" + serverConfig.getHttpPort();
-	        else 
-	            serverUrl = "https://localhost:" + serverConfig.getHttpsPort();
-
-	        environments.put("ONEDEV_CURL", settingManager.getSystemSetting().getCurlConfig().getExecutable());
-			environments.put("ONEDEV_URL", serverUrl);
-			environments.put("ONEDEV_USER_ID", SecurityUtils.getUserId().toString());
-			environments.put("ONEDEV_REPOSITORY_ID", project.getId().toString());
-			return environments;
-	    }
-	    
 		@Override
 		public void start(Environment env) throws IOException {
-			ThreadContext.bind(SecurityUtils.asSubject(authenticator.getPublicKeyOwnerId(session)));
+			userId = authenticator.getPublicKeyOwnerId(session);
+			ThreadContext.bind(SecurityUtils.asSubject(userId));
 			
             File gitDir;
-            Map<String, String> gitEnvs;
             
             sessionManager.openSession(); 
             try {
@@ -178,7 +174,7 @@ public class GitSshCommandCreator implements SshCommandCreator {
             	} 
 
                 gitDir = project.getGitDir();
-                gitEnvs = buildGitEnvs(project);
+                prepare(project);
             } finally {                
                 sessionManager.closeSession();
             }
@@ -188,8 +184,7 @@ public class GitSshCommandCreator implements SshCommandCreator {
 				@Override
 				public void run() {
 					try {
-						ExecutionResult result = execute(gitDir, gitEnvs);
-						onExit(result.getReturnCode(), null);
+						onExit(execute(gitDir), null);
 					} catch (Exception e) {
 						logger.error("Error executing git command", e);
 						onExit(-1, e.getMessage());
@@ -203,7 +198,10 @@ public class GitSshCommandCreator implements SshCommandCreator {
 		@Nullable
 		protected abstract String checkPermission(Project project);
 
-		protected abstract ExecutionResult execute(File gitDir, Map<String, String> gitEnvs);
+		protected void prepare(Project project) {
+		}
+		
+		protected abstract int execute(File gitDir);
 
 		@Override
 		public void destroy() throws Exception {
@@ -75,21 +75,46 @@ public class GitUtils {
 	}
 	
 	public static List<DiffEntry> diff(Repository repository, AnyObjectId oldRevId, AnyObjectId newRevId) {
+		return diffTrees(repository, getTreeId(repository, oldRevId), getTreeId(repository, newRevId));
+	}
+	
+	/**
+	 * Get tree of specified revision
+	 * 
+	 * @return
+	 * 			tree id of specified revision, or zero id if specified revision is zero id 
+	 */
+	public static ObjectId getTreeId(Repository repository, AnyObjectId revId) {
+		if (!revId.equals(ObjectId.zeroId())) {
+			try (RevWalk revWalk = new RevWalk(repository)) {
+				return revWalk.parseCommit(revId).getTree().copy();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}			
+		} else {
+			return ObjectId.zeroId();
+		}
+	}
+	
+	/**
+	 * Diff specified trees with rename detection. Zero id can be used to represent 
+	 * an empty tree
+	 */
+	public static List<DiffEntry> diffTrees(Repository repository, AnyObjectId oldTreeId, AnyObjectId newTreeId) {
 		List<DiffEntry> diffs = new ArrayList<>();
 		try (	DiffFormatter diffFormatter = new DiffFormatter(NullOutputStream.INSTANCE);
-				RevWalk revWalk = new RevWalk(repository);
 				ObjectReader reader = repository.newObjectReader();) {
 	    	diffFormatter.setRepository(repository);
 	    	diffFormatter.setDetectRenames(true);
 	    	diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
 	    	
 	    	CanonicalTreeParser oldTreeParser = new CanonicalTreeParser();
-	    	if (!oldRevId.equals(ObjectId.zeroId()))
-	    		oldTreeParser.reset(reader, revWalk.parseCommit(oldRevId).getTree());
+	    	if (!oldTreeId.equals(ObjectId.zeroId()))
+	    		oldTreeParser.reset(reader, oldTreeId);
 	    	
 	    	CanonicalTreeParser newTreeParser = new CanonicalTreeParser();
-	    	if (!newRevId.equals(ObjectId.zeroId()))
-	    		newTreeParser.reset(reader, revWalk.parseCommit(newRevId).getTree());
+	    	if (!newTreeId.equals(ObjectId.zeroId()))
+	    		newTreeParser.reset(reader, newTreeId);
 	    	
 	    	for (DiffEntry entry: diffFormatter.scan(oldTreeParser, newTreeParser)) {
 	    		if (!Objects.equal(entry.getOldPath(), entry.getNewPath())
@@ -0,0 +1,62 @@
+package io.onedev.server.git.cache;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import io.onedev.server.util.diff.WhitespaceOption;
+
+class BlobDiffKey {
+
+	private final TokenizedKey oldKey;
+	
+	private final TokenizedKey newKey;
+	
+	private final WhitespaceOption whitespaceOption;
+	
+	public BlobDiffKey(TokenizedKey oldKey, TokenizedKey newKey, WhitespaceOption whitespaceOption) {
+		this.oldKey = oldKey;
+		this.newKey = newKey;
+		this.whitespaceOption = whitespaceOption;
+	}
+
+	public TokenizedKey getOldKey() {
+		return oldKey;
+	}
+
+	public TokenizedKey getNewKey() {
+		return newKey;
+	}
+
+	public WhitespaceOption getWhitespaceOption() {
+		return whitespaceOption;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof BlobDiffKey)) 
+			return false;
+		if (this == other)
+			return true;
+		BlobDiffKey otherKey = (BlobDiffKey) other;
+		return new EqualsBuilder()
+				.append(oldKey, otherKey.oldKey)
+				.append(newKey, otherKey.newKey)
+				.append(whitespaceOption, otherKey.whitespaceOption)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 37)
+				.append(oldKey)
+				.append(newKey)
+				.append(whitespaceOption)
+				.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		return oldKey + ".." + newKey + ":" + whitespaceOption.name();
+	}
+	
+}
@@ -0,0 +1,453 @@
+package io.onedev.server.git.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.onedev.commons.jsyntax.Tokenized;
+import io.onedev.commons.launcher.bootstrap.Bootstrap;
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.util.diff.DiffBlock;
+import io.onedev.server.util.diff.DiffUtils;
+import io.onedev.server.util.diff.WhitespaceOption;
+
+@Singleton
+public class DefaultDiffCacheManager implements DiffCacheManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultDiffCacheManager.class);
+
+	private static final String RENAME_OPTIONS = "detectRenames";
+
+	private static final long MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 32;
+
+	// diffs estimated to take more memory than this will be spilled to disk
+	private static final long SPILL_THRESHOLD = MEMORY_BUDGET / 16;
+	
+	private static final int MAX_PARSED_SPILLS = 4;
+
+	// disk files are counted against memory budget with this ratio to limit disk usage as well
+	private static final int SPILL_WEIGHT_RATIO = 64;
+
+	private static final int ENTRY_OVERHEAD = 200;
+
+	private static final int LINE_OVERHEAD = 64;
+	
+	private static final int TOKEN_SIZE = 8;
+	
+	private static final int REFERENCE_SIZE = 8;
+	
+	private static final int BLOCK_OVERHEAD = 64;
+
+	private final File spillDir;
+	
+	private final long spillThreshold;
+
+	private final Cache<TreeDiffKey, CachedDiff> treeDiffs = CacheBuilder.newBuilder()
+			.maximumWeight(MEMORY_BUDGET)
+			.weigher(new Weigher<TreeDiffKey, CachedDiff>() {
+
+				@Override
+				public int weigh(TreeDiffKey key, CachedDiff value) {
+					return value.getWeight();
+				}
+
+			})
+			.removalListener(new RemovalListener<TreeDiffKey, CachedDiff>() {
+
+				@Override
+				public void onRemoval(RemovalNotification<TreeDiffKey, CachedDiff> notification) {
+					notification.getValue().discard();
+				}
+
+			})
+			.build();
+	
+	/*
+	 * Spilled diffs are normally huge, and the same diff is often read several times in 
+	 * a short period (for instance by different components of the same page), so we keep 
+	 * a few of them parsed. Values are softly referenced so that they never hold memory 
+	 * needed elsewhere 
+	 */
+	private final Cache<File, List<DiffEntry>> parsedSpills = CacheBuilder.newBuilder()
+			.maximumSize(MAX_PARSED_SPILLS)
+			.softValues()
+			.build();
+	
+	private final Cache<TokenizedKey, List<Tokenized>> tokenizedLinesCache = CacheBuilder.newBuilder()
+			.maximumWeight(MEMORY_BUDGET)
+			.weigher(new Weigher<TokenizedKey, List<Tokenized>>() {
+
+				@Override
+				public int weigh(TokenizedKey key, List<Tokenized> value) {
+					return estimateSize(value);
+				}
+
+			})
+			.build();
+	
+	private final Cache<BlobDiffKey, CachedBlobDiff> blobDiffs = CacheBuilder.newBuilder()
+			.maximumWeight(MEMORY_BUDGET)
+			.weigher(new Weigher<BlobDiffKey, CachedBlobDiff>() {
+
+				@Override
+				public int weigh(BlobDiffKey key, CachedBlobDiff value) {
+					return value.weight;
+				}
+
+			})
+			.build();
+
+	public DefaultDiffCacheManager() {
+		this(new File(Bootstrap.getTempDir(), "diff-cache"), SPILL_THRESHOLD);
+	}
+	
+	DefaultDiffCacheManager(File spillDir, long spillThreshold) {
+		this.spillDir = spillDir;
+		this.spillThreshold = spillThreshold;
+		FileUtils.createDir(spillDir);
+		FileUtils.cleanDir(spillDir);
+	}
+
+	@Override
+	public List<DiffEntry> getDiffEntries(Repository repository, AnyObjectId oldRevId, AnyObjectId newRevId) {
+		ObjectId oldTreeId = GitUtils.getTreeId(repository, oldRevId);
+		ObjectId newTreeId = GitUtils.getTreeId(repository, newRevId);
+		TreeDiffKey key = new TreeDiffKey(oldTreeId, newTreeId, RENAME_OPTIONS);
+		try {
+			/*
+			 * Guava cache blocks concurrent loading of the same key, so that identical
+			 * diffs requested simultaneously are only calculated once
+			 */
+			while (true) {
+				CachedDiff cachedDiff = treeDiffs.get(key, () -> {
+					long time = System.currentTimeMillis();
+					List<DiffEntry> diffEntries = GitUtils.diffTrees(repository, oldTreeId, newTreeId);
+					logger.debug("Tree diff calculated (key: {}, entries: {}, time: {}ms)",
+							key, diffEntries.size(), System.currentTimeMillis()-time);
+	
+					long weight = 0;
+					for (DiffEntry entry: diffEntries)
+						weight += estimateSize(entry);
+					if (weight > spillThreshold)
+						return new SpilledDiff(spill(diffEntries), weight/SPILL_WEIGHT_RATIO);
+					else
+						return new InMemoryDiff(Collections.unmodifiableList(diffEntries), weight);
+				});
+				List<DiffEntry> diffEntries = cachedDiff.getEntries();
+				if (diffEntries != null)
+					return diffEntries;
+				
+				// evicted and discarded after we got it, remove if still there and try again
+				treeDiffs.asMap().remove(key, cachedDiff);
+			}
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	@Override
+	public List<Tokenized> getTokenizedLines(ObjectId blobId, @Nullable String fileName, List<String> lines) {
+		if (blobId.equals(ObjectId.zeroId()) && lines.isEmpty())
+			return Collections.emptyList();
+		
+		TokenizedKey key = new TokenizedKey(blobId.copy(), DiffUtils.getLanguage(fileName));
+		try {
+			return tokenizedLinesCache.get(key, () -> {
+				return Collections.unmodifiableList(DiffUtils.tokenize(lines, fileName));
+			});
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	@Override
+	public List<DiffBlock<Tokenized>> getDiffBlocks(ObjectId oldBlobId, @Nullable String oldFileName, 
+			List<String> oldLines, ObjectId newBlobId, @Nullable String newFileName, List<String> newLines, 
+			WhitespaceOption whitespaceOption) {
+		if (oldLines.size() + newLines.size() > DiffUtils.MAX_CHAR_DIFF_SIZE) {
+			// do not tokenize with syntax for large content to save time and memory
+			oldFileName = null;
+			newFileName = null;
+		}
+		String effectiveOldFileName = oldFileName;
+		String effectiveNewFileName = newFileName;
+		
+		TokenizedKey oldKey = new TokenizedKey(oldBlobId.copy(), DiffUtils.getLanguage(oldFileName));
+		TokenizedKey newKey = new TokenizedKey(newBlobId.copy(), DiffUtils.getLanguage(newFileName));
+		BlobDiffKey key = new BlobDiffKey(oldKey, newKey, whitespaceOption);
+		try {
+			return blobDiffs.get(key, () -> {
+				List<Tokenized> oldTokenizedLines = getTokenizedLines(oldBlobId, effectiveOldFileName, oldLines);
+				List<Tokenized> newTokenizedLines = getTokenizedLines(newBlobId, effectiveNewFileName, newLines);
+				List<DiffBlock<Tokenized>> diffBlocks = DiffUtils.diff(
+						oldLines, oldTokenizedLines, newLines, newTokenizedLines, whitespaceOption);
+				
+				/*
+				 * Weigh from input lines instead of units of diff blocks, as blocks of large 
+				 * diffs are materialized lazily and accessing their units here would defeat 
+				 * that. Tokenized lines referenced by diff blocks are normally shared with 
+				 * tokenized lines cache, however they will be kept alive as long as diff 
+				 * blocks are cached, so we count them here as well. Every line is referenced 
+				 * by at most one block once all blocks are materialized 
+				 */
+				long weight = (long)estimateSize(oldTokenizedLines) + estimateSize(newTokenizedLines) 
+						+ (long)(oldLines.size() + newLines.size()) * REFERENCE_SIZE 
+						+ (long)diffBlocks.size() * BLOCK_OVERHEAD;
+				return new CachedBlobDiff(diffBlocks, weight);
+			}).blocks;
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	private int estimateSize(List<Tokenized> tokenizedLines) {
+		long size = 0;
+		for (Tokenized line: tokenizedLines) 
+			size += LINE_OVERHEAD + line.getText().length()*2 + line.getTokens().length*TOKEN_SIZE;
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+	
+	private long estimateSize(DiffEntry entry) {
+		long size = ENTRY_OVERHEAD;
+		if (entry.getOldPath() != null)
+			size += entry.getOldPath().length()*2;
+		if (entry.getNewPath() != null && entry.getNewPath() != entry.getOldPath())
+			size += entry.getNewPath().length()*2;
+		return size;
+	}
+
+	private File spill(List<DiffEntry> diffEntries) throws IOException {
+		File file = new File(spillDir, UUID.randomUUID().toString());
+		try (DataOutputStream os = new DataOutputStream(new GZIPOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file))))) {
+			os.writeInt(diffEntries.size());
+			for (DiffEntry entry: diffEntries) {
+				os.writeByte(entry.getChangeType().ordinal());
+				writeNullableString(os, entry.getOldPath());
+				writeNullableString(os, entry.getNewPath());
+				os.writeInt(entry.getOldMode().getBits());
+				os.writeInt(entry.getNewMode().getBits());
+				writeNullableString(os, entry.getOldId()!=null?entry.getOldId().name():null);
+				writeNullableString(os, entry.getNewId()!=null?entry.getNewId().name():null);
+				os.writeInt(entry.getScore());
+			}
+		}
+		return file;
+	}
+
+	private List<DiffEntry> unspill(File file) {
+		try (DataInputStream is = new DataInputStream(new GZIPInputStream(
+				new BufferedInputStream(new FileInputStream(file))))) {
+			int count = is.readInt();
+			List<DiffEntry> diffEntries = new ArrayList<>(count);
+			for (int i=0; i<count; i++) {
+				ChangeType changeType = ChangeType.values()[is.readByte()];
+				String oldPath = readNullableString(is);
+				String newPath = readNullableString(is);
+				FileMode oldMode = FileMode.fromBits(is.readInt());
+				FileMode newMode = FileMode.fromBits(is.readInt());
+				String oldId = readNullableString(is);
+				String newId = readNullableString(is);
+				int score = is.readInt();
+				DiffEntry entry = new SpilledDiffEntry(changeType, oldPath, newPath, oldMode, newMode, 
+						oldId!=null?AbbreviatedObjectId.fromString(oldId):null, 
+						newId!=null?AbbreviatedObjectId.fromString(newId):null, score);
+				diffEntries.add(entry);
+			}
+			return Collections.unmodifiableList(diffEntries);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void writeNullableString(DataOutputStream os, @Nullable String value) throws IOException {
+		os.writeBoolean(value != null);
+		if (value != null)
+			os.writeUTF(value);
+	}
+
+	@Nullable
+	private String readNullableString(DataInputStream is) throws IOException {
+		if (is.readBoolean())
+			return is.readUTF();
+		else
+			return null;
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		treeDiffs.invalidateAll();
+		tokenizedLinesCache.invalidateAll();
+		blobDiffs.invalidateAll();
+	}
+
+	private static class CachedBlobDiff {
+		
+		final List<DiffBlock<Tokenized>> blocks;
+		
+		final int weight;
+		
+		CachedBlobDiff(List<DiffBlock<Tokenized>> blocks, long weight) {
+			this.blocks = blocks;
+			this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+		}
+		
+	}
+	
+	private static interface CachedDiff {
+
+		/**
+		 * @return
+		 * 			diff entries, or <tt>null</tt> if this diff has been discarded
+		 */
+		@Nullable
+		List<DiffEntry> getEntries();
+
+		int getWeight();
+
+		void discard();
+
+	}
+
+	private static class InMemoryDiff implements CachedDiff {
+
+		private final List<DiffEntry> entries;
+
+		private final int weight;
+
+		public InMemoryDiff(List<DiffEntry> entries, long weight) {
+			this.entries = entries;
+			this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public List<DiffEntry> getEntries() {
+			return entries;
+		}
+
+		@Override
+		public int getWeight() {
+			return weight;
+		}
+
+		@Override
+		public void discard() {
+		}
+
+	}
+
+	private class SpilledDiff implements CachedDiff {
+
+		private final File file;
+
+		private final int weight;
+		
+		// guards spill file so that it is not deleted while being read
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+		
+		private boolean discarded;
+
+		public SpilledDiff(File file, long weight) {
+			this.file = file;
+			this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public List<DiffEntry> getEntries() {
+			List<DiffEntry> entries = parsedSpills.getIfPresent(file);
+			if (entries == null) {
+				lock.readLock().lock();
+				try {
+					if (discarded)
+						return null;
+					entries = unspill(file);
+					parsedSpills.put(file, entries);
+				} finally {
+					lock.readLock().unlock();
+				}
+			}
+			return entries;
+		}
+
+		@Override
+		public int getWeight() {
+			return weight;
+		}
+
+		@Override
+		public void discard() {
+			lock.writeLock().lock();
+			try {
+				discarded = true;
+				parsedSpills.invalidate(file);
+				FileUtils.deleteFile(file);
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+	}
+
+	/*
+	 * Fields of DiffEntry are protected, and it is only possible to restore them
+	 * via a sub class
+	 */
+	private static class SpilledDiffEntry extends DiffEntry {
+		
+		public SpilledDiffEntry(ChangeType changeType, String oldPath, String newPath, 
+				FileMode oldMode, FileMode newMode, @Nullable AbbreviatedObjectId oldId, 
+				@Nullable AbbreviatedObjectId newId, int score) {
+			this.changeType = changeType;
+			this.oldPath = oldPath;
+			this.newPath = newPath;
+			this.oldMode = oldMode;
+			this.newMode = newMode;
+			this.oldId = oldId;
+			this.newId = newId;
+			this.score = score;
+		}
+		
+	}
+
+}
@@ -0,0 +1,463 @@
+package io.onedev.server.git.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.concurrent.Prioritized;
+import io.onedev.server.util.work.BatchWorkManager;
+import io.onedev.server.util.work.BatchWorker;
+
+@Singleton
+public class DefaultLastCommitsCacheManager implements LastCommitsCacheManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultLastCommitsCacheManager.class);
+
+	private static final String CACHE_DIR = "last_commits_cache";
+
+	// directory used to store java serialized last commits before
+	private static final String LEGACY_CACHE_DIR = "last_commits";
+
+	private static final int FORMAT_VERSION = 1;
+
+	// last commits calculated on demand taking longer than this (in milliseconds) will be stored
+	private static final int STORE_THRESHOLD = 100;
+
+	private static final int MAX_COMMITS_PER_PATH = 8;
+
+	private static final long MAX_PROJECT_CACHE_SIZE = 64L*1024*1024;
+
+	private static final int MAX_PRECOMPUTED_DIRS = 100;
+
+	private static final int MAX_CACHED_CHILDREN = 500000;
+
+	private static final int PRECOMPUTE_PRIORITY = 50;
+
+	private final StorageManager storageManager;
+
+	private final ProjectManager projectManager;
+
+	private final SessionManager sessionManager;
+
+	private final BatchWorkManager batchWorkManager;
+
+	/*
+	 * Recently used last commits keyed by project id, commit and path. Weighed by number of
+	 * children
+	 */
+	private final Cache<String, Map<String, Value>> lastCommitsCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_CHILDREN)
+			.weigher(new Weigher<String, Map<String, Value>>() {
+
+				@Override
+				public int weigh(String key, Map<String, Value> value) {
+					return value.size() + 1;
+				}
+
+			})
+			.build();
+
+	@Inject
+	public DefaultLastCommitsCacheManager(StorageManager storageManager, ProjectManager projectManager,
+			SessionManager sessionManager, BatchWorkManager batchWorkManager) {
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+		this.sessionManager = sessionManager;
+		this.batchWorkManager = batchWorkManager;
+	}
+
+	private String getCacheKey(Long projectId, ObjectId commitId, String path) {
+		return projectId + ":" + commitId.name() + ":" + path;
+	}
+
+	private File getCacheDir(Long projectId) {
+		return new File(storageManager.getProjectInfoDir(projectId), CACHE_DIR);
+	}
+
+	private File getPathDir(Long projectId, String path) {
+		return new File(getCacheDir(projectId), DigestUtils.md5Hex(path));
+	}
+
+	@Override
+	public Map<String, Value> getLastCommitsOfChildren(Project project, ObjectId commitId, @Nullable String path) {
+		return getLastCommitsOfChildren(project, commitId, path, false);
+	}
+
+	private Map<String, Value> getLastCommitsOfChildren(Project project, ObjectId commitId,
+			@Nullable String path, boolean alwaysStore) {
+		path = GitUtils.normalizePath(path);
+		if (path == null)
+			path = "";
+
+		String cacheKey = getCacheKey(project.getId(), commitId, path);
+		File pathDir = getPathDir(project.getId(), path);
+		Map<String, Value> lastCommits = lastCommitsCache.getIfPresent(cacheKey);
+		if (lastCommits != null) {
+			if (alwaysStore && !new File(pathDir, commitId.name()).exists())
+				store(pathDir, commitId, lastCommits);
+		} else {
+			lastCommits = read(new File(pathDir, commitId.name()));
+			if (lastCommits == null) {
+				long time = System.currentTimeMillis();
+				lastCommits = calculate(project, commitId, path, pathDir);
+				long elapsed = System.currentTimeMillis() - time;
+				logger.debug("Last commits calculated (project: {}, commit: {}, path: {}, time: {}ms)",
+						project.getName(), commitId.name(), path, elapsed);
+				if (alwaysStore || elapsed > STORE_THRESHOLD)
+					store(pathDir, commitId, lastCommits);
+			}
+			lastCommits = Collections.unmodifiableMap(lastCommits);
+			lastCommitsCache.put(cacheKey, lastCommits);
+		}
+		return lastCommits;
+	}
+
+	/*
+	 * Result of a commit is derived from stored result of nearest ancestor commits plus
+	 * children changed since then, so that only commits after the stored one need to be
+	 * walked
+	 */
+	private Map<String, Value> calculate(Project project, ObjectId commitId, String path, File pathDir) {
+		Set<ObjectId> storedCommitIds = new HashSet<>();
+		String[] fileNames = pathDir.list();
+		if (fileNames != null) {
+			for (String fileName: fileNames) {
+				if (ObjectId.isId(fileName))
+					storedCommitIds.add(ObjectId.fromString(fileName));
+			}
+		}
+
+		Long projectId = project.getId();
+		LastCommitsOfChildren.Cache cache = new LastCommitsOfChildren.Cache() {
+
+			@Override
+			public Map<String, Value> getLastCommitsOfChildren(ObjectId commitId) {
+				Map<String, Value> lastCommits = lastCommitsCache.getIfPresent(getCacheKey(projectId, commitId, path));
+				if (lastCommits == null && storedCommitIds.contains(commitId))
+					lastCommits = read(new File(pathDir, commitId.name()));
+				return lastCommits;
+			}
+
+		};
+
+		return new LastCommitsOfChildren(project.getRepository(), commitId, path, cache);
+	}
+
+	@Nullable
+	private Map<String, Value> read(File file) {
+		try (DataInputStream is = new DataInputStream(new GZIPInputStream(
+				new BufferedInputStream(new FileInputStream(file))))) {
+			if (is.readInt() != FORMAT_VERSION)
+				return null;
+
+			byte[] rawId = new byte[Constants.OBJECT_ID_LENGTH];
+			int valueCount = is.readInt();
+			List<Value> values = new ArrayList<>(valueCount);
+			for (int i=0; i<valueCount; i++) {
+				is.readFully(rawId);
+				ObjectId id = ObjectId.fromRaw(rawId);
+				String authorName = readString(is);
+				String authorEmail = readString(is);
+				long authorWhen = is.readLong();
+				int authorTimeZone = is.readInt();
+				Date commitDate = new Date(is.readLong());
+				String summary = readString(is);
+				PersonIdent author = new PersonIdent(authorName, authorEmail, authorWhen, authorTimeZone);
+				values.add(new Value(id, author, commitDate, summary));
+			}
+
+			int childCount = is.readInt();
+			Map<String, Value> lastCommits = new HashMap<>();
+			for (int i=0; i<childCount; i++) {
+				String child = readString(is);
+				lastCommits.put(child, values.get(is.readInt()));
+			}
+			return lastCommits;
+		} catch (FileNotFoundException e) {
+			// not stored, or pruned
+			return null;
+		} catch (IOException e) {
+			logger.error("Error reading last commits from file '" + file.getAbsolutePath() + "'", e);
+			return null;
+		}
+	}
+
+	/*
+	 * Commits shared by multiple children are written only once, and children refer to them
+	 * via index
+	 */
+	private void store(File pathDir, ObjectId commitId, Map<String, Value> lastCommits) {
+		FileUtils.createDir(pathDir);
+		File tempFile = new File(pathDir, commitId.name() + "." + UUID.randomUUID() + ".tmp");
+		try {
+			try (DataOutputStream os = new DataOutputStream(new GZIPOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tempFile))))) {
+				os.writeInt(FORMAT_VERSION);
+
+				Map<ObjectId, Integer> valueIndexes = new HashMap<>();
+				List<Value> values = new ArrayList<>();
+				for (Value value: lastCommits.values()) {
+					if (!valueIndexes.containsKey(value.getId())) {
+						valueIndexes.put(value.getId(), values.size());
+						values.add(value);
+					}
+				}
+
+				byte[] rawId = new byte[Constants.OBJECT_ID_LENGTH];
+				os.writeInt(values.size());
+				for (Value value: values) {
+					value.getId().copyRawTo(rawId, 0);
+					os.write(rawId);
+					writeString(os, value.getAuthor().getName());
+					writeString(os, value.getAuthor().getEmailAddress());
+					os.writeLong(value.getAuthor().getWhen().getTime());
+					os.writeInt(value.getAuthor().getTimeZoneOffset());
+					os.writeLong(value.getCommitDate().getTime());
+					writeString(os, value.getSummary());
+				}
+
+				os.writeInt(lastCommits.size());
+				for (Map.Entry<String, Value> entry: lastCommits.entrySet()) {
+					writeString(os, entry.getKey());
+					os.writeInt(valueIndexes.get(entry.getValue().getId()));
+				}
+			}
+			Files.move(tempFile.toPath(), new File(pathDir, commitId.name()).toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			FileUtils.deleteFile(tempFile);
+			logger.error("Error storing last commits into directory '" + pathDir.getAbsolutePath() + "'", e);
+			return;
+		}
+
+		List<File> storedFiles = getStoredFiles(pathDir);
+		if (storedFiles.size() > MAX_COMMITS_PER_PATH) {
+			sortByLastModified(storedFiles);
+			for (File file: storedFiles.subList(0, storedFiles.size()-MAX_COMMITS_PER_PATH))
+				FileUtils.deleteFile(file);
+		}
+	}
+
+	private List<File> getStoredFiles(File pathDir) {
+		List<File> storedFiles = new ArrayList<>();
+		File[] files = pathDir.listFiles();
+		if (files != null) {
+			for (File file: files) {
+				if (ObjectId.isId(file.getName()))
+					storedFiles.add(file);
+			}
+		}
+		return storedFiles;
+	}
+
+	private void sortByLastModified(List<File> files) {
+		Map<File, Long> lastModifieds = new HashMap<>();
+		for (File file: files)
+			lastModifieds.put(file, file.lastModified());
+		files.sort(Comparator.comparing(lastModifieds::get));
+	}
+
+	private void writeString(DataOutputStream os, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		os.writeInt(bytes.length);
+		os.write(bytes);
+	}
+
+	private String readString(DataInputStream is) throws IOException {
+		byte[] bytes = new byte[is.readInt()];
+		is.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Remove least recently stored last commits of the project if total size exceeds limit
+	 */
+	private void prune(Long projectId) {
+		File[] pathDirs = getCacheDir(projectId).listFiles();
+		if (pathDirs != null) {
+			List<File> storedFiles = new ArrayList<>();
+			long totalSize = 0;
+			for (File pathDir: pathDirs) {
+				for (File file: getStoredFiles(pathDir)) {
+					storedFiles.add(file);
+					totalSize += file.length();
+				}
+			}
+			if (totalSize > MAX_PROJECT_CACHE_SIZE) {
+				sortByLastModified(storedFiles);
+				for (File file: storedFiles) {
+					if (totalSize <= MAX_PROJECT_CACHE_SIZE)
+						break;
+					totalSize -= file.length();
+					FileUtils.deleteFile(file);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Calculate last commits of root and top level directories of default branch head, so
+	 * that directory listing of default branch is fast after push, and last commits of
+	 * subsequent commits can be calculated incrementally
+	 */
+	private void precompute(Project project) {
+		String defaultBranch = project.getDefaultBranch();
+		if (defaultBranch == null)
+			return;
+		ObjectId commitId = project.getObjectId(GitUtils.branch2ref(defaultBranch), false);
+		if (commitId == null)
+			return;
+
+		long time = System.currentTimeMillis();
+		getLastCommitsOfChildren(project, commitId, null, true);
+
+		Collection<String> topLevelDirs = new ArrayList<>();
+		try (RevWalk revWalk = new RevWalk(project.getRepository());
+				TreeWalk treeWalk = new TreeWalk(project.getRepository())) {
+			RevCommit commit = revWalk.parseCommit(commitId);
+			treeWalk.addTree(commit.getTree());
+			while (treeWalk.next() && topLevelDirs.size() < MAX_PRECOMPUTED_DIRS) {
+				if (FileMode.TREE.equals(treeWalk.getFileMode(0)))
+					topLevelDirs.add(treeWalk.getPathString());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		for (String dir: topLevelDirs)
+			getLastCommitsOfChildren(project, commitId, dir, true);
+
+		logger.debug("Last commits precomputed (project: {}, commit: {}, time: {}ms)",
+				project.getName(), commitId.name(), System.currentTimeMillis()-time);
+	}
+
+	/*
+	 * Pushes queued before precomputing starts are coalesced, as head of default branch
+	 * is resolved when precomputing
+	 */
+	private BatchWorker getBatchWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-precomputeLastCommits") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				sessionManager.run(new Runnable() {
+
+					@Override
+					public void run() {
+						Project project = projectManager.get(projectId);
+						if (project != null) {
+							try {
+								precompute(project);
+							} finally {
+								prune(projectId);
+							}
+						}
+					}
+
+				});
+			}
+
+		};
+	}
+
+	private void onRefsUpdated(Project project, Collection<RefUpdated> refUpdates) {
+		String defaultBranch = project.getDefaultBranch();
+		if (defaultBranch != null) {
+			String defaultBranchRef = GitUtils.branch2ref(defaultBranch);
+			for (RefUpdated refUpdated: refUpdates) {
+				if (refUpdated.getRefName().equals(defaultBranchRef)
+						&& !refUpdated.getNewCommitId().equals(ObjectId.zeroId())) {
+					batchWorkManager.submit(getBatchWorker(project.getId()), new Prioritized(PRECOMPUTE_PRIORITY));
+					break;
+				}
+			}
+		}
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefUpdated event) {
+		if (!event.isBatched())
+			onRefsUpdated(event.getProject(), Lists.newArrayList(event));
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefsUpdated event) {
+		onRefsUpdated(event.getProject(), event.getRefUpdates());
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			String keyPrefix = event.getEntity().getId() + ":";
+			lastCommitsCache.asMap().keySet().removeIf(it -> it.startsWith(keyPrefix));
+		}
+	}
+
+	@Sessional
+	@Listen
+	public void on(SystemStarted event) {
+		for (Project project: projectManager.query()) {
+			File legacyCacheDir = new File(storageManager.getProjectInfoDir(project.getId()), LEGACY_CACHE_DIR);
+			if (legacyCacheDir.exists())
+				FileUtils.deleteDir(legacyCacheDir);
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package io.onedev.server.git.cache;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import io.onedev.commons.jsyntax.Tokenized;
+import io.onedev.server.util.diff.DiffBlock;
+import io.onedev.server.util.diff.WhitespaceOption;
+
+public interface DiffCacheManager {
+
+	/**
+	 * Get diff entries (with rename detected) between specified revisions. Result 
+	 * is shared server wide and keyed by tree ids, so the same diff requested by 
+	 * different viewers or pages will only be calculated once
+	 * 
+	 * @param oldRevId
+	 * 			old revision, use zero id to represent an empty tree
+	 * @param newRevId
+	 * 			new revision, use zero id to represent an empty tree
+	 * @return
+	 * 			unmodifiable list of diff entries
+	 */
+	List<DiffEntry> getDiffEntries(Repository repository, AnyObjectId oldRevId, AnyObjectId newRevId);
+	
+	/**
+	 * Get tokenized lines of specified blob. Result is cached by blob id and language 
+	 * determined from file name
+	 * 
+	 * @param blobId
+	 * 			id of the blob. Content of the blob should be represented by <tt>lines</tt>
+	 * @param fileName
+	 * 			file name to determine language of the blob, <tt>null</tt> to tokenize 
+	 * 			each line as a whole
+	 * @param lines
+	 * 			lines of the blob
+	 * @return
+	 * 			unmodifiable list of tokenized lines
+	 */
+	List<Tokenized> getTokenizedLines(ObjectId blobId, @Nullable String fileName, List<String> lines);
+	
+	/**
+	 * Get diff blocks between specified blobs. Result is cached by blob ids, languages and 
+	 * whitespace option, and tokenized lines are shared with {@link #getTokenizedLines}
+	 * 
+	 * @param oldBlobId
+	 * 			id of old blob, use zero id for empty content
+	 * @param newBlobId
+	 * 			id of new blob, use zero id for empty content
+	 * @return
+	 * 			unmodifiable list of diff blocks
+	 */
+	List<DiffBlock<Tokenized>> getDiffBlocks(ObjectId oldBlobId, @Nullable String oldFileName, List<String> oldLines, 
+			ObjectId newBlobId, @Nullable String newFileName, List<String> newLines, 
+			WhitespaceOption whitespaceOption);
+	
+}
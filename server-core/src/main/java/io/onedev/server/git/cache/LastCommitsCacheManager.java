@@ -0,0 +1,30 @@
+package io.onedev.server.git.cache;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
+
+import io.onedev.server.model.Project;
+
+public interface LastCommitsCacheManager {
+
+	/**
+	 * Get last commits of children of specified path. Result is calculated incrementally
+	 * from cached result of ancestor commits, and is cached for calculation of descendant
+	 * commits
+	 *
+	 * @param commitId
+	 * 			commit to get last commits no newer than
+	 * @param path
+	 * 			parent directory to get children last commits under, use <tt>null</tt>
+	 * 			or empty string for repository root
+	 * @return
+	 * 			map of child name to last commit of the child
+	 */
+	Map<String, LastCommitsOfChildren.Value> getLastCommitsOfChildren(Project project,
+			ObjectId commitId, @Nullable String path);
+
+}
@@ -0,0 +1,52 @@
+package io.onedev.server.git.cache;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+
+class TokenizedKey {
+
+	private final ObjectId blobId;
+	
+	private final String language;
+	
+	public TokenizedKey(ObjectId blobId, String language) {
+		this.blobId = blobId;
+		this.language = language;
+	}
+
+	public ObjectId getBlobId() {
+		return blobId;
+	}
+
+	public String getLanguage() {
+		return language;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof TokenizedKey)) 
+			return false;
+		if (this == other)
+			return true;
+		TokenizedKey otherKey = (TokenizedKey) other;
+		return new EqualsBuilder()
+				.append(blobId, otherKey.blobId)
+				.append(language, otherKey.language)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 37)
+				.append(blobId)
+				.append(language)
+				.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		return blobId.name() + ":" + language;
+	}
+	
+}
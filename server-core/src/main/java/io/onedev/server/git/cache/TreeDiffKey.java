@@ -0,0 +1,61 @@
+package io.onedev.server.git.cache;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+
+class TreeDiffKey {
+
+	private final ObjectId oldTreeId;
+	
+	private final ObjectId newTreeId;
+	
+	private final String renameOptions;
+	
+	public TreeDiffKey(ObjectId oldTreeId, ObjectId newTreeId, String renameOptions) {
+		this.oldTreeId = oldTreeId;
+		this.newTreeId = newTreeId;
+		this.renameOptions = renameOptions;
+	}
+
+	public ObjectId getOldTreeId() {
+		return oldTreeId;
+	}
+
+	public ObjectId getNewTreeId() {
+		return newTreeId;
+	}
+
+	public String getRenameOptions() {
+		return renameOptions;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof TreeDiffKey)) 
+			return false;
+		if (this == other)
+			return true;
+		TreeDiffKey otherKey = (TreeDiffKey) other;
+		return new EqualsBuilder()
+				.append(oldTreeId, otherKey.oldTreeId)
+				.append(newTreeId, otherKey.newTreeId)
+				.append(renameOptions, otherKey.renameOptions)
+				.isEquals();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(17, 37)
+				.append(oldTreeId)
+				.append(newTreeId)
+				.append(renameOptions)
+				.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		return oldTreeId.name() + ".." + newTreeId.name() + ":" + renameOptions;
+	}
+	
+}
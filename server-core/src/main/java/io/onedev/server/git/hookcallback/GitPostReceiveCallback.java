@@ -2,6 +2,7 @@ package io.onedev.server.git.hookcallback;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 
@@ -14,40 +15,24 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.shiro.util.ThreadContext;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.RefUpdate;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.eclipse.jgit.transport.ReceiveCommand;
 
 import com.google.common.base.Preconditions;
 
-import io.onedev.commons.launcher.loader.ListenerRegistry;
 import io.onedev.commons.utils.StringUtils;
-import io.onedev.server.entitymanager.ProjectManager;
-import io.onedev.server.event.RefUpdated;
-import io.onedev.server.git.GitUtils;
-import io.onedev.server.model.Project;
-import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.security.SecurityUtils;
 
 @SuppressWarnings("serial")
 @Singleton
 public class GitPostReceiveCallback extends HttpServlet {
 
-	private static final Logger logger = LoggerFactory.getLogger(GitPostReceiveCallback.class);
-	
     public static final String PATH = "/git-postreceive-callback";
     
-    private final ProjectManager projectManager;
-
-    private final ListenerRegistry listenerRegistry;
-    
-    private final SessionManager sessionManager;
+    private final GitReceiveHooks receiveHooks;
     
     @Inject
-    public GitPostReceiveCallback(ProjectManager projectManager, SessionManager sessionManager, ListenerRegistry listenerRegistry) {
-    	this.projectManager = projectManager;
-    	this.sessionManager = sessionManager;
-        this.listenerRegistry = listenerRegistry;
+    public GitPostReceiveCallback(GitReceiveHooks receiveHooks) {
+    	this.receiveHooks = receiveHooks;
     }
 
     @Override
@@ -89,49 +74,26 @@ public class GitPostReceiveCallback extends HttpServlet {
         fields.clear();
         fields.addAll(StringUtils.splitAndTrim(refUpdateInfo, " "));
         
-        sessionManager.runAsync(new Runnable() {
-
-			@Override
-			public void run() {
-		        try {
-		            Project project = projectManager.load(projectId);
-		            
-			        int pos = 0;
-			        while (true) {
-			        	String refName = StringUtils.reverse(fields.get(pos));
-			        	pos++;
-			        	ObjectId newObjectId = ObjectId.fromString(StringUtils.reverse(fields.get(pos)));
-			        	pos++;
-			        	String field = fields.get(pos);
-			        	ObjectId oldObjectId = ObjectId.fromString(StringUtils.reverse(field.substring(0, 40)));
-			        	
-			        	if (!newObjectId.equals(ObjectId.zeroId())) {
-			        		project.cacheObjectId(refName, newObjectId);
-			        	} else {
-			        		newObjectId = ObjectId.zeroId();
-			        		project.cacheObjectId(refName, null);
-			        	}
-			        	
-			        	String branch = GitUtils.ref2branch(refName);
-			        	if (branch != null && project.getDefaultBranch() == null) {
-			        		RefUpdate refUpdate = GitUtils.getRefUpdate(project.getRepository(), "HEAD");
-			        		GitUtils.linkRef(refUpdate, refName);
-			        	}
-
-			        	listenerRegistry.post(new RefUpdated(project, refName, oldObjectId, newObjectId));
-			    		
-			        	field = field.substring(40);
-			        	if (field.length() == 0)
-			        		break;
-			        	else
-			        		fields.set(pos, field);
-			        }
-		        } catch (Exception e) {
-		        	logger.error("Error executing post-receive callback", e);
-				}
-			}
+        List<ReceiveCommand> commands = new ArrayList<>();
+        int pos = 0;
+        while (true) {
+        	String refName = StringUtils.reverse(fields.get(pos));
+        	pos++;
+        	ObjectId newObjectId = ObjectId.fromString(StringUtils.reverse(fields.get(pos)));
+        	pos++;
+        	String field = fields.get(pos);
+        	ObjectId oldObjectId = ObjectId.fromString(StringUtils.reverse(field.substring(0, 40)));
         	
-        });
+        	commands.add(new ReceiveCommand(oldObjectId, newObjectId, refName));
+        	
+        	field = field.substring(40);
+        	if (field.length() == 0)
+        		break;
+        	else
+        		fields.set(pos, field);
+        }
+        
+        receiveHooks.postReceive(projectId, commands);
 	}
 
 }
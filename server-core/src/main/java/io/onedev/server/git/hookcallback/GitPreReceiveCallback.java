@@ -2,7 +2,6 @@ package io.onedev.server.git.hookcallback;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
@@ -16,27 +15,18 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 
 import com.google.common.base.Preconditions;
-import com.google.common.base.Splitter;
-import com.google.common.collect.Lists;
 
-import io.onedev.commons.utils.ExplicitException;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.entitymanager.ProjectManager;
-import io.onedev.server.git.GitUtils;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequestUpdate;
 import io.onedev.server.model.User;
-import io.onedev.server.model.support.BranchProtection;
-import io.onedev.server.model.support.TagProtection;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.security.SecurityUtils;
-import io.onedev.server.security.permission.ManageProject;
-import io.onedev.server.security.permission.ProjectPermission;
 
 @SuppressWarnings("serial")
 @Singleton
@@ -46,26 +36,22 @@ public class GitPreReceiveCallback extends HttpServlet {
 
 	private final ProjectManager projectManager;
 	
+	private final GitReceiveHooks receiveHooks;
+	
 	@Inject
-	public GitPreReceiveCallback(ProjectManager projectManager) {
+	public GitPreReceiveCallback(ProjectManager projectManager, GitReceiveHooks receiveHooks) {
 		this.projectManager = projectManager;
+		this.receiveHooks = receiveHooks;
 	}
 	
 	private void error(Output output, @Nullable String refName, List<String> messages) {
 		output.markError();
-		output.writeLine();
-		output.writeLine("*******************************************************");
-		output.writeLine("*");
-		if (refName != null)
-			output.writeLine("*  ERROR PUSHING REF: " + refName);
-		else
-			output.writeLine("*  ERROR PUSHING");
-		output.writeLine("-------------------------------------------------------");
-		for (String message: messages)
-			output.writeLine("*  " + message);
-		output.writeLine("*");
-		output.writeLine("*******************************************************");
-		output.writeLine();
+		for (String line: receiveHooks.formatError(refName, messages)) {
+			if (line.length() != 0)
+				output.writeLine(line);
+			else
+				output.writeLine();
+		}
 	}
 	
 	@Sessional
@@ -130,65 +116,12 @@ public class GitPreReceiveCallback extends HttpServlet {
 	        	ObjectId oldObjectId = ObjectId.fromString(StringUtils.reverse(field.substring(0, 40)));
 	        	
 	    		User user = Preconditions.checkNotNull(SecurityUtils.getUser());
-
-	    		if (refName.startsWith(PullRequest.REFS_PREFIX) || refName.startsWith(PullRequestUpdate.REFS_PREFIX)) {
-	    			if (!user.asSubject().isPermitted(new ProjectPermission(project, new ManageProject()))) {
-	    				error(output, refName, Lists.newArrayList("Only project administrators can update onedev refs."));
+	    		List<String> errorMessages = receiveHooks.checkRefUpdate(project, user, refName, 
+	    				oldObjectId, newObjectId, gitEnvs);
+	    		if (!errorMessages.isEmpty()) {
+	    			error(output, refName, errorMessages);
+	    			if (refName.startsWith(PullRequest.REFS_PREFIX) || refName.startsWith(PullRequestUpdate.REFS_PREFIX))
 	    				break;
-	    			}
-	    		} else if (refName.startsWith(Constants.R_HEADS)) {
-	    			String branchName = Preconditions.checkNotNull(GitUtils.ref2branch(refName));
-	    			List<String> errorMessages = new ArrayList<>();
-	    			BranchProtection protection = project.getBranchProtection(branchName, user);
-					if (oldObjectId.equals(ObjectId.zeroId())) {
-						if (protection.isPreventCreation())
-							errorMessages.add("Can not create this branch according to branch protection setting");
-					} else if (newObjectId.equals(ObjectId.zeroId())) {
-						if (protection.isPreventDeletion()) 
-							errorMessages.add("Can not delete this branch according to branch protection setting");
-					} else if (protection.isPreventForcedPush() 
-							&& !GitUtils.isMergedInto(project.getRepository(), gitEnvs, oldObjectId, newObjectId)) {
-						errorMessages.add("Can not force-push to this branch according to branch protection setting");
-					} else if (protection.isReviewRequiredForPush(user, project, branchName, oldObjectId, newObjectId, gitEnvs)) {
-    					errorMessages.add("Review required for your change. Please submit pull request instead");
-					}
-	    			if (errorMessages.isEmpty() 
-	    					&& !oldObjectId.equals(ObjectId.zeroId()) 
-	    					&& !newObjectId.equals(ObjectId.zeroId()) 
-	    					&& project.isBuildRequiredForPush(user, branchName, oldObjectId, newObjectId, gitEnvs)) {
-	    				errorMessages.add("Build required for your change. Please submit pull request instead");
-	    			}
-	    			if (errorMessages.isEmpty() && newObjectId.equals(ObjectId.zeroId())) {
-	    				try {
-	    					projectManager.onDeleteBranch(project, branchName);
-	    				} catch (ExplicitException e) {
-	    					errorMessages.addAll(Splitter.on("\n").splitToList(e.getMessage()));
-	    				}
-	    			}
-					if (!errorMessages.isEmpty())
-						error(output, refName, errorMessages);
-	    		} else if (refName.startsWith(Constants.R_TAGS)) {
-	    			String tagName = Preconditions.checkNotNull(GitUtils.ref2tag(refName));
-	    			List<String> errorMessages = new ArrayList<>();
-	    			TagProtection protection = project.getTagProtection(tagName, user);
-					if (oldObjectId.equals(ObjectId.zeroId())) {
-						if (protection.isPreventCreation())
-							errorMessages.add("Can not create this tag according to tag protection setting");
-					} else if (newObjectId.equals(ObjectId.zeroId())) {
-						if (protection.isPreventDeletion())
-							errorMessages.add("Can not delete this tag according to tag protection setting");
-					} else if (protection.isPreventUpdate()) {
-						errorMessages.add("Can not update this tag according to tag protection setting");
-					}
-	    			if (errorMessages.isEmpty() && newObjectId.equals(ObjectId.zeroId())) {
-	    				try {
-	    					projectManager.onDeleteTag(project, tagName);
-	    				} catch (ExplicitException e) {
-	    					errorMessages.addAll(Splitter.on("\n").splitToList(e.getMessage()));
-	    				}
-	    			}
-					if (!errorMessages.isEmpty())
-						error(output, refName, errorMessages);
 	    		}
 	    		
 	        	field = field.substring(40);
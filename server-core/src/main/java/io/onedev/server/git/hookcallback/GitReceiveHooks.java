@@ -0,0 +1,281 @@
+package io.onedev.server.git.hookcallback;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.shiro.util.ThreadContext;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.transport.PostReceiveHook;
+import org.eclipse.jgit.transport.PreReceiveHook;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.ReceivePack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.launcher.loader.ListenerRegistry;
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.PullRequestUpdate;
+import io.onedev.server.model.User;
+import io.onedev.server.model.support.BranchProtection;
+import io.onedev.server.model.support.TagProtection;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.security.permission.ManageProject;
+import io.onedev.server.security.permission.ProjectPermission;
+
+/**
+ * Ref checking and post receive processing shared by in-process receive packs and hook
+ * callbacks. In-process receive packs run pre-receive checks and post receive events
+ * directly in the receiving thread, without calling back via http from git hook scripts.
+ */
+@Singleton
+public class GitReceiveHooks {
+
+	private static final Logger logger = LoggerFactory.getLogger(GitReceiveHooks.class);
+
+	private final ProjectManager projectManager;
+
+	private final UserManager userManager;
+
+	private final SessionManager sessionManager;
+
+	private final ListenerRegistry listenerRegistry;
+
+	@Inject
+	public GitReceiveHooks(ProjectManager projectManager, UserManager userManager,
+			SessionManager sessionManager, ListenerRegistry listenerRegistry) {
+		this.projectManager = projectManager;
+		this.userManager = userManager;
+		this.sessionManager = sessionManager;
+		this.listenerRegistry = listenerRegistry;
+	}
+
+	/**
+	 * Create a receive pack with pre-receive and post-receive hooks running in-process.
+	 * Caller should bind subject of specified user to current thread when receiving.
+	 */
+	public ReceivePack newReceivePack(Project project, Long userId) {
+		Long projectId = project.getId();
+		ReceivePack receivePack = new ReceivePack(project.getRepository());
+		receivePack.setPreReceiveHook(new PreReceiveHook() {
+
+			@Override
+			public void onPreReceive(ReceivePack rp, Collection<ReceiveCommand> commands) {
+				sessionManager.run(new Runnable() {
+
+					@Override
+					public void run() {
+						preReceive(rp, projectManager.load(projectId), userManager.load(userId), commands);
+					}
+
+				});
+			}
+
+		});
+		receivePack.setPostReceiveHook(new PostReceiveHook() {
+
+			@Override
+			public void onPostReceive(ReceivePack rp, Collection<ReceiveCommand> commands) {
+				List<ReceiveCommand> succeededCommands = new ArrayList<>();
+				for (ReceiveCommand command: commands) {
+					if (command.getResult() == ReceiveCommand.Result.OK)
+						succeededCommands.add(command);
+				}
+				if (!succeededCommands.isEmpty())
+					postReceive(projectId, succeededCommands);
+			}
+
+		});
+		return receivePack;
+	}
+
+	private void preReceive(ReceivePack rp, Project project, User user, Collection<ReceiveCommand> commands) {
+		boolean rejected = false;
+		for (ReceiveCommand command: commands) {
+			if (command.getResult() != ReceiveCommand.Result.NOT_ATTEMPTED)
+				continue;
+			List<String> errorMessages = checkRefUpdate(project, user, command.getRefName(),
+					command.getOldId(), command.getNewId(), new HashMap<>());
+			if (!errorMessages.isEmpty()) {
+				for (String line: formatError(command.getRefName(), errorMessages))
+					rp.sendMessage(line);
+				command.setResult(ReceiveCommand.Result.REJECTED_OTHER_REASON, errorMessages.iterator().next());
+				rejected = true;
+				if (isOneDevRef(command.getRefName()))
+					break;
+			}
+		}
+
+		// Keep behavior of a failed pre-receive hook: the whole push is rejected if any ref fails
+		if (rejected) {
+			for (ReceiveCommand command: commands) {
+				if (command.getResult() == ReceiveCommand.Result.NOT_ATTEMPTED)
+					command.setResult(ReceiveCommand.Result.REJECTED_OTHER_REASON, "pre-receive hook declined");
+			}
+		}
+	}
+
+	private boolean isOneDevRef(String refName) {
+		return refName.startsWith(PullRequest.REFS_PREFIX) || refName.startsWith(PullRequestUpdate.REFS_PREFIX);
+	}
+
+	/**
+	 * Check whether or not specified user can update specified ref.
+	 *
+	 * @param gitEnvs
+	 * 			git environments to access pushed objects, for instance objects in quarantine
+	 * 			directory of native git
+	 * @return
+	 * 			error messages, or empty if ref update is allowed
+	 */
+	public List<String> checkRefUpdate(Project project, User user, String refName,
+			ObjectId oldObjectId, ObjectId newObjectId, Map<String, String> gitEnvs) {
+		List<String> errorMessages = new ArrayList<>();
+		if (isOneDevRef(refName)) {
+			if (!user.asSubject().isPermitted(new ProjectPermission(project, new ManageProject())))
+				errorMessages.add("Only project administrators can update onedev refs.");
+		} else if (refName.startsWith(Constants.R_HEADS)) {
+			String branchName = Preconditions.checkNotNull(GitUtils.ref2branch(refName));
+			BranchProtection protection = project.getBranchProtection(branchName, user);
+			if (oldObjectId.equals(ObjectId.zeroId())) {
+				if (protection.isPreventCreation())
+					errorMessages.add("Can not create this branch according to branch protection setting");
+			} else if (newObjectId.equals(ObjectId.zeroId())) {
+				if (protection.isPreventDeletion())
+					errorMessages.add("Can not delete this branch according to branch protection setting");
+			} else if (protection.isPreventForcedPush()
+					&& !GitUtils.isMergedInto(project.getRepository(), gitEnvs, oldObjectId, newObjectId)) {
+				errorMessages.add("Can not force-push to this branch according to branch protection setting");
+			} else if (protection.isReviewRequiredForPush(user, project, branchName, oldObjectId, newObjectId, gitEnvs)) {
+				errorMessages.add("Review required for your change. Please submit pull request instead");
+			}
+			if (errorMessages.isEmpty()
+					&& !oldObjectId.equals(ObjectId.zeroId())
+					&& !newObjectId.equals(ObjectId.zeroId())
+					&& project.isBuildRequiredForPush(user, branchName, oldObjectId, newObjectId, gitEnvs)) {
+				errorMessages.add("Build required for your change. Please submit pull request instead");
+			}
+			if (errorMessages.isEmpty() && newObjectId.equals(ObjectId.zeroId())) {
+				try {
+					projectManager.onDeleteBranch(project, branchName);
+				} catch (ExplicitException e) {
+					errorMessages.addAll(Splitter.on("\n").splitToList(e.getMessage()));
+				}
+			}
+		} else if (refName.startsWith(Constants.R_TAGS)) {
+			String tagName = Preconditions.checkNotNull(GitUtils.ref2tag(refName));
+			TagProtection protection = project.getTagProtection(tagName, user);
+			if (oldObjectId.equals(ObjectId.zeroId())) {
+				if (protection.isPreventCreation())
+					errorMessages.add("Can not create this tag according to tag protection setting");
+			} else if (newObjectId.equals(ObjectId.zeroId())) {
+				if (protection.isPreventDeletion())
+					errorMessages.add("Can not delete this tag according to tag protection setting");
+			} else if (protection.isPreventUpdate()) {
+				errorMessages.add("Can not update this tag according to tag protection setting");
+			}
+			if (errorMessages.isEmpty() && newObjectId.equals(ObjectId.zeroId())) {
+				try {
+					projectManager.onDeleteTag(project, tagName);
+				} catch (ExplicitException e) {
+					errorMessages.addAll(Splitter.on("\n").splitToList(e.getMessage()));
+				}
+			}
+		}
+		return errorMessages;
+	}
+
+	public List<String> formatError(@Nullable String refName, List<String> messages) {
+		List<String> lines = new ArrayList<>();
+		lines.add("");
+		lines.add("*******************************************************");
+		lines.add("*");
+		if (refName != null)
+			lines.add("*  ERROR PUSHING REF: " + refName);
+		else
+			lines.add("*  ERROR PUSHING");
+		lines.add("-------------------------------------------------------");
+		for (String message: messages)
+			lines.add("*  " + message);
+		lines.add("*");
+		lines.add("*******************************************************");
+		lines.add("");
+		return lines;
+	}
+
+	/**
+	 * Process updated refs asynchronously. Subject of pushing user should be bound to
+	 * current thread
+	 */
+	public void postReceive(Long projectId, Collection<ReceiveCommand> commands) {
+		List<ReceiveCommand> commandsCopy = Lists.newArrayList(commands);
+		sessionManager.runAsync(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Project project = projectManager.load(projectId);
+					List<RefUpdated> refUpdates = new ArrayList<>();
+					for (ReceiveCommand command: commandsCopy) {
+						String refName = command.getRefName();
+						ObjectId oldObjectId = command.getOldId();
+						ObjectId newObjectId = command.getNewId();
+						if (!newObjectId.equals(ObjectId.zeroId())) {
+							project.cacheObjectId(refName, newObjectId);
+						} else {
+							newObjectId = ObjectId.zeroId();
+							project.cacheObjectId(refName, null);
+						}
+
+						String branch = GitUtils.ref2branch(refName);
+						if (branch != null && project.getDefaultBranch() == null) {
+							RefUpdate refUpdate = GitUtils.getRefUpdate(project.getRepository(), "HEAD");
+							GitUtils.linkRef(refUpdate, refName);
+						}
+
+						RefUpdated refUpdated = new RefUpdated(project, refName, oldObjectId, newObjectId, true);
+						refUpdates.add(refUpdated);
+						listenerRegistry.post(refUpdated);
+					}
+					listenerRegistry.post(new RefsUpdated(project, refUpdates));
+				} catch (Exception e) {
+					logger.error("Error processing received refs", e);
+				}
+			}
+
+		});
+	}
+
+	/**
+	 * Run specified runnable with subject of specified user bound to current thread
+	 */
+	public void runAs(Long userId, Runnable runnable) {
+		ThreadContext.bind(SecurityUtils.asSubject(userId));
+		try {
+			runnable.run();
+		} finally {
+			ThreadContext.unbindSubject();
+		}
+	}
+
+}
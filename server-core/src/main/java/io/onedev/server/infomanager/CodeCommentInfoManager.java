@@ -0,0 +1,49 @@
+package io.onedev.server.infomanager;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.commons.utils.PlanarRange;
+import io.onedev.server.model.Project;
+
+public interface CodeCommentInfoManager {
+
+	/**
+	 * Get ranges of specified comments mapped to specified blob
+	 * 
+	 * @return
+	 * 			map of comment id to mapped range. Comments not mapped yet are not included, 
+	 * 			and comments can not be mapped are included with a <tt>null</tt> range
+	 */
+	Map<Long, PlanarRange> getMappedRanges(Project project, ObjectId blobId, Collection<Long> commentIds);
+	
+	/**
+	 * Save ranges of comments mapped to specified blob
+	 * 
+	 * @param mappedRanges
+	 * 			map of comment id to mapped range, with <tt>null</tt> range indicating that 
+	 * 			the comment can not be mapped to specified blob
+	 */
+	void saveMappedRanges(Project project, ObjectId blobId, Map<Long, PlanarRange> mappedRanges);
+	
+	/**
+	 * Get reachability of specified history commits from specified commit
+	 * 
+	 * @return
+	 * 			map of history commit id to reachability. History commits not checked yet are 
+	 * 			not included
+	 */
+	Map<ObjectId, Boolean> getReachabilities(Project project, ObjectId commitId, 
+			Collection<? extends ObjectId> historyCommitIds);
+	
+	/**
+	 * Save reachability of history commits from specified commit
+	 * 
+	 * @param reachabilities
+	 * 			map of history commit id to reachability
+	 */
+	void saveReachabilities(Project project, ObjectId commitId, Map<ObjectId, Boolean> reachabilities);
+	
+}
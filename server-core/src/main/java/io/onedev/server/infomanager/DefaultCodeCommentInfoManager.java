@@ -0,0 +1,258 @@
+package io.onedev.server.infomanager;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.PlanarRange;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.model.CodeComment;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.storage.StorageManager;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Cursor;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import jetbrains.exodus.env.TransactionalComputable;
+import jetbrains.exodus.env.TransactionalExecutable;
+
+/**
+ * Persists ranges of code comments mapped to blobs of later revisions, keyed by comment id 
+ * and blob id. A mapped range only depends on the blob the comment is created on and the 
+ * target blob, so it never changes once calculated. Reachability of commits comments are 
+ * created on is persisted the same way, as commit graph never changes either. 
+ */
+@Singleton
+public class DefaultCodeCommentInfoManager extends AbstractEnvironmentManager 
+		implements CodeCommentInfoManager {
+
+	private static final int INFO_VERSION = 1;
+	
+	private static final String INFO_DIR = "codeComment";
+	
+	private static final String MAPPED_RANGES_STORE = "mappedRanges";
+	
+	private static final String REACHABILITIES_STORE = "reachabilities";
+	
+	private static final byte[] UNMAPPED = new byte[0];
+	
+	private static final byte[] REACHABLE = new byte[] {1};
+	
+	private static final byte[] UNREACHABLE = new byte[] {0};
+	
+	private final StorageManager storageManager;
+	
+	private final ProjectManager projectManager;
+	
+	private final TransactionManager transactionManager;
+	
+	@Inject
+	public DefaultCodeCommentInfoManager(StorageManager storageManager, ProjectManager projectManager, 
+			TransactionManager transactionManager) {
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+		this.transactionManager = transactionManager;
+	}
+	
+	private ByteIterable getMappedRangeKey(Long commentId, ObjectId blobId) {
+		byte[] keyBytes = new byte[Long.BYTES + 20];
+		ByteBuffer.wrap(keyBytes, 0, Long.BYTES).putLong(commentId);
+		blobId.copyRawTo(keyBytes, Long.BYTES);
+		return new ArrayByteIterable(keyBytes);
+	}
+	
+	@Override
+	public Map<Long, PlanarRange> getMappedRanges(Project project, ObjectId blobId, Collection<Long> commentIds) {
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, MAPPED_RANGES_STORE);
+		
+		return env.computeInReadonlyTransaction(new TransactionalComputable<Map<Long, PlanarRange>>() {
+			
+			@Override
+			public Map<Long, PlanarRange> compute(Transaction txn) {
+				Map<Long, PlanarRange> mappedRanges = new HashMap<>();
+				for (Long commentId: commentIds) {
+					byte[] valueBytes = readBytes(store, txn, getMappedRangeKey(commentId, blobId));
+					if (valueBytes != null) {
+						if (valueBytes.length != 0) {
+							ByteBuffer buffer = ByteBuffer.wrap(valueBytes);
+							mappedRanges.put(commentId, new PlanarRange(
+									buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()));
+						} else {
+							mappedRanges.put(commentId, null);
+						}
+					}
+				}
+				return mappedRanges;
+			}
+			
+		});
+	}
+
+	@Override
+	public void saveMappedRanges(Project project, ObjectId blobId, Map<Long, PlanarRange> mappedRanges) {
+		if (mappedRanges.isEmpty())
+			return;
+		
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, MAPPED_RANGES_STORE);
+		
+		env.executeInTransaction(new TransactionalExecutable() {
+			
+			@Override
+			public void execute(Transaction txn) {
+				for (Map.Entry<Long, PlanarRange> entry: mappedRanges.entrySet()) {
+					PlanarRange range = entry.getValue();
+					byte[] valueBytes;
+					if (range != null) {
+						valueBytes = new byte[Integer.BYTES*4];
+						ByteBuffer.wrap(valueBytes)
+								.putInt(range.getFromRow()).putInt(range.getFromColumn())
+								.putInt(range.getToRow()).putInt(range.getToColumn());
+					} else {
+						valueBytes = UNMAPPED;
+					}
+					store.put(txn, getMappedRangeKey(entry.getKey(), blobId), new ArrayByteIterable(valueBytes));
+				}
+			}
+			
+		});
+	}
+	
+	private ByteIterable getReachabilityKey(ObjectId commitId, ObjectId historyCommitId) {
+		byte[] keyBytes = new byte[40];
+		commitId.copyRawTo(keyBytes, 0);
+		historyCommitId.copyRawTo(keyBytes, 20);
+		return new ArrayByteIterable(keyBytes);
+	}
+	
+	@Override
+	public Map<ObjectId, Boolean> getReachabilities(Project project, ObjectId commitId, 
+			Collection<? extends ObjectId> historyCommitIds) {
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, REACHABILITIES_STORE);
+		
+		return env.computeInReadonlyTransaction(new TransactionalComputable<Map<ObjectId, Boolean>>() {
+			
+			@Override
+			public Map<ObjectId, Boolean> compute(Transaction txn) {
+				Map<ObjectId, Boolean> reachabilities = new HashMap<>();
+				for (ObjectId historyCommitId: historyCommitIds) {
+					byte[] valueBytes = readBytes(store, txn, getReachabilityKey(commitId, historyCommitId));
+					if (valueBytes != null) 
+						reachabilities.put(historyCommitId, Arrays.equals(valueBytes, REACHABLE));
+				}
+				return reachabilities;
+			}
+			
+		});
+	}
+
+	@Override
+	public void saveReachabilities(Project project, ObjectId commitId, Map<ObjectId, Boolean> reachabilities) {
+		if (reachabilities.isEmpty())
+			return;
+		
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, REACHABILITIES_STORE);
+		
+		env.executeInTransaction(new TransactionalExecutable() {
+			
+			@Override
+			public void execute(Transaction txn) {
+				for (Map.Entry<ObjectId, Boolean> entry: reachabilities.entrySet()) {
+					byte[] valueBytes = entry.getValue()? REACHABLE: UNREACHABLE;
+					store.put(txn, getReachabilityKey(commitId, entry.getKey()), new ArrayByteIterable(valueBytes));
+				}
+			}
+			
+		});
+	}
+	
+	private void removeMappedRanges(Long projectId, Long commentId) {
+		Environment env = getEnv(projectId.toString());
+		Store store = getStore(env, MAPPED_RANGES_STORE);
+		
+		env.executeInTransaction(new TransactionalExecutable() {
+			
+			@Override
+			public void execute(Transaction txn) {
+				byte[] prefix = new byte[Long.BYTES];
+				ByteBuffer.wrap(prefix).putLong(commentId);
+				Cursor cursor = store.openCursor(txn);
+				try {
+					ByteIterable value = cursor.getSearchKeyRange(new ArrayByteIterable(prefix));
+					while (value != null) {
+						byte[] keyBytes = Arrays.copyOf(cursor.getKey().getBytesUnsafe(), Long.BYTES);
+						if (!Arrays.equals(keyBytes, prefix))
+							break;
+						cursor.deleteCurrent();
+						value = cursor.getNext()? cursor.getValue(): null;
+					}
+				} finally {
+					cursor.close();
+				}
+			}
+			
+		});
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			Long projectId = event.getEntity().getId();
+			removeEnv(projectId.toString());
+		} else if (event.getEntity() instanceof CodeComment) {
+			CodeComment comment = (CodeComment) event.getEntity();
+			Long projectId = comment.getProject().getId();
+			Long commentId = comment.getId();
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					removeMappedRanges(projectId, commentId);
+				}
+				
+			});
+		}
+	}
+	
+	@Sessional
+	@Listen
+	public void on(SystemStarted event) {
+		for (Project project: projectManager.query()) 
+			checkVersion(project.getId().toString());
+	}
+	
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		if (!infoDir.exists()) 
+			FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+}
@@ -13,6 +13,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.FileUtils;
@@ -46,6 +48,7 @@ import io.onedev.commons.utils.PathUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.git.GitContribution;
@@ -1146,17 +1149,43 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	@Sessional
 	@Listen
 	public void on(RefUpdated event) {
-		if (!event.getNewCommitId().equals(ObjectId.zeroId()) 
-				&& (event.getRefName().startsWith(Constants.R_HEADS) 
-						|| event.getRefName().startsWith(Constants.R_TAGS))) {
-			try (RevWalk revWalk = new RevWalk(event.getProject().getRepository())) {
-				RevCommit commit = GitUtils.parseCommit(revWalk, event.getNewCommitId());
-				if (commit != null) {
-					CollectingWork work = new CollectingWork(PRIORITY, commit, event.getRefName());
-					batchWorkManager.submit(getBatchWorker(event.getProject().getId()), work);
+		if (!event.isBatched())
+			collect(event.getProject(), Lists.newArrayList(event));
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefsUpdated event) {
+		collect(event.getProject(), event.getRefUpdates());
+	}
+	
+	/*
+	 * Collect commit info of all updated refs with a single rev walk. Refs pointing to 
+	 * the same commit are collected only once, preferring the default branch as line 
+	 * stats and contributions are only collected for it 
+	 */
+	private void collect(Project project, List<RefUpdated> refUpdates) {
+		String defaultBranchRef = project.getDefaultBranch()!=null? GitUtils.branch2ref(project.getDefaultBranch()): null;
+		Map<ObjectId, CollectingWork> worksByCommit = new LinkedHashMap<>();
+		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+			for (RefUpdated refUpdated: refUpdates) {
+				String refName = refUpdated.getRefName();
+				if (!refUpdated.getNewCommitId().equals(ObjectId.zeroId()) 
+						&& (refName.startsWith(Constants.R_HEADS) || refName.startsWith(Constants.R_TAGS))) {
+					RevCommit commit = GitUtils.parseCommit(revWalk, refUpdated.getNewCommitId());
+					if (commit != null 
+							&& (!worksByCommit.containsKey(commit) || refName.equals(defaultBranchRef))) {
+						worksByCommit.put(commit.copy(), new CollectingWork(PRIORITY, commit, refName));
+					}
 				}
 			}
 		}
+		
+		List<CollectingWork> works = new ArrayList<>(worksByCommit.values());
+		Collections.sort(works, new CommitTimeComparator());
+		
+		for (CollectingWork work: works)
+			batchWorkManager.submit(getBatchWorker(project.getId()), work);
 	}
 
 	@Sessional
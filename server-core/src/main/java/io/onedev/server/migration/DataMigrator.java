@@ -2332,4 +2332,31 @@ public class DataMigrator {
 		}
 	}
 	
+	private void migrate50(File dataDir, Stack<Integer> versions) {
+	}
+	
+	private void migrate51(File dataDir, Stack<Integer> versions) {
+		for (File file: dataDir.listFiles()) {
+			if (file.getName().startsWith("Settings.xml")) {
+				VersionedXmlDoc dom = VersionedXmlDoc.fromFile(file);
+				for (Element element: dom.getRootElement().elements()) {
+					if (element.elementTextTrim("key").equals("JOB_EXECUTORS")) {
+						Element valueElement = element.element("value");
+						if (valueElement != null) {
+							for (Element executorElement: valueElement.elements()) {
+								if (executorElement.getName().contains("DockerExecutor")) {
+									if (executorElement.element("sourceMirrorSize") == null)
+										executorElement.addElement("sourceMirrorSize").setText("10");
+									if (executorElement.element("imageFreshness") == null)
+										executorElement.addElement("imageFreshness").setText("60");
+								}
+							}
+						}
+					}
+				}
+				dom.writeToFile(file, false);
+			}
+		}
+	}
+	
 }
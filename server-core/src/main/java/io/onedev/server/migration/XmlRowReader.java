@@ -0,0 +1,90 @@
+package io.onedev.server.migration;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.apache.commons.io.IOUtils;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.ElementHandler;
+import org.dom4j.ElementPath;
+import org.dom4j.io.SAXReader;
+
+import io.onedev.commons.utils.ExceptionUtils;
+
+/**
+ * Reads rows of a data file (a root element containing one element per row) one by one,
+ * without loading the whole file into memory. This is the streaming counterpart of
+ * {@link VersionedXmlDoc#fromFile(File)} for data files written by {@link XmlRowWriter}
+ * or by previous versions.
+ */
+public class XmlRowReader {
+
+	private static final byte[] XML_10_PROLOG = "<?xml version=\"1.0\"".getBytes(StandardCharsets.UTF_8);
+
+	private static final byte[] XML_11_PROLOG = "<?xml version=\"1.1\"".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Read rows of specified file.
+	 *
+	 * @param file
+	 * 			data file to read rows from
+	 * @param consumer
+	 * 			consumer of each row. Each row is passed as a separate document, and is
+	 * 			detached from the file so that it can be garbage collected once consumed
+	 */
+	public static void read(File file, Consumer<VersionedXmlDoc> consumer) {
+		try (InputStream is = openStream(file)) {
+			SAXReader reader = new SAXReader();
+			reader.setDefaultHandler(new ElementHandler() {
+
+				@Override
+				public void onStart(ElementPath elementPath) {
+				}
+
+				@Override
+				public void onEnd(ElementPath elementPath) {
+					if (elementPath.size() == 2) {
+						Element element = elementPath.getCurrent();
+						element.detach();
+						consumer.accept(new VersionedXmlDoc(DocumentHelper.createDocument(element)));
+					}
+				}
+
+			});
+			reader.read(is);
+		} catch (Exception e) {
+			throw ExceptionUtils.unchecked(e);
+		}
+	}
+
+	/*
+	 * Data may contain some characters invalid in xml 1.0, parse with 1.1 as
+	 * VersionedXmlDoc.fromXML does
+	 */
+	private static InputStream openStream(File file) throws IOException {
+		InputStream is = new BufferedInputStream(new FileInputStream(file));
+		try {
+			is.mark(XML_10_PROLOG.length);
+			byte[] head = new byte[XML_10_PROLOG.length];
+			if (IOUtils.read(is, head) == head.length && Arrays.equals(head, XML_10_PROLOG)) {
+				return new SequenceInputStream(new ByteArrayInputStream(XML_11_PROLOG), is);
+			} else {
+				is.reset();
+				return is;
+			}
+		} catch (IOException e) {
+			is.close();
+			throw e;
+		}
+	}
+
+}
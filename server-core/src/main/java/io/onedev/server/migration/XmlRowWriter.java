@@ -0,0 +1,87 @@
+package io.onedev.server.migration;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.XMLWriter;
+
+import io.onedev.commons.utils.ExceptionUtils;
+
+/**
+ * Writes rows to a data file one by one, without building the whole document in memory.
+ * Resulting file has the same format as a document with root element <tt>list</tt>
+ * containing one element per row, and can be read back with either {@link XmlRowReader}
+ * or {@link VersionedXmlDoc#fromFile(File)}.
+ */
+public class XmlRowWriter implements Closeable {
+
+	private final OutputStream os;
+
+	private final XMLWriter writer;
+
+	private final Element rootElement = DocumentHelper.createElement("list");
+
+	public XmlRowWriter(File file) {
+		try {
+			os = new BufferedOutputStream(new FileOutputStream(file));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		try {
+			OutputFormat format = new OutputFormat();
+			format.setIndent(true);
+			format.setNewlines(true);
+			format.setEncoding(StandardCharsets.UTF_8.name());
+			writer = new XMLWriter(os, format);
+			writer.startDocument();
+			writer.writeOpen(rootElement);
+			writer.setIndentLevel(1);
+		} catch (Exception e) {
+			closeQuietly();
+			throw ExceptionUtils.unchecked(e);
+		}
+	}
+
+	public void write(Object bean) {
+		write(VersionedXmlDoc.fromBean(bean));
+	}
+
+	public void write(VersionedXmlDoc row) {
+		try {
+			writer.write(row.getRootElement());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			writer.setIndentLevel(0);
+			writer.println();
+			writer.writeClose(rootElement);
+			writer.println();
+			writer.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			closeQuietly();
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			os.close();
+		} catch (IOException e) {
+		}
+	}
+
+}
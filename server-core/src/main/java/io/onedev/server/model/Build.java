@@ -59,7 +59,6 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.utils.ExplicitException;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.OneDev;
@@ -77,6 +76,7 @@ import io.onedev.server.model.support.BuildMetric;
 import io.onedev.server.model.support.build.JobSecret;
 import io.onedev.server.model.support.inputspec.SecretInput;
 import io.onedev.server.search.entity.EntityCriteria;
+import io.onedev.server.storage.ArtifactStorageManager;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.BeanUtils;
 import io.onedev.server.util.CollectionUtils;
@@ -843,17 +843,8 @@ public class Build extends AbstractEntity implements Referenceable {
 
 			@Override
 			public Void call() throws Exception {
-				File artifactsDir = getArtifactsDir();
-				FileUtils.createDir(artifactsDir);
-				PatternSet patternSet = PatternSet.parse(artifacts);
-				int baseLen = workspaceDir.getAbsolutePath().length() + 1;
-				for (File file: patternSet.listFiles(workspaceDir)) {
-					try {
-						FileUtils.copyFile(file, new File(artifactsDir, file.getAbsolutePath().substring(baseLen)));
-					} catch (IOException e) {
-						throw new RuntimeException(e);
-					}
-				}
+				OneDev.getInstance(ArtifactStorageManager.class).publish(
+						workspaceDir, PatternSet.parse(artifacts), getArtifactsDir());
 				return null;
 			}
 			
@@ -887,15 +878,8 @@ public class Build extends AbstractEntity implements Referenceable {
 			public Void call() throws Exception {
 				File artifactsDir = dependency.getArtifactsDir();
 				if (artifactsDir.exists()) {
-					PatternSet patternSet = PatternSet.parse(artifacts);
-					int baseLen = artifactsDir.getAbsolutePath().length() + 1;
-					for (File file: patternSet.listFiles(artifactsDir)) {
-						try {
-							FileUtils.copyFile(file, new File(workspaceDir, file.getAbsolutePath().substring(baseLen)));
-						} catch (IOException e) {
-							throw new RuntimeException(e);
-						}
-					}
+					OneDev.getInstance(ArtifactStorageManager.class).retrieve(
+							artifactsDir, PatternSet.parse(artifacts), workspaceDir);
 				}
 				return null;
 			}
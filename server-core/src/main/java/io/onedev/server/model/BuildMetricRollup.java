@@ -0,0 +1,210 @@
+package io.onedev.server.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+
+import io.onedev.server.util.Day;
+
+/**
+ * Sum and count of a metric indicator over builds of a job finished in specified period.
+ * Rows are not unique on their key: concurrently written metrics may create multiple rows
+ * for same key, which is fine as rows are always summed up when queried.
+ */
+@Entity
+@Table(indexes={
+		@Index(columnList="o_project_id, " + BuildMetricRollup.PROP_METRIC_TYPE + ", "
+				+ BuildMetricRollup.PROP_GRANULARITY + ", " + BuildMetricRollup.PROP_PERIOD),
+		@Index(columnList=BuildMetricRollup.PROP_JOB), @Index(columnList=BuildMetricRollup.PROP_REPORT)})
+public class BuildMetricRollup extends AbstractEntity {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String PROP_PROJECT = "project";
+
+	public static final String PROP_METRIC_TYPE = "metricType";
+
+	public static final String PROP_JOB = "jobName";
+
+	public static final String PROP_REPORT = "reportName";
+
+	public static final String PROP_GRANULARITY = "granularity";
+
+	public static final String PROP_PERIOD = "periodDay";
+
+	public static final String PROP_INDICATOR = "indicator";
+
+	public static final String PROP_TOTAL = "valueSum";
+
+	public static final String PROP_COUNT = "valueCount";
+
+	public enum Granularity {
+
+		DAY {
+
+			@Override
+			public DateTime getStart(DateTime date) {
+				return date.withTimeAtStartOfDay();
+			}
+
+			@Override
+			public DateTime getNext(DateTime start) {
+				return start.plusDays(1);
+			}
+
+		},
+		WEEK {
+
+			@Override
+			public DateTime getStart(DateTime date) {
+				return date.withDayOfWeek(DateTimeConstants.MONDAY).withTimeAtStartOfDay();
+			}
+
+			@Override
+			public DateTime getNext(DateTime start) {
+				return start.plusWeeks(1);
+			}
+
+		},
+		MONTH {
+
+			@Override
+			public DateTime getStart(DateTime date) {
+				return date.withDayOfMonth(1).withTimeAtStartOfDay();
+			}
+
+			@Override
+			public DateTime getNext(DateTime start) {
+				return start.plusMonths(1);
+			}
+
+		};
+
+		public abstract DateTime getStart(DateTime date);
+
+		public abstract DateTime getNext(DateTime start);
+
+		/**
+		 * @return day value of the first day of period containing specified day
+		 */
+		public int getPeriod(int dayValue) {
+			return new Day(getStart(new Day(dayValue).getDate())).getValue();
+		}
+
+		/**
+		 * @return day value of the first day of period following specified period
+		 */
+		public int getNextPeriod(int period) {
+			return new Day(getNext(new Day(period).getDate())).getValue();
+		}
+
+	}
+
+	@ManyToOne(fetch=FetchType.LAZY)
+	@JoinColumn(nullable=false)
+	private Project project;
+
+	@Column(nullable=false)
+	private String metricType;
+
+	@Column(nullable=false)
+	private String jobName;
+
+	@Column(nullable=false)
+	private String reportName;
+
+	@Column(nullable=false)
+	private Granularity granularity;
+
+	private int periodDay;
+
+	@Column(nullable=false)
+	private String indicator;
+
+	private long valueSum;
+
+	private int valueCount;
+
+	public Project getProject() {
+		return project;
+	}
+
+	public void setProject(Project project) {
+		this.project = project;
+	}
+
+	public String getMetricType() {
+		return metricType;
+	}
+
+	public void setMetricType(String metricType) {
+		this.metricType = metricType;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+
+	public void setJobName(String jobName) {
+		this.jobName = jobName;
+	}
+
+	public String getReportName() {
+		return reportName;
+	}
+
+	public void setReportName(String reportName) {
+		this.reportName = reportName;
+	}
+
+	public Granularity getGranularity() {
+		return granularity;
+	}
+
+	public void setGranularity(Granularity granularity) {
+		this.granularity = granularity;
+	}
+
+	/**
+	 * @return day value of the first day of this period
+	 */
+	public int getPeriodDay() {
+		return periodDay;
+	}
+
+	public void setPeriodDay(int periodDay) {
+		this.periodDay = periodDay;
+	}
+
+	public String getIndicator() {
+		return indicator;
+	}
+
+	public void setIndicator(String indicator) {
+		this.indicator = indicator;
+	}
+
+	public long getValueSum() {
+		return valueSum;
+	}
+
+	public void setValueSum(long valueSum) {
+		this.valueSum = valueSum;
+	}
+
+	public int getValueCount() {
+		return valueCount;
+	}
+
+	public void setValueCount(int valueCount) {
+		this.valueCount = valueCount;
+	}
+
+}
@@ -19,7 +19,6 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -34,12 +33,10 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
-import org.apache.commons.lang3.SerializationUtils;
 import org.eclipse.jgit.api.CreateBranchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.TagCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
@@ -48,7 +45,6 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
 import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
@@ -66,9 +62,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.launcher.loader.ListenerRegistry;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LinearRange;
-import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
@@ -89,6 +83,7 @@ import io.onedev.server.git.BlobIdentFilter;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.RefInfo;
 import io.onedev.server.git.Submodule;
+import io.onedev.server.git.cache.LastCommitsCacheManager;
 import io.onedev.server.git.command.BlameCommand;
 import io.onedev.server.git.command.ListChangedFilesCommand;
 import io.onedev.server.git.exception.NotFileException;
@@ -162,8 +157,6 @@ public class Project extends AbstractEntity {
 			NAME_NAME, PROP_NAME, 
 			NAME_UPDATE_DATE, PROP_UPDATE_DATE);
 	
-	private static final int LAST_COMMITS_CACHE_THRESHOLD = 1000;
-	
 	public static final int MAX_UPLOAD_SIZE = 10; // In mega bytes
 	
 	static ThreadLocal<Stack<Project>> stack =  new ThreadLocal<Stack<Project>>() {
@@ -258,6 +251,9 @@ public class Project extends AbstractEntity {
 	@OneToMany(mappedBy="project", cascade=CascadeType.REMOVE)
 	private Collection<Milestone> milestones = new ArrayList<>();
 	
+	@OneToMany(mappedBy="project", cascade=CascadeType.REMOVE)
+	private Collection<BuildMetricRollup> buildMetricRollups = new ArrayList<>();
+	
 	private boolean issueManagementEnabled = true;
 	
 	@Lob
@@ -758,80 +754,9 @@ public class Project extends AbstractEntity {
 		return lastCommitHolder.orNull();
 	}
 	
-	public LastCommitsOfChildren getLastCommitsOfChildren(String revision, @Nullable String path) {
-		if (path == null)
-			path = "";
-		
-		final File cacheDir = new File(
-				OneDev.getInstance(StorageManager.class).getProjectInfoDir(getId()), 
-				"last_commits/" + path + "/onedev_last_commits");
-		
-		final ReadWriteLock lock;
-		try {
-			lock = LockUtils.getReadWriteLock(cacheDir.getCanonicalPath());
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		
-		final Set<ObjectId> commitIds = new HashSet<>(); 
-		
-		lock.readLock().lock();
-		try {
-			if (cacheDir.exists()) {
-				for (String each: cacheDir.list()) 
-					commitIds.add(ObjectId.fromString(each));
-			} 	
-		} finally {
-			lock.readLock().unlock();
-		}
-		
-		org.eclipse.jgit.revwalk.LastCommitsOfChildren.Cache cache;
-		if (!commitIds.isEmpty()) {
-			cache = new org.eclipse.jgit.revwalk.LastCommitsOfChildren.Cache() {
-	
-				@SuppressWarnings("unchecked")
-				@Override
-				public Map<String, Value> getLastCommitsOfChildren(ObjectId commitId) {
-					if (commitIds.contains(commitId)) {
-						lock.readLock().lock();
-						try {
-							byte[] bytes = FileUtils.readFileToByteArray(new File(cacheDir, commitId.name()));
-							return (Map<String, Value>) SerializationUtils.deserialize(bytes);
-						} catch (IOException e) {
-							throw new RuntimeException(e);
-						} finally {
-							lock.readLock().unlock();
-						}
-					} else {
-						return null;
-					}
-				}
-				
-			};
-		} else {
-			cache = null;
-		}
-
-		final AnyObjectId commitId = getObjectId(revision, true);
-		
-		long time = System.currentTimeMillis();
-		LastCommitsOfChildren lastCommits = new LastCommitsOfChildren(getRepository(), commitId, path, cache);
-		long elapsed = System.currentTimeMillis()-time;
-		if (elapsed > LAST_COMMITS_CACHE_THRESHOLD) {
-			lock.writeLock().lock();
-			try {
-				if (!cacheDir.exists())
-					FileUtils.createDir(cacheDir);
-				FileUtils.writeByteArrayToFile(
-						new File(cacheDir, commitId.name()), 
-						SerializationUtils.serialize(lastCommits));
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			} finally {
-				lock.writeLock().unlock();
-			}
-		}
-		return lastCommits;
+	public Map<String, Value> getLastCommitsOfChildren(String revision, @Nullable String path) {
+		LastCommitsCacheManager lastCommitsCacheManager = OneDev.getInstance(LastCommitsCacheManager.class);
+		return lastCommitsCacheManager.getLastCommitsOfChildren(this, getObjectId(revision, true), path);
 	}
 
 	@Nullable
@@ -1128,6 +1053,14 @@ public class Project extends AbstractEntity {
 		this.builds = builds;
 	}
 
+	public Collection<BuildMetricRollup> getBuildMetricRollups() {
+		return buildMetricRollups;
+	}
+
+	public void setBuildMetricRollups(Collection<BuildMetricRollup> buildMetricRollups) {
+		this.buildMetricRollups = buildMetricRollups;
+	}
+
 	public List<BlobIdent> getChildren(BlobIdent blobIdent, BlobIdentFilter blobIdentFilter) {
 		return getChildren(blobIdent, blobIdentFilter, getObjectId(blobIdent.revision, true));
 	}
@@ -15,8 +15,9 @@ import org.unbescape.java.JavaEscape;
 
 import com.google.common.collect.Lists;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.support.inputspec.showcondition.ShowCondition;
-import io.onedev.server.util.GroovyUtils;
+import io.onedev.server.util.beanclass.BeanClassManager;
 import io.onedev.server.web.editable.EditableUtils;
 import io.onedev.server.web.editable.annotation.Editable;
 
@@ -207,6 +208,14 @@ public abstract class InputSpec implements Serializable {
 	}
 	
 	public static Class<?> defineClass(String className, String description, Collection<? extends InputSpec> inputs) {
+		return OneDev.getInstance(BeanClassManager.class).defineClass(className, description, inputs);
+	}
+	
+	/**
+	 * Get groovy script to define bean class of specified inputs. Evaluating the script 
+	 * returns the defined class 
+	 */
+	public static String getClassDefinition(String className, String description, Collection<? extends InputSpec> inputs) {
 		StringBuffer buffer = new StringBuffer();
 		buffer.append("import org.apache.commons.lang3.SerializationUtils;\n");
 		buffer.append("import com.google.common.base.Optional;\n");
@@ -236,7 +245,7 @@ public abstract class InputSpec implements Serializable {
 		
 		logger.trace("Class definition script:\n" + buffer.toString());
 		
-		return (Class<?>) GroovyUtils.evalScript(buffer.toString(), new HashMap<>());
+		return buffer.toString();
 	}
 
 	public abstract List<String> convertToStrings(@Nullable Object object);
@@ -1,8 +1,11 @@
 package io.onedev.server.notification;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nullable;
@@ -14,9 +17,12 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.server.entitymanager.UrlManager;
 import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
 import io.onedev.server.model.CommitQuerySetting;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
@@ -55,34 +61,76 @@ public class CommitNotificationManager extends AbstractNotificationManager {
 	@Sessional
 	@Listen
 	public void on(RefUpdated event) {
-		if (!event.getNewCommitId().equals(ObjectId.zeroId())) {
-			Project project = event.getProject();
-			Map<User, Collection<String>> subscribedQueryStrings = new HashMap<>();
-			for (CommitQuerySetting setting: project.getUserCommitQuerySettings()) {
-				for (String name: setting.getQuerySubscriptionSupport().getQuerySubscriptions()) {
-					fillSubscribedQueryStrings(subscribedQueryStrings, setting.getUser(), 
-							NamedQuery.find(project.getNamedCommitQueries(), name));
-				}
-				for (String name: setting.getQuerySubscriptionSupport().getUserQuerySubscriptions()) { 
-					fillSubscribedQueryStrings(subscribedQueryStrings, setting.getUser(), 
-							NamedQuery.find(setting.getUserQueries(), name));
+		if (!event.isBatched())
+			notify(event.getProject(), Lists.newArrayList(event));
+	}
+	
+	@Sessional
+	@Listen
+	public void on(RefsUpdated event) {
+		notify(event.getProject(), event.getRefUpdates());
+	}
+	
+	/*
+	 * Subscriptions are collected and parsed only once for all updated refs 
+	 */
+	private void notify(Project project, List<RefUpdated> refUpdates) {
+		List<RefUpdated> notifiableRefUpdates = new ArrayList<>();
+		for (RefUpdated refUpdated: refUpdates) {
+			if (!refUpdated.getNewCommitId().equals(ObjectId.zeroId()))
+				notifiableRefUpdates.add(refUpdated);
+		}
+		if (notifiableRefUpdates.isEmpty())
+			return;
+		
+		Map<User, Collection<String>> subscribedQueryStrings = new HashMap<>();
+		for (CommitQuerySetting setting: project.getUserCommitQuerySettings()) {
+			for (String name: setting.getQuerySubscriptionSupport().getQuerySubscriptions()) {
+				fillSubscribedQueryStrings(subscribedQueryStrings, setting.getUser(), 
+						NamedQuery.find(project.getNamedCommitQueries(), name));
+			}
+			for (String name: setting.getQuerySubscriptionSupport().getUserQuerySubscriptions()) { 
+				fillSubscribedQueryStrings(subscribedQueryStrings, setting.getUser(), 
+						NamedQuery.find(setting.getUserQueries(), name));
+			}
+		}
+		
+		Map<User, Map<String, CommitQuery>> subscribedQueries = new HashMap<>();
+		for (Map.Entry<User, Collection<String>> entry: subscribedQueryStrings.entrySet()) {
+			User user = entry.getKey();
+			Map<String, CommitQuery> queries = new LinkedHashMap<>();
+			for (String queryString: entry.getValue()) {
+				User.push(user);
+				try {
+					queries.put(queryString, CommitQuery.parse(project, queryString));
+				} catch (Exception e) {
+					String message = String.format("Error parsing commit subscription "
+							+ "(user: %s, project: %s, query: %s)", 
+							user.getName(), project.getName(), queryString);
+					logger.error(message, e);
+				} finally {
+					User.pop();
 				}
 			}
-			
+			subscribedQueries.put(user, queries);
+		}
+		
+		for (RefUpdated refUpdated: notifiableRefUpdates) {
 			Collection<String> notifyEmails = new HashSet<>();
-			for (Map.Entry<User, Collection<String>> entry: subscribedQueryStrings.entrySet()) {
+			for (Map.Entry<User, Map<String, CommitQuery>> entry: subscribedQueries.entrySet()) {
 				User user = entry.getKey();
-				for (String queryString: entry.getValue()) {
+				for (Map.Entry<String, CommitQuery> queryEntry: entry.getValue().entrySet()) {
 					User.push(user);
 					try {
-						if (CommitQuery.parse(project, queryString).matches(event)) {
+						if (queryEntry.getValue().matches(refUpdated)) {
 							notifyEmails.add(user.getEmail());
 							break;
 						}
 					} catch (Exception e) {
 						String message = String.format("Error processing commit subscription "
 								+ "(user: %s, project: %s, commit: %s, query: %s)", 
-								user.getName(), project.getName(), event.getNewCommitId().name(), queryString);
+								user.getName(), project.getName(), refUpdated.getNewCommitId().name(), 
+								queryEntry.getKey());
 						logger.error(message, e);
 					} finally {
 						User.pop();
@@ -90,13 +138,13 @@ public class CommitNotificationManager extends AbstractNotificationManager {
 				}
 			}
 			
-			RevCommit commit = project.getRevCommit(event.getNewCommitId(), false);
+			RevCommit commit = project.getRevCommit(refUpdated.getNewCommitId(), false);
 			if (commit != null) {
 				String subject = String.format("Subscribed commit at ref '%s': %s", 
-						event.getRefName(), commit.getShortMessage());
+						refUpdated.getRefName(), commit.getShortMessage());
 				String url = urlManager.urlFor(project, commit);
 				mailManager.sendMailAsync(notifyEmails, subject, 
-						getHtmlBody(event, url), getTextBody(event, url));
+						getHtmlBody(refUpdated, url), getTextBody(refUpdated, url));
 			}
 		}
 	}
@@ -0,0 +1,27 @@
+package io.onedev.server.persistence;
+
+import java.io.Serializable;
+
+import org.hibernate.type.AbstractSingleColumnStandardBasicType;
+import org.hibernate.type.descriptor.sql.BlobTypeDescriptor;
+
+/**
+ * Hibernate type for <tt>@Lob</tt> annotated serializable properties. It is registered in 
+ * place of Hibernate's <tt>SerializableToBlobType</tt>, and keeps the same column type.
+ * 
+ * @see CompactSerializableTypeDescriptor
+ */
+public class CompactSerializableType extends AbstractSingleColumnStandardBasicType<Serializable> {
+
+	private static final long serialVersionUID = 1L;
+
+	public CompactSerializableType() {
+		super(BlobTypeDescriptor.DEFAULT, CompactSerializableTypeDescriptor.INSTANCE);
+	}
+
+	@Override
+	public String getName() {
+		return "compact_serializable";
+	}
+
+}
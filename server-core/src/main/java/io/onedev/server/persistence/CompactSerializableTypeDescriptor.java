@@ -0,0 +1,219 @@
+package io.onedev.server.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.IOUtils;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.jdbc.BinaryStream;
+import org.hibernate.engine.jdbc.internal.BinaryStreamImpl;
+import org.hibernate.internal.util.SerializationHelper;
+import org.hibernate.type.descriptor.WrapperOptions;
+import org.hibernate.type.descriptor.java.AbstractTypeDescriptor;
+import org.hibernate.type.descriptor.java.DataHelper;
+import org.hibernate.type.descriptor.java.MutabilityPlan;
+import org.hibernate.type.descriptor.java.PrimitiveByteArrayTypeDescriptor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+/**
+ * Describes serializable values stored as deflated java serialization with a leading
+ * format version. Values stored as plain java serialization before are still readable,
+ * and will be written in compact format when changed.
+ * <p>
+ * Loaded values are not deep copied as snapshot for dirty checking. Instead, digest of
+ * serialized form is recorded for each loaded or stored value, and a value is considered
+ * dirty if its current serialized form has a different digest. Digest of a value loaded 
+ * from compact form is calculated from the inflated bytes, as they were produced by 
+ * serializing a value on store. In rare cases, such as a hash map stored with larger 
+ * capacity than needed, serializing the loaded value produces different bytes, and the 
+ * value is written once more at next flush. Values loaded from plain form are serialized 
+ * again to calculate the digest, as they may be written by an older version of the class, 
+ * and should not be considered dirty on every load. 
+ * <p>
+ * Values are still decoded when the entity is loaded instead of when the property is 
+ * accessed, and decoded values are not shared across sessions. 
+ */
+public class CompactSerializableTypeDescriptor extends AbstractTypeDescriptor<Serializable> {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final CompactSerializableTypeDescriptor INSTANCE = new CompactSerializableTypeDescriptor();
+
+	private static final byte FORMAT_VERSION = 1;
+
+	// leading bytes of java serialization stream
+	private static final byte[] JAVA_SERIALIZATION_MAGIC = new byte[] {(byte)0xAC, (byte)0xED};
+
+	/*
+	 * Digests of serialized form of loaded or stored values. Weak keys are compared by
+	 * identity, and entries go away with sessions holding the values
+	 */
+	private static final Cache<Object, HashCode> digests = CacheBuilder.newBuilder().weakKeys().build();
+
+	private CompactSerializableTypeDescriptor() {
+		super(Serializable.class, new CompactMutabilityPlan());
+	}
+
+	private static HashCode digest(byte[] serialized) {
+		return Hashing.murmur3_128().hashBytes(serialized);
+	}
+
+	public static byte[] encode(Serializable value) {
+		byte[] serialized = SerializationHelper.serialize(value);
+		digests.put(value, digest(serialized));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(serialized.length/4 + 16);
+		baos.write(FORMAT_VERSION);
+		try (DeflaterOutputStream os = new DeflaterOutputStream(baos, new Deflater(Deflater.BEST_SPEED))) {
+			os.write(serialized);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return baos.toByteArray();
+	}
+
+	public static Serializable decode(byte[] bytes) {
+		byte[] serialized;
+		boolean plain = false;
+		if (bytes.length >= 2 && bytes[0] == JAVA_SERIALIZATION_MAGIC[0] && bytes[1] == JAVA_SERIALIZATION_MAGIC[1]) {
+			serialized = bytes;
+			plain = true;
+		} else if (bytes.length != 0 && bytes[0] == FORMAT_VERSION) {
+			try (InputStream is = new InflaterInputStream(new ByteArrayInputStream(bytes, 1, bytes.length-1))) {
+				serialized = IOUtils.toByteArray(is);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			throw new HibernateException("Unexpected serialization format: " + (bytes.length!=0?bytes[0]:"empty"));
+		}
+		Serializable value = (Serializable) SerializationHelper.deserialize(serialized);
+		if (value != null) {
+			if (plain)
+				serialized = SerializationHelper.serialize(value);
+			digests.put(value, digest(serialized));
+		}
+		return value;
+	}
+
+	@Override
+	public boolean areEqual(@Nullable Serializable one, @Nullable Serializable another) {
+		if (one == null || another == null)
+			return one == another;
+
+		/*
+		 * Snapshot for dirty checking is normally the same instance as current value,
+		 * so we compare recorded digest of the snapshot with digest of current value
+		 */
+		HashCode oneDigest = digests.getIfPresent(one);
+		if (oneDigest == null)
+			oneDigest = digest(SerializationHelper.serialize(one));
+		return oneDigest.equals(digest(SerializationHelper.serialize(another)));
+	}
+
+	@Override
+	public int extractHashCode(Serializable value) {
+		return PrimitiveByteArrayTypeDescriptor.INSTANCE.extractHashCode(SerializationHelper.serialize(value));
+	}
+
+	@Override
+	public String toString(Serializable value) {
+		return PrimitiveByteArrayTypeDescriptor.INSTANCE.toString(encode(value));
+	}
+
+	@Override
+	public Serializable fromString(String string) {
+		return decode(PrimitiveByteArrayTypeDescriptor.INSTANCE.fromString(string));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <X> X unwrap(Serializable value, Class<X> type, WrapperOptions options) {
+		if (value == null)
+			return null;
+		else if (byte[].class.isAssignableFrom(type))
+			return (X) encode(value);
+		else if (InputStream.class.isAssignableFrom(type))
+			return (X) new ByteArrayInputStream(encode(value));
+		else if (BinaryStream.class.isAssignableFrom(type))
+			return (X) new BinaryStreamImpl(encode(value));
+		else if (Blob.class.isAssignableFrom(type))
+			return (X) options.getLobCreator().createBlob(encode(value));
+		else
+			throw unknownUnwrap(type);
+	}
+
+	@Override
+	public <X> Serializable wrap(X value, WrapperOptions options) {
+		if (value == null) {
+			return null;
+		} else if (value instanceof byte[]) {
+			return decode((byte[]) value);
+		} else if (value instanceof InputStream) {
+			return decode(DataHelper.extractBytes((InputStream) value));
+		} else if (value instanceof Blob) {
+			try {
+				return decode(DataHelper.extractBytes(((Blob) value).getBinaryStream()));
+			} catch (SQLException e) {
+				throw new HibernateException(e);
+			}
+		} else if (value instanceof Serializable) {
+			return (Serializable) value;
+		} else {
+			throw unknownWrap(value.getClass());
+		}
+	}
+
+	/*
+	 * Values are treated as immutable by Hibernate so that they are shared with snapshots 
+	 * instead of being deep copied. Changes made in place are still detected as dirty 
+	 * checking is based on recorded digests. Second level cache holds values in compact 
+	 * form, and decodes them when assembled
+	 */
+	private static class CompactMutabilityPlan implements MutabilityPlan<Serializable> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean isMutable() {
+			return false;
+		}
+
+		@Override
+		public Serializable deepCopy(Serializable value) {
+			return value;
+		}
+
+		@Override
+		public Serializable disassemble(Serializable value) {
+			if (value != null)
+				return encode(value);
+			else
+				return null;
+		}
+
+		@Override
+		public Serializable assemble(Serializable cached) {
+			if (cached != null)
+				return decode((byte[]) cached);
+			else
+				return null;
+		}
+
+	}
+
+}
@@ -15,15 +15,16 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.ManyToOne;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
 import javax.persistence.metamodel.EntityType;
 
-import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
 import org.hibernate.Interceptor;
 import org.hibernate.ReplicationMode;
@@ -41,6 +42,7 @@ import org.hibernate.engine.jdbc.env.spi.JdbcEnvironment;
 import org.hibernate.query.Query;
 import org.hibernate.tool.hbm2ddl.SchemaExport;
 import org.hibernate.tool.schema.TargetType;
+import org.hibernate.type.SerializableToBlobType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,6 +57,8 @@ import io.onedev.commons.utils.FileUtils;
 import io.onedev.server.migration.DataMigrator;
 import io.onedev.server.migration.MigrationHelper;
 import io.onedev.server.migration.VersionedXmlDoc;
+import io.onedev.server.migration.XmlRowReader;
+import io.onedev.server.migration.XmlRowWriter;
 import io.onedev.server.model.AbstractEntity;
 import io.onedev.server.model.ModelVersion;
 import io.onedev.server.persistence.annotation.Sessional;
@@ -67,6 +71,8 @@ public class DefaultPersistManager implements PersistManager {
 
 	private static final int BACKUP_BATCH_SIZE = 1000;
 	
+	private static final int EXPORT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultPersistManager.class);
 	
 	protected final PhysicalNamingStrategy physicalNamingStrategy;
@@ -131,6 +137,9 @@ public class DefaultPersistManager implements PersistManager {
 		
 		MetadataBuilder builder = metadataSources.getMetadataBuilder();
 		builder.applyPhysicalNamingStrategy(physicalNamingStrategy);
+		
+		// store @Lob annotated serializable properties in compact form
+		builder.applyBasicType(new CompactSerializableType(), SerializableToBlobType.class.getName());
 		return builder.build();
 	}
 	
@@ -387,90 +396,127 @@ public class DefaultPersistManager implements PersistManager {
 		exportData(exportDir, BACKUP_BATCH_SIZE);
 	}
 	
-	@Sessional
 	@Override
 	public void exportData(File exportDir, int batchSize) {
+		List<Class<?>> entityTypes = getEntityTypes(sessionFactory);
+		
+		// tables are exported in parallel, each with its own session
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(EXPORT_THREADS, entityTypes.size()));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Class<?> entityType: entityTypes) 
+				futures.add(executor.submit(() -> exportEntity(entityType, batchSize, exportDir)));
+			for (Future<?> future: futures)
+				future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/*
+	 * Rows are loaded in batches of ascending ids, and are written to data file one by one 
+	 * so that memory usage does not grow with table size. Each batch goes to a separate 
+	 * data file to keep files manageable by data migrator
+	 */
+	private void exportEntity(Class<?> entityType, int batchSize, File exportDir) {
+		String entityName = entityType.getSimpleName();
 		Session session = sessionFactory.openSession();
-		for (Class<?> entityType: getEntityTypes(sessionFactory)) {
-			logger.info("Exporting table '" + entityType.getSimpleName() + "'...");
-			
-			logger.info("Querying table ids...");
-			
-			CriteriaBuilder builder = sessionFactory.getCriteriaBuilder();
-			CriteriaQuery<Number> query = builder.createQuery(Number.class);
-			Root<?> root = query.from(entityType);
-			query.select(root.get("id")).orderBy(builder.asc(root.get("id")));
-			
-			List<Number> ids = session.createQuery(query).list();
+		try {
+			session.setDefaultReadOnly(true);
 			
-			int count = ids.size();
+			long total = (Long) session.createQuery("select count(*) from " + entityName).uniqueResult();
+			logger.info("Exporting table '{}' ({} rows)...", entityName, total);
 			
-			for (int i=0; i<count/batchSize; i++) {
-				exportEntity(session, entityType, ids, i*batchSize, batchSize, batchSize, exportDir);
+			long exported = 0;
+			Long lastId = null;
+			int batch = 0;
+			while (true) {
+				Query<?> query;
+				if (lastId != null) {
+					query = session.createQuery("from " + entityName + " where id>:lastId order by id");
+					query.setParameter("lastId", lastId);
+				} else {
+					query = session.createQuery("from " + entityName + " order by id");
+				}
+				query.setMaxResults(batchSize);
+				List<?> entities = query.list();
+				if (entities.isEmpty())
+					break;
+				
+				String fileName;
+				if (batch++ == 0)
+					fileName = entityName + "s.xml";
+				else
+					fileName = entityName + "s.xml." + batch;
+				
+				try (XmlRowWriter writer = new XmlRowWriter(new File(exportDir, fileName))) {
+					for (Object entity: entities)
+						writer.write(entity);
+				}
+				
+				lastId = ((AbstractEntity) entities.get(entities.size()-1)).getId();
+				exported += entities.size();
+				
 				// clear session to free memory
 				session.clear();
+				logger.info("Exported {}/{} rows of table '{}'", exported, total, entityName);
+				
+				if (entities.size() < batchSize)
+					break;
 			}
-			
-			if (count%batchSize != 0) {
-				exportEntity(session, entityType, ids, count/batchSize*batchSize, count%batchSize, batchSize, exportDir);
-			}
-			logger.info("");
+		} finally {
+			session.close();
 		}
 	}
+	
+	private File[] getDataFiles(File dataDir, Class<?> entityType) {
+		return dataDir.listFiles(new FilenameFilter() {
 
-	private void exportEntity(Session session, Class<?> entityType, List<Number> ids, int start, int count, int batchSize, File exportDir) {
-		logger.info("Loading table rows ({}->{}) from database...", String.valueOf(start+1), (start + count));
-		
-		Query<?> query = session.createQuery("from " + entityType.getSimpleName() + " where id>=:fromId and id<=:toId");
-		query.setParameter("fromId", ids.get(start));
-		query.setParameter("toId", ids.get(start+count-1));
-		
-		logger.info("Converting table rows to XML...");
-		VersionedXmlDoc dom = new VersionedXmlDoc();
-		Element rootElement = dom.addElement("list");
-		for (Object entity: query.list())
-			rootElement.appendContent(VersionedXmlDoc.fromBean(entity));
-		String fileName;
-
-		if (start == 0)
-			fileName = entityType.getSimpleName() + "s.xml";
-		else
-			fileName = entityType.getSimpleName() + "s.xml." + (start/batchSize + 1);
-		
-		logger.info("Writing resulting XML to file '" + fileName + "...");
-		dom.writeToFile(new File(exportDir, fileName), true);
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(entityType.getSimpleName() + "s.xml");
+			}
+			
+		});
 	}
 
 	/*
 	 * We do not use @Transactional annotation and will manage the session and transaction manually 
-	 * in this method to reduce memory usage if importing a large database.
+	 * in this method to reduce memory usage if importing a large database. Rows are streamed from 
+	 * data files, and inserted with JDBC batching. Foreign key constraints are applied after import. 
+	 * Rows of empty tables, which is the case when restoring into a newly created database, are 
+	 * saved directly with their original ids. Otherwise they are replicated, which selects each 
+	 * row first so that conflicting rows are reported
 	 */
 	@Sessional
 	@Override
 	public void importData(Metadata metadata, File dataDir) {
 		Session session = dao.getSession();
+		session.setJdbcBatchSize(BACKUP_BATCH_SIZE);
 		List<Class<?>> entityTypes = getEntityTypes(sessionFactory);
 		Collections.reverse(entityTypes);
 		for (Class<?> entityType: entityTypes) {
-			File[] dataFiles = dataDir.listFiles(new FilenameFilter() {
-
-				@Override
-				public boolean accept(File dir, String name) {
-					return name.startsWith(entityType.getSimpleName() + "s.xml");
-				}
-				
-			});
-			for (File file: dataFiles) {
+			AtomicLong imported = new AtomicLong(0);
+			boolean empty = isEmpty(session, entityType);
+			for (File file: getDataFiles(dataDir, entityType)) {
 				Transaction transaction = session.beginTransaction();
 				try {
 					logger.info("Importing from data file '" + file.getName() + "'...");
-					VersionedXmlDoc dom = VersionedXmlDoc.fromFile(file);
-					
-					for (Element element: dom.getRootElement().elements()) {
-						element.detach();
-						AbstractEntity entity = (AbstractEntity) new VersionedXmlDoc(DocumentHelper.createDocument(element)).toBean();
-						session.replicate(entity, ReplicationMode.EXCEPTION);
-					}
+					XmlRowReader.read(file, row -> {
+						AbstractEntity entity = (AbstractEntity) row.toBean();
+						if (empty)
+							session.save(entity);
+						else
+							session.replicate(entity, ReplicationMode.EXCEPTION);
+						if (imported.incrementAndGet() % BACKUP_BATCH_SIZE == 0) {
+							session.flush();
+							session.clear();
+						}
+					});
 					session.flush();
 					session.clear();
 					transaction.commit();
@@ -479,31 +525,32 @@ public class DefaultPersistManager implements PersistManager {
 					throw ExceptionUtils.unchecked(e);
 				}
 			}
+			if (imported.get() != 0)
+				logger.info("Imported {} rows of table '{}'", imported.get(), entityType.getSimpleName());
 		}	
 	}
 	
+	private boolean isEmpty(Session session, Class<?> entityType) {
+		Transaction transaction = session.beginTransaction();
+		try {
+			boolean empty = session.createQuery("select id from " + entityType.getSimpleName())
+					.setMaxResults(1).list().isEmpty();
+			transaction.commit();
+			return empty;
+		} catch (Exception e) {
+			transaction.rollback();
+			throw ExceptionUtils.unchecked(e);
+		}
+	}
+	
 	protected void validateData(Metadata metadata, File dataDir) {
 		List<Class<?>> entityTypes = getEntityTypes(sessionFactory);
 		Collections.reverse(entityTypes);
 		for (Class<?> entityType: entityTypes) {
-			File[] dataFiles = dataDir.listFiles(new FilenameFilter() {
-
-				@Override
-				public boolean accept(File dir, String name) {
-					return name.startsWith(entityType.getSimpleName() + "s.xml");
-				}
-				
-			});
-			for (File file: dataFiles) {
+			for (File file: getDataFiles(dataDir, entityType)) {
 				try {
 					logger.info("Validating data file '" + file.getName() + "'...");
-					VersionedXmlDoc dom = VersionedXmlDoc.fromFile(file);
-					
-					for (Element element: dom.getRootElement().elements()) {
-						element.detach();
-						AbstractEntity entity = (AbstractEntity) new VersionedXmlDoc(DocumentHelper.createDocument(element)).toBean();
-						validator.validate(entity);
-					}
+					XmlRowReader.read(file, row -> validator.validate((AbstractEntity) row.toBean()));
 				} catch (Exception e) {
 					throw ExceptionUtils.unchecked(e);
 				}
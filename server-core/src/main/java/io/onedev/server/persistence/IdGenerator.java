@@ -12,6 +12,7 @@ import org.hibernate.service.ServiceRegistry;
 import org.hibernate.type.Type;
 
 import io.onedev.commons.launcher.loader.AppLoader;
+import io.onedev.server.model.AbstractEntity;
 
 public class IdGenerator implements IdentifierGenerator, Configurable {
 
@@ -21,7 +22,13 @@ public class IdGenerator implements IdentifierGenerator, Configurable {
 
 	@Override
 	public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
-		return AppLoader.getInstance(IdManager.class).nextId(object.getClass());
+		/*
+		 * Keep id already assigned, for instance to rows imported from backup 
+		 */
+		if (object instanceof AbstractEntity && ((AbstractEntity) object).getId() != null)
+			return ((AbstractEntity) object).getId();
+		else
+			return AppLoader.getInstance(IdManager.class).nextId(object.getClass());
 	}
 
 }
\ No newline at end of file
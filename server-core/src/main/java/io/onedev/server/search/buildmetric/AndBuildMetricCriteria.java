@@ -3,11 +3,15 @@ package io.onedev.server.search.buildmetric;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import io.onedev.server.model.BuildMetricRollup;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
+
 public class AndBuildMetricCriteria extends BuildMetricCriteria {
 	
 	private static final long serialVersionUID = 1L;
@@ -26,6 +30,25 @@ public class AndBuildMetricCriteria extends BuildMetricCriteria {
 		return builder.and(predicates.toArray(new Predicate[0]));
 	}
 
+	@Nullable
+	@Override
+	public Predicate getRollupPredicate(Root<BuildMetricRollup> rollupRoot, Granularity granularity, 
+			CriteriaBuilder builder) {
+		List<Predicate> predicates = new ArrayList<>();
+		for (BuildMetricCriteria criteria: criterias) {
+			Predicate predicate = criteria.getRollupPredicate(rollupRoot, granularity, builder);
+			if (predicate == null)
+				return null;
+			predicates.add(predicate);
+		}
+		return builder.and(predicates.toArray(new Predicate[0]));
+	}
+
+	@Override
+	public boolean hasDateCriteria() {
+		return criterias.stream().anyMatch(BuildMetricCriteria::hasDateCriteria);
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return new AndBuildMetricCriteria(criterias).toStringWithoutParens();
@@ -2,12 +2,15 @@ package io.onedev.server.search.buildmetric;
 
 import java.io.Serializable;
 
+import javax.annotation.Nullable;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import io.onedev.commons.utils.StringUtils;
+import io.onedev.server.model.BuildMetricRollup;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
 
 public abstract class BuildMetricCriteria implements Serializable {
 
@@ -22,6 +25,30 @@ public abstract class BuildMetricCriteria implements Serializable {
 
 	public abstract Predicate getPredicate(Root<?> metrixRoot, Join<?, ?> buildJoin, CriteriaBuilder builder);
 	
+	/**
+	 * Get predicate of this criteria against metric rollups, which only keep job name, report 
+	 * name and period of aggregated metrics
+	 * 
+	 * @return
+	 * 			predicate against specified rollup root, or <tt>null</tt> if this criteria can 
+	 * 			not be evaluated against rollups
+	 */
+	@Nullable
+	public Predicate getRollupPredicate(Root<BuildMetricRollup> rollupRoot, Granularity granularity, 
+			CriteriaBuilder builder) {
+		return null;
+	}
+	
+	/**
+	 * @return
+	 * 			whether this criteria involves build date. Rollup predicates of date criterias 
+	 * 			include periods partially covered by the date, and can not be negated unless 
+	 * 			rollups are by day
+	 */
+	public boolean hasDateCriteria() {
+		return false;
+	}
+	
 	public static String quote(String value) {
 		return "\"" + StringUtils.escape(value, "\"") + "\"";
 	}
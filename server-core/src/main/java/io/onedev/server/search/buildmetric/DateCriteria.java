@@ -8,8 +8,13 @@ import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import org.joda.time.DateTime;
+
 import io.onedev.server.model.Build;
+import io.onedev.server.model.BuildMetricRollup;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
 import io.onedev.server.search.entity.EntityQuery;
+import io.onedev.server.util.Day;
 
 public class DateCriteria extends BuildMetricCriteria {
 
@@ -36,6 +41,27 @@ public class DateCriteria extends BuildMetricCriteria {
 			return builder.greaterThan(attribute, date);
 	}
 
+	/**
+	 * Periods partially covered by the date range are included 
+	 */
+	@Override
+	public Predicate getRollupPredicate(Root<BuildMetricRollup> rollupRoot, Granularity granularity, 
+			CriteriaBuilder builder) {
+		Path<Integer> attribute = rollupRoot.get(BuildMetricRollup.PROP_PERIOD);
+		if (operator == BuildMetricQueryLexer.Until) {
+			int lastDay = new Day(new DateTime(date).minusMillis(1)).getValue();
+			return builder.lessThanOrEqualTo(attribute, granularity.getPeriod(lastDay));
+		} else {
+			int firstDay = new Day(date).getValue();
+			return builder.greaterThanOrEqualTo(attribute, granularity.getPeriod(firstDay));
+		}
+	}
+
+	@Override
+	public boolean hasDateCriteria() {
+		return true;
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return BuildMetricQuery.getRuleName(operator) + " " + quote(value);
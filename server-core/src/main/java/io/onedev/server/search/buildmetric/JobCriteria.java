@@ -7,6 +7,8 @@ import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import io.onedev.server.model.Build;
+import io.onedev.server.model.BuildMetricRollup;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
 
 public class JobCriteria extends BuildMetricCriteria {
 
@@ -20,11 +22,20 @@ public class JobCriteria extends BuildMetricCriteria {
 
 	@Override
 	public Predicate getPredicate(Root<?> metricRoot, Join<?, ?> buildJoin, CriteriaBuilder builder) {
-		Path<String> attribute = buildJoin.get(Build.PROP_JOB);
+		return getPredicate(buildJoin.get(Build.PROP_JOB), builder);
+	}
+	
+	private Predicate getPredicate(Path<String> attribute, CriteriaBuilder builder) {
 		String normalized = jobName.toLowerCase().replace("*", "%");
 		return builder.like(builder.lower(attribute), normalized);
 	}
 
+	@Override
+	public Predicate getRollupPredicate(Root<BuildMetricRollup> rollupRoot, Granularity granularity, 
+			CriteriaBuilder builder) {
+		return getPredicate(rollupRoot.get(BuildMetricRollup.PROP_JOB), builder);
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return quote(Build.NAME_JOB) + " " 
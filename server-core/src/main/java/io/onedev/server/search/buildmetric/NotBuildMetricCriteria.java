@@ -1,10 +1,14 @@
 package io.onedev.server.search.buildmetric;
 
+import javax.annotation.Nullable;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import io.onedev.server.model.BuildMetricRollup;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
+
 public class NotBuildMetricCriteria extends BuildMetricCriteria {
 	
 	private static final long serialVersionUID = 1L;
@@ -20,6 +24,25 @@ public class NotBuildMetricCriteria extends BuildMetricCriteria {
 		return criteria.getPredicate(metricRoot, buildJoin, builder).not();
 	}
 
+	/**
+	 * Negating a date criteria excludes periods partially covered by the date, which 
+	 * can only be evaluated against raw metrics unless rollups are by day
+	 */
+	@Nullable
+	@Override
+	public Predicate getRollupPredicate(Root<BuildMetricRollup> rollupRoot, Granularity granularity, 
+			CriteriaBuilder builder) {
+		if (granularity != Granularity.DAY && criteria.hasDateCriteria())
+			return null;
+		Predicate predicate = criteria.getRollupPredicate(rollupRoot, granularity, builder);
+		return predicate != null? predicate.not(): null;
+	}
+
+	@Override
+	public boolean hasDateCriteria() {
+		return criteria.hasDateCriteria();
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return new NotBuildMetricCriteria(criteria).toStringWithoutParens();
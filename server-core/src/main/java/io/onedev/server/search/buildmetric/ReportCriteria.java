@@ -6,6 +6,8 @@ import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import io.onedev.server.model.BuildMetricRollup;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
 import io.onedev.server.model.support.BuildMetric;
 
 public class ReportCriteria extends BuildMetricCriteria {
@@ -20,11 +22,20 @@ public class ReportCriteria extends BuildMetricCriteria {
 
 	@Override
 	public Predicate getPredicate(Root<?> metricRoot, Join<?, ?> buildJoin, CriteriaBuilder builder) {
-		Path<String> attribute = metricRoot.get(BuildMetric.PROP_REPORT);
+		return getPredicate(metricRoot.get(BuildMetric.PROP_REPORT), builder);
+	}
+	
+	private Predicate getPredicate(Path<String> attribute, CriteriaBuilder builder) {
 		String normalized = value.toLowerCase().replace("*", "%");
 		return builder.like(builder.lower(attribute), normalized);
 	}
 
+	@Override
+	public Predicate getRollupPredicate(Root<BuildMetricRollup> rollupRoot, Granularity granularity, 
+			CriteriaBuilder builder) {
+		return getPredicate(rollupRoot.get(BuildMetricRollup.PROP_REPORT), builder);
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return quote(BuildMetric.PROP_REPORT) + " " 
@@ -6,6 +6,7 @@ import static io.onedev.server.search.code.FieldConstants.BLOB_NAME;
 import static io.onedev.server.search.code.FieldConstants.BLOB_PATH;
 import static io.onedev.server.search.code.FieldConstants.BLOB_PRIMARY_SYMBOLS;
 import static io.onedev.server.search.code.FieldConstants.BLOB_SECONDARY_SYMBOLS;
+import static io.onedev.server.search.code.FieldConstants.BLOB_SYMBOL_DEFINITIONS;
 import static io.onedev.server.search.code.FieldConstants.BLOB_SYMBOL_LIST;
 import static io.onedev.server.search.code.FieldConstants.BLOB_TEXT;
 import static io.onedev.server.search.code.FieldConstants.COMMIT_HASH;
@@ -19,17 +20,17 @@ import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
@@ -65,6 +66,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
 import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.commons.jsymbol.SymbolExtractor;
@@ -76,6 +78,7 @@ import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
@@ -96,7 +99,7 @@ public class DefaultIndexManager implements IndexManager {
 	
 	private static final int BACKEND_INDEXING_PRIORITY = 50;
 	
-	private static final int DATA_VERSION = 5;
+	private static final int DATA_VERSION = 7;
 	
 	private final StorageManager storageManager;
 	
@@ -280,9 +283,12 @@ public class DefaultIndexManager implements IndexManager {
 								else
 									fieldName = BLOB_SECONDARY_SYMBOLS.name();
 								document.add(new StringField(fieldName, fieldValue, Store.NO));
+								
+								if (symbol.isPrimary() && !symbol.isLocalInHierarchy())
+									document.add(new StringField(BLOB_SYMBOL_DEFINITIONS.name(), symbol.getName(), Store.NO));
 							}
 						}
-						byte[] bytesOfSymbols = SerializationUtils.serialize((Serializable) symbols);
+						byte[] bytesOfSymbols = EncodedSymbols.encode(symbols);
 						document.add(new StoredField(BLOB_SYMBOL_LIST.name(), bytesOfSymbols));
 					}
 				} 
@@ -391,11 +397,29 @@ public class DefaultIndexManager implements IndexManager {
 	@Sessional
 	@Listen
 	public void on(RefUpdated event) {
+		if (!event.isBatched())
+			index(event.getProject(), Lists.newArrayList(event));
+	}
+	
+	@Sessional
+	@Listen
+	public void on(RefsUpdated event) {
+		index(event.getProject(), event.getRefUpdates());
+	}
+	
+	private void index(Project project, List<RefUpdated> refUpdates) {
 		// only index branches at back end, tags will be indexed on demand from GUI 
 		// as many tags might be pushed all at once when the repository is imported 
-		if (event.getRefName().startsWith(Constants.R_HEADS) && !event.getNewCommitId().equals(ObjectId.zeroId())) {
-			IndexWork work = new IndexWork(BACKEND_INDEXING_PRIORITY, event.getNewCommitId());
-			batchWorkManager.submit(getBatchWorker(event.getProject().getId()), work);
+		Set<ObjectId> commitIds = new LinkedHashSet<>();
+		for (RefUpdated refUpdated: refUpdates) {
+			if (refUpdated.getRefName().startsWith(Constants.R_HEADS) 
+					&& !refUpdated.getNewCommitId().equals(ObjectId.zeroId())) {
+				commitIds.add(refUpdated.getNewCommitId());
+			}
+		}
+		for (ObjectId commitId: commitIds) {
+			IndexWork work = new IndexWork(BACKEND_INDEXING_PRIORITY, commitId);
+			batchWorkManager.submit(getBatchWorker(project.getId()), work);
 		}
 	}
 	
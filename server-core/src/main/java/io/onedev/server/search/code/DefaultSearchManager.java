@@ -19,7 +19,6 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
@@ -157,13 +156,31 @@ public class DefaultSearchManager implements SearchManager {
 
 	@Override
 	public List<Symbol> getSymbols(Project project, ObjectId blobId, String blobPath) {
+		EncodedSymbols encodedSymbols = getEncodedSymbols(project, blobId, blobPath);
+		if (encodedSymbols != null)
+			return encodedSymbols.getSymbols();
+		else
+			return null;
+	}
+	
+	@Override
+	public List<Symbol> getSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath) {
+		EncodedSymbols encodedSymbols = getEncodedSymbols(searcher, blobId, blobPath);
+		if (encodedSymbols != null)
+			return encodedSymbols.getSymbols();
+		else
+			return null;
+	}
+	
+	@Override
+	public EncodedSymbols getEncodedSymbols(Project project, ObjectId blobId, String blobPath) {
 		try {
 			SearcherManager searcherManager = getSearcherManager(project.getForkRoot());
 			if (searcherManager != null) {
 				try {
 					IndexSearcher searcher = searcherManager.acquire();
 					try {
-						return getSymbols(searcher, blobId, blobPath);
+						return getEncodedSymbols(searcher, blobId, blobPath);
 					} finally {
 						searcherManager.release(searcher);
 					}
@@ -179,7 +196,7 @@ public class DefaultSearchManager implements SearchManager {
 	}
 	
 	@Override
-	public List<Symbol> getSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath) {
+	public EncodedSymbols getEncodedSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath) {
 		BooleanQuery.Builder builder = new BooleanQuery.Builder();
 		builder.add(BLOB_HASH.query(blobId.name()), Occur.MUST);
 		builder.add(BLOB_PATH.query(blobPath), Occur.MUST);
@@ -187,14 +204,13 @@ public class DefaultSearchManager implements SearchManager {
 		BooleanQuery query = builder.build();
 		
 		String indexVersion = indexManager.getIndexVersion(SymbolExtractorRegistry.getExtractor(blobPath));
-		AtomicReference<List<Symbol>> symbolsRef = new AtomicReference<>(null);
+		AtomicReference<EncodedSymbols> symbolsRef = new AtomicReference<>(null);
 		if (searcher != null) {
 			try {
 				searcher.search(query, new SimpleCollector() {
 
 					private LeafReaderContext context;
 
-					@SuppressWarnings("unchecked")
 					@Override
 					public void collect(int doc) throws IOException {
 						Document document = searcher.doc(context.docBase+doc);
@@ -202,9 +218,9 @@ public class DefaultSearchManager implements SearchManager {
 							BytesRef bytesRef = document.getBinaryValue(BLOB_SYMBOL_LIST.name());
 							if (bytesRef != null) {
 								try {
-									symbolsRef.set((List<Symbol>) SerializationUtils.deserialize(bytesRef.bytes));
+									symbolsRef.set(EncodedSymbols.decode(bytesRef.bytes, bytesRef.offset, bytesRef.length));
 								} catch (Exception e) {
-									logger.error("Error deserializing symbols", e);
+									logger.error("Error decoding symbols", e);
 								}
 							}
 						}
@@ -0,0 +1,415 @@
+package io.onedev.server.search.code;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang.SerializationUtils;
+
+import com.google.common.base.Preconditions;
+
+import io.onedev.commons.jsymbol.Symbol;
+import io.onedev.commons.utils.PlanarRange;
+
+/**
+ * Compact representation of symbols of a blob stored in code index.
+ *
+ * Layout of encoded bytes:
+ * <ul>
+ * <li>magic number and format version
+ * <li>symbol table: name, flags, group, outline parent and scope of each symbol, in original order
+ * <li>group table: offset and length of each group
+ * <li>groups: deflated serialization of symbols, with symbols sharing the same top level 
+ * ancestor always put into the same group
+ * </ul>
+ *
+ * Symbol table can be read without touching any group, so that symbol queries can
+ * check names cheaply, and outline can be structured and searched, with only groups 
+ * containing matched or displayed symbols being decoded.
+ *
+ * Bytes not starting with the magic number are treated as plain serialized symbol
+ * list written by earlier versions.
+ */
+public class EncodedSymbols implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAGIC = 0x4F53594D;
+
+	private static final int VERSION = 2;
+
+	private static final int GROUP_SIZE = 64;
+	
+	private static final int FLAG_PRIMARY = 1;
+
+	private static final int FLAG_SEARCHABLE = 2;
+
+	private static final int FLAG_LOCAL_IN_HIERARCHY = 4;
+
+	private static final int FLAG_DISPLAY_IN_OUTLINE = 8;
+
+	private final byte[] bytes;
+
+	private final List<Entry> entries;
+
+	private final int[] groupOffsets;
+
+	private final int[] groupLengths;
+
+	private transient List<List<Symbol>> decodedGroups;
+
+	private List<Symbol> legacySymbols;
+
+	private EncodedSymbols(byte[] bytes, List<Entry> entries, int[] groupOffsets, int[] groupLengths) {
+		this.bytes = bytes;
+		this.entries = entries;
+		this.groupOffsets = groupOffsets;
+		this.groupLengths = groupLengths;
+	}
+
+	private EncodedSymbols(List<Symbol> legacySymbols) {
+		this(null, new ArrayList<>(), new int[0], new int[0]);
+		this.legacySymbols = legacySymbols;
+		Map<Symbol, Integer> indexes = getIndexes(legacySymbols);
+		for (int i=0; i<legacySymbols.size(); i++) {
+			Symbol symbol = legacySymbols.get(i);
+			entries.add(new Entry(i, symbol.getName(), getFlags(symbol), -1, -1, 
+					getOutlineParentIndex(symbol, indexes), symbol.getScope()));
+		}
+	}
+
+	/**
+	 * Wrap symbols extracted on the fly, so that they can be accessed the same way as 
+	 * symbols read from index
+	 */
+	public static EncodedSymbols of(List<Symbol> symbols) {
+		return new EncodedSymbols(symbols);
+	}
+	
+	private static Map<Symbol, Integer> getIndexes(List<Symbol> symbols) {
+		Map<Symbol, Integer> indexes = new IdentityHashMap<>();
+		for (int i=0; i<symbols.size(); i++)
+			indexes.put(symbols.get(i), i);
+		return indexes;
+	}
+	
+	private static int getOutlineParentIndex(Symbol symbol, Map<Symbol, Integer> indexes) {
+		Integer index = symbol.getOutlineParent()!=null? indexes.get(symbol.getOutlineParent()): null;
+		return index!=null? index: -1;
+	}
+	
+	private static int getFlags(Symbol symbol) {
+		int flags = 0;
+		if (symbol.isPrimary())
+			flags |= FLAG_PRIMARY;
+		if (symbol.isSearchable())
+			flags |= FLAG_SEARCHABLE;
+		if (symbol.isLocalInHierarchy())
+			flags |= FLAG_LOCAL_IN_HIERARCHY;
+		if (symbol.isDisplayInOutline())
+			flags |= FLAG_DISPLAY_IN_OUTLINE;
+		return flags;
+	}
+
+	public static byte[] encode(List<Symbol> symbols) {
+		Map<Symbol, List<Symbol>> trees = new LinkedHashMap<>();
+		for (Symbol symbol: symbols) {
+			Symbol root = symbol;
+			while (root.getParent() != null)
+				root = root.getParent();
+			List<Symbol> tree = trees.get(root);
+			if (tree == null) {
+				tree = new ArrayList<>();
+				trees.put(root, tree);
+			}
+			tree.add(symbol);
+		}
+		
+		/*
+		 * Pack symbol trees into groups of reasonable size, as each group carries 
+		 * its own serialization overhead 
+		 */
+		List<List<Symbol>> groups = new ArrayList<>();
+		Map<Symbol, Integer> groupIndexes = new IdentityHashMap<>();
+		Map<Symbol, Integer> indexesInGroup = new IdentityHashMap<>();
+		List<Symbol> currentGroup = new ArrayList<>();
+		for (List<Symbol> tree: trees.values()) {
+			for (Symbol symbol: tree) {
+				groupIndexes.put(symbol, groups.size());
+				indexesInGroup.put(symbol, currentGroup.size());
+				currentGroup.add(symbol);
+			}
+			if (currentGroup.size() >= GROUP_SIZE) {
+				groups.add(currentGroup);
+				currentGroup = new ArrayList<>();
+			}
+		}
+		if (!currentGroup.isEmpty())
+			groups.add(currentGroup);
+
+		try {
+			List<byte[]> groupBytes = new ArrayList<>();
+			for (List<Symbol> group: groups) {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+				try (ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(baos, deflater))) {
+					oos.writeObject(group);
+				} finally {
+					deflater.end();
+				}
+				groupBytes.add(baos.toByteArray());
+			}
+
+			Map<Symbol, Integer> indexes = getIndexes(symbols);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try (DataOutputStream dos = new DataOutputStream(baos)) {
+				dos.writeInt(MAGIC);
+				dos.writeByte(VERSION);
+				dos.writeInt(symbols.size());
+				for (Symbol symbol: symbols) {
+					String name = symbol.getName();
+					dos.writeBoolean(name != null);
+					if (name != null)
+						dos.writeUTF(name);
+					dos.writeByte(getFlags(symbol));
+					dos.writeInt(groupIndexes.get(symbol));
+					dos.writeInt(indexesInGroup.get(symbol));
+					dos.writeInt(getOutlineParentIndex(symbol, indexes));
+					PlanarRange scope = symbol.getScope();
+					dos.writeBoolean(scope != null);
+					if (scope != null) {
+						dos.writeInt(scope.getFromRow());
+						dos.writeInt(scope.getFromColumn());
+						dos.writeInt(scope.getToRow());
+						dos.writeInt(scope.getToColumn());
+					}
+				}
+				dos.writeInt(groupBytes.size());
+				for (byte[] each: groupBytes)
+					dos.writeInt(each.length);
+				for (byte[] each: groupBytes)
+					dos.write(each);
+			}
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read symbol table of specified bytes. Groups are decoded lazily when symbols
+	 * are requested.
+	 */
+	@SuppressWarnings("unchecked")
+	public static EncodedSymbols decode(byte[] bytes, int offset, int length) {
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+			if (length < 4 || dis.readInt() != MAGIC) {
+				Object deserialized = SerializationUtils.deserialize(
+						new ByteArrayInputStream(bytes, offset, length));
+				return new EncodedSymbols((List<Symbol>) deserialized);
+			}
+			int version = dis.readByte();
+			Preconditions.checkState(version <= VERSION, "Unsupported symbol encoding version: " + version);
+
+			int count = dis.readInt();
+			List<Entry> entries = new ArrayList<>(count);
+			for (int i=0; i<count; i++) {
+				String name = dis.readBoolean()? dis.readUTF(): null;
+				int flags = dis.readByte();
+				int groupIndex = dis.readInt();
+				int indexInGroup = dis.readInt();
+				int outlineParentIndex = -1;
+				PlanarRange scope = null;
+				if (version >= 2) {
+					outlineParentIndex = dis.readInt();
+					if (dis.readBoolean())
+						scope = new PlanarRange(dis.readInt(), dis.readInt(), dis.readInt(), dis.readInt());
+				}
+				entries.add(new Entry(i, name, flags, groupIndex, indexInGroup, outlineParentIndex, scope));
+			}
+			int groupCount = dis.readInt();
+			int[] groupLengths = new int[groupCount];
+			for (int i=0; i<groupCount; i++)
+				groupLengths[i] = dis.readInt();
+			int[] groupOffsets = new int[groupCount];
+			int groupOffset = offset + length - dis.available();
+			for (int i=0; i<groupCount; i++) {
+				groupOffsets[i] = groupOffset;
+				groupOffset += groupLengths[i];
+			}
+			EncodedSymbols symbols = new EncodedSymbols(bytes, entries, groupOffsets, groupLengths);
+			
+			// Version 1 does not record outline info, decode all symbols to get it 
+			if (version < 2)
+				symbols = new EncodedSymbols(symbols.getSymbols());
+			return symbols;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static EncodedSymbols decode(byte[] bytes) {
+		return decode(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * @return
+	 * 			symbol table entries in original symbol order. Accessing entries does
+	 * 			not decode any symbol
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	public Symbol getSymbol(Entry entry) {
+		if (legacySymbols != null)
+			return legacySymbols.get(entry.getIndex());
+		else
+			return getGroup(entry.groupIndex).get(entry.indexInGroup);
+	}
+
+	public Symbol getSymbol(int index) {
+		return getSymbol(entries.get(index));
+	}
+	
+	public boolean hasOutline() {
+		for (Entry entry: entries) {
+			if (entry.isDisplayInOutline())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Decode all symbols. Symbols are returned in original order, and parent
+	 * references are preserved.
+	 */
+	public List<Symbol> getSymbols() {
+		if (legacySymbols != null) {
+			return legacySymbols;
+		} else {
+			List<Symbol> symbols = new ArrayList<>(entries.size());
+			for (Entry entry: entries)
+				symbols.add(getSymbol(entry));
+			return symbols;
+		}
+	}
+
+	int getDecodedGroupCount() {
+		int count = 0;
+		if (decodedGroups != null) {
+			for (List<Symbol> group: decodedGroups) {
+				if (group != null)
+					count++;
+			}
+		}
+		return count;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<Symbol> getGroup(int groupIndex) {
+		if (decodedGroups == null) {
+			decodedGroups = new ArrayList<>(groupOffsets.length);
+			for (int i=0; i<groupOffsets.length; i++)
+				decodedGroups.add(null);
+		}
+		List<Symbol> group = decodedGroups.get(groupIndex);
+		if (group == null) {
+			InputStream is = new ByteArrayInputStream(bytes, groupOffsets[groupIndex], groupLengths[groupIndex]);
+			try (ObjectInputStream ois = new ObjectInputStream(new InflaterInputStream(is))) {
+				group = (List<Symbol>) ois.readObject();
+			} catch (IOException | ClassNotFoundException e) {
+				throw new RuntimeException(e);
+			}
+			decodedGroups.set(groupIndex, group);
+		}
+		return group;
+	}
+
+	public static class Entry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+
+		private final String name;
+
+		private final int flags;
+
+		private final int groupIndex;
+
+		private final int indexInGroup;
+
+		private final int outlineParentIndex;
+
+		private final PlanarRange scope;
+
+		Entry(int index, @Nullable String name, int flags, int groupIndex, int indexInGroup, 
+				int outlineParentIndex, @Nullable PlanarRange scope) {
+			this.index = index;
+			this.name = name;
+			this.flags = flags;
+			this.groupIndex = groupIndex;
+			this.indexInGroup = indexInGroup;
+			this.outlineParentIndex = outlineParentIndex;
+			this.scope = scope;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		@Nullable
+		public String getName() {
+			return name;
+		}
+
+		public boolean isPrimary() {
+			return (flags & FLAG_PRIMARY) != 0;
+		}
+
+		public boolean isSearchable() {
+			return (flags & FLAG_SEARCHABLE) != 0;
+		}
+
+		public boolean isLocalInHierarchy() {
+			return (flags & FLAG_LOCAL_IN_HIERARCHY) != 0;
+		}
+
+		public boolean isDisplayInOutline() {
+			return (flags & FLAG_DISPLAY_IN_OUTLINE) != 0;
+		}
+
+		/**
+		 * @return
+		 * 			index of outline parent of this entry, or <tt>-1</tt> if this entry 
+		 * 			is an outline root
+		 */
+		public int getOutlineParentIndex() {
+			return outlineParentIndex;
+		}
+
+		@Nullable
+		public PlanarRange getScope() {
+			return scope;
+		}
+
+	}
+
+}
@@ -33,4 +33,16 @@ public interface SearchManager {
 	@Nullable
 	List<Symbol> getSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath);
 	
+	/**
+	 * Get symbols of specified blob without decoding them. Symbol names and flags 
+	 * can be checked via the returned object, and only matched symbols need to be 
+	 * decoded.
+	 */
+	@Nullable
+	EncodedSymbols getEncodedSymbols(Project project, ObjectId blobId, String blobPath);
+	
+	@Nullable
+	EncodedSymbols getEncodedSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath);
+	
+	
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package io.onedev.server.search.code.query;
 import static io.onedev.server.search.code.FieldConstants.BLOB_NAME;
 import static io.onedev.server.search.code.FieldConstants.BLOB_PRIMARY_SYMBOLS;
 import static io.onedev.server.search.code.FieldConstants.BLOB_SECONDARY_SYMBOLS;
+import static io.onedev.server.search.code.FieldConstants.BLOB_SYMBOL_DEFINITIONS;
 
 import java.util.List;
 
@@ -12,13 +13,14 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.WildcardQuery;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.treewalk.TreeWalk;
 
-import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.commons.utils.LinearRange;
 import io.onedev.server.OneDev;
+import io.onedev.server.search.code.EncodedSymbols;
 import io.onedev.server.search.code.SearchManager;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.hit.SymbolHit;
@@ -62,14 +64,14 @@ public class SymbolQuery extends BlobQuery {
 		String blobPath = treeWalk.getPathString();
 		ObjectId blobId = treeWalk.getObjectId(0);
 		
-		List<Symbol> symbols = OneDev.getInstance(SearchManager.class).getSymbols(searcher, blobId, blobPath);
+		EncodedSymbols symbols = OneDev.getInstance(SearchManager.class).getEncodedSymbols(searcher, blobId, blobPath);
 		if (symbols != null) {
-			for (Symbol symbol: symbols) {
+			for (EncodedSymbols.Entry entry: symbols.getEntries()) {
 				if (hits.size() < getCount()) {
-					if ((primary==null || primary.booleanValue() == symbol.isPrimary()) 
-							&& symbol.getName() != null 
-							&& symbol.isSearchable()
-							&& (local == null || local.booleanValue() == symbol.isLocalInHierarchy())) {
+					if ((primary==null || primary.booleanValue() == entry.isPrimary()) 
+							&& entry.getName() != null 
+							&& entry.isSearchable()
+							&& (local == null || local.booleanValue() == entry.isLocalInHierarchy())) {
 						String normalizedTerm;
 						if (!caseSensitive)
 							normalizedTerm = term.toLowerCase();
@@ -78,9 +80,9 @@ public class SymbolQuery extends BlobQuery {
 						
 						String normalizedSymbolName;
 						if (!caseSensitive)
-							normalizedSymbolName = symbol.getName().toLowerCase();
+							normalizedSymbolName = entry.getName().toLowerCase();
 						else
-							normalizedSymbolName = symbol.getName();
+							normalizedSymbolName = entry.getName();
 						
 						String normalizedExcludeTerm;
 						if (excludeTerm != null) {
@@ -95,7 +97,7 @@ public class SymbolQuery extends BlobQuery {
 								&& (normalizedExcludeTerm == null || !normalizedSymbolName.equals(normalizedExcludeTerm))
 								&& (excludeBlobPath == null || !excludeBlobPath.equals(blobPath))) {
 							LinearRange match = WildcardUtils.rangeOfMatch(normalizedTerm, normalizedSymbolName);
-							hits.add(new SymbolHit(blobPath, symbol, match));
+							hits.add(new SymbolHit(blobPath, symbols.getSymbol(entry), match));
 						}
 					}
 				} else {
@@ -126,17 +128,31 @@ public class SymbolQuery extends BlobQuery {
 		if (tooGeneral)
 			throw new TooGeneralQueryException();
 
-		if (primary != null) {
+		if (isDefinitionLookup()) {
+			// exact lookup of non-local primary symbols, for instance when going to definition 
+			builder.add(new TermQuery(new Term(BLOB_SYMBOL_DEFINITIONS.name(), term)), Occur.MUST);
+		} else if (primary != null) {
 			String fieldName;
 			if (primary)
 				fieldName = BLOB_PRIMARY_SYMBOLS.name();
 			else
 				fieldName = BLOB_SECONDARY_SYMBOLS.name();
 			
-			builder.add(new WildcardQuery(new Term(fieldName, term.toLowerCase())), Occur.MUST);
+			if (hasWildcard(term))
+				builder.add(new WildcardQuery(new Term(fieldName, term.toLowerCase())), Occur.MUST);
+			else
+				builder.add(new TermQuery(new Term(fieldName, term.toLowerCase())), Occur.MUST);
 		}
 	}
 	
+	private boolean isDefinitionLookup() {
+		return caseSensitive && primary != null && primary && local != null && !local && !hasWildcard(term);
+	}
+	
+	private static boolean hasWildcard(String term) {
+		return term.indexOf('*') != -1 || term.indexOf('?') != -1;
+	}
+	
 	public static class Builder {
 
 		private String term;
@@ -29,10 +29,14 @@ import io.onedev.server.util.ExceptionUtils;
 public class BasicAuthenticationFilter extends PathMatchingFilter {
 	
 	private final UserManager userManager;
+	
+	private final VerifiedCredentialManager verifiedCredentialManager;
 
 	@Inject
-	public BasicAuthenticationFilter(UserManager userManager) {
+	public BasicAuthenticationFilter(UserManager userManager, 
+			VerifiedCredentialManager verifiedCredentialManager) {
 		this.userManager = userManager;
+		this.verifiedCredentialManager = verifiedCredentialManager;
 	}
 	
     @Override
@@ -47,13 +51,21 @@ public class BasicAuthenticationFilter extends PathMatchingFilter {
                 String userName = StringUtils.substringBefore(decoded, ":").trim();
                 String password = StringUtils.substringAfter(decoded, ":").trim();
                 if (userName.length() != 0 && password.length() != 0) {
-                	User user = userManager.findByAccessToken(password);
-                	AuthenticationToken token;
-                	if (user != null)
-                		token = new BearerAuthenticationToken(user);
-                	else
-                		token = new UsernamePasswordToken(userName, password);
-                    subject.login(token);
+                	Long userId = verifiedCredentialManager.getUserId(userName, password);
+                	User user = userId!=null? userManager.get(userId): null;
+                	if (user != null) {
+                		subject.login(new BearerAuthenticationToken(user));
+                	} else {
+	                	long generation = verifiedCredentialManager.getGeneration();
+	                	user = userManager.findByAccessToken(password);
+	                	AuthenticationToken token;
+	                	if (user != null)
+	                		token = new BearerAuthenticationToken(user);
+	                	else
+	                		token = new UsernamePasswordToken(userName, password);
+	                    subject.login(token);
+	                    verifiedCredentialManager.cache(userName, password, (Long) subject.getPrincipal(), generation);
+                	}
                 }
 	        } 
 		} 
@@ -0,0 +1,139 @@
+package io.onedev.server.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.User;
+import io.onedev.server.persistence.TransactionManager;
+
+@Singleton
+public class DefaultVerifiedCredentialManager implements VerifiedCredentialManager {
+
+	private static final int MAX_CREDENTIALS = 10000;
+	
+	private static final int EXPIRE_SECONDS = 300;
+	
+	private final TransactionManager transactionManager;
+	
+	/*
+	 * Credentials are hashed with a key generated at startup, so that cached entries 
+	 * can not be used to brute force secrets offline 
+	 */
+	private final HashFunction credentialHash;
+	
+	private final Cache<HashCode, Long> userIds = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CREDENTIALS)
+			.expireAfterWrite(EXPIRE_SECONDS, TimeUnit.SECONDS)
+			.recordStats()
+			.build();
+	
+	private final AtomicLong generation = new AtomicLong(0);
+	
+	/*
+	 * Generation at which each user is last invalidated. A credential verified before that 
+	 * should not be cached, as the user may be changed after verification
+	 */
+	private final Map<Long, Long> invalidatedGenerations = new ConcurrentHashMap<>();
+	
+	@Inject
+	public DefaultVerifiedCredentialManager(TransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+		
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		credentialHash = Hashing.hmacSha256(key);
+	}
+	
+	private HashCode hash(String userName, String secret) {
+		return credentialHash.newHasher()
+				.putString(userName.toLowerCase(), StandardCharsets.UTF_8)
+				.putByte((byte) 0)
+				.putString(secret, StandardCharsets.UTF_8)
+				.hash();
+	}
+	
+	@Override
+	public Long getUserId(String userName, String secret) {
+		return userIds.getIfPresent(hash(userName, secret));
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	@Override
+	public void cache(String userName, String secret, Long userId, long generation) {
+		HashCode key = hash(userName, secret);
+		userIds.put(key, userId);
+		
+		/*
+		 * Check after put, so that either this check sees a concurrent invalidation, or 
+		 * the invalidation sees the cached entry 
+		 */
+		Long invalidatedGeneration = invalidatedGenerations.get(userId);
+		if (invalidatedGeneration != null && invalidatedGeneration > generation)
+			userIds.asMap().remove(key, userId);
+	}
+
+	@Override
+	public void invalidate(Long userId) {
+		invalidatedGenerations.put(userId, generation.incrementAndGet());
+		userIds.asMap().values().removeIf(it -> it.equals(userId));
+	}
+
+	@Listen
+	public void on(EntityPersisted event) {
+		if (event.getEntity() instanceof User) 
+			invalidateNowAndAfterCommit(event.getEntity().getId());
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof User) 
+			invalidateNowAndAfterCommit(event.getEntity().getId());
+	}
+	
+	/*
+	 * Invalidate again after commit in case the old credential is verified and cached 
+	 * by another request before the change is committed 
+	 */
+	private void invalidateNowAndAfterCommit(Long userId) {
+		invalidate(userId);
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				invalidate(userId);
+			}
+			
+		});
+	}
+	
+	@Override
+	public long getHitCount() {
+		return userIds.stats().hitCount();
+	}
+
+	@Override
+	public long getMissCount() {
+		return userIds.stats().missCount();
+	}
+
+}
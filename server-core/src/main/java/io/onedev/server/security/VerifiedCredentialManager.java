@@ -0,0 +1,48 @@
+package io.onedev.server.security;
+
+import javax.annotation.Nullable;
+
+/**
+ * Short-lived cache of credentials successfully verified via http basic authentication, 
+ * so that expensive password hashing and user lookup are only performed on cache miss. 
+ * Credentials are never stored in plain text, only keyed hashes of them are kept. 
+ * Cached credentials of a user are dropped as soon as the user is changed or deleted.
+ */
+public interface VerifiedCredentialManager {
+
+	/**
+	 * Get id of user owning specified credential if it has been verified recently
+	 * 
+	 * @param userName
+	 * 			user name submitted along with the secret
+	 * @param secret
+	 * 			password or access token
+	 * @return
+	 * 			id of user owning the credential, or <tt>null</tt> if credential is not 
+	 * 			verified recently
+	 */
+	@Nullable
+	Long getUserId(String userName, String secret);
+	
+	/**
+	 * Get current generation of cached credentials. This should be called before verifying 
+	 * a credential, and passed to {@link #cache(String, String, Long, long)} afterwards
+	 */
+	long getGeneration();
+	
+	/**
+	 * Cache a verified credential
+	 * 
+	 * @param generation
+	 * 			generation got before verifying the credential. The credential will not be 
+	 * 			cached if owning user is invalidated since then
+	 */
+	void cache(String userName, String secret, Long userId, long generation);
+	
+	void invalidate(Long userId);
+	
+	long getHitCount();
+	
+	long getMissCount();
+	
+}
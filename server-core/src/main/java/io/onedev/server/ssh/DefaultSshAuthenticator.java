@@ -11,7 +11,6 @@ import org.apache.sshd.server.auth.AsyncAuthException;
 import org.apache.sshd.server.session.ServerSession;
 
 import io.onedev.server.entitymanager.SshKeyManager;
-import io.onedev.server.model.SshKey;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.security.CipherUtils;
 
@@ -31,9 +30,9 @@ public class DefaultSshAuthenticator implements SshAuthenticator {
 	@Override
 	public boolean authenticate(String username, PublicKey key, ServerSession session) throws AsyncAuthException {
         String digest = KeyUtils.getFingerPrint(CipherUtils.DIGEST_FORMAT, key);  
-        SshKey sshKey = sshKeyManager.findByDigest(digest);
-        if (sshKey != null) {
-            session.setAttribute(ATTR_PUBLIC_KEY_OWNER_ID, sshKey.getOwner().getId());
+        Long ownerId = sshKeyManager.findOwnerIdByDigest(digest);
+        if (ownerId != null) {
+            session.setAttribute(ATTR_PUBLIC_KEY_OWNER_ID, ownerId);
             return true;
         } else {
         	return false;
@@ -0,0 +1,57 @@
+package io.onedev.server.storage;
+
+import java.io.File;
+
+import io.onedev.server.util.patternset.PatternSet;
+
+public interface ArtifactStorageManager {
+
+	/**
+	 * Publish files matching specified pattern set from specified directory into specified
+	 * artifacts directory. Content of published files is stored in a shared blob pool, and
+	 * artifact files are hard links to blobs, so that identical files published by
+	 * different builds take disk space only once
+	 *
+	 * @param fromDir
+	 * 			directory to publish files from
+	 * @param patternSet
+	 * 			pattern set to match files relative to <tt>fromDir</tt>
+	 * @param artifactsDir
+	 * 			artifacts directory to publish files into
+	 */
+	void publish(File fromDir, PatternSet patternSet, File artifactsDir);
+
+	/**
+	 * Retrieve files matching specified pattern set from specified artifacts directory.
+	 * Retrieved files are hard links to published artifacts when possible, and should be
+	 * replaced instead of being overwritten in place
+	 *
+	 * @param artifactsDir
+	 * 			artifacts directory to retrieve files from
+	 * @param patternSet
+	 * 			pattern set to match files relative to <tt>artifactsDir</tt>
+	 * @param toDir
+	 * 			directory to retrieve files into
+	 */
+	void retrieve(File artifactsDir, PatternSet patternSet, File toDir);
+
+	/**
+	 * @return
+	 * 			total bytes of published files since server start
+	 */
+	long getPublishedBytes();
+
+	/**
+	 * @return
+	 * 			bytes of published files since server start whose content already
+	 * 			exists in blob pool
+	 */
+	long getDeduplicatedBytes();
+
+	/**
+	 * @return
+	 * 			milliseconds spent on publishing files since server start
+	 */
+	long getPublishMillis();
+
+}
@@ -0,0 +1,251 @@
+package io.onedev.server.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.ScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.bootstrap.Bootstrap;
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.util.patternset.PatternSet;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+/**
+ * Blobs are stored in pool by sha256 of their content, and artifact files are hard links
+ * to blobs. Link count of a blob file serves as its reference count: it goes down as builds
+ * referencing the blob are deleted, and blob only linked by the pool itself is removed by
+ * a scheduled cleanup. On file systems without hard link support, artifacts are copied
+ * as is.
+ */
+@Singleton
+public class DefaultArtifactStorageManager implements ArtifactStorageManager, SchedulableTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultArtifactStorageManager.class);
+
+	private static final String TEMP_PREFIX = "temp-";
+
+	private final TaskScheduler taskScheduler;
+
+	private final boolean linkSupported = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+	private final AtomicLong publishedBytes = new AtomicLong(0);
+
+	private final AtomicLong deduplicatedBytes = new AtomicLong(0);
+
+	private final AtomicLong publishMillis = new AtomicLong(0);
+
+	private final File blobsDir;
+
+	private String taskId;
+
+	@Inject
+	public DefaultArtifactStorageManager(TaskScheduler taskScheduler) {
+		this(taskScheduler, null);
+	}
+
+	/**
+	 * @param blobsDir
+	 * 			directory of blob pool, or <tt>null</tt> to use directory under site
+	 */
+	DefaultArtifactStorageManager(TaskScheduler taskScheduler, @Nullable File blobsDir) {
+		this.taskScheduler = taskScheduler;
+		this.blobsDir = blobsDir;
+	}
+
+	private File getBlobsDir() {
+		if (blobsDir != null)
+			return blobsDir;
+		else
+			return new File(Bootstrap.getSiteDir(), "artifact-blobs");
+	}
+
+	File getBlobFile(String hash) {
+		return new File(getBlobsDir(), hash.substring(0, 2) + "/" + hash);
+	}
+
+	private Lock getBlobLock(String hash) {
+		return LockUtils.getLock("artifact-blob:" + hash);
+	}
+
+	private String hash(File file) {
+		try (InputStream is = Files.newInputStream(file.toPath())) {
+			return DigestUtils.sha256Hex(is);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	boolean link(File target, File source) {
+		try {
+			Files.createLink(target.toPath(), source.toPath());
+			return true;
+		} catch (UnsupportedOperationException | IOException e) {
+			// for instance if target and source are on different file systems
+			logger.debug("Unable to link '" + target + "' to '" + source + "', copying instead", e);
+			return false;
+		}
+	}
+
+	private void replaceWithLinkOrCopy(File target, File source) {
+		FileUtils.createDir(target.getParentFile());
+		try {
+			Files.deleteIfExists(target.toPath());
+			if (!linkSupported || !link(target, source))
+				Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void publish(File fromDir, PatternSet patternSet, File artifactsDir) {
+		long time = System.currentTimeMillis();
+		long bytes = 0;
+		long deduplicated = 0;
+		int files = 0;
+
+		FileUtils.createDir(artifactsDir);
+		int baseLen = fromDir.getAbsolutePath().length() + 1;
+		for (File file: patternSet.listFiles(fromDir)) {
+			File target = new File(artifactsDir, file.getAbsolutePath().substring(baseLen));
+			long size = file.length();
+			if (linkSupported) {
+				String hash = hash(file);
+				File blobFile = getBlobFile(hash);
+				Lock lock = getBlobLock(hash);
+				lock.lock();
+				try {
+					if (blobFile.exists()) {
+						deduplicated += size;
+					} else {
+						FileUtils.createDir(blobFile.getParentFile());
+						File tempFile = new File(blobFile.getParentFile(), TEMP_PREFIX + UUID.randomUUID().toString());
+						try {
+							Files.copy(file.toPath(), tempFile.toPath());
+							Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+						} catch (FileAlreadyExistsException e) {
+							deduplicated += size;
+						} finally {
+							Files.deleteIfExists(tempFile.toPath());
+						}
+					}
+					replaceWithLinkOrCopy(target, blobFile);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				} finally {
+					lock.unlock();
+				}
+			} else {
+				replaceWithLinkOrCopy(target, file);
+			}
+			bytes += size;
+			files++;
+		}
+
+		long elapsed = System.currentTimeMillis() - time;
+		publishedBytes.addAndGet(bytes);
+		deduplicatedBytes.addAndGet(deduplicated);
+		publishMillis.addAndGet(elapsed);
+		logger.debug("Published {} artifact files ({} bytes, {} bytes deduplicated) in {} ms",
+				files, bytes, deduplicated, elapsed);
+	}
+
+	@Override
+	public void retrieve(File artifactsDir, PatternSet patternSet, File toDir) {
+		int baseLen = artifactsDir.getAbsolutePath().length() + 1;
+		for (File file: patternSet.listFiles(artifactsDir))
+			replaceWithLinkOrCopy(new File(toDir, file.getAbsolutePath().substring(baseLen)), file);
+	}
+
+	@Listen
+	public void on(SystemStarted event) {
+		if (linkSupported)
+			taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+	}
+
+	@Override
+	public void execute() {
+		File blobsDir = getBlobsDir();
+		if (!blobsDir.exists())
+			return;
+
+		long removedBytes = 0;
+		int removedBlobs = 0;
+		for (File prefixDir: blobsDir.listFiles()) {
+			for (File blobFile: prefixDir.listFiles()) {
+				try {
+					if (blobFile.getName().startsWith(TEMP_PREFIX)) {
+						// left over by interrupted publishing
+						if (System.currentTimeMillis() - blobFile.lastModified() > 24*3600*1000L)
+							Files.deleteIfExists(blobFile.toPath());
+						continue;
+					}
+					Lock lock = getBlobLock(blobFile.getName());
+					lock.lock();
+					try {
+						if ((Integer) Files.getAttribute(blobFile.toPath(), "unix:nlink") == 1) {
+							long size = blobFile.length();
+							Files.delete(blobFile.toPath());
+							removedBytes += size;
+							removedBlobs++;
+						}
+					} finally {
+						lock.unlock();
+					}
+				} catch (Exception e) {
+					logger.error("Error cleaning up artifact blob '" + blobFile.getName() + "'", e);
+				}
+			}
+		}
+		if (removedBlobs != 0)
+			logger.info("Removed {} unreferenced artifact blobs ({} bytes)", removedBlobs, removedBytes);
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return CronScheduleBuilder.dailyAtHourAndMinute(1, 0);
+	}
+
+	@Override
+	public long getPublishedBytes() {
+		return publishedBytes.get();
+	}
+
+	@Override
+	public long getDeduplicatedBytes() {
+		return deduplicatedBytes.get();
+	}
+
+	@Override
+	public long getPublishMillis() {
+		return publishMillis.get();
+	}
+
+}
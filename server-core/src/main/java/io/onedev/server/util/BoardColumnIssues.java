@@ -0,0 +1,26 @@
+package io.onedev.server.util;
+
+import java.util.List;
+
+import io.onedev.server.model.Issue;
+
+public class BoardColumnIssues {
+
+	private final int count;
+	
+	private final List<Issue> firstPage;
+	
+	public BoardColumnIssues(int count, List<Issue> firstPage) {
+		this.count = count;
+		this.firstPage = firstPage;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public List<Issue> getFirstPage() {
+		return firstPage;
+	}
+	
+}
@@ -0,0 +1,29 @@
+package io.onedev.server.util;
+
+import java.util.Map;
+
+import io.onedev.server.model.BuildMetricRollup.Granularity;
+
+public class BuildMetricStats<T> {
+
+	private final Granularity granularity;
+
+	private final Map<Integer, T> metrics;
+
+	public BuildMetricStats(Granularity granularity, Map<Integer, T> metrics) {
+		this.granularity = granularity;
+		this.metrics = metrics;
+	}
+
+	public Granularity getGranularity() {
+		return granularity;
+	}
+
+	/**
+	 * @return map of day value of the first day of period to average metric of the period
+	 */
+	public Map<Integer, T> getMetrics() {
+		return metrics;
+	}
+
+}
@@ -45,7 +45,7 @@ public class IssueUtils {
     	ISSUE_FIX_PATTERN = Pattern.compile(builder.toString());
     }
     
-	private static final String FIELD_BEAN_PREFIX = "IssueFieldBean";
+	public static final String FIELD_BEAN_PREFIX = "IssueFieldBean";
 	
 	public static void clearFields(Serializable fieldBean) {
 		for (List<PropertyDescriptor> groupProperties: new BeanDescriptor(fieldBean.getClass()).getProperties().values()) {
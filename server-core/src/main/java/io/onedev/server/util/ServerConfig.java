@@ -44,5 +44,13 @@ public interface ServerConfig {
      *          ssh port of the server
      */
     int getSshPort();
+    
+	/**
+	 * Get number of threads to run batch works such as commit info collection and code indexing.
+	 * <p>
+	 * @return
+	 * 			number of batch work threads
+	 */
+	int getBatchWorkConcurrency();
 	
 }
@@ -0,0 +1,36 @@
+package io.onedev.server.util.beanclass;
+
+import java.util.Collection;
+
+import io.onedev.server.model.support.inputspec.InputSpec;
+
+/**
+ * Registry of bean classes defined from input specs, such as issue field beans and 
+ * build param beans. Compiled classes are cached by class name, and class definition 
+ * is only generated and compiled the first time a class name is requested.
+ */
+public interface BeanClassManager {
+
+	/**
+	 * Get bean class of specified name, defining it from specified inputs if not cached yet. 
+	 * Callers should either encode everything affecting the definition in class name, or 
+	 * call {@link #invalidate(String)} when inputs change
+	 */
+	Class<?> defineClass(String className, String description, Collection<? extends InputSpec> inputs);
+	
+	/**
+	 * Drop cached classes with specified class name prefix
+	 */
+	void invalidate(String classNamePrefix);
+	
+	long getHitCount();
+	
+	long getMissCount();
+	
+	/**
+	 * @return
+	 * 			total milliseconds spent compiling bean classes
+	 */
+	long getCompileTime();
+	
+}
@@ -0,0 +1,140 @@
+package io.onedev.server.util.beanclass;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.Setting;
+import io.onedev.server.model.support.inputspec.InputSpec;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.util.GroovyUtils;
+import io.onedev.server.util.IssueUtils;
+
+@Singleton
+public class DefaultBeanClassManager implements BeanClassManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultBeanClassManager.class);
+	
+	private static final int MAX_CLASSES = 1000;
+	
+	/*
+	 * Classes are referenced strongly (as long as they are not evicted), in order not 
+	 * to get garbage collected and compiled again 
+	 */
+	private final Cache<String, Class<?>> beanClasses = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CLASSES)
+			.recordStats()
+			.build();
+	
+	/*
+	 * Issue field bean classes are defined per project, and are not bounded by size, 
+	 * otherwise they will be evicted and compiled over and over on servers with many 
+	 * projects. They are dropped when issue setting changes or project is removed 
+	 */
+	private final Cache<String, Class<?>> fieldBeanClasses = CacheBuilder.newBuilder()
+			.recordStats()
+			.build();
+	
+	private final AtomicLong compileTime = new AtomicLong(0);
+	
+	private final TransactionManager transactionManager;
+	
+	@Inject
+	public DefaultBeanClassManager(TransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+	
+	private Cache<String, Class<?>> getCache(String className) {
+		if (className.startsWith(IssueUtils.FIELD_BEAN_PREFIX))
+			return fieldBeanClasses;
+		else
+			return beanClasses;
+	}
+	
+	@Override
+	public Class<?> defineClass(String className, String description, Collection<? extends InputSpec> inputs) {
+		try {
+			return getCache(className).get(className, () -> {
+				long time = System.currentTimeMillis();
+				Class<?> beanClass = compile(className, description, inputs);
+				long elapsed = System.currentTimeMillis() - time;
+				compileTime.addAndGet(elapsed);
+				logger.debug("Compiled bean class (name: {}, time: {}ms)", className, elapsed);
+				return beanClass;
+			});
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	protected Class<?> compile(String className, String description, Collection<? extends InputSpec> inputs) {
+		String definition = InputSpec.getClassDefinition(className, description, inputs);
+		return (Class<?>) GroovyUtils.evalScript(definition, new HashMap<>());
+	}
+
+	@Override
+	public void invalidate(String classNamePrefix) {
+		beanClasses.asMap().keySet().removeIf(it -> it.startsWith(classNamePrefix));
+		fieldBeanClasses.asMap().keySet().removeIf(it -> it.startsWith(classNamePrefix));
+	}
+	
+	@Listen
+	public void on(EntityPersisted event) {
+		if (event.getEntity() instanceof Setting 
+				&& ((Setting) event.getEntity()).getKey() == Setting.Key.ISSUE) {
+			invalidate(IssueUtils.FIELD_BEAN_PREFIX);
+			
+			/*
+			 * Invalidate again after commit, as classes defined by other threads before 
+			 * commit are still based on old issue setting
+			 */
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					invalidate(IssueUtils.FIELD_BEAN_PREFIX);
+				}
+				
+			});
+		}
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) 
+			fieldBeanClasses.invalidate(IssueUtils.FIELD_BEAN_PREFIX + event.getEntity().getId());
+	}
+	
+	@Override
+	public long getHitCount() {
+		return beanClasses.stats().hitCount() + fieldBeanClasses.stats().hitCount();
+	}
+
+	@Override
+	public long getMissCount() {
+		return beanClasses.stats().missCount() + fieldBeanClasses.stats().missCount();
+	}
+
+	@Override
+	public long getCompileTime() {
+		return compileTime.get();
+	}
+
+}
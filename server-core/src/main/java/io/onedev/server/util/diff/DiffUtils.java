@@ -1,6 +1,7 @@
 package io.onedev.server.util.diff;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -10,6 +11,9 @@ import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.HistogramDiff;
+
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 
@@ -28,7 +32,17 @@ public class DiffUtils {
 
 	private static final int CHANGE_CALC_TIMEOUT = 100;
 	
-	public static final int MAX_DIFF_SIZE = 65535;
+	/**
+	 * Max total lines of old and new content to diff with the char based engine. Larger 
+	 * content will be diffed with the linear space engine. This is also the max size to 
+	 * tokenize content with syntax when diffing
+	 */
+	public static final int MAX_CHAR_DIFF_SIZE = 65535;
+	
+	/**
+	 * Max total lines of old and new content to diff
+	 */
+	public static final int MAX_DIFF_SIZE = 2000000;
 	
 	private static final Pattern pattern = Pattern.compile("\\w+");
 	
@@ -61,7 +75,21 @@ public class DiffUtils {
 		return lines;
 	}
 	
-	private static List<Tokenized> tokenize(List<String> lines, @Nullable String fileName) {
+	/**
+	 * Get language of specified file name for tokenization purpose
+	 * 
+	 * @return
+	 * 			language identifier which can be used as part of cache key of tokenized lines
+	 */
+	public static String getLanguage(@Nullable String fileName) {
+		Tokenizer tokenizer = TokenizerRegistry.getTokenizer(fileName);
+		if (tokenizer != null)
+			return tokenizer.getClass().getName();
+		else
+			return "";
+	}
+	
+	public static List<Tokenized> tokenize(List<String> lines, @Nullable String fileName) {
 		Tokenizer tokenizer = TokenizerRegistry.getTokenizer(fileName);
 		if (tokenizer != null) {
 			List<Tokenized> tokenizedLines = tokenizer.tokenize(lines);
@@ -111,6 +139,25 @@ public class DiffUtils {
 			List<String> newLines, @Nullable String newFileName, WhitespaceOption whitespaceOption) {
 		Preconditions.checkArgument(oldLines.size() + newLines.size() <= MAX_DIFF_SIZE, 
 				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
+		if (oldLines.size() + newLines.size() > MAX_CHAR_DIFF_SIZE) {
+			// do not tokenize with syntax for large content to save time and memory
+			oldFileName = null;
+			newFileName = null;
+		}
+		return diff(oldLines, tokenize(oldLines, oldFileName), newLines, tokenize(newLines, newFileName), 
+				whitespaceOption);
+	}
+	
+	/**
+	 * Diff two list of strings with their tokenized lines already available.
+	 * 
+	 * @return
+	 * 			unmodifiable list of diff blocks
+	 */
+	public static List<DiffBlock<Tokenized>> diff(List<String> oldLines, List<Tokenized> oldTokenizedLines, 
+			List<String> newLines, List<Tokenized> newTokenizedLines, WhitespaceOption whitespaceOption) {
+		Preconditions.checkArgument(oldLines.size() + newLines.size() <= MAX_DIFF_SIZE, 
+				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
 		
 		List<String> processedOldLines = new ArrayList<>();
 		for (String line: oldLines) 
@@ -120,9 +167,9 @@ public class DiffUtils {
 		for (String line: newLines) 
 			processedNewLines.add(whitespaceOption.process(line));
 		
-		List<Tokenized> oldTokenizedLines = tokenize(oldLines, oldFileName);
-		List<Tokenized> newTokenizedLines = tokenize(newLines, newFileName);
-
+		if (oldLines.size() + newLines.size() > MAX_CHAR_DIFF_SIZE) 
+			return linearDiff(processedOldLines, processedNewLines, oldTokenizedLines, newTokenizedLines);
+		
 		DiffMatchPatch dmp = new DiffMatchPatch();
 		TokensToCharsResult<String> result1 = tokensToChars(processedOldLines, processedNewLines);
 		
@@ -154,13 +201,33 @@ public class DiffUtils {
 			}
 		}
 		
-		return diffBlocks;
+		return Collections.unmodifiableList(diffBlocks);
+	}
+	
+	/**
+	 * Get number of units of specified operation in diff blocks. Blocks of large diffs 
+	 * are not materialized by this method
+	 */
+	public static <T> int getUnitCount(List<DiffBlock<T>> diffBlocks, Operation operation) {
+		if (diffBlocks instanceof LazyDiffBlocks) {
+			return ((LazyDiffBlocks<T>) diffBlocks).getUnitCount(operation);
+		} else {
+			int count = 0;
+			for (DiffBlock<T> block: diffBlocks) {
+				if (block.getOperation() == operation)
+					count += block.getUnits().size();
+			}
+			return count;
+		}
 	}
 	
 	public static <T> List<DiffBlock<T>> diff(List<T> oldLines, List<T> newLines) {
 		Preconditions.checkArgument(oldLines.size() + newLines.size() <= MAX_DIFF_SIZE, 
 				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
 		
+		if (oldLines.size() + newLines.size() > MAX_CHAR_DIFF_SIZE) 
+			return linearDiff(oldLines, newLines, oldLines, newLines);
+		
 		DiffMatchPatch dmp = new DiffMatchPatch();
 		TokensToCharsResult<T> result1 = tokensToChars(oldLines, newLines);
 		
@@ -192,6 +259,32 @@ public class DiffUtils {
 		return diffBlocks;
 	}
 	
+	/**
+	 * Diff with JGit's histogram diff (falls back to Myers diff for highly repetitive 
+	 * content) over int line ids. This works in linear space and has no size limit 
+	 * imposed by char mapping. 
+	 * 
+	 * @param oldLines
+	 * 			old lines used to compare
+	 * @param newLines
+	 * 			new lines used to compare
+	 * @param oldUnits
+	 * 			units corresponding to old lines to be put into diff blocks
+	 * @param newUnits
+	 * 			units corresponding to new lines to be put into diff blocks
+	 * @return
+	 * 			list of diff blocks. Blocks and their units are materialized lazily 
+	 * 			when accessed
+	 */
+	static <T, U> List<DiffBlock<U>> linearDiff(List<T> oldLines, List<T> newLines, 
+			List<U> oldUnits, List<U> newUnits) {
+		Map<T, Integer> lineIds = new HashMap<>();
+		LineIdSequence oldSequence = new LineIdSequence(oldLines, lineIds);
+		LineIdSequence newSequence = new LineIdSequence(newLines, lineIds);
+		EditList edits = new HistogramDiff().diff(LineIdSequence.COMPARATOR, oldSequence, newSequence);
+		return new LazyDiffBlocks<>(edits, oldUnits, newUnits);
+	}
+	
 	/**
 	 * This method checks deleted lines and inserted lines, and position them so that 
 	 * similar delete line and insert line (indicates they are the same line with 
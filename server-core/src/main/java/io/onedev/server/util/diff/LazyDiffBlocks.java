@@ -0,0 +1,128 @@
+package io.onedev.server.util.diff;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+
+/**
+ * Diff blocks converted from JGit edit list. Only block boundaries are calculated 
+ * upfront, and a block (including its units) is materialized the first time it 
+ * is accessed, so that callers can page through blocks of large diffs without 
+ * paying for all of them. Instances are shared via diff cache, so blocks are 
+ * materialized in a thread safe way.
+ */
+class LazyDiffBlocks<T> extends AbstractList<DiffBlock<T>> {
+
+	private final List<T> oldUnits;
+	
+	private final List<T> newUnits;
+	
+	private final Operation[] operations;
+	
+	private final int[] oldStarts;
+	
+	private final int[] newStarts;
+	
+	private final int[] lengths;
+	
+	private final AtomicReferenceArray<DiffBlock<T>> blocks;
+	
+	public LazyDiffBlocks(EditList edits, List<T> oldUnits, List<T> newUnits) {
+		this.oldUnits = oldUnits;
+		this.newUnits = newUnits;
+		
+		int capacity = edits.size()*3 + 1;
+		Operation[] operations = new Operation[capacity];
+		int[] oldStarts = new int[capacity];
+		int[] newStarts = new int[capacity];
+		int[] lengths = new int[capacity];
+		
+		int count = 0;
+		int oldPos = 0;
+		int newPos = 0;
+		for (Edit edit: edits) {
+			if (edit.getBeginA() > oldPos) {
+				operations[count] = Operation.EQUAL;
+				oldStarts[count] = oldPos;
+				newStarts[count] = newPos;
+				lengths[count] = edit.getBeginA() - oldPos;
+				count++;
+			}
+			if (edit.getLengthA() != 0) {
+				operations[count] = Operation.DELETE;
+				oldStarts[count] = edit.getBeginA();
+				newStarts[count] = edit.getBeginB();
+				lengths[count] = edit.getLengthA();
+				count++;
+			}
+			if (edit.getLengthB() != 0) {
+				operations[count] = Operation.INSERT;
+				oldStarts[count] = edit.getEndA();
+				newStarts[count] = edit.getBeginB();
+				lengths[count] = edit.getLengthB();
+				count++;
+			}
+			oldPos = edit.getEndA();
+			newPos = edit.getEndB();
+		}
+		if (oldPos < oldUnits.size()) {
+			operations[count] = Operation.EQUAL;
+			oldStarts[count] = oldPos;
+			newStarts[count] = newPos;
+			lengths[count] = oldUnits.size() - oldPos;
+			count++;
+		}
+		
+		this.operations = new Operation[count];
+		this.oldStarts = new int[count];
+		this.newStarts = new int[count];
+		this.lengths = new int[count];
+		System.arraycopy(operations, 0, this.operations, 0, count);
+		System.arraycopy(oldStarts, 0, this.oldStarts, 0, count);
+		System.arraycopy(newStarts, 0, this.newStarts, 0, count);
+		System.arraycopy(lengths, 0, this.lengths, 0, count);
+		blocks = new AtomicReferenceArray<>(count);
+	}
+	
+	@Override
+	public DiffBlock<T> get(int index) {
+		DiffBlock<T> block = blocks.get(index);
+		if (block == null) {
+			List<T> units;
+			if (operations[index] == Operation.DELETE) 
+				units = new ArrayList<>(oldUnits.subList(oldStarts[index], oldStarts[index] + lengths[index]));
+			else 
+				units = new ArrayList<>(newUnits.subList(newStarts[index], newStarts[index] + lengths[index]));
+			block = new DiffBlock<>(operations[index], units, oldStarts[index], newStarts[index]);
+			
+			// another thread may have materialized the same block in the meantime
+			if (!blocks.compareAndSet(index, null, block))
+				block = blocks.get(index);
+		}
+		return block;
+	}
+	
+	/**
+	 * Get number of units of specified operation without materializing any block
+	 */
+	public int getUnitCount(Operation operation) {
+		int count = 0;
+		for (int i=0; i<operations.length; i++) {
+			if (operations[i] == operation)
+				count += lengths[i];
+		}
+		return count;
+	}
+
+	@Override
+	public int size() {
+		return operations.length;
+	}
+
+}
@@ -0,0 +1,50 @@
+package io.onedev.server.util.diff;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.diff.SequenceComparator;
+
+/**
+ * Sequence of lines represented by int ids. Equal lines are assigned with same id, 
+ * so that comparing and hashing lines is cheap and does not suffer from hash 
+ * collisions.
+ */
+class LineIdSequence extends Sequence {
+
+	static final SequenceComparator<LineIdSequence> COMPARATOR = new SequenceComparator<LineIdSequence>() {
+
+		@Override
+		public boolean equals(LineIdSequence a, int ai, LineIdSequence b, int bi) {
+			return a.ids[ai] == b.ids[bi];
+		}
+
+		@Override
+		public int hash(LineIdSequence seq, int ptr) {
+			return seq.ids[ptr];
+		}
+		
+	};
+	
+	private final int[] ids;
+	
+	public <T> LineIdSequence(List<T> lines, Map<T, Integer> lineIds) {
+		ids = new int[lines.size()];
+		int index = 0;
+		for (T line: lines) {
+			Integer id = lineIds.get(line);
+			if (id == null) {
+				id = lineIds.size();
+				lineIds.put(line, id);
+			}
+			ids[index++] = id;
+		}
+	}
+	
+	@Override
+	public int size() {
+		return ids.length;
+	}
+
+}
@@ -31,6 +31,8 @@ public abstract class AssetServlet extends DefaultServlet {
 
 	private static final long serialVersionUID = 1L;
 	
+	public static final String VERSION_PARAM = "version";
+	
 	private static ThreadLocal<HttpServletRequest> requestHolder = new ThreadLocal<HttpServletRequest>();
 
 	public AssetServlet() {
@@ -58,6 +60,12 @@ public abstract class AssetServlet extends DefaultServlet {
 					 * page request.
 					 */
 					fields.put(HttpHeader.CACHE_CONTROL, "max-age=86400,public");
+				} else if (requestHolder.get().getParameter(VERSION_PARAM) != null) {
+					/*
+					 * Url carrying content version (for instance avatar url) changes when content 
+					 * changes, so browser does not need to revalidate it even on page reload 
+					 */
+					fields.put(HttpHeader.CACHE_CONTROL, "max-age=31536000,public,immutable");
 				}
 			}
 			
@@ -79,6 +87,8 @@ public abstract class AssetServlet extends DefaultServlet {
 				return "false";
 			if (name.equals("dirAllowed"))
 			    return "false";
+			if (name.equals("etags"))
+				return "true";
 			if (name.equals("cacheControl")) {
 		        if (!Bootstrap.sandboxMode || Bootstrap.prodMode)
 			        return "max-age=31536000,public";
@@ -1,9 +1,18 @@
 package io.onedev.server.util.work;
 
+import java.util.Map;
+
 import io.onedev.server.util.concurrent.Prioritized;
 
 public interface BatchWorkManager {
 
 	void submit(BatchWorker worker, Prioritized work);
 
+	BatchWorkStats getStats();
+	
+	/**
+	 * @return map of worker id to number of its queued works, for workers with queued works
+	 */
+	Map<String, Integer> getQueueDepths();
+	
 }
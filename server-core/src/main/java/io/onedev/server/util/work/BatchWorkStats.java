@@ -0,0 +1,65 @@
+package io.onedev.server.util.work;
+
+import java.io.Serializable;
+
+public class BatchWorkStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int queuedWorks;
+	
+	private final int runningBatches;
+	
+	private final long processedWorks;
+	
+	private final long processedBatches;
+	
+	private final long totalLatency;
+	
+	private final long maxLatency;
+	
+	public BatchWorkStats(int queuedWorks, int runningBatches, long processedWorks, 
+			long processedBatches, long totalLatency, long maxLatency) {
+		this.queuedWorks = queuedWorks;
+		this.runningBatches = runningBatches;
+		this.processedWorks = processedWorks;
+		this.processedBatches = processedBatches;
+		this.totalLatency = totalLatency;
+		this.maxLatency = maxLatency;
+	}
+
+	/**
+	 * @return number of submitted works not picked up by any batch yet
+	 */
+	public int getQueuedWorks() {
+		return queuedWorks;
+	}
+
+	public int getRunningBatches() {
+		return runningBatches;
+	}
+
+	public long getProcessedWorks() {
+		return processedWorks;
+	}
+
+	public long getProcessedBatches() {
+		return processedBatches;
+	}
+
+	/**
+	 * @return sum of milliseconds processed works waited in queue before being picked up
+	 */
+	public long getTotalLatency() {
+		return totalLatency;
+	}
+
+	public long getAverageLatency() {
+		return processedWorks != 0? totalLatency / processedWorks: 0;
+	}
+	
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+}
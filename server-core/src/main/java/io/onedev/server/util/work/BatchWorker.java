@@ -15,10 +15,23 @@ public abstract class BatchWorker {
 	
 	private final int maxBatchSize;
 	
-	public BatchWorker(String id, int maxBatchSize) {
+	private final int maxConcurrency;
+	
+	/**
+	 * @param maxConcurrency
+	 * 			max number of batches of this worker allowed to run concurrently. Use <tt>1</tt>
+	 * 			unless {@link #doWorks(Collection)} is safe to be called concurrently
+	 */
+	public BatchWorker(String id, int maxBatchSize, int maxConcurrency) {
 		this.id = id;
 		Preconditions.checkArgument(maxBatchSize>=1);
+		Preconditions.checkArgument(maxConcurrency>=1);
 		this.maxBatchSize = maxBatchSize;
+		this.maxConcurrency = maxConcurrency;
+	}
+	
+	public BatchWorker(String id, int maxBatchSize) {
+		this(id, maxBatchSize, 1);
 	}
 	
 	public BatchWorker(String id) {
@@ -33,6 +46,10 @@ public abstract class BatchWorker {
 		return maxBatchSize;
 	}
 
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
 	@Override
 	public boolean equals(Object other) {
 		if (!(other instanceof BatchWorker))
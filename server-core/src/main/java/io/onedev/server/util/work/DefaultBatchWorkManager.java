@@ -4,10 +4,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -21,106 +25,281 @@ import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.ServerConfig;
 import io.onedev.server.util.concurrent.Prioritized;
-import io.onedev.server.util.concurrent.PrioritizedRunnable;
 
+/**
+ * Works of each worker are queued in a lock free priority queue. A worker with queued works and
+ * less running batches than its max concurrency is put into the ready queue, and a pool of
+ * threads take workers from the ready queue to run a batch of their queued works. After running
+ * a batch, the worker is put at tail of the ready queue again if it still has queued works, so
+ * that workers (normally one per project and purpose) of same priority are served in turn, and
+ * a busy worker can not occupy more threads than its max concurrency.
+ */
 @Singleton
-public class DefaultBatchWorkManager implements BatchWorkManager, Runnable {
+public class DefaultBatchWorkManager implements BatchWorkManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultBatchWorkManager.class);
-	
-	private final WorkExecutor workExecutor;
-	
-	private final Map<BatchWorker, Works> works = new HashMap<>();
-	
-	private Thread thread;
-	
+
+	private static final long STOP_TIMEOUT = 60000;
+
+	private final ServerConfig serverConfig;
+
+	private final ConcurrentMap<BatchWorker, WorkerState> states = new ConcurrentHashMap<>();
+
+	private final ConcurrentSkipListSet<Ready> readyWorkers = new ConcurrentSkipListSet<>();
+
+	private final Semaphore readyPermits = new Semaphore(0);
+
+	private final AtomicLong sequence = new AtomicLong(0);
+
+	private final AtomicInteger queuedWorks = new AtomicInteger(0);
+
+	private final AtomicInteger runningBatches = new AtomicInteger(0);
+
+	private final AtomicLong processedWorks = new AtomicLong(0);
+
+	private final AtomicLong processedBatches = new AtomicLong(0);
+
+	private final AtomicLong totalLatency = new AtomicLong(0);
+
+	private final AtomicLong maxLatency = new AtomicLong(0);
+
+	private final List<Thread> threads = new ArrayList<>();
+
+	private volatile boolean stopping;
+
 	@Inject
-	public DefaultBatchWorkManager(WorkExecutor workExecutor) {
-		this.workExecutor = workExecutor;
-	}
-	
-	private Works getWorks(BatchWorker worker) {
-		Works worksOfWorker = works.get(worker);
-		if (worksOfWorker == null) {
-			worksOfWorker = new Works();
-			works.put(worker, worksOfWorker);
-		}
-		return worksOfWorker;
+	public DefaultBatchWorkManager(ServerConfig serverConfig) {
+		this.serverConfig = serverConfig;
 	}
 
 	@Listen
 	public void on(SystemStarted event) {
-		thread = new Thread(this);
-		thread.start();
-	}
+		stopping = false;
+		for (int i=0; i<serverConfig.getBatchWorkConcurrency(); i++) {
+			Thread thread = new Thread(new Runnable() {
 
-	@Listen
-	public synchronized void on(SystemStopping event) {
-		thread = null;
-		notify();
+				@Override
+				public void run() {
+					runBatches();
+				}
+
+			}, "batch-worker-" + i);
+			threads.add(thread);
+			thread.start();
+		}
 	}
 
-	@Override
-	public synchronized void run() {
-		while (thread != null) {
-			for (Iterator<Map.Entry<BatchWorker, Works>> it = works.entrySet().iterator(); it.hasNext();) {
-				Map.Entry<BatchWorker, Works> entry = it.next();
-				BatchWorker worker = entry.getKey();
-				Works works = entry.getValue();
-				if (works.working.isEmpty()) {
-					works.queued.drainTo(works.working, worker.getMaxBatchSize());
-					if (!works.working.isEmpty()) {
-						double priority = works.working.stream().collect(Collectors.averagingInt(Prioritized::getPriority));
-						workExecutor.execute(new PrioritizedRunnable((int)priority) {
-							
-							@Override
-							public void run() {
-								try {
-									worker.doWorks(works.working);
-								} catch (Exception e) {
-									logger.error("Error doing works", e);
-								} finally {
-									synchronized(DefaultBatchWorkManager.this) {
-										works.working.clear();
-										DefaultBatchWorkManager.this.notify();
-									}
-								}
-							}
-							
-						});
-					} else {
-						it.remove();
-					}
+	/*
+	 * Idle threads are waken up to exit, while running batches are given some time to finish 
+	 * before being interrupted, as interruption may break in the middle of writing indexes
+	 */
+	@Listen
+	public void on(SystemStopping event) {
+		stopping = true;
+		readyPermits.release(threads.size());
+		
+		long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+		try {
+			for (Thread thread: threads) 
+				thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+			for (Thread thread: threads) {
+				if (thread.isAlive()) {
+					logger.warn("Batch works not finished in time, interrupting thread '{}'", thread.getName());
+					thread.interrupt();
+					thread.join();
 				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		threads.clear();
+	}
+
+	private void runBatches() {
+		while (!stopping) {
 			try {
-				wait();
+				readyPermits.acquire();
 			} catch (InterruptedException e) {
+				continue;
+			}
+			if (stopping)
+				break;
+			Ready ready = readyWorkers.pollFirst();
+			if (ready == null)
+				continue;
+
+			WorkerState state = ready.state;
+			Collection<Prioritized> batch = new ArrayList<>();
+			long now = System.currentTimeMillis();
+			while (batch.size() < state.worker.getMaxBatchSize()) {
+				Queued queued = state.queue.pollFirst();
+				if (queued == null)
+					break;
+				queuedWorks.decrementAndGet();
+				long latency = now - queued.timestamp;
+				totalLatency.addAndGet(latency);
+				maxLatency.accumulateAndGet(latency, Math::max);
+				batch.add(queued.work);
+			}
+
+			if (!batch.isEmpty()) {
+				runningBatches.incrementAndGet();
+				try {
+					state.worker.doWorks(batch);
+				} catch (Throwable e) {
+					logger.error("Error doing works", e);
+				} finally {
+					runningBatches.decrementAndGet();
+					processedWorks.addAndGet(batch.size());
+					processedBatches.incrementAndGet();
+				}
+			}
+
+			state.scheduled.decrementAndGet();
+			if (!schedule(state)) {
+				states.computeIfPresent(state.worker, (worker, current) -> {
+					if (current == state && current.scheduled.get() == 0 && current.queue.isEmpty())
+						return null;
+					else
+						return current;
+				});
+			}
+		}
+	}
+
+	/**
+	 * Put worker of specified state into ready queue if it has queued works and has not
+	 * reached its max concurrency
+	 *
+	 * @return <tt>true</tt> if worker is running or ready to run after this call
+	 */
+	private boolean schedule(WorkerState state) {
+		while (true) {
+			int scheduled = state.scheduled.get();
+			Iterator<Queued> it = state.queue.iterator();
+			if (!it.hasNext())
+				return scheduled != 0;
+			if (scheduled >= state.worker.getMaxConcurrency())
+				return true;
+			if (state.scheduled.compareAndSet(scheduled, scheduled+1)) {
+				readyWorkers.add(new Ready(state, it.next().work.getPriority(), sequence.incrementAndGet()));
+				readyPermits.release();
+				return true;
 			}
 		}
 	}
 
 	@Override
-	public synchronized void submit(BatchWorker worker, Prioritized work) {
+	public void submit(BatchWorker worker, Prioritized work) {
 		Subject subject = SecurityUtils.getSubject();
-		getWorks(new BatchWorker(worker.getId(), worker.getMaxBatchSize()) {
+		Queued queued = new Queued(work, sequence.incrementAndGet(), System.currentTimeMillis());
 
-			@Override
-			public void doWorks(Collection<Prioritized> works) {
-				ThreadContext.bind(subject);
-				worker.doWorks(works);
+		// Queue work inside compute so that it can not be added to a state being removed
+		WorkerState state = states.compute(worker, (key, current) -> {
+			if (current == null) {
+				current = new WorkerState(new BatchWorker(worker.getId(), worker.getMaxBatchSize(),
+						worker.getMaxConcurrency()) {
+
+					@Override
+					public void doWorks(Collection<Prioritized> works) {
+						ThreadContext.bind(subject);
+						try {
+							worker.doWorks(works);
+						} finally {
+							ThreadContext.unbindSubject();
+						}
+					}
+
+				});
 			}
-			
-		}).queued.offer(work);
-		
-		notify();
+			current.queue.add(queued);
+			return current;
+		});
+		queuedWorks.incrementAndGet();
+
+		schedule(state);
 	}
 
-	private static class Works {
-		BlockingQueue<Prioritized> queued = new PriorityBlockingQueue<>();
-		
-		Collection<Prioritized> working = new ArrayList<>();
+	@Override
+	public BatchWorkStats getStats() {
+		return new BatchWorkStats(queuedWorks.get(), runningBatches.get(), processedWorks.get(),
+				processedBatches.get(), totalLatency.get(), maxLatency.get());
+	}
+
+	@Override
+	public Map<String, Integer> getQueueDepths() {
+		Map<String, Integer> queueDepths = new HashMap<>();
+		for (WorkerState state: states.values()) {
+			int queueDepth = state.queue.size();
+			if (queueDepth != 0)
+				queueDepths.put(state.worker.getId(), queueDepth);
+		}
+		return queueDepths;
+	}
+
+	private static class WorkerState {
+
+		final BatchWorker worker;
+
+		final ConcurrentSkipListSet<Queued> queue = new ConcurrentSkipListSet<>();
+
+		// number of batches of this worker in ready queue or running
+		final AtomicInteger scheduled = new AtomicInteger(0);
+
+		WorkerState(BatchWorker worker) {
+			this.worker = worker;
+		}
+
+	}
+
+	private static class Queued implements Comparable<Queued> {
+
+		final Prioritized work;
+
+		final long sequence;
+
+		final long timestamp;
+
+		Queued(Prioritized work, long sequence, long timestamp) {
+			this.work = work;
+			this.sequence = sequence;
+			this.timestamp = timestamp;
+		}
+
+		@Override
+		public int compareTo(Queued other) {
+			int result = Integer.compare(work.getPriority(), other.work.getPriority());
+			if (result == 0)
+				result = Long.compare(sequence, other.sequence);
+			return result;
+		}
+
+	}
+
+	private static class Ready implements Comparable<Ready> {
+
+		final WorkerState state;
+
+		final int priority;
+
+		final long sequence;
+
+		Ready(WorkerState state, int priority, long sequence) {
+			this.state = state;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Ready other) {
+			int result = Integer.compare(priority, other.priority);
+			if (result == 0)
+				result = Long.compare(sequence, other.sequence);
+			return result;
+		}
+
 	}
 
 }
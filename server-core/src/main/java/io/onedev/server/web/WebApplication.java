@@ -14,6 +14,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.wicket.Application;
 import org.apache.wicket.Component;
 import org.apache.wicket.DefaultExceptionMapper;
+import org.apache.wicket.DefaultPageManagerProvider;
 import org.apache.wicket.IRequestCycleProvider;
 import org.apache.wicket.Page;
 import org.apache.wicket.RuntimeConfigurationType;
@@ -32,6 +33,7 @@ import org.apache.wicket.core.request.mapper.HomePageMapper;
 import org.apache.wicket.core.request.mapper.ResourceMapper;
 import org.apache.wicket.markup.html.pages.AbstractErrorPage;
 import org.apache.wicket.markup.html.pages.BrowserInfoPage;
+import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.protocol.http.servlet.ServletWebRequest;
 import org.apache.wicket.protocol.ws.WebSocketSettings;
 import org.apache.wicket.protocol.ws.api.IWebSocketConnection;
@@ -68,6 +70,8 @@ import io.onedev.server.web.page.base.BasePage;
 import io.onedev.server.web.page.layout.MainMenuCustomization;
 import io.onedev.server.web.page.simple.error.GeneralErrorPage;
 import io.onedev.server.web.page.simple.error.InUseErrorPage;
+import io.onedev.server.web.pagestore.PageStoreManager;
+import io.onedev.server.web.pagestore.PageStoreSerializer;
 import io.onedev.server.web.resource.SvgSpriteResourceReference;
 import io.onedev.server.web.resource.SvgSpriteResourceStream;
 import io.onedev.server.web.resourcebundle.ResourceBundleReferences;
@@ -80,12 +84,15 @@ public class WebApplication extends org.apache.wicket.protocol.http.WebApplicati
 	private final Set<WebApplicationConfigurator> applicationConfigurators;
 	
 	private final MainMenuCustomization uiCustomization;
+	
+	private final PageStoreManager pageStoreManager;
 
 	@Inject
 	public WebApplication(Set<WebApplicationConfigurator> applicationConfigurators, 
-			MainMenuCustomization uiCustomization) {
+			MainMenuCustomization uiCustomization, PageStoreManager pageStoreManager) {
 		this.applicationConfigurators = applicationConfigurators;
 		this.uiCustomization = uiCustomization;
+		this.pageStoreManager = pageStoreManager;
 	}
 	
 	@Override
@@ -121,12 +128,28 @@ public class WebApplication extends org.apache.wicket.protocol.http.WebApplicati
 		getJavaScriptLibrarySettings().setJQueryReference(new JavaScriptResourceReference(
 				JQueryResourceReference.class, "jquery/jquery-3.5.1.min.js"));
 		
-		getStoreSettings().setFileStoreFolder(Bootstrap.getTempDir());
+		/*
+		 * Pages are serialized at end of request as page instances can not be accessed safely 
+		 * afterwards, while compressing and writing them to disk is queued to Wicket's asynchronous 
+		 * data store. Requests only fall back to write synchronously if the queue is full 
+		 */
+		setPageManagerProvider(new DefaultPageManagerProvider(this) {
+
+			@Override
+			protected IDataStore newDataStore() {
+				return pageStoreManager;
+			}
+			
+		});
+		getStoreSettings().setAsynchronous(true);
+		getStoreSettings().setAsynchronousQueueCapacity(500);
+		getFrameworkSettings().setSerializer(new PageStoreSerializer(
+				getFrameworkSettings().getSerializer(), pageStoreManager));
 		
 		/*
 		 * We disabled session store of pages to reduce memory usage at peak time. However when 
 		 * an user visits the page, the page instance may not get written to disk timely due to 
-		 * page synchronous writing. So adding a in-memory cache is important to compensate the 
+		 * page asynchronous writing. So adding a in-memory cache is important to compensate the 
 		 * page written latency; otherwise, user may experience odd exceptions such as 
 		 * ComponentNotFound when visit a page instance again after it is being created
 		 */
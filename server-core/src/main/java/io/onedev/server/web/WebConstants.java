@@ -11,6 +11,10 @@ public class WebConstants {
 	public static final int MAX_TOTAL_DIFF_LINES = 5000;
 	public static final int DIFF_CONTEXT_SIZE = 3;
 	
+	// max total lines of old and new content to diff for display, large files beyond 
+	// the char based engine are diffed with the linear space engine up to this size 
+	public static final int MAX_DIFF_FILE_LINES = 500000;
+	
 	/* commit constants */
 	public static final int MAX_DISPLAY_COMMITS = 500;
 	
@@ -57,6 +57,16 @@ onedev.server.codemirror = {
             cm.setOption("mode", modeInfo.mime);
         CodeMirror.autoLoadMode(cm, modeInfo.mode);
 	},
+	/*
+	 * Highlight with tokens calculated at server side. The mode tracks line number 
+	 * in its state, so we calculate states of all lines upfront to make sure that 
+	 * CodeMirror never starts tokenizing from a line with unknown state  
+	 */
+	setModeByTokenizedLines: function(cm, tokenizedLines) {
+		cm.setOption("maxHighlightLength", Infinity);
+		cm.setOption("mode", {name: "onedev-tokenized", tokenizedLines: tokenizedLines});
+		cm.getStateAfter(cm.lastLine(), true);
+	},
 	getViewState: function(cm) {
 		var cursor = cm.getCursor();
     	var scrollInfo = cm.getScrollInfo();
@@ -191,3 +201,39 @@ $(document).on("beforeElementReplace", function(event, componentId) {
 		this.submit = undefined;
 	});
 });
+
+/*
+ * Tokens of each line are specified as [beginPos, endPos, style, beginPos, endPos, style, ...], 
+ * text not covered by tokens will not be styled
+ */
+CodeMirror.defineMode("onedev-tokenized", function(config, parserConfig) {
+	var tokenizedLines = parserConfig.tokenizedLines;
+	function nextLine(state) {
+		state.line++;
+		state.index = 0;
+	}
+	return {
+		startState: function() {
+			return {line: 0, index: 0};
+		},
+		blankLine: nextLine,
+		token: function(stream, state) {
+			var tokens = tokenizedLines[state.line] || [];
+			while (state.index < tokens.length && tokens[state.index+1] <= stream.pos)
+				state.index += 3;
+			var style = null;
+			if (state.index >= tokens.length) {
+				stream.skipToEnd();
+			} else if (tokens[state.index] > stream.pos) {
+				stream.pos = Math.min(tokens[state.index], stream.string.length);
+			} else {
+				stream.pos = Math.min(tokens[state.index+1], stream.string.length);
+				style = tokens[state.index+2];
+				state.index += 3;
+			}
+			if (stream.eol())
+				nextLine(state);
+			return style;
+		}
+	};
+});
@@ -29,5 +29,9 @@ public interface AvatarManager {
 	
 	void copyAvatar(Project from, Project to);
 	
+	long getHitCount();
+	
+	long getMissCount();
+	
 }
 
@@ -4,6 +4,9 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 import javax.imageio.ImageIO;
@@ -14,17 +17,24 @@ import org.apache.commons.codec.binary.Hex;
 import org.eclipse.jgit.lib.PersonIdent;
 
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterables;
 
 import io.onedev.commons.launcher.bootstrap.Bootstrap;
+import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.model.Project;
+import io.onedev.server.model.Setting;
 import io.onedev.server.model.User;
+import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.web.component.avatarupload.AvatarUploadField;
 
@@ -35,14 +45,57 @@ public class DefaultAvatarManager implements AvatarManager {
 	
 	private static final String AVATARS_BASE_URL = "/site/avatars/";
 	
+	private static final int MAX_CACHED_URLS = 10000;
+	
+	private static final int CACHE_EXPIRE_HOURS = 1;
+	
 	private final SettingManager settingManager;
 	
 	private final UserManager userManager;
 	
+	private final TransactionManager transactionManager;
+	
+	/*
+	 * Resolved avatar urls keyed by user id, project id, or email and name of person 
+	 * ident. Resolving an url needs to look up the user and to check existence of 
+	 * avatar files, which is expensive for pages displaying many avatars
+	 */
+	private final Cache<String, String> avatarUrls = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_URLS)
+			.expireAfterWrite(CACHE_EXPIRE_HOURS, TimeUnit.HOURS)
+			.recordStats()
+			.build();
+	
 	@Inject
-	public DefaultAvatarManager(SettingManager settingManager, UserManager userManager) {
+	public DefaultAvatarManager(SettingManager settingManager, UserManager userManager, 
+			TransactionManager transactionManager) {
 		this.settingManager = settingManager;
 		this.userManager = userManager;
+		this.transactionManager = transactionManager;
+	}
+	
+	private String getCachedUrl(String key, Callable<String> resolver) {
+		try {
+			return avatarUrls.get(key, resolver);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+	
+	private String getUserKey(Long userId) {
+		return "user:" + userId;
+	}
+	
+	private String getEmailKeyPrefix(String emailAddress) {
+		return "email:" + emailAddress.toLowerCase() + ":";
+	}
+	
+	private String getProjectKey(Long projectId) {
+		return "project:" + projectId;
+	}
+	
+	private String getUploadedUrl(User user, File uploadedFile) {
+		return AVATARS_BASE_URL + "uploaded/users/" + user.getId() + ".jpg?version=" + uploadedFile.lastModified();
 	}
 	
 	@Sessional
@@ -59,14 +112,21 @@ public class DefaultAvatarManager implements AvatarManager {
 		} else if (userId.equals(User.SYSTEM_ID)) {
 			return AVATARS_BASE_URL + "onedev.png";
 		} else {
-			User user = OneDev.getInstance(UserManager.class).load(userId);
-			File uploadedFile = getUploaded(user);
-			if (uploadedFile.exists())
-				return AVATARS_BASE_URL + "uploaded/users/" + user.getId() + ".jpg?version=" + uploadedFile.lastModified();
-			if (settingManager.getSystemSetting().isGravatarEnabled())
-				return Gravatar.getURL(user.getEmail(), GRAVATAR_SIZE);
-			else 
-				return generateAvatar(user.getName(), user.getEmail());
+			return getCachedUrl(getUserKey(userId), new Callable<String>() {
+
+				@Override
+				public String call() {
+					User user = OneDev.getInstance(UserManager.class).load(userId);
+					File uploadedFile = getUploaded(user);
+					if (uploadedFile.exists())
+						return getUploadedUrl(user, uploadedFile);
+					if (settingManager.getSystemSetting().isGravatarEnabled())
+						return Gravatar.getURL(user.getEmail(), GRAVATAR_SIZE);
+					else 
+						return generateAvatar(user.getName(), user.getEmail());
+				}
+				
+			});
 		}
 	}
 	
@@ -79,16 +139,24 @@ public class DefaultAvatarManager implements AvatarManager {
 			else  
 				return AVATARS_BASE_URL + "user.png";
 		} else {
-			User user = userManager.findByEmail(personIdent.getEmailAddress());
-			if (user != null) {
-				File uploadedFile = getUploaded(user);
-				if (uploadedFile.exists())
-					return AVATARS_BASE_URL + "uploaded/users/" + user.getId() + ".jpg?version=" + uploadedFile.lastModified();
-			}
-			if (settingManager.getSystemSetting().isGravatarEnabled())
-				return Gravatar.getURL(personIdent.getEmailAddress(), GRAVATAR_SIZE);
-			else 
-				return generateAvatar(personIdent.getName(), personIdent.getEmailAddress());
+			String key = getEmailKeyPrefix(personIdent.getEmailAddress()) + personIdent.getName();
+			return getCachedUrl(key, new Callable<String>() {
+
+				@Override
+				public String call() {
+					User user = userManager.findByEmail(personIdent.getEmailAddress());
+					if (user != null) {
+						File uploadedFile = getUploaded(user);
+						if (uploadedFile.exists())
+							return getUploadedUrl(user, uploadedFile);
+					}
+					if (settingManager.getSystemSetting().isGravatarEnabled())
+						return Gravatar.getURL(personIdent.getEmailAddress(), GRAVATAR_SIZE);
+					else 
+						return generateAvatar(personIdent.getName(), personIdent.getEmailAddress());
+				}
+				
+			});
 		}
 	}
 	
@@ -116,7 +184,7 @@ public class DefaultAvatarManager implements AvatarManager {
 			}
 		}
 		
-		return AVATARS_BASE_URL + "generated/" + encoded + ".png";
+		return AVATARS_BASE_URL + "generated/" + encoded + ".png?version=" + avatarFile.lastModified();
 	}
 
 	private String getLetter(String name) {
@@ -151,15 +219,23 @@ public class DefaultAvatarManager implements AvatarManager {
 		} finally {
 			avatarLock.unlock();
 		}
+		invalidate(user);
 	}
 
 	@Override
 	public String getAvatarUrl(Project project) {
-		File avatarFile = getUploaded(project);
-		if (avatarFile.exists())  
-			return AVATARS_BASE_URL + "uploaded/projects/" + project.getId() + ".jpg?version=" + avatarFile.lastModified();
-		else
-			return AVATARS_BASE_URL + "project.png";
+		return getCachedUrl(getProjectKey(project.getId()), new Callable<String>() {
+
+			@Override
+			public String call() {
+				File avatarFile = getUploaded(project);
+				if (avatarFile.exists())  
+					return AVATARS_BASE_URL + "uploaded/projects/" + project.getId() + ".jpg?version=" + avatarFile.lastModified();
+				else
+					return AVATARS_BASE_URL + "project.png";
+			}
+			
+		});
 	}
 
 	@Override
@@ -173,6 +249,7 @@ public class DefaultAvatarManager implements AvatarManager {
 		} finally {
 			avatarLock.unlock();
 		}
+		avatarUrls.invalidate(getProjectKey(project.getId()));
 	}
 
 	@Override
@@ -194,6 +271,70 @@ public class DefaultAvatarManager implements AvatarManager {
 		} finally {
 			avatarLock.unlock();
 		}
+		avatarUrls.invalidate(getProjectKey(to.getId()));
+	}
+
+	/*
+	 * Invalidate urls resolved for specified user, either via user id, via email of the user, 
+	 * or via email the user used previously 
+	 */
+	private void invalidate(User user) {
+		avatarUrls.invalidate(getUserKey(user.getId()));
+		String emailKeyPrefix = user.getEmail() != null? getEmailKeyPrefix(user.getEmail()): null;
+		String uploadedUrlPrefix = AVATARS_BASE_URL + "uploaded/users/" + user.getId() + ".jpg?";
+		avatarUrls.asMap().entrySet().removeIf(it -> {
+			return emailKeyPrefix != null && it.getKey().startsWith(emailKeyPrefix) 
+					|| it.getValue().startsWith(uploadedUrlPrefix);
+		});
+	}
+	
+	private void invalidateNowAndAfterCommit(User user) {
+		invalidate(user);
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				invalidate(user);
+			}
+			
+		});
 	}
+	
+	@Listen
+	public void on(EntityPersisted event) {
+		if (event.getEntity() instanceof User) {
+			invalidateNowAndAfterCommit((User) event.getEntity());
+		} else if (event.getEntity() instanceof Setting 
+				&& ((Setting) event.getEntity()).getKey() == Setting.Key.SYSTEM) {
+			// Gravatar may be enabled or disabled
+			avatarUrls.invalidateAll();
+			transactionManager.runAfterCommit(new Runnable() {
 
+				@Override
+				public void run() {
+					avatarUrls.invalidateAll();
+				}
+				
+			});
+		}
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof User) 
+			invalidateNowAndAfterCommit((User) event.getEntity());
+		else if (event.getEntity() instanceof Project) 
+			avatarUrls.invalidate(getProjectKey(event.getEntity().getId()));
+	}
+	
+	@Override
+	public long getHitCount() {
+		return avatarUrls.stats().hitCount();
+	}
+
+	@Override
+	public long getMissCount() {
+		return avatarUrls.stats().missCount();
+	}
+	
 }
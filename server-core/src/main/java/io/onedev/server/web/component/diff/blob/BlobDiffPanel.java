@@ -15,7 +15,6 @@ import io.onedev.server.git.Blob;
 import io.onedev.server.git.BlobChange;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.PullRequest;
-import io.onedev.server.util.diff.DiffUtils;
 import io.onedev.server.web.WebConstants;
 import io.onedev.server.web.component.diff.DiffRenderer;
 import io.onedev.server.web.component.diff.blob.text.TextDiffPanel;
@@ -61,7 +60,7 @@ public class BlobDiffPanel extends Panel {
 	
 	private void showBlob(Blob blob) {
 		if (blob.getText() != null) {
-			if (blob.getText().getLines().size() > DiffUtils.MAX_DIFF_SIZE) {
+			if (blob.getText().getLines().size() > WebConstants.MAX_DIFF_FILE_LINES) {
 				add(newFragment("Unable to diff as the file is too large.", true));
 			} else if (change.getAdditions()+change.getDeletions() > WebConstants.MAX_SINGLE_DIFF_LINES) {
 				add(newFragment("Diff is too large to be displayed.", true));
@@ -106,7 +105,7 @@ public class BlobDiffPanel extends Panel {
 			showBlob(change.getOldBlob());
 		} else {
 			if (change.getOldText() != null && change.getNewText() != null) {
-				if (change.getOldText().getLines().size() + change.getNewText().getLines().size() > DiffUtils.MAX_DIFF_SIZE) {
+				if (change.getOldText().getLines().size() + change.getNewText().getLines().size() > WebConstants.MAX_DIFF_FILE_LINES) {
 					add(newFragment("Unable to diff as the file is too large.", true));
 				} else if (change.getAdditions() + change.getDeletions() > WebConstants.MAX_SINGLE_DIFF_LINES) {
 					add(newFragment("Diff is too large to be displayed.", true));
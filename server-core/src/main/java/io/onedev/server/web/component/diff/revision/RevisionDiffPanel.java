@@ -69,6 +69,7 @@ import io.onedev.server.git.Blob;
 import io.onedev.server.git.BlobChange;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
+import io.onedev.server.git.cache.DiffCacheManager;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.CodeCommentReply;
 import io.onedev.server.model.Project;
@@ -81,7 +82,6 @@ import io.onedev.server.search.code.IndexManager;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.Pair;
 import io.onedev.server.util.PathComparator;
-import io.onedev.server.util.diff.DiffUtils;
 import io.onedev.server.util.diff.WhitespaceOption;
 import io.onedev.server.util.match.Matcher;
 import io.onedev.server.util.match.PathMatcher;
@@ -139,7 +139,7 @@ public abstract class RevisionDiffPanel extends Panel {
 		protected List<DiffEntry> load() {
 			AnyObjectId oldRevId = getProject().getObjectId(oldRev, true);
 			AnyObjectId newRevId = getProject().getObjectId(newRev, true);
-			return GitUtils.diff(getProject().getRepository(), oldRevId, newRevId);
+			return OneDev.getInstance(DiffCacheManager.class).getDiffEntries(getProject().getRepository(), oldRevId, newRevId);
 		}
 		
 	};
@@ -262,7 +262,7 @@ public abstract class RevisionDiffPanel extends Panel {
 		    			Blob.Text oldText = change.getOldText();
 		    			Blob.Text newText = change.getNewText();
 		    			if (oldText != null && newText != null 
-		    					&& (oldText.getLines().size() + newText.getLines().size()) <= DiffUtils.MAX_DIFF_SIZE) {
+		    					&& (oldText.getLines().size() + newText.getLines().size()) <= WebConstants.MAX_DIFF_FILE_LINES) {
 			    			it.remove();
 		    			}
 		    		}
@@ -666,15 +666,15 @@ public abstract class RevisionDiffPanel extends Panel {
 				boolean barVisible;
 				if (change.getType() == ChangeType.ADD || change.getType() == ChangeType.COPY) {
 					Blob.Text text = change.getNewText();
-					barVisible = (text != null && text.getLines().size() <= DiffUtils.MAX_DIFF_SIZE);
+					barVisible = (text != null && text.getLines().size() <= WebConstants.MAX_DIFF_FILE_LINES);
 				} else if (change.getType() == ChangeType.DELETE) {
 					Blob.Text text = change.getOldText();
-					barVisible = (text != null && text.getLines().size() <= DiffUtils.MAX_DIFF_SIZE);
+					barVisible = (text != null && text.getLines().size() <= WebConstants.MAX_DIFF_FILE_LINES);
 				} else {
 					Blob.Text oldText = change.getOldText();
 					Blob.Text newText = change.getNewText();
 					barVisible = (oldText != null && newText != null 
-							&& oldText.getLines().size()+newText.getLines().size() <= DiffUtils.MAX_DIFF_SIZE);
+							&& oldText.getLines().size()+newText.getLines().size() <= WebConstants.MAX_DIFF_FILE_LINES);
 				}
 				item.add(new DiffStatBar("bar", change.getAdditions(), change.getDeletions(), false).setVisible(barVisible));
 			}
@@ -28,11 +28,11 @@ import org.apache.wicket.request.resource.ResourceReference;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 
-import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.server.OneDev;
 import io.onedev.server.git.Blob;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.model.Project;
+import io.onedev.server.search.code.EncodedSymbols;
 import io.onedev.server.search.code.IndexConstants;
 import io.onedev.server.search.code.SearchManager;
 import io.onedev.server.search.code.hit.QueryHit;
@@ -208,23 +208,23 @@ public abstract class SymbolTooltipPanel extends Panel {
 					
 					if (symbolHits.size() < QUERY_ENTRIES) {
 						// first find in current file for matched symbols
-						List<Symbol> symbols = OneDev.getInstance(SearchManager.class).getSymbols(getProject(), 
+						EncodedSymbols symbols = OneDev.getInstance(SearchManager.class).getEncodedSymbols(getProject(), 
 								blob.getBlobId(), getBlobPath());
 						if (symbols != null) {
-							for (Symbol symbol: symbols) {
+							for (EncodedSymbols.Entry entry: symbols.getEntries()) {
 								if (symbolHits.size() < QUERY_ENTRIES 
-										&& symbol.isSearchable() 
-										&& symbolName.equals(symbol.getName()) 
-										&& symbol.isPrimary()) {
-									symbolHits.add(new SymbolHit(getBlobPath(), symbol, null));
+										&& entry.isSearchable() 
+										&& symbolName.equals(entry.getName()) 
+										&& entry.isPrimary()) {
+									symbolHits.add(new SymbolHit(getBlobPath(), symbols.getSymbol(entry), null));
 								}
 							}
-							for (Symbol symbol: symbols) {
+							for (EncodedSymbols.Entry entry: symbols.getEntries()) {
 								if (symbolHits.size() < QUERY_ENTRIES 
-										&& symbol.isSearchable() 
-										&& symbolName.equals(symbol.getName())
-										&& !symbol.isPrimary()) {
-									symbolHits.add(new SymbolHit(getBlobPath(), symbol, null));
+										&& entry.isSearchable() 
+										&& symbolName.equals(entry.getName())
+										&& !entry.isPrimary()) {
+									symbolHits.add(new SymbolHit(getBlobPath(), symbols.getSymbol(entry), null));
 								}
 							}
 						}
@@ -1,6 +1,9 @@
 package io.onedev.server.web.page.admin.serverinformation;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.ComponentTag;
@@ -9,12 +12,27 @@ import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.security.VerifiedCredentialManager;
+import io.onedev.server.storage.ArtifactStorageManager;
 import io.onedev.server.util.DateUtils;
+import io.onedev.server.util.beanclass.BeanClassManager;
+import io.onedev.server.util.work.BatchWorkManager;
+import io.onedev.server.util.work.BatchWorkStats;
+import io.onedev.server.web.avatar.AvatarManager;
 import io.onedev.server.web.page.admin.AdministrationPage;
+import io.onedev.server.web.pagestore.PageStats;
+import io.onedev.server.web.pagestore.PageStoreManager;
 
 @SuppressWarnings("serial")
 public class ServerInformationPage extends AdministrationPage {
 	
+	private static final int MAX_DISPLAYED_PAGES = 5;
+	
+	private static final int MAX_DISPLAYED_WORKERS = 5;
+	
 	public ServerInformationPage(PageParameters params) {
 		super(params);
 	}
@@ -67,6 +85,131 @@ public class ServerInformationPage extends AdministrationPage {
 		
 		add(new Label("osUserName", System.getProperty("user.name")));
 		
+		add(new Label("avatarCache", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				AvatarManager avatarManager = OneDev.getInstance(AvatarManager.class);
+				return describeCache(avatarManager.getHitCount(), avatarManager.getMissCount());
+			}
+			
+		}));
+		add(new Label("beanClassCache", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				BeanClassManager beanClassManager = OneDev.getInstance(BeanClassManager.class);
+				return describeCache(beanClassManager.getHitCount(), beanClassManager.getMissCount()) 
+						+ ", " + beanClassManager.getCompileTime() + " ms compiling";
+			}
+			
+		}));
+		add(new Label("buildStatusCache", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				BuildManager buildManager = OneDev.getInstance(BuildManager.class);
+				return describeCache(buildManager.getStatusCacheHitCount(), buildManager.getStatusCacheMissCount());
+			}
+			
+		}));
+		add(new Label("credentialCache", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				VerifiedCredentialManager verifiedCredentialManager = OneDev.getInstance(VerifiedCredentialManager.class);
+				return describeCache(verifiedCredentialManager.getHitCount(), verifiedCredentialManager.getMissCount());
+			}
+			
+		}));
+		add(new Label("artifactStorage", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				ArtifactStorageManager artifactStorageManager = OneDev.getInstance(ArtifactStorageManager.class);
+				long publishedBytes = artifactStorageManager.getPublishedBytes();
+				long deduplicatedBytes = artifactStorageManager.getDeduplicatedBytes();
+				long publishMillis = artifactStorageManager.getPublishMillis();
+				String description = FileUtils.byteCountToDisplaySize(publishedBytes) + " published, " 
+						+ FileUtils.byteCountToDisplaySize(deduplicatedBytes) + " deduplicated";
+				if (publishedBytes != 0) {
+					description += " (" + (int)(deduplicatedBytes * 100.0 / publishedBytes) + "%)";
+					if (publishMillis != 0)
+						description += ", " + FileUtils.byteCountToDisplaySize(publishedBytes * 1000 / publishMillis) + "/s";
+				}
+				return description;
+			}
+			
+		}));
+		add(new Label("pageStore", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				PageStoreManager pageStoreManager = OneDev.getInstance(PageStoreManager.class);
+				long storedBytes = pageStoreManager.getStoredBytes();
+				long compressedBytes = pageStoreManager.getCompressedBytes();
+				String description = FileUtils.byteCountToDisplaySize(pageStoreManager.getDiskUsage()) + " on disk, " 
+						+ FileUtils.byteCountToDisplaySize(storedBytes) + " stored, " 
+						+ FileUtils.byteCountToDisplaySize(compressedBytes) + " compressed";
+				if (storedBytes != 0)
+					description += " (" + (int)(compressedBytes * 100.0 / storedBytes) + "%)";
+				return description + ", " + pageStoreManager.getEvictedPages() + " pages evicted";
+			}
+			
+		}));
+		add(new Label("largestPages", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				List<String> descriptions = new ArrayList<>();
+				for (PageStats stats: OneDev.getInstance(PageStoreManager.class).getPageStats()) {
+					String pageName = stats.getPageClass().substring(stats.getPageClass().lastIndexOf('.') + 1);
+					descriptions.add(pageName + ": " + stats.getCount() + " serialized, " 
+							+ FileUtils.byteCountToDisplaySize(stats.getAverageSize()) + " average, " 
+							+ FileUtils.byteCountToDisplaySize(stats.getMaxSize()) + " max, " 
+							+ stats.getTotalNanos() / stats.getCount() / 1000 + " us average");
+					if (descriptions.size() == MAX_DISPLAYED_PAGES)
+						break;
+				}
+				if (!descriptions.isEmpty())
+					return String.join("; ", descriptions);
+				else
+					return "No pages serialized yet";
+			}
+			
+		}));
+		add(new Label("batchWorks", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				BatchWorkStats stats = OneDev.getInstance(BatchWorkManager.class).getStats();
+				return stats.getQueuedWorks() + " queued, " + stats.getRunningBatches() + " batches running, " 
+						+ stats.getProcessedWorks() + " processed in " + stats.getProcessedBatches() + " batches, " 
+						+ stats.getAverageLatency() + " ms average latency, " + stats.getMaxLatency() + " ms max latency";
+			}
+			
+		}));
+		add(new Label("busiestBatchWorkers", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				List<Map.Entry<String, Integer>> queueDepths = new ArrayList<>(
+						OneDev.getInstance(BatchWorkManager.class).getQueueDepths().entrySet());
+				queueDepths.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+				List<String> descriptions = new ArrayList<>();
+				for (Map.Entry<String, Integer> entry: queueDepths) {
+					descriptions.add(entry.getKey() + ": " + entry.getValue() + " queued");
+					if (descriptions.size() == MAX_DISPLAYED_WORKERS)
+						break;
+				}
+				if (!descriptions.isEmpty())
+					return String.join("; ", descriptions);
+				else
+					return "No queued works";
+			}
+			
+		}));
+		
 		add(new Link<Void>("gc") {
 
 			@Override
@@ -77,6 +220,14 @@ public class ServerInformationPage extends AdministrationPage {
 		});
 	}
 
+	private static String describeCache(long hitCount, long missCount) {
+		long requestCount = hitCount + missCount;
+		String description = hitCount + " hits, " + missCount + " misses";
+		if (requestCount != 0)
+			description += " (" + (int)(hitCount * 100.0 / requestCount) + "% hit rate)";
+		return description;
+	}
+	
 	@Override
 	protected Component newTopbarTitle(String componentId) {
 		return new Label(componentId, "Server Information");
@@ -60,7 +60,7 @@ class LastCommitsResource extends AbstractResource {
 				if (!SecurityUtils.canReadCode(project))
 					throw new UnauthorizedException();
 				
-				LastCommitsOfChildren lastCommits = project.getLastCommitsOfChildren(revision, path);
+				Map<String, LastCommitsOfChildren.Value> lastCommits = project.getLastCommitsOfChildren(revision, path);
 				
 				AvatarManager avatarManager = OneDev.getInstance(AvatarManager.class);
 				
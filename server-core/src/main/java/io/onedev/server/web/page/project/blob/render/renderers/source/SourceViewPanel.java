@@ -10,6 +10,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 import javax.servlet.http.Cookie;
@@ -58,6 +60,9 @@ import com.google.common.base.Preconditions;
 import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.commons.jsymbol.SymbolExtractor;
 import io.onedev.commons.jsymbol.SymbolExtractorRegistry;
+import io.onedev.commons.jsyntax.TokenUtils;
+import io.onedev.commons.jsyntax.Tokenized;
+import io.onedev.commons.jsyntax.TokenizerRegistry;
 import io.onedev.commons.utils.LinearRange;
 import io.onedev.commons.utils.PlanarRange;
 import io.onedev.commons.utils.StringUtils;
@@ -72,6 +77,7 @@ import io.onedev.server.git.BlameBlock;
 import io.onedev.server.git.Blob;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
+import io.onedev.server.git.cache.DiffCacheManager;
 import io.onedev.server.git.command.BlameCommand;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.CodeComment;
@@ -81,10 +87,12 @@ import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.User;
 import io.onedev.server.model.support.CompareContext;
 import io.onedev.server.model.support.Mark;
+import io.onedev.server.search.code.EncodedSymbols;
 import io.onedev.server.search.code.SearchManager;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.DateUtils;
+import io.onedev.server.util.diff.DiffUtils;
 import io.onedev.server.util.match.MatchScoreProvider;
 import io.onedev.server.util.match.MatchScoreUtils;
 import io.onedev.server.util.patternset.PatternSet;
@@ -127,7 +135,9 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 	
 	private static final String BODY_ID = "body";
 	
-	private final List<Symbol> symbols = new ArrayList<>();
+	private static final Pattern STYLE_CLASS_PATTERN = Pattern.compile("class\\s*=\\s*['\"]([^'\"]*)['\"]");
+	
+	private final EncodedSymbols symbols;
 	
 	private final IModel<AnnotationInfo> annotationInfoModel = new LoadableDetachableModel<AnnotationInfo>() {
 
@@ -182,21 +192,21 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 		
 		String blobName = context.getBlobIdent().getName();
 		SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor(blobName);
+		EncodedSymbols symbols = null;
 		if (extractor != null) {
+			// Symbols are decoded lazily, only when displayed in outline or searched
 			SearchManager searchManager = OneDev.getInstance(SearchManager.class);
-			List<Symbol> cachedSymbols = searchManager.getSymbols(context.getProject(), blob.getBlobId(), 
+			symbols = searchManager.getEncodedSymbols(context.getProject(), blob.getBlobId(), 
 					blob.getIdent().path);
-			if (cachedSymbols != null) {
-				symbols.addAll(cachedSymbols);
-			} else {
+			if (symbols == null) {
 				try {
-					symbols.addAll(extractor.extract(null, StringUtils.removeBOM(blob.getText().getContent())));
+					symbols = EncodedSymbols.of(extractor.extract(null, StringUtils.removeBOM(blob.getText().getContent())));
 				} catch (Exception e) {
 					logger.trace("Can not extract symbols from blob: " + context.getBlobIdent(), e);
 				}
 			}
 		}
-		
+		this.symbols = symbols!=null? symbols: EncodedSymbols.of(new ArrayList<>());
 	}
 	
 	@Override
@@ -576,32 +586,32 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 				case "syncOutline": 
 					int line = params.getParameterValue("param1").toInt();
 					int ch = params.getParameterValue("param2").toInt();
-					Symbol closest = null;
-					for (Symbol symbol: symbols) {
-						PlanarRange scope = symbol.getScope();
+					EncodedSymbols.Entry closest = null;
+					for (EncodedSymbols.Entry entry: symbols.getEntries()) {
+						PlanarRange scope = entry.getScope();
 						if (scope != null) {
 							if (contains(scope, line, ch)) {
 								if (closest != null) {
 									if (contains(closest.getScope(), scope.getFromRow(), scope.getFromColumn()) 
 											&& contains(closest.getScope(), scope.getToRow(), scope.getToColumn())) {
-										closest = symbol;
+										closest = entry;
 									}
 								} else {
-									closest = symbol;
+									closest = entry;
 								}
 							}
 						}
 					}
 					if (closest != null) {
 						@SuppressWarnings("unchecked")
-						NestedTree<Symbol> tree = (NestedTree<Symbol>) outline.get(BODY_ID);
-						Symbol current = closest;
+						NestedTree<EncodedSymbols.Entry> tree = (NestedTree<EncodedSymbols.Entry>) outline.get(BODY_ID);
+						EncodedSymbols.Entry current = closest;
 						while (current != null) {
 							tree.expand(current);
-							current = current.getParent();
+							current = getOutlineParent(current);
 						}
 						script = String.format("onedev.server.sourceView.syncOutline('%s');", 
-								getSymbolId(symbols, closest));
+								getSymbolId(closest));
 						target.appendJavaScript(script);
 					}
 					break;
@@ -636,8 +646,10 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 			
 		});
 		
-		IModel<HashSet<Symbol>> state = new Model<HashSet<Symbol>>(new HashSet<>(getChildSymbols(symbols, null)));
-		NestedTree<Symbol> tree = new NestedTree<Symbol>(BODY_ID, newSymbolTreeProvider(symbols), state) {
+		IModel<HashSet<EncodedSymbols.Entry>> state = new Model<HashSet<EncodedSymbols.Entry>>(
+				new HashSet<>(getChildEntries(symbols.getEntries(), null)));
+		NestedTree<EncodedSymbols.Entry> tree = new NestedTree<EncodedSymbols.Entry>(BODY_ID, 
+				newSymbolTreeProvider(symbols.getEntries()), state) {
 
 			@Override
 			protected void onInitialize() {
@@ -646,11 +658,12 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 			}
 
 			@Override
-			protected Component newContentComponent(String id, IModel<Symbol> nodeModel) {
-				Symbol symbol = nodeModel.getObject();
+			protected Component newContentComponent(String id, IModel<EncodedSymbols.Entry> nodeModel) {
+				EncodedSymbols.Entry entry = nodeModel.getObject();
+				Symbol symbol = symbols.getSymbol(entry);
 				
 				Fragment fragment = new Fragment(id, "outlineNodeFrag", SourceViewPanel.this);
-				fragment.setMarkupId(getSymbolId(symbols, symbol));
+				fragment.setMarkupId(getSymbolId(entry));
 				fragment.setOutputMarkupId(true);
 				
 				fragment.add(symbol.renderIcon("icon"));
@@ -660,7 +673,7 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 					@Override
 					public void onClick(AjaxRequestTarget target) {
 						context.onSelect(target, context.getBlobIdent(),
-								SourceRendererProvider.getPosition(symbol.getPosition()));
+								SourceRendererProvider.getPosition(symbols.getSymbol(entry).getPosition()));
 					}
 					
 				};
@@ -764,22 +777,28 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 	}
 	
 	private boolean hasOutline() {
-		for (Symbol symbol: symbols) {
-			if (symbol.isDisplayInOutline())
-				return true;
-		}
-		return false;
+		return symbols.hasOutline();
 	}
 	
-	private List<Symbol> getChildSymbols(List<Symbol> symbols, @Nullable Symbol parentSymbol) {
-		List<Symbol> children = new ArrayList<>();
-		for (Symbol symbol: symbols) {
-			if (symbol.isDisplayInOutline() && symbol.getOutlineParent() == parentSymbol)
-				children.add(symbol);
+	private List<EncodedSymbols.Entry> getChildEntries(List<EncodedSymbols.Entry> entries, 
+			@Nullable EncodedSymbols.Entry parentEntry) {
+		int parentIndex = parentEntry!=null? parentEntry.getIndex(): -1;
+		List<EncodedSymbols.Entry> children = new ArrayList<>();
+		for (EncodedSymbols.Entry entry: entries) {
+			if (entry.isDisplayInOutline() && entry.getOutlineParentIndex() == parentIndex)
+				children.add(entry);
 		}
 		return children;
 	}
 	
+	@Nullable
+	private EncodedSymbols.Entry getOutlineParent(EncodedSymbols.Entry entry) {
+		if (entry.getOutlineParentIndex() != -1)
+			return symbols.getEntries().get(entry.getOutlineParentIndex());
+		else
+			return null;
+	}
+	
 	private String getJsonOfBlameInfos(boolean blamed) {
 		String jsonOfBlameInfos;
 		if (blamed) {
@@ -811,6 +830,62 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 		return jsonOfBlameInfos;
 	}
 	
+	/*
+	 * Tokenize via diff cache manager so that tokenized lines of the blob are shared 
+	 * with other viewers and with diffs of the blob. Tokens of each line are converted 
+	 * to [beginPos, endPos, style, ...] for the browser, with un-styled text omitted
+	 */
+	@Nullable
+	private List<List<Object>> getTokenizedLines(Blob blob) {
+		String blobName = context.getBlobIdent().getName();
+		List<String> lines = blob.getText().getLines();
+		if (TokenizerRegistry.getTokenizer(blobName) == null || lines.size() > DiffUtils.MAX_CHAR_DIFF_SIZE)
+			return null;
+		
+		List<Tokenized> tokenizedLines = OneDev.getInstance(DiffCacheManager.class)
+				.getTokenizedLines(blob.getBlobId(), blobName, lines);
+		Map<Integer, String> styles = new HashMap<>();
+		List<List<Object>> tokensOfLines = new ArrayList<>();
+		for (Tokenized tokenizedLine: tokenizedLines) {
+			List<Object> tokensOfLine = new ArrayList<>();
+			for (long token: tokenizedLine.getTokens()) {
+				int typeId = TokenUtils.getTypeId(token);
+				if (typeId != 0) {
+					if (!styles.containsKey(typeId))
+						styles.put(typeId, getStyle(typeId));
+					String style = styles.get(typeId);
+					if (style != null) {
+						tokensOfLine.add(TokenUtils.getBeginPos(token));
+						tokensOfLine.add(TokenUtils.getEndPos(token));
+						tokensOfLine.add(style);
+					}
+				}
+			}
+			tokensOfLines.add(tokensOfLine);
+		}
+		return tokensOfLines;
+	}
+	
+	/*
+	 * Get CodeMirror style of specified token type, which is the css class of rendered 
+	 * token without the "cm-" prefix 
+	 */
+	@Nullable
+	private static String getStyle(int typeId) {
+		String html = TokenUtils.toHtml("x", TokenUtils.getToken(0, 1, typeId), null, null);
+		Matcher matcher = STYLE_CLASS_PATTERN.matcher(html);
+		if (matcher.find()) {
+			List<String> styles = new ArrayList<>();
+			for (String cssClass: StringUtils.split(matcher.group(1), " ")) {
+				if (cssClass.startsWith("cm-"))
+					styles.add(cssClass.substring("cm-".length()));
+			}
+			if (!styles.isEmpty())
+				return StringUtils.join(styles, " ");
+		} 
+		return null;
+	}
+	
 	@Override
 	public void renderHead(IHeaderResponse response) {
 		super.renderHead(response);
@@ -841,7 +916,7 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 			markRange = (PlanarRange) commentContainer.getDefaultModelObject();
 		
 		String script = String.format("onedev.server.sourceView.onDomReady("
-				+ "'%s', '%s', %s, %s, '%s', '%s', %s, %s, %s, %s, '%s', %s);", 
+				+ "'%s', '%s', %s, %s, '%s', '%s', %s, %s, %s, %s, '%s', %s, %s);", 
 				JavaScriptEscape.escapeJavaScript(context.getBlobIdent().path),
 				JavaScriptEscape.escapeJavaScript(blob.getText().getContent()),
 				convertToJson(openCommentInfo),
@@ -853,7 +928,8 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 				blameMessageBehavior.getCallback(),
 				sourceFormat.getTabSize(),
 				sourceFormat.getLineWrapMode(), 
-				convertToJson(annotationInfoModel.getObject()));
+				convertToJson(annotationInfoModel.getObject()), 
+				convertToJson(getTokenizedLines(blob)));
 		response.render(OnDomReadyHeaderItem.forScript(script));
 		
 		if (markRange != null) {
@@ -878,8 +954,8 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 		List<LinearRange> ranges;
 	}
 	
-	private String getSymbolId(List<Symbol> symbols, Symbol symbol) {
-		return "outline-symbol-" + symbols.indexOf(symbol);
+	private String getSymbolId(EncodedSymbols.Entry entry) {
+		return "outline-symbol-" + entry.getIndex();
 	}
 
 	@Override
@@ -898,45 +974,46 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 		target.appendJavaScript(script);
 	}
 
-	private ITreeProvider<Symbol> newSymbolTreeProvider(List<Symbol> symbols) {
-		return new ITreeProvider<Symbol>() {
+	private ITreeProvider<EncodedSymbols.Entry> newSymbolTreeProvider(List<EncodedSymbols.Entry> entries) {
+		return new ITreeProvider<EncodedSymbols.Entry>() {
 
 			@Override
 			public void detach() {
 			}
 
 			@Override
-			public Iterator<? extends Symbol> getRoots() {
-				return getChildSymbols(symbols, null).iterator();
+			public Iterator<? extends EncodedSymbols.Entry> getRoots() {
+				return getChildEntries(entries, null).iterator();
 			}
 
 			@Override
-			public boolean hasChildren(Symbol symbol) {
-				return !getChildSymbols(symbols, symbol).isEmpty();
+			public boolean hasChildren(EncodedSymbols.Entry entry) {
+				return !getChildEntries(entries, entry).isEmpty();
 			}
 
 			@Override
-			public Iterator<? extends Symbol> getChildren(Symbol symbol) {
-				return getChildSymbols(symbols, symbol).iterator();
+			public Iterator<? extends EncodedSymbols.Entry> getChildren(EncodedSymbols.Entry entry) {
+				return getChildEntries(entries, entry).iterator();
 			}
 
 			@Override
-			public IModel<Symbol> model(Symbol symbol) {
-				return Model.of(symbol);
+			public IModel<EncodedSymbols.Entry> model(EncodedSymbols.Entry entry) {
+				return Model.of(entry);
 			}
 			
 		};		
 	}
 	
-	private NestedTree<Symbol> newOutlineSearchSymbolTree(ModalPanel modal, List<Symbol> symbols, 
-			@Nullable String searchInput) {
-		IModel<HashSet<Symbol>> state;
+	private NestedTree<EncodedSymbols.Entry> newOutlineSearchSymbolTree(ModalPanel modal, 
+			List<EncodedSymbols.Entry> entries, @Nullable String searchInput) {
+		IModel<HashSet<EncodedSymbols.Entry>> state;
 		if (StringUtils.isNotBlank(searchInput)) {
-			state = new Model<HashSet<Symbol>>(new HashSet<>(symbols));
+			state = new Model<HashSet<EncodedSymbols.Entry>>(new HashSet<>(entries));
 		} else {
-			state = new Model<HashSet<Symbol>>(new HashSet<>(getChildSymbols(symbols, null)));
+			state = new Model<HashSet<EncodedSymbols.Entry>>(new HashSet<>(getChildEntries(entries, null)));
 		}
-		NestedTree<Symbol> tree = new NestedTree<Symbol>("result", newSymbolTreeProvider(symbols), state) {
+		NestedTree<EncodedSymbols.Entry> tree = new NestedTree<EncodedSymbols.Entry>("result", 
+				newSymbolTreeProvider(entries), state) {
 
 			@Override
 			protected void onInitialize() {
@@ -945,8 +1022,9 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 			}
 
 			@Override
-			protected Component newContentComponent(String id, IModel<Symbol> nodeModel) {
-				Symbol symbol = nodeModel.getObject();
+			protected Component newContentComponent(String id, IModel<EncodedSymbols.Entry> nodeModel) {
+				EncodedSymbols.Entry entry = nodeModel.getObject();
+				Symbol symbol = symbols.getSymbol(entry);
 				
 				Fragment fragment = new Fragment(id, "outlineSearchNodeFrag", SourceViewPanel.this);
 				fragment.setOutputMarkupId(true);
@@ -956,19 +1034,20 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 					@Override
 					public void onClick(AjaxRequestTarget target) {
 						modal.close();
-						context.onSelect(target, context.getBlobIdent(), SourceRendererProvider.getPosition(symbol.getPosition()));
+						context.onSelect(target, context.getBlobIdent(), 
+								SourceRendererProvider.getPosition(symbols.getSymbol(entry).getPosition()));
 					}
 					
 				};
 				link.add(symbol.renderIcon("icon"));
 				link.add(symbol.render("label", null));
-				link.add(AttributeAppender.append("data-symbolindex", symbols.indexOf(symbol)));
+				link.add(AttributeAppender.append("data-symbolindex", entries.indexOf(entry)));
 				
 				fragment.add(link);
 
-				for (Symbol each: symbols) {
+				for (EncodedSymbols.Entry each: entries) {
 					if (each.isDisplayInOutline()) {
-						if (symbol == each)
+						if (entry == each)
 							link.add(AttributeAppender.append("class", "active"));
 						break;
 					}
@@ -1003,11 +1082,11 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 		
 		TextField<String> searchField = new TextField<>("input");
 		fragment.add(searchField);
-		fragment.add(newOutlineSearchSymbolTree(modal, symbols, null));
+		fragment.add(newOutlineSearchSymbolTree(modal, symbols.getEntries(), null));
 		
 		fragment.add(new AbstractPostAjaxBehavior() {
 			
-			private List<Symbol> filteredSymbols = new ArrayList<Symbol>(symbols);
+			private List<EncodedSymbols.Entry> filteredEntries = new ArrayList<>(symbols.getEntries());
 			
 			@Override
 			protected void updateAjaxAttributes(AjaxRequestAttributes attributes) {
@@ -1023,33 +1102,34 @@ public class SourceViewPanel extends BlobViewPanel implements Positionable, Sear
 				if (key.equals("input")) {
 					String searchInput = params.getParameterValue("param").toString();
 					
-					MatchScoreProvider<Symbol> matchScoreProvider = new MatchScoreProvider<Symbol>() {
+					MatchScoreProvider<EncodedSymbols.Entry> matchScoreProvider = new MatchScoreProvider<EncodedSymbols.Entry>() {
 
 						@Override
-						public double getMatchScore(Symbol object) {
+						public double getMatchScore(EncodedSymbols.Entry object) {
 							return MatchScoreUtils.getMatchScore(object.getName(), searchInput);
 						}
 						
 					};
 					
-					List<Symbol> matchSymbols = MatchScoreUtils.filterAndSort(symbols, matchScoreProvider);
+					List<EncodedSymbols.Entry> matchEntries = MatchScoreUtils.filterAndSort(
+							symbols.getEntries(), matchScoreProvider);
 					
-					filteredSymbols = new ArrayList<>();
-					for (Symbol symbol: matchSymbols) {
-						Symbol current = symbol;
+					filteredEntries = new ArrayList<>();
+					for (EncodedSymbols.Entry entry: matchEntries) {
+						EncodedSymbols.Entry current = entry;
 						while (current != null) {
-							if (!filteredSymbols.contains(current))
-								filteredSymbols.add(current);
-							current = current.getOutlineParent();
+							if (!filteredEntries.contains(current))
+								filteredEntries.add(current);
+							current = getOutlineParent(current);
 						}
 					}
 					
-					NestedTree<Symbol> tree = newOutlineSearchSymbolTree(modal, filteredSymbols, searchInput);
+					NestedTree<EncodedSymbols.Entry> tree = newOutlineSearchSymbolTree(modal, filteredEntries, searchInput);
 					fragment.replace(tree);
 					target.add(tree);
 				} else if (key.equals("return")) {
 					int symbolIndex = params.getParameterValue("param").toInt();
-					Symbol symbol = filteredSymbols.get(symbolIndex); 
+					Symbol symbol = symbols.getSymbol(filteredEntries.get(symbolIndex)); 
 					context.onSelect(target, context.getBlobIdent(), SourceRendererProvider.getPosition(symbol.getPosition()));
 					modal.close();
 				} else {
@@ -1,7 +1,7 @@
 onedev.server.sourceView = {
 	onDomReady: function(filePath, fileContent, openComment, markRange, symbolTooltipId, 
 			revision, blameInfos, callback, blameMessageCallback, tabSize, lineWrapMode, 
-			annotationInfo) {
+			annotationInfo, tokenizedLines) {
 		
 		var $sourceView = $(".source-view");
 		var $code = $sourceView.children(".code");
@@ -23,7 +23,10 @@ onedev.server.sourceView = {
 			gutters: ["CodeMirror-linenumbers", "CodeMirror-foldgutter"]
 		});
 
-		onedev.server.codemirror.setModeByFileName(cm, filePath);
+		if (tokenizedLines)
+			onedev.server.codemirror.setModeByTokenizedLines(cm, tokenizedLines);
+		else
+			onedev.server.codemirror.setModeByFileName(cm, filePath);
 
 		$sourceView.data("callback", callback);
 		$sourceView.data("blameMessageCallback", blameMessageCallback);
@@ -163,6 +163,9 @@ public class BuildArtifactsPage extends BuildDetailPage {
 					Fragment fragment = new Fragment(id, "contentFrag", BuildArtifactsPage.this);
 					File file = model.getObject();
 					WebMarkupContainer link;
+					String artifactPath = getBuild().getArtifactsDir().toURI().relativize(file.toURI()).getPath();
+					PageParameters params = ArtifactResource.paramsOf(
+							getBuild().getProject(), getBuild().getNumber(), artifactPath); 
 					if (file.isDirectory()) {
 						link = new AjaxLink<Void>("link") {
 
@@ -177,13 +180,12 @@ public class BuildArtifactsPage extends BuildDetailPage {
 						};
 						link.add(new SpriteImage("icon", "folder"));
 						link.add(AttributeAppender.append("class", "folder"));
+						fragment.add(new ResourceLink<Void>("downloadZip", new ArtifactResourceReference(), params));
 					} else {
-						String artifactPath = getBuild().getArtifactsDir().toURI().relativize(file.toURI()).getPath();
-						PageParameters params = ArtifactResource.paramsOf(
-								getBuild().getProject(), getBuild().getNumber(), artifactPath); 
 						link = new ResourceLink<Void>("link", new ArtifactResourceReference(), params);
 						link.add(new SpriteImage("icon", "file"));
 						link.add(AttributeAppender.append("class", "file"));
+						fragment.add(new WebMarkupContainer("downloadZip").setVisible(false));
 					}
 					link.add(new Label("label", file.getName()));
 					fragment.add(link);
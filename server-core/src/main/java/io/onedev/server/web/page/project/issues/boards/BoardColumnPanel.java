@@ -56,6 +56,7 @@ import io.onedev.server.search.entity.issue.IssueQueryLexer;
 import io.onedev.server.search.entity.issue.MilestoneCriteria;
 import io.onedev.server.search.entity.issue.StateCriteria;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.BoardColumnIssues;
 import io.onedev.server.util.ComponentContext;
 import io.onedev.server.util.EditContext;
 import io.onedev.server.web.behavior.AbstractPostAjaxBehavior;
@@ -100,13 +101,13 @@ abstract class BoardColumnPanel extends Panel implements EditContext {
 
 		@Override
 		protected Integer load() {
-			if (getQuery() != null) {
-				try {
-					return OneDev.getInstance(IssueManager.class).count(getProject(), getQuery().getCriteria());
-				} catch(ExplicitException e) {
+			try {
+				BoardColumnIssues columnIssues = getColumnIssues();
+				if (columnIssues != null)
+					return columnIssues.getCount();
+				else
 					return 0;
-				}
-			} else {
+			} catch(ExplicitException e) {
 				return 0;
 			}
 		}
@@ -206,6 +207,15 @@ abstract class BoardColumnPanel extends Panel implements EditContext {
 						return countModel.getObject();
 					}
 
+					@Override
+					protected List<Issue> queryFirstPage() {
+						BoardColumnIssues columnIssues = getColumnIssues();
+						if (columnIssues != null)
+							return columnIssues.getFirstPage();
+						else
+							return new ArrayList<>();
+					}
+
 				});
 				
 				super.onBeforeRender();
@@ -438,5 +448,13 @@ abstract class BoardColumnPanel extends Panel implements EditContext {
 	
 	@Nullable
 	protected abstract IssueQuery getBoardQuery();
+	
+	/**
+	 * @return
+	 * 			count and first page of issues of this column, or <tt>null</tt> if board 
+	 * 			query is not available
+	 */
+	@Nullable
+	protected abstract BoardColumnIssues getColumnIssues();
 
 }
@@ -44,7 +44,7 @@ abstract class CardListPanel extends Panel {
 		RepeatingView cardsView = new RepeatingView("cards");
 		int index = 0;
 		try {
-			List<Issue> issues = queryIssues(0, WebConstants.PAGE_SIZE);
+			List<Issue> issues = queryFirstPage();
 			for (Issue issue: issues) {
 				Long issueId = issue.getId();
 				IModel<Issue> model = new LoadableDetachableModel<Issue>() {
@@ -140,6 +140,10 @@ abstract class CardListPanel extends Panel {
 		return OneDev.getInstance(IssueManager.class);
 	}
 
+	protected List<Issue> queryFirstPage() {
+		return queryIssues(0, WebConstants.PAGE_SIZE);
+	}
+	
 	private List<Issue> queryIssues(int offset, int count) {
 		if (getQuery() != null) {
 			return getIssueManager().query(getProject(), getQuery(), offset, count, true);
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -41,6 +42,7 @@ import org.apache.wicket.request.mapper.parameter.PageParameters;
 
 import io.onedev.commons.utils.ExplicitException;
 import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.IssueManager;
 import io.onedev.server.entitymanager.MilestoneManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.model.Issue;
@@ -53,11 +55,15 @@ import io.onedev.server.model.support.issue.fieldspec.FieldSpec;
 import io.onedev.server.model.support.issue.fieldspec.NumberField;
 import io.onedev.server.search.entity.EntityQuery;
 import io.onedev.server.search.entity.EntitySort;
+import io.onedev.server.search.entity.issue.IssueCriteria;
 import io.onedev.server.search.entity.issue.IssueQuery;
 import io.onedev.server.search.entity.issue.IssueQueryLexer;
+import io.onedev.server.search.entity.issue.MilestoneCriteria;
 import io.onedev.server.search.entity.issue.NumberCriteria;
 import io.onedev.server.search.entity.issue.TitleCriteria;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.BoardColumnIssues;
+import io.onedev.server.web.WebConstants;
 import io.onedev.server.web.ajaxlistener.ConfirmClickListener;
 import io.onedev.server.web.asset.icon.IconScope;
 import io.onedev.server.web.behavior.IssueQueryBehavior;
@@ -124,6 +130,28 @@ public class IssueBoardsPage extends ProjectIssuesPage {
 		
 	};
 	
+	private final IModel<Map<String, BoardColumnIssues>> columnIssuesModel = 
+			new LoadableDetachableModel<Map<String, BoardColumnIssues>>() {
+
+		@Override
+		protected Map<String, BoardColumnIssues> load() {
+			IssueQuery boardQuery = queryModel.getObject();
+			if (boardQuery != null) {
+				List<IssueCriteria> criterias = new ArrayList<>();
+				if (boardQuery.getCriteria() != null)
+					criterias.add(boardQuery.getCriteria());
+				if (getMilestone() != null)
+					criterias.add(new MilestoneCriteria(getMilestone().getName()));
+				IssueQuery query = new IssueQuery(IssueCriteria.and(criterias), boardQuery.getSorts());
+				return OneDev.getInstance(IssueManager.class).queryBoardColumns(getProject(), query, 
+						getBoard().getIdentifyField(), getBoard().getColumns(), WebConstants.PAGE_SIZE);
+			} else {
+				return null;
+			}
+		}
+		
+	};
+	
 	private IFeedbackMessageFilter newFeedbackMessageFilter(boolean backlog) {
 		return new IFeedbackMessageFilter() {
 			
@@ -223,6 +251,7 @@ public class IssueBoardsPage extends ProjectIssuesPage {
 		milestoneModel.detach();
 		queryModel.detach();
 		backlogQueryModel.detach();
+		columnIssuesModel.detach();
 		super.onDetach();
 	}
 
@@ -783,6 +812,15 @@ public class IssueBoardsPage extends ProjectIssuesPage {
 						return queryModel.getObject();
 					}
 
+					@Override
+					protected BoardColumnIssues getColumnIssues() {
+						Map<String, BoardColumnIssues> columnIssues = columnIssuesModel.getObject();
+						if (columnIssues != null)
+							return columnIssues.get(column);
+						else
+							return null;
+					}
+
 				});
 			}
 			body.add(columnsView);
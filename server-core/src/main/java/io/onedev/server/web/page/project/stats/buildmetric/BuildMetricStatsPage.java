@@ -34,9 +34,11 @@ import com.google.common.collect.Lists;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.BuildMetricManager;
 import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
 import io.onedev.server.model.Project;
 import io.onedev.server.search.buildmetric.BuildMetricQuery;
 import io.onedev.server.util.BeanUtils;
+import io.onedev.server.util.BuildMetricStats;
 import io.onedev.server.util.Day;
 import io.onedev.server.util.MetricIndicator;
 import io.onedev.server.util.Pair;
@@ -188,8 +190,9 @@ public abstract class BuildMetricStatsPage<T extends AbstractEntity> extends Pro
 						}
 					});
 					
-					Map<Integer, T> stats = OneDev.getInstance(BuildMetricManager.class)
+					BuildMetricStats<T> stats = OneDev.getInstance(BuildMetricManager.class)
 							.queryStats(getProject(), metricClass, parsedQuery);
+					Granularity granularity = stats.getGranularity();
 
 					for (List<Method> group: groupedMetricGetters) {
 						MetricIndicator indicator = group.get(0).getAnnotation(MetricIndicator.class);
@@ -222,7 +225,7 @@ public abstract class BuildMetricStatsPage<T extends AbstractEntity> extends Pro
 						}
 						
 						Map<Integer, List<Integer>> discreteValues = new HashMap<>();
-						for (Map.Entry<Integer, T> entry: stats.entrySet()) {
+						for (Map.Entry<Integer, T> entry: stats.getMetrics().entrySet()) {
 							List<Integer> lineValues = new ArrayList<>();
 							for (Method getter: group) {
 								try {
@@ -236,21 +239,27 @@ public abstract class BuildMetricStatsPage<T extends AbstractEntity> extends Pro
 						
 						Map<String, List<Integer>> completeValues = new LinkedHashMap<>();
 						if (!discreteValues.isEmpty()) {
-							int minDayValue = Collections.min(discreteValues.keySet());
-							int maxDayValue = Collections.max(discreteValues.keySet());
+							int minPeriod = Collections.min(discreteValues.keySet());
+							int maxPeriod = Collections.max(discreteValues.keySet());
 							List<Integer> lastValues = null;
-							int currentDayValue = minDayValue;
-							while (currentDayValue<=maxDayValue) {
-								List<Integer> currentValues = discreteValues.get(currentDayValue);
+							int currentPeriod = minPeriod;
+							while (currentPeriod<=maxPeriod) {
+								List<Integer> currentValues = discreteValues.get(currentPeriod);
 								if (currentValues == null)
 									currentValues = lastValues;
 								else 
 									lastValues = currentValues;
-								Day currentDay = new Day(currentDayValue);
-								String currentDayLabel = String.format("%02d-%02d-%02d", 
-										currentDay.getYear()%100, currentDay.getMonthOfYear()+1, currentDay.getDayOfMonth());
-								completeValues.put(currentDayLabel, currentValues);
-								currentDayValue = new Day(currentDay.getDate().plusDays(1)).getValue();
+								Day currentDay = new Day(currentPeriod);
+								String currentPeriodLabel;
+								if (granularity == Granularity.MONTH) {
+									currentPeriodLabel = String.format("%02d-%02d", 
+											currentDay.getYear()%100, currentDay.getMonthOfYear()+1);
+								} else {
+									currentPeriodLabel = String.format("%02d-%02d-%02d", 
+											currentDay.getYear()%100, currentDay.getMonthOfYear()+1, currentDay.getDayOfMonth());
+								}
+								completeValues.put(currentPeriodLabel, currentValues);
+								currentPeriod = granularity.getNextPeriod(currentPeriod);
 							}
 						} 
 						serieses.add(new LineSeries(groupName, lineNames, completeValues, valueFormatter, 
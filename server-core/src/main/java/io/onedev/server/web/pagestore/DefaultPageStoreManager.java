@@ -0,0 +1,350 @@
+package io.onedev.server.web.pagestore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+
+import io.onedev.commons.launcher.bootstrap.Bootstrap;
+import io.onedev.commons.utils.FileUtils;
+
+/**
+ * Pages are deflated with fastest compression level, which normally shrinks serialized pages to
+ * a fraction of their size at little cost. This store is expected to be wrapped by Wicket's
+ * asynchronous data store, so compression and disk writing happen off the request thread.
+ * 
+ * As a consequence, a page may be stored after its session is removed. Removed sessions are 
+ * remembered for a while to skip such pages.
+ */
+@Singleton
+public class DefaultPageStoreManager implements PageStoreManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultPageStoreManager.class);
+
+	private static final long MAX_DISK_USAGE = 1024L*1024*1024;
+
+	private static final int LARGE_PAGE_SIZE = 1024*1024;
+
+	private static final int BUFFER_SIZE = 64*1024;
+
+	private static final String TEMP_PREFIX = "temp-";
+
+	private static final int REMOVED_SESSION_EXPIRE_HOURS = 1;
+	
+	private final File storeDir;
+	
+	private final long maxDiskUsage;
+	
+	// access ordered to evict least recently used pages first, guarded by this
+	private final Map<PageKey, Long> storedPages = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long diskUsage;
+
+	private final AtomicLong storedBytes = new AtomicLong(0);
+
+	private final AtomicLong compressedBytes = new AtomicLong(0);
+
+	private final AtomicLong evictedPages = new AtomicLong(0);
+
+	private final Map<Class<?>, PageStatsCollector> pageStats = new ConcurrentHashMap<>();
+
+	private final Cache<String, Boolean> removedSessions = CacheBuilder.newBuilder()
+			.expireAfterWrite(REMOVED_SESSION_EXPIRE_HOURS, TimeUnit.HOURS)
+			.build();
+	
+	@Inject
+	public DefaultPageStoreManager() {
+		this(new File(Bootstrap.getTempDir(), "pages"), MAX_DISK_USAGE);
+	}
+	
+	DefaultPageStoreManager(File storeDir, long maxDiskUsage) {
+		this.storeDir = storeDir;
+		this.maxDiskUsage = maxDiskUsage;
+	}
+	
+	private File getSessionDir(String sessionId) {
+		return new File(storeDir, sessionId.replaceAll("[^\\w\\.\\-]", "_"));
+	}
+	
+	/*
+	 * Delete directory of specified session if it is empty. Directory creation and file 
+	 * writing of the session are synchronized with this, so that a page being stored will 
+	 * keep the directory
+	 */
+	private void deleteSessionDirIfEmpty(String sessionId) {
+		String[] fileNames = getSessionDir(sessionId).list();
+		if (fileNames != null && fileNames.length == 0)
+			FileUtils.deleteDir(getSessionDir(sessionId));
+	}
+
+	private File getPageFile(String sessionId, int pageId) {
+		return new File(getSessionDir(sessionId), String.valueOf(pageId));
+	}
+
+	@Override
+	public byte[] getData(String sessionId, int id) {
+		synchronized (this) {
+			if (storedPages.get(new PageKey(sessionId, id)) == null)
+				return null;
+		}
+		Inflater inflater = new Inflater();
+		try (InputStream is = new InflaterInputStream(new FileInputStream(getPageFile(sessionId, id)), 
+				inflater, BUFFER_SIZE)) {
+			return ByteStreams.toByteArray(is);
+		} catch (FileNotFoundException e) {
+			// evicted or removed meanwhile
+			return null;
+		} catch (IOException e) {
+			logger.error("Error reading page (session id: " + sessionId + ", page id: " + id + ")", e);
+			return null;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@Override
+	public void removeData(String sessionId, int id) {
+		synchronized (this) {
+			Long size = storedPages.remove(new PageKey(sessionId, id));
+			if (size != null) {
+				diskUsage -= size;
+				FileUtils.deleteFile(getPageFile(sessionId, id));
+				deleteSessionDirIfEmpty(sessionId);
+			}
+		}
+	}
+
+	@Override
+	public void removeData(String sessionId) {
+		synchronized (this) {
+			removedSessions.put(sessionId, true);
+			for (Iterator<Map.Entry<PageKey, Long>> it = storedPages.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<PageKey, Long> entry = it.next();
+				if (entry.getKey().sessionId.equals(sessionId)) {
+					diskUsage -= entry.getValue();
+					it.remove();
+				}
+			}
+			FileUtils.deleteDir(getSessionDir(sessionId));
+		}
+	}
+
+	@Override
+	public void storeData(String sessionId, int id, byte[] data) {
+		File pageFile = getPageFile(sessionId, id);
+		File tempFile = new File(pageFile.getParentFile(), TEMP_PREFIX + id + "-" + UUID.randomUUID().toString());
+
+		OutputStream fos;
+		synchronized (this) {
+			if (removedSessions.getIfPresent(sessionId) != null)
+				return;
+			FileUtils.createDir(pageFile.getParentFile());
+			try {
+				fos = new FileOutputStream(tempFile);
+			} catch (IOException e) {
+				logger.error("Error writing page (session id: " + sessionId + ", page id: " + id + ")", e);
+				return;
+			}
+		}
+		
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (OutputStream os = new DeflaterOutputStream(fos, deflater, BUFFER_SIZE)) {
+			os.write(data);
+		} catch (IOException e) {
+			FileUtils.deleteFile(tempFile);
+			logger.error("Error writing page (session id: " + sessionId + ", page id: " + id + ")", e);
+			return;
+		} finally {
+			deflater.end();
+		}
+
+		long size = tempFile.length();
+		storedBytes.addAndGet(data.length);
+		compressedBytes.addAndGet(size);
+
+		int evicted = 0;
+		synchronized (this) {
+			if (removedSessions.getIfPresent(sessionId) != null) {
+				FileUtils.deleteFile(tempFile);
+				deleteSessionDirIfEmpty(sessionId);
+				return;
+			}
+			try {
+				Files.move(tempFile.toPath(), pageFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				FileUtils.deleteFile(tempFile);
+				logger.error("Error writing page (session id: " + sessionId + ", page id: " + id + ")", e);
+				return;
+			}
+			PageKey key = new PageKey(sessionId, id);
+			Long prevSize = storedPages.put(key, size);
+			diskUsage += size - (prevSize!=null?prevSize:0);
+
+			Collection<String> evictedSessionIds = new HashSet<>();
+			for (Iterator<Map.Entry<PageKey, Long>> it = storedPages.entrySet().iterator();
+					diskUsage > maxDiskUsage && it.hasNext();) {
+				Map.Entry<PageKey, Long> entry = it.next();
+				if (!entry.getKey().equals(key)) {
+					diskUsage -= entry.getValue();
+					it.remove();
+					FileUtils.deleteFile(getPageFile(entry.getKey().sessionId, entry.getKey().pageId));
+					evictedSessionIds.add(entry.getKey().sessionId);
+					evicted++;
+				}
+			}
+			for (String evictedSessionId: evictedSessionIds)
+				deleteSessionDirIfEmpty(evictedSessionId);
+		}
+		if (evicted != 0) {
+			evictedPages.addAndGet(evicted);
+			logger.debug("Evicted {} least recently used pages to keep page store within disk budget", evicted);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		synchronized (this) {
+			storedPages.clear();
+			diskUsage = 0;
+			FileUtils.deleteDir(storeDir);
+		}
+	}
+
+	@Override
+	public boolean isReplicated() {
+		return false;
+	}
+
+	@Override
+	public boolean canBeAsynchronous() {
+		return true;
+	}
+
+	@Override
+	public void recordSerialization(Class<?> pageClass, int size, long nanos) {
+		PageStatsCollector collector = pageStats.computeIfAbsent(pageClass, it->new PageStatsCollector());
+		synchronized (collector) {
+			collector.count++;
+			collector.totalSize += size;
+			collector.maxSize = Math.max(collector.maxSize, size);
+			collector.totalNanos += nanos;
+		}
+		if (size > LARGE_PAGE_SIZE)
+			logger.debug("Large page serialized (page: {}, size: {} bytes)", pageClass.getName(), size);
+	}
+
+	@Override
+	public List<PageStats> getPageStats() {
+		List<PageStats> stats = new ArrayList<>();
+		for (Map.Entry<Class<?>, PageStatsCollector> entry: pageStats.entrySet()) {
+			PageStatsCollector collector = entry.getValue();
+			synchronized (collector) {
+				stats.add(new PageStats(entry.getKey().getName(), collector.count, collector.totalSize,
+						collector.maxSize, collector.totalNanos));
+			}
+		}
+		stats.sort(Comparator.comparing(PageStats::getTotalSize).reversed());
+		return stats;
+	}
+
+	@Override
+	public synchronized long getDiskUsage() {
+		return diskUsage;
+	}
+
+	@Override
+	public long getStoredBytes() {
+		return storedBytes.get();
+	}
+
+	@Override
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	@Override
+	public long getEvictedPages() {
+		return evictedPages.get();
+	}
+
+	private static class PageStatsCollector {
+
+		long count;
+
+		long totalSize;
+
+		int maxSize;
+
+		long totalNanos;
+
+	}
+
+	private static class PageKey {
+
+		private final String sessionId;
+
+		private final int pageId;
+
+		public PageKey(String sessionId, int pageId) {
+			this.sessionId = sessionId;
+			this.pageId = pageId;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof PageKey))
+				return false;
+			if (this == other)
+				return true;
+			PageKey otherKey = (PageKey) other;
+			return new EqualsBuilder()
+					.append(sessionId, otherKey.sessionId)
+					.append(pageId, otherKey.pageId)
+					.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37)
+					.append(sessionId)
+					.append(pageId)
+					.toHashCode();
+		}
+
+	}
+
+}
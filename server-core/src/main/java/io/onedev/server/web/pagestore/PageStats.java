@@ -0,0 +1,51 @@
+package io.onedev.server.web.pagestore;
+
+import java.io.Serializable;
+
+public class PageStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String pageClass;
+	
+	private final long count;
+	
+	private final long totalSize;
+	
+	private final int maxSize;
+	
+	private final long totalNanos;
+	
+	public PageStats(String pageClass, long count, long totalSize, int maxSize, long totalNanos) {
+		this.pageClass = pageClass;
+		this.count = count;
+		this.totalSize = totalSize;
+		this.maxSize = maxSize;
+		this.totalNanos = totalNanos;
+	}
+
+	public String getPageClass() {
+		return pageClass;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotalSize() {
+		return totalSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getAverageSize() {
+		return count != 0? totalSize / count: 0;
+	}
+	
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+}
@@ -0,0 +1,28 @@
+package io.onedev.server.web.pagestore;
+
+import java.util.List;
+
+import org.apache.wicket.pageStore.IDataStore;
+
+/**
+ * Stores serialized pages compressed on disk, with a disk budget shared by all sessions. 
+ * Least recently used pages are evicted when the budget is exceeded.
+ */
+public interface PageStoreManager extends IDataStore {
+
+	void recordSerialization(Class<?> pageClass, int size, long nanos);
+	
+	/**
+	 * @return serialization statistics of pages, with pages of largest total serialized size first
+	 */
+	List<PageStats> getPageStats();
+	
+	long getDiskUsage();
+	
+	long getStoredBytes();
+	
+	long getCompressedBytes();
+	
+	long getEvictedPages();
+	
+}
@@ -0,0 +1,34 @@
+package io.onedev.server.web.pagestore;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.serialize.ISerializer;
+
+/**
+ * Records serialized size of pages on top of the underlying serializer
+ */
+public class PageStoreSerializer implements ISerializer {
+
+	private final ISerializer delegate;
+	
+	private final PageStoreManager pageStoreManager;
+	
+	public PageStoreSerializer(ISerializer delegate, PageStoreManager pageStoreManager) {
+		this.delegate = delegate;
+		this.pageStoreManager = pageStoreManager;
+	}
+	
+	@Override
+	public byte[] serialize(Object object) {
+		long time = System.nanoTime();
+		byte[] data = delegate.serialize(object);
+		if (data != null && object instanceof Page)
+			pageStoreManager.recordSerialization(object.getClass(), data.length, System.nanoTime() - time);
+		return data;
+	}
+
+	@Override
+	public Object deserialize(byte[] data) {
+		return delegate.deserialize(data);
+	}
+
+}
@@ -1,28 +1,47 @@
 package io.onedev.server.web.resource;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 
+import javax.annotation.Nullable;
 import javax.persistence.EntityNotFoundException;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.shiro.authz.UnauthorizedException;
-import org.apache.tika.io.IOUtils;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.util.time.Time;
+import org.eclipse.jetty.io.EofException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
 
+import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.ExplicitException;
 import io.onedev.commons.utils.LockUtils;
+import io.onedev.commons.utils.ZipUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.entitymanager.ProjectManager;
@@ -35,12 +54,16 @@ public class ArtifactResource extends AbstractResource {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final Logger logger = LoggerFactory.getLogger(ArtifactResource.class);
+
 	private static final String PARAM_PROJECT = "project";
 
 	private static final String PARAM_BUILD = "build";
 
 	private static final String PARAM_PATH = "path";
 	
+	private static final long TRANSFER_CHUNK_SIZE = 8*1024*1024;
+	
 	@Override
 	protected ResourceResponse newResourceResponse(Attributes attributes) {
 		PageParameters params = attributes.getParameters();
@@ -87,39 +110,88 @@ public class ArtifactResource extends AbstractResource {
 		
 		File artifactsDir = build.getArtifactsDir();
 		File artifactFile = new File(artifactsDir, artifactPath);
-		if (!artifactFile.exists() || artifactFile.isDirectory()) {
-			String message = String.format("Specified artifact path does not exist or is a directory (project: %s, build number: %d, path: %s)", 
+		if (!isInside(artifactsDir, artifactFile)) {
+			String message = String.format("Invalid artifact path (project: %s, build number: %d, path: %s)", 
+					project.getName(), build.getNumber(), artifactPath);
+			throw new ExplicitException(message);
+		}
+		if (!artifactFile.exists()) {
+			String message = String.format("Specified artifact path does not exist (project: %s, build number: %d, path: %s)", 
 					project.getName(), build.getNumber(), artifactPath);
 			throw new ExplicitException(message);
 		}
+		
+		if (artifactFile.isDirectory()) 
+			return newZipResponse(build, artifactFile);
 			
-		ResourceResponse response = new ResourceResponse();
+		long length = artifactFile.length();
+		long lastModified = artifactFile.lastModified();
+		String etag = getETag(build.getId(), artifactFile);
+		
+		ResourceResponse response = new ResourceResponse() {
+
+			@Override
+			public boolean dataNeedsToBeWritten(Attributes attributes) {
+				return !isNotModified((WebRequest) attributes.getRequest(), etag, lastModified);
+			}
+			
+		};
 		try (InputStream is = new FileInputStream(artifactFile)) {
 			response.setContentType(ContentDetector.detectMediaType(is, artifactPath).toString());
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 		
-		response.disableCaching();
-		
 		try {
 			response.setFileName(URLEncoder.encode(artifactFile.getName(), StandardCharsets.UTF_8.name()));
 		} catch (UnsupportedEncodingException e) {
 			throw new RuntimeException(e);
 		}
 		
-		response.setContentLength(artifactFile.length());
+		((WebResponse) attributes.getResponse()).setHeader("ETag", etag);
+		response.setLastModified(Time.millis(lastModified));
+		response.setAcceptRange(ContentRangeType.BYTES);
+		response.setContentLength(length);
+		
+		WebRequest request = (WebRequest) attributes.getRequest();
+		RequestCycle requestCycle = RequestCycle.get();
+		if (!isRangeApplicable(request.getHeader("If-Range"), etag, lastModified)) {
+			requestCycle.setMetaData(CONTENT_RANGE_STARTBYTE, null);
+			requestCycle.setMetaData(CONTENT_RANGE_ENDBYTE, null);
+		} 
+		Long startByte = requestCycle.getMetaData(CONTENT_RANGE_STARTBYTE);
+		Long endByte = requestCycle.getMetaData(CONTENT_RANGE_ENDBYTE);
+		if (startByte != null && (startByte >= length || endByte != null && endByte != -1 && endByte < startByte)) {
+			((WebResponse) attributes.getResponse()).setHeader("Content-Range", "bytes */" + length);
+			response.setError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			return response;
+		}
 		
 		response.setWriteCallback(new WriteCallback() {
 
 			@Override
 			public void writeData(Attributes attributes) throws IOException {
+				Long startByte = RequestCycle.get().getMetaData(CONTENT_RANGE_STARTBYTE);
+				Long endByte = RequestCycle.get().getMetaData(CONTENT_RANGE_ENDBYTE);
+				if (startByte == null)
+					startByte = 0L;
+				if (endByte == null || endByte == -1 || endByte >= length)
+					endByte = length - 1;
+				long position = startByte;
+				long count = endByte - startByte + 1;
+				
 				LockUtils.read(build.getArtifactsLockKey(), new Callable<Void>() {
 
 					@Override
 					public Void call() throws Exception {
-						try (InputStream is = new FileInputStream(artifactFile)) {
-							IOUtils.copy(is, attributes.getResponse().getOutputStream());
+						try {
+							transfer(artifactFile, position, count, getOutputStream(attributes.getResponse()));
+						} catch (Exception e) {
+							EofException eofException = ExceptionUtils.find(e, EofException.class);
+							if (eofException != null) 
+								logger.trace("EOF while writing data", eofException);
+							else 
+								throw e;
 						}
 						return null;
 					}
@@ -131,6 +203,132 @@ public class ArtifactResource extends AbstractResource {
 
 		return response;
 	}
+	
+	private ResourceResponse newZipResponse(Build build, File artifactDir) {
+		ResourceResponse response = new ResourceResponse();
+		response.setContentType("application/zip");
+		response.disableCaching();
+		try {
+			response.setFileName(URLEncoder.encode(artifactDir.getName() + ".zip", StandardCharsets.UTF_8.name()));
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+		
+		response.setWriteCallback(new WriteCallback() {
+
+			@Override
+			public void writeData(Attributes attributes) throws IOException {
+				LockUtils.read(build.getArtifactsLockKey(), new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						// zip entries are written to response as they are compressed 
+						ZipUtils.zip(artifactDir, attributes.getResponse().getOutputStream());
+						return null;
+					}
+					
+				});
+			}
+			
+		});
+		
+		return response;
+	}
+	
+	@Override
+	protected void configureCache(ResourceResponse data, Attributes attributes) {
+		if (data.getLastModified() != null) {
+			/*
+			 * Allow clients to keep downloaded artifacts, but have them revalidated via 
+			 * ETag or last modified time upon each use, as artifacts can be re-published
+			 */
+			WebResponse response = (WebResponse) attributes.getResponse();
+			response.setHeader("Cache-Control", "private, no-cache");
+		} else {
+			super.configureCache(data, attributes);
+		}
+	}
+	
+	/**
+	 * Check if specified file is specified directory or is inside it, after resolving 
+	 * relative path segments and symbolic links
+	 */
+	static boolean isInside(File dir, File file) {
+		try {
+			String dirPath = dir.getCanonicalPath();
+			String filePath = file.getCanonicalPath();
+			return filePath.equals(dirPath) || filePath.startsWith(dirPath + File.separator);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Get a strong ETag of specified artifact file. Build id is included as artifact 
+	 * files of different builds may share identical size and modification time
+	 */
+	static String getETag(Long buildId, File artifactFile) {
+		return "\"" + buildId + "-" + Long.toHexString(artifactFile.length()) 
+				+ "-" + Long.toHexString(artifactFile.lastModified()) + "\"";
+	}
+	
+	static boolean matches(@Nullable String ifNoneMatch, String etag) {
+		if (ifNoneMatch == null)
+			return false;
+		for (String each: Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+			if (each.equals("*") || StringUtils.removeStart(each, "W/").equals(etag))
+				return true;
+		}
+		return false;
+	}
+	
+	static boolean isNotModified(WebRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) 
+			return matches(ifNoneMatch, etag);
+		Time ifModifiedSince = request.getIfModifiedSinceHeader();
+		return ifModifiedSince != null && ifModifiedSince.getMilliseconds() >= lastModified / 1000 * 1000;
+	}
+
+	static boolean isRangeApplicable(@Nullable String ifRange, String etag, long lastModified) {
+		if (ifRange == null)
+			return true;
+		else if (ifRange.startsWith("\"")) 
+			return ifRange.equals(etag);
+		try {
+			return DateUtils.parseDate(ifRange).getTime() == lastModified / 1000 * 1000;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+	
+	private OutputStream getOutputStream(Response response) throws IOException {
+		Object containerResponse = response.getContainerResponse();
+		if (containerResponse instanceof HttpServletResponse)
+			return ((HttpServletResponse) containerResponse).getOutputStream();
+		else
+			return response.getOutputStream();
+	}
+	
+	/**
+	 * Transfer specified range of a file to specified output stream via file channel. This 
+	 * is not a zero copy transfer: servlet output stream is not a socket channel, so content 
+	 * is read into a small buffer and written to the stream, instead of being sent by the 
+	 * kernel. This avoids mapping the file or allocating a buffer for each chunk though
+	 */
+	static void transfer(File file, long position, long count, OutputStream os) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long end = position + count;
+			WritableByteChannel target = Channels.newChannel(os);
+			while (position < end) {
+				long transferred = channel.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, end - position), target);
+				if (transferred <= 0)
+					throw new EOFException("Unexpected end of file: " + file.getAbsolutePath());
+				position += transferred;
+			}
+		}
+		os.flush();
+	}
 
 	public static PageParameters paramsOf(Project project, Long buildNumber, String path) {
 		PageParameters params = new PageParameters();
@@ -0,0 +1,89 @@
+package io.onedev.server.entitymanager.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class BoardColumnsCacheTest {
+
+	private final List<String> columns = Lists.newArrayList("Open", "Closed");
+	
+	private final AtomicInteger loads = new AtomicInteger(0);
+	
+	private final BoardColumnsCache<Integer> cache = new BoardColumnsCache<>();
+	
+	private int get(Long projectId, Long userId) {
+		return cache.get(projectId, userId, "query", "State", columns, 25, () -> loads.incrementAndGet());
+	}
+	
+	@Test
+	public void shouldCacheByProjectAndUser() {
+		assertEquals(1, get(1L, 1L));
+		assertEquals(2, get(1L, 2L));
+		assertEquals(3, get(1L, null));
+		assertEquals(4, get(2L, 1L));
+		
+		assertEquals(1, get(1L, 1L));
+		assertEquals(2, get(1L, 2L));
+		assertEquals(3, get(1L, null));
+		assertEquals(4, get(2L, 1L));
+		assertEquals(4, loads.get());
+	}
+	
+	@Test
+	public void shouldOnlyInvalidateAffectedProject() {
+		get(1L, 1L);
+		get(1L, 2L);
+		get(2L, 1L);
+		
+		cache.invalidateProject(1L);
+		assertEquals(1, cache.size());
+		assertEquals(3, get(2L, 1L));
+		assertEquals(4, get(1L, 1L));
+		assertEquals(5, get(1L, 2L));
+	}
+	
+	@Test
+	public void shouldOnlyInvalidateAffectedUser() {
+		get(1L, 1L);
+		get(1L, 2L);
+		get(2L, 1L);
+		get(2L, null);
+		
+		cache.invalidateUser(1L);
+		assertEquals(2, cache.size());
+		assertEquals(2, get(1L, 2L));
+		assertEquals(4, get(2L, null));
+		assertEquals(5, get(1L, 1L));
+		assertEquals(6, get(2L, 1L));
+	}
+	
+	@Test
+	public void shouldInvalidateAll() {
+		get(1L, 1L);
+		get(2L, 2L);
+		
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+		assertEquals(3, get(1L, 1L));
+		assertEquals(4, get(2L, 2L));
+	}
+	
+	@Test
+	public void shouldNotServeBoardLoadedConcurrentlyWithInvalidation() {
+		// simulates invalidation happening after key is built but before loading finishes
+		assertEquals(2, (int) cache.get(1L, 1L, "query", "State", columns, 25, () -> {
+			loads.incrementAndGet();
+			cache.invalidateProject(1L);
+			return loads.incrementAndGet();
+		}));
+		assertEquals(3, get(1L, 1L));
+		assertEquals(3, get(1L, 1L));
+	}
+	
+}
@@ -0,0 +1,102 @@
+package io.onedev.server.entitymanager.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.git.AbstractGitTest;
+
+public class BranchFixedIssuesTest extends AbstractGitTest {
+
+	private static final Pattern FIX_PATTERN = Pattern.compile("fix #(\\d+)");
+
+	private final List<String> parsedMessages = new ArrayList<>();
+
+	private final Function<String, Collection<Long>> parser = new Function<String, Collection<Long>>() {
+
+		@Override
+		public Collection<Long> apply(String commitMessage) {
+			parsedMessages.add(commitMessage);
+			List<Long> issueNumbers = new ArrayList<>();
+			Matcher matcher = FIX_PATTERN.matcher(commitMessage);
+			while (matcher.find())
+				issueNumbers.add(Long.valueOf(matcher.group(1)));
+			return issueNumbers;
+		}
+
+	};
+
+	private RefUpdated newRefUpdated(String refName, ObjectId oldCommitId, String newCommitId) {
+		return new RefUpdated(null, refName, oldCommitId, ObjectId.fromString(newCommitId), true);
+	}
+
+	@Test
+	public void shouldWalkNewCommitsOfAllBranchesOnce() throws Exception {
+		String commit1 = addFileAndCommit("file1", "1", "initial");
+		String commit2 = addFileAndCommit("file2", "2", "fix #1");
+		String commit3 = addFileAndCommit("file3", "3", "fix #2");
+		updateRef("refs/heads/dev", commit3, null);
+		updateRef("refs/heads/master", commit2, commit3);
+		String commit4 = addFileAndCommit("file4", "4", "fix #3");
+
+		List<RefUpdated> branchUpdates = Lists.newArrayList(
+				newRefUpdated("refs/heads/master", ObjectId.fromString(commit1), commit4),
+				newRefUpdated("refs/heads/dev", ObjectId.zeroId(), commit3));
+		Map<String, Set<Long>> fixedIssueNumbers = BranchFixedIssues.collect(
+				git.getRepository(), branchUpdates, parser, 1000);
+
+		assertEquals(Sets.newHashSet(1L, 3L), fixedIssueNumbers.get("refs/heads/master"));
+		assertEquals(Sets.newHashSet(1L, 2L), fixedIssueNumbers.get("refs/heads/dev"));
+
+		// commit shared by both branches is only parsed once
+		assertEquals(3, parsedMessages.size());
+	}
+
+	@Test
+	public void shouldIgnoreCommitsOfExistingBranchesForNewBranch() throws Exception {
+		addFileAndCommit("file1", "1", "initial");
+		String commit2 = addFileAndCommit("file2", "2", "fix #1");
+		String commit3 = addFileAndCommit("file3", "3", "fix #2");
+		updateRef("refs/heads/feature", commit3, null);
+		
+		// existing branch master contains commit2
+		updateRef("refs/heads/master", commit2, commit3);
+
+		Map<String, Set<Long>> fixedIssueNumbers = BranchFixedIssues.collect(git.getRepository(),
+				Lists.newArrayList(newRefUpdated("refs/heads/feature", ObjectId.zeroId(), commit3)),
+				parser, 1000);
+
+		assertEquals(Sets.newHashSet(2L), fixedIssueNumbers.get("refs/heads/feature"));
+		assertEquals(1, parsedMessages.size());
+	}
+
+	@Test
+	public void shouldStopWalkingWhenTooManyIssuesAreFixed() throws Exception {
+		String commit1 = addFileAndCommit("file1", "1", "initial");
+		addFileAndCommit("file2", "2", "fix #1");
+		addFileAndCommit("file3", "3", "fix #2");
+		String commit4 = addFileAndCommit("file4", "4", "fix #3");
+
+		Map<String, Set<Long>> fixedIssueNumbers = BranchFixedIssues.collect(git.getRepository(),
+				Lists.newArrayList(newRefUpdated("refs/heads/master", ObjectId.fromString(commit1), commit4)),
+				parser, 1);
+
+		assertEquals(Sets.newHashSet(3L, 2L), fixedIssueNumbers.get("refs/heads/master"));
+		assertEquals(2, parsedMessages.size());
+	}
+
+}
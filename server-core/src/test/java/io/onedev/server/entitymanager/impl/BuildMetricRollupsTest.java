@@ -0,0 +1,76 @@
+package io.onedev.server.entitymanager.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.onedev.server.model.BuildMetricRollup.Granularity;
+import io.onedev.server.util.Day;
+
+public class BuildMetricRollupsTest {
+
+	private final BuildMetricRollups rollups = new BuildMetricRollups();
+
+	private int day(int year, int month, int dayOfMonth) {
+		return new Day(year, month-1, dayOfMonth).getValue();
+	}
+
+	private long[] get(String reportName, Granularity granularity, int period) {
+		return rollups.getValues().get(new BuildMetricRollups.Key(1L, Object.class, "ci", reportName,
+				granularity, period));
+	}
+
+	@Test
+	public void shouldUpdateRollupsOfAllGranularities() {
+		// 2020-03-04 is a Wednesday
+		rollups.add(1L, Object.class, "ci", "coverage", day(2020, 3, 4), 1, new long[] {80, 60});
+
+		assertEquals(3, rollups.getValues().size());
+		assertArrayEquals(new long[] {1, 80, 60}, get("coverage", Granularity.DAY, day(2020, 3, 4)));
+		assertArrayEquals(new long[] {1, 80, 60}, get("coverage", Granularity.WEEK, day(2020, 3, 2)));
+		assertArrayEquals(new long[] {1, 80, 60}, get("coverage", Granularity.MONTH, day(2020, 3, 1)));
+
+		rollups.add(1L, Object.class, "ci", "coverage", day(2020, 3, 6), 1, new long[] {90, 70});
+
+		assertEquals(4, rollups.getValues().size());
+		assertArrayEquals(new long[] {1, 80, 60}, get("coverage", Granularity.DAY, day(2020, 3, 4)));
+		assertArrayEquals(new long[] {1, 90, 70}, get("coverage", Granularity.DAY, day(2020, 3, 6)));
+		assertArrayEquals(new long[] {2, 170, 130}, get("coverage", Granularity.WEEK, day(2020, 3, 2)));
+		assertArrayEquals(new long[] {2, 170, 130}, get("coverage", Granularity.MONTH, day(2020, 3, 1)));
+	}
+
+	@Test
+	public void shouldSubtractMetricsOfDeletedBuild() {
+		rollups.add(1L, Object.class, "ci", "coverage", day(2020, 3, 4), 1, new long[] {80, 60});
+		rollups.add(1L, Object.class, "ci", "coverage", day(2020, 3, 6), 1, new long[] {90, 70});
+
+		// build finished at 2020-03-04 is deleted
+		rollups.add(1L, Object.class, "ci", "coverage", day(2020, 3, 4), -1, new long[] {-80, -60});
+
+		assertArrayEquals(new long[] {0, 0, 0}, get("coverage", Granularity.DAY, day(2020, 3, 4)));
+		assertArrayEquals(new long[] {1, 90, 70}, get("coverage", Granularity.DAY, day(2020, 3, 6)));
+		assertArrayEquals(new long[] {1, 90, 70}, get("coverage", Granularity.WEEK, day(2020, 3, 2)));
+		assertArrayEquals(new long[] {1, 90, 70}, get("coverage", Granularity.MONTH, day(2020, 3, 1)));
+	}
+
+	@Test
+	public void shouldBackfillAggregatedMetrics() {
+		// each row sums up metrics of builds finished at same day, as queried when backfilling
+		rollups.add(1L, Object.class, "ci", "coverage", day(2020, 2, 28), 3, new long[] {240, 180});
+		rollups.add(1L, Object.class, "ci", "coverage", day(2020, 3, 1), 2, new long[] {170, 130});
+		rollups.add(1L, Object.class, "ci", "tests", day(2020, 3, 1), 1, new long[] {100, 10});
+		rollups.add(2L, Object.class, "ci", "coverage", day(2020, 3, 1), 1, new long[] {50, 50});
+
+		// 2020-02-28 and 2020-03-01 are in same week starting at 2020-02-24
+		assertArrayEquals(new long[] {3, 240, 180}, get("coverage", Granularity.DAY, day(2020, 2, 28)));
+		assertArrayEquals(new long[] {2, 170, 130}, get("coverage", Granularity.DAY, day(2020, 3, 1)));
+		assertArrayEquals(new long[] {5, 410, 310}, get("coverage", Granularity.WEEK, day(2020, 2, 24)));
+		assertArrayEquals(new long[] {3, 240, 180}, get("coverage", Granularity.MONTH, day(2020, 2, 1)));
+		assertArrayEquals(new long[] {2, 170, 130}, get("coverage", Granularity.MONTH, day(2020, 3, 1)));
+		assertArrayEquals(new long[] {1, 100, 10}, get("tests", Granularity.WEEK, day(2020, 2, 24)));
+		assertArrayEquals(new long[] {1, 50, 50}, rollups.getValues().get(new BuildMetricRollups.Key(
+				2L, Object.class, "ci", "coverage", Granularity.WEEK, day(2020, 2, 24))));
+	}
+
+}
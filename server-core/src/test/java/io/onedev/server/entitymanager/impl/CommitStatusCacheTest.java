@@ -0,0 +1,95 @@
+package io.onedev.server.entitymanager.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import io.onedev.server.model.Build;
+import io.onedev.server.util.StatusInfo;
+
+public class CommitStatusCacheTest {
+
+	private final CommitStatusCache cache = new CommitStatusCache();
+
+	private Map<String, Collection<StatusInfo>> newStatuses() {
+		Map<String, Collection<StatusInfo>> statuses = new HashMap<>();
+		statuses.put("ci", Sets.newHashSet(new StatusInfo(Build.Status.SUCCESSFUL, null, "refs/heads/master")));
+		return statuses;
+	}
+
+	@Test
+	public void shouldCacheStatuses() {
+		cache.put(1L, "commit1", newStatuses(), cache.getStamp());
+		Map<String, Collection<StatusInfo>> cached = cache.get(1L, "commit1");
+		assertNotNull(cached);
+		assertEquals(Build.Status.SUCCESSFUL, cached.get("ci").iterator().next().getStatus());
+		assertNull(cache.get(1L, "commit2"));
+		assertNull(cache.get(2L, "commit1"));
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void shouldNotAllowModifyingCachedMap() {
+		cache.put(1L, "commit1", newStatuses(), cache.getStamp()).put("other", Sets.newHashSet());
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void shouldNotAllowModifyingCachedStatuses() {
+		cache.put(1L, "commit1", newStatuses(), cache.getStamp());
+		cache.get(1L, "commit1").get("ci").clear();
+	}
+
+	@Test
+	public void shouldNotBeAffectedByModifyingPutMap() {
+		Map<String, Collection<StatusInfo>> statuses = newStatuses();
+		cache.put(1L, "commit1", statuses, cache.getStamp());
+		statuses.get("ci").clear();
+		assertEquals(1, cache.get(1L, "commit1").get("ci").size());
+	}
+
+	@Test
+	public void shouldNotCacheStatusesQueriedBeforeInvalidationOfSameCommit() {
+		long stamp = cache.getStamp();
+		cache.invalidate(1L, "commit1");
+		Map<String, Collection<StatusInfo>> statuses = cache.put(1L, "commit1", newStatuses(), stamp);
+
+		// caller still gets the queried statuses, they are just not cached
+		assertEquals(1, statuses.size());
+		assertNull(cache.get(1L, "commit1"));
+
+		cache.put(1L, "commit1", newStatuses(), cache.getStamp());
+		assertNotNull(cache.get(1L, "commit1"));
+	}
+
+	@Test
+	public void shouldCacheStatusesIfOtherCommitIsInvalidated() {
+		long stamp = cache.getStamp();
+		cache.invalidate(1L, "commit2");
+		cache.invalidate(2L, "commit1");
+		cache.put(1L, "commit1", newStatuses(), stamp);
+		assertNotNull(cache.get(1L, "commit1"));
+	}
+
+	@Test
+	public void shouldInvalidateCommitAndProject() {
+		cache.put(1L, "commit1", newStatuses(), cache.getStamp());
+		cache.put(1L, "commit2", newStatuses(), cache.getStamp());
+		cache.put(2L, "commit1", newStatuses(), cache.getStamp());
+
+		cache.invalidate(1L, "commit1");
+		assertNull(cache.get(1L, "commit1"));
+		assertNotNull(cache.get(1L, "commit2"));
+
+		cache.invalidateProject(1L);
+		assertNull(cache.get(1L, "commit2"));
+		assertNotNull(cache.get(2L, "commit1"));
+	}
+
+}
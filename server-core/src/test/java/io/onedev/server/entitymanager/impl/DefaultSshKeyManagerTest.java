@@ -0,0 +1,112 @@
+package io.onedev.server.entitymanager.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.model.SshKey;
+import io.onedev.server.model.User;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.dao.Dao;
+import io.onedev.server.persistence.dao.EntityCriteria;
+
+public class DefaultSshKeyManagerTest {
+
+	private Dao dao;
+	
+	private User owner1;
+	
+	private User owner2;
+	
+	private DefaultSshKeyManager sshKeyManager;
+	
+	@Before
+	public void before() {
+		dao = mock(Dao.class);
+		
+		TransactionManager transactionManager = mock(TransactionManager.class);
+		doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(transactionManager).runAfterCommit(any(Runnable.class));
+		
+		sshKeyManager = new DefaultSshKeyManager(dao, transactionManager);
+		
+		owner1 = new User();
+		owner1.setId(1L);
+		owner2 = new User();
+		owner2.setId(2L);
+		
+		when(dao.query(SshKey.class, false)).thenReturn(Lists.newArrayList(
+				newSshKey(1L, "digest1", owner1), newSshKey(2L, "digest2", owner1)));
+		sshKeyManager.on((SystemStarted) null);
+	}
+	
+	private SshKey newSshKey(Long id, String digest, User owner) {
+		SshKey sshKey = new SshKey();
+		sshKey.setId(id);
+		sshKey.setDigest(digest);
+		sshKey.setOwner(owner);
+		when(dao.get(SshKey.class, id)).thenReturn(sshKey);
+		return sshKey;
+	}
+	
+	@Test
+	public void shouldFindLoadedKeys() {
+		assertSame(dao.get(SshKey.class, 1L), sshKeyManager.findByDigest("digest1"));
+		assertEquals(owner1.getId(), sshKeyManager.findOwnerIdByDigest("digest2"));
+		assertNull(sshKeyManager.findByDigest("digest3"));
+		assertNull(sshKeyManager.findOwnerIdByDigest("digest3"));
+		
+		// lookups are served from memory instead of database
+		verify(dao, never()).find(any(EntityCriteria.class));
+	}
+	
+	@Test
+	public void shouldFindPersistedAndNotRemovedKeys() {
+		SshKey sshKey = newSshKey(3L, "digest3", owner2);
+		sshKeyManager.on(new EntityPersisted(sshKey, true));
+		assertSame(sshKey, sshKeyManager.findByDigest("digest3"));
+		assertEquals(owner2.getId(), sshKeyManager.findOwnerIdByDigest("digest3"));
+		
+		sshKeyManager.on(new EntityRemoved(sshKey));
+		assertNull(sshKeyManager.findByDigest("digest3"));
+		assertNull(sshKeyManager.findOwnerIdByDigest("digest3"));
+		assertEquals(owner1.getId(), sshKeyManager.findOwnerIdByDigest("digest1"));
+	}
+	
+	@Test
+	public void shouldNotFindKeyByOldDigestAfterUpdate() {
+		SshKey sshKey = dao.get(SshKey.class, 1L);
+		sshKey.setDigest("digest1-updated");
+		sshKeyManager.on(new EntityPersisted(sshKey, false));
+		
+		assertNull(sshKeyManager.findByDigest("digest1"));
+		assertSame(sshKey, sshKeyManager.findByDigest("digest1-updated"));
+	}
+	
+	@Test
+	public void shouldRemoveKeysOfRemovedOwner() {
+		sshKeyManager.on(new EntityPersisted(newSshKey(3L, "digest3", owner2), true));
+		
+		sshKeyManager.on(new EntityRemoved(owner1));
+		assertNull(sshKeyManager.findOwnerIdByDigest("digest1"));
+		assertNull(sshKeyManager.findOwnerIdByDigest("digest2"));
+		assertEquals(owner2.getId(), sshKeyManager.findOwnerIdByDigest("digest3"));
+	}
+	
+}
@@ -0,0 +1,122 @@
+package io.onedev.server.entitymanager.impl;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.server.entitymanager.IssueFieldManager;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.model.User;
+import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.dao.Dao;
+import io.onedev.server.persistence.dao.EntityCriteria;
+
+public class DefaultUserManagerTest {
+
+	private Dao dao;
+	
+	private List<Runnable> afterCommitRunnables;
+	
+	private DefaultUserManager userManager;
+	
+	@SuppressWarnings("unchecked")
+	@Before
+	public void before() {
+		dao = mock(Dao.class);
+		
+		afterCommitRunnables = new ArrayList<>();
+		TransactionManager transactionManager = mock(TransactionManager.class);
+		doAnswer(invocation -> {
+			afterCommitRunnables.add((Runnable) invocation.getArguments()[0]);
+			return null;
+		}).when(transactionManager).runAfterCommit(any(Runnable.class));
+		
+		userManager = new DefaultUserManager(dao, mock(ProjectManager.class), mock(SettingManager.class), 
+				mock(IssueFieldManager.class), mock(IdManager.class), transactionManager);
+		
+		when(dao.query(any(EntityCriteria.class))).thenReturn(Lists.newArrayList(newUser(1L, "Robin", "Robin@example.com")));
+		userManager.on((SystemStarted) null);
+	}
+	
+	private User newUser(Long id, String name, String email) {
+		User user = new User();
+		user.setId(id);
+		user.setName(name);
+		user.setEmail(email);
+		when(dao.get(User.class, id)).thenReturn(user);
+		return user;
+	}
+	
+	private void commit() {
+		for (Runnable runnable: afterCommitRunnables)
+			runnable.run();
+		afterCommitRunnables.clear();
+	}
+	
+	@Test
+	public void shouldFindLoadedUsersIgnoringCase() {
+		User user = dao.get(User.class, 1L);
+		assertSame(user, userManager.findByName("robin"));
+		assertSame(user, userManager.findByName("ROBIN"));
+		assertSame(user, userManager.findByEmail("robin@EXAMPLE.com"));
+		assertNull(userManager.findByName("alex"));
+		assertNull(userManager.findByEmail("alex@example.com"));
+		
+		// lookups are served from directory instead of database
+		verify(dao, never()).find(any(EntityCriteria.class));
+	}
+	
+	@Test
+	public void shouldFindPersistedUserAfterCommit() {
+		User user = newUser(2L, "Alex", "alex@example.com");
+		userManager.on(new EntityPersisted(user, true));
+		assertNull(userManager.findByName("alex"));
+		
+		commit();
+		assertSame(user, userManager.findByName("alex"));
+		assertSame(user, userManager.findByEmail("ALEX@example.com"));
+	}
+	
+	@Test
+	public void shouldFindRenamedUserByNewNameAndEmailOnly() {
+		User user = dao.get(User.class, 1L);
+		user.setName("Robin2");
+		user.setEmail(null);
+		userManager.on(new EntityPersisted(user, false));
+		commit();
+		
+		assertNull(userManager.findByName("robin"));
+		assertNull(userManager.findByEmail("robin@example.com"));
+		assertSame(user, userManager.findByName("robin2"));
+	}
+	
+	@Test
+	public void shouldNotFindRemovedUserAfterCommit() {
+		User user = dao.get(User.class, 1L);
+		userManager.on(new EntityRemoved(user));
+		assertSame(user, userManager.findByName("robin"));
+		
+		commit();
+		assertNull(userManager.findByName("robin"));
+		assertNull(userManager.findByEmail("robin@example.com"));
+	}
+	
+}
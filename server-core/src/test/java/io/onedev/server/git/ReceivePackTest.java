@@ -0,0 +1,254 @@
+package io.onedev.server.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.TestProtocol;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.URIish;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.loader.ListenerRegistry;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.git.hookcallback.GitReceiveHooks;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.User;
+import io.onedev.server.model.support.BranchProtection;
+import io.onedev.server.persistence.SessionManager;
+
+public class ReceivePackTest extends AbstractGitTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReceivePackTest.class);
+
+	private static final int BENCHMARK_ROUNDS = 5;
+
+	private File remoteDir;
+
+	private Git remote;
+
+	private Project project;
+
+	private User user;
+
+	private SessionManager sessionManager;
+
+	private GitReceiveHooks receiveHooks;
+
+	@Override
+	protected void setup() {
+		super.setup();
+
+		remoteDir = FileUtils.createTempDir();
+		try {
+			remote = Git.init().setBare(true).setDirectory(remoteDir).call();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+
+		BranchProtection protection = new BranchProtection();
+		protection.setPreventCreation(true);
+
+		project = mock(Project.class);
+		when(project.getId()).thenReturn(1L);
+		when(project.getRepository()).thenReturn(remote.getRepository());
+		when(project.getBranchProtection(anyString(), any(User.class))).thenReturn(new BranchProtection());
+		when(project.getBranchProtection(eq("protected"), any(User.class))).thenReturn(protection);
+
+		user = mock(User.class);
+
+		ProjectManager projectManager = mock(ProjectManager.class);
+		when(projectManager.load(1L)).thenReturn(project);
+		UserManager userManager = mock(UserManager.class);
+		when(userManager.load(1L)).thenReturn(user);
+
+		sessionManager = mock(SessionManager.class);
+		doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(sessionManager).run(any(Runnable.class));
+
+		receiveHooks = new GitReceiveHooks(projectManager, userManager, sessionManager,
+				mock(ListenerRegistry.class));
+	}
+
+	@Override
+	protected void teardown() {
+		remote.close();
+		deleteDir(remoteDir, 3);
+		super.teardown();
+	}
+
+	@Test
+	public void shouldRejectRefUpdateViolatingProtection() throws Exception {
+		ObjectId commitId = ObjectId.fromString(addFileAndCommit("file", "content", "initial commit"));
+
+		List<String> errorMessages = receiveHooks.checkRefUpdate(project, user, "refs/heads/protected",
+				ObjectId.zeroId(), commitId, new HashMap<>());
+		assertEquals(1, errorMessages.size());
+		assertTrue(errorMessages.get(0).contains("branch protection"));
+
+		assertTrue(receiveHooks.checkRefUpdate(project, user, "refs/heads/allowed",
+				ObjectId.zeroId(), commitId, new HashMap<>()).isEmpty());
+	}
+
+	@Test
+	public void shouldRejectWholePushIfAnyRefIsRejected() throws Exception {
+		addFileAndCommit("file", "content", "initial commit");
+
+		PushResult result = push("HEAD:refs/heads/allowed", "HEAD:refs/heads/protected");
+
+		assertEquals(RemoteRefUpdate.Status.REJECTED_OTHER_REASON,
+				result.getRemoteUpdate("refs/heads/protected").getStatus());
+		assertEquals(RemoteRefUpdate.Status.REJECTED_OTHER_REASON,
+				result.getRemoteUpdate("refs/heads/allowed").getStatus());
+		assertTrue(remote.getRepository().getRefDatabase().getRefsByPrefix("refs/heads/").isEmpty());
+		verify(sessionManager, never()).runAsync(any(Runnable.class));
+	}
+
+	@Test
+	public void shouldApplyAllRefsIfNoRefIsRejected() throws Exception {
+		ObjectId commitId = ObjectId.fromString(addFileAndCommit("file", "content", "initial commit"));
+
+		PushResult result = push("HEAD:refs/heads/allowed", "HEAD:refs/heads/another");
+
+		assertEquals(RemoteRefUpdate.Status.OK, result.getRemoteUpdate("refs/heads/allowed").getStatus());
+		assertEquals(RemoteRefUpdate.Status.OK, result.getRemoteUpdate("refs/heads/another").getStatus());
+		assertEquals(commitId, remote.getRepository().resolve("refs/heads/allowed"));
+		assertEquals(commitId, remote.getRepository().resolve("refs/heads/another"));
+		verify(sessionManager).runAsync(any(Runnable.class));
+	}
+
+	/**
+	 * Compare push latency of native receive-pack calling hook scripts, against in-process
+	 * receive pack with hooks of GitReceiveHooks.
+	 */
+	@Ignore("Benchmark, run manually to compare push latency")
+	@Test
+	public void benchmarkPushLatency() throws Exception {
+		addFileAndCommit("file", "content", "initial commit");
+
+		for (int refCount: new int[] {1, 500}) {
+			List<String> refSpecs = new ArrayList<>();
+			for (int i=0; i<refCount; i++)
+				refSpecs.add("HEAD:refs/heads/branch" + i);
+
+			long nativeTime = 0;
+			long inProcessTime = 0;
+			for (int i=0; i<BENCHMARK_ROUNDS; i++) {
+				nativeTime += pushNative(refSpecs);
+				inProcessTime += pushInProcess(refSpecs);
+			}
+
+			System.out.println(String.format("Push of %d refs: native hooks %d ms, in-process hooks %d ms",
+					refCount, nativeTime/BENCHMARK_ROUNDS, inProcessTime/BENCHMARK_ROUNDS));
+		}
+	}
+
+	private long pushNative(List<String> refSpecs) throws Exception {
+		File benchmarkRemoteDir = FileUtils.createTempDir();
+		try {
+			Git.init().setBare(true).setDirectory(benchmarkRemoteDir).call().close();
+			String hookScript = "#!/bin/sh\ncat > /dev/null\n";
+			for (String hookName: new String[] {"pre-receive", "post-receive"}) {
+				File hookFile = new File(benchmarkRemoteDir, "hooks/" + hookName);
+				FileUtils.writeFile(hookFile, hookScript);
+				hookFile.setExecutable(true);
+			}
+
+			Commandline cmd = new Commandline("git").workingDir(gitDir);
+			cmd.addArgs("push", benchmarkRemoteDir.getAbsolutePath());
+			cmd.addArgs(refSpecs.toArray(new String[0]));
+
+			long time = System.currentTimeMillis();
+			cmd.execute(new LineConsumer() {
+
+				@Override
+				public void consume(String line) {
+					logger.debug(line);
+				}
+
+			}, new LineConsumer() {
+
+				@Override
+				public void consume(String line) {
+					logger.debug(line);
+				}
+
+			}).checkReturnCode();
+			time = System.currentTimeMillis() - time;
+
+			try (Git benchmarkRemote = Git.open(benchmarkRemoteDir)) {
+				assertEquals(refSpecs.size(), benchmarkRemote.getRepository().getRefDatabase()
+						.getRefsByPrefix("refs/heads/").size());
+			}
+			return time;
+		} finally {
+			deleteDir(benchmarkRemoteDir, 3);
+		}
+	}
+
+	private long pushInProcess(List<String> refSpecs) throws Exception {
+		File benchmarkRemoteDir = FileUtils.createTempDir();
+		try (Git benchmarkRemote = Git.init().setBare(true).setDirectory(benchmarkRemoteDir).call()) {
+			when(project.getRepository()).thenReturn(benchmarkRemote.getRepository());
+
+			long time = System.currentTimeMillis();
+			PushResult result = push(benchmarkRemote, refSpecs.toArray(new String[0]));
+			time = System.currentTimeMillis() - time;
+
+			for (RemoteRefUpdate update: result.getRemoteUpdates())
+				assertEquals(RemoteRefUpdate.Status.OK, update.getStatus());
+			assertEquals(refSpecs.size(), benchmarkRemote.getRepository().getRefDatabase()
+					.getRefsByPrefix("refs/heads/").size());
+			return time;
+		} finally {
+			when(project.getRepository()).thenReturn(remote.getRepository());
+			deleteDir(benchmarkRemoteDir, 3);
+		}
+	}
+
+	private PushResult push(String...refSpecs) throws Exception {
+		return push(remote, refSpecs);
+	}
+
+	private PushResult push(Git remote, String...refSpecs) throws Exception {
+		TestProtocol<Object> protocol = new TestProtocol<>(null,
+				(req, db) -> receiveHooks.newReceivePack(project, 1L));
+		Transport.register(protocol);
+		try {
+			URIish uri = protocol.register(new Object(), remote.getRepository());
+			List<RefSpec> jgitRefSpecs = new ArrayList<>();
+			for (String refSpec: refSpecs)
+				jgitRefSpecs.add(new RefSpec(refSpec));
+			return git.push().setRemote(uri.toString()).setRefSpecs(jgitRefSpecs).call().iterator().next();
+		} finally {
+			Transport.unregister(protocol);
+		}
+	}
+
+}
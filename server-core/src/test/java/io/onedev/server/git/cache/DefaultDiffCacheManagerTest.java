@@ -0,0 +1,173 @@
+package io.onedev.server.git.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.onedev.commons.jsyntax.Tokenized;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.util.diff.DiffBlock;
+import io.onedev.server.util.diff.WhitespaceOption;
+
+public class DefaultDiffCacheManagerTest extends AbstractGitTest {
+
+	private File spillDir;
+	
+	@Override
+	protected void setup() {
+		super.setup();
+		spillDir = FileUtils.createTempDir();
+	}
+
+	@Override
+	protected void teardown() {
+		FileUtils.deleteDir(spillDir);
+		super.teardown();
+	}
+
+	private ObjectId[] prepareCommits() throws Exception {
+		addFileAndCommit("file1", "file1", "initial");
+		ObjectId oldCommitId = git.getRepository().resolve("master");
+		addFile("file2", "file2");
+		addFile("dir/file3", "file3");
+		rm("file1");
+		commit("second");
+		ObjectId newCommitId = git.getRepository().resolve("master");
+		return new ObjectId[] {oldCommitId, newCommitId};
+	}
+	
+	private void assertDiffEntries(List<DiffEntry> diffEntries) {
+		Set<String> changes = new HashSet<>();
+		for (DiffEntry entry: diffEntries) {
+			if (entry.getChangeType() == ChangeType.DELETE)
+				changes.add("-" + entry.getOldPath());
+			else
+				changes.add(entry.getChangeType() + ":" + entry.getNewPath());
+		}
+		assertEquals(Sets.newHashSet("-file1", "ADD:file2", "ADD:dir/file3"), changes);
+	}
+	
+	@Test
+	public void shouldCacheDiffInMemory() throws Exception {
+		ObjectId[] commitIds = prepareCommits();
+		DefaultDiffCacheManager diffCacheManager = new DefaultDiffCacheManager(spillDir, Long.MAX_VALUE);
+		
+		List<DiffEntry> diffEntries = diffCacheManager.getDiffEntries(git.getRepository(), commitIds[0], commitIds[1]);
+		assertDiffEntries(diffEntries);
+		assertSame(diffEntries, diffCacheManager.getDiffEntries(git.getRepository(), commitIds[0], commitIds[1]));
+		assertEquals(0, spillDir.list().length);
+	}
+	
+	@Test
+	public void shouldSpillAndReloadDiff() throws Exception {
+		ObjectId[] commitIds = prepareCommits();
+		DefaultDiffCacheManager diffCacheManager = new DefaultDiffCacheManager(spillDir, 0);
+		
+		List<DiffEntry> diffEntries = diffCacheManager.getDiffEntries(git.getRepository(), commitIds[0], commitIds[1]);
+		assertEquals(1, spillDir.list().length);
+		assertDiffEntries(diffEntries);
+		
+		List<DiffEntry> reloaded = diffCacheManager.getDiffEntries(git.getRepository(), commitIds[0], commitIds[1]);
+		assertDiffEntries(reloaded);
+		for (int i=0; i<diffEntries.size(); i++) {
+			assertEquals(diffEntries.get(i).getChangeType(), reloaded.get(i).getChangeType());
+			assertEquals(diffEntries.get(i).getOldPath(), reloaded.get(i).getOldPath());
+			assertEquals(diffEntries.get(i).getNewPath(), reloaded.get(i).getNewPath());
+			assertEquals(diffEntries.get(i).getNewMode(), reloaded.get(i).getNewMode());
+			assertEquals(diffEntries.get(i).getNewId(), reloaded.get(i).getNewId());
+		}
+		assertEquals(1, spillDir.list().length);
+	}
+	
+	@Test
+	public void shouldDeleteSpillFileWhenDiscarded() throws Exception {
+		ObjectId[] commitIds = prepareCommits();
+		DefaultDiffCacheManager diffCacheManager = new DefaultDiffCacheManager(spillDir, 0);
+		
+		diffCacheManager.getDiffEntries(git.getRepository(), commitIds[0], commitIds[1]);
+		assertEquals(1, spillDir.list().length);
+		
+		diffCacheManager.on((SystemStopping) null);
+		assertEquals(0, spillDir.list().length);
+		
+		// discarded diff is calculated and spilled again
+		assertDiffEntries(diffCacheManager.getDiffEntries(git.getRepository(), commitIds[0], commitIds[1]));
+		assertEquals(1, spillDir.list().length);
+	}
+	
+	@Test
+	public void shouldShareTokenizedLinesOfSameBlobAndLanguage() {
+		DefaultDiffCacheManager diffCacheManager = new DefaultDiffCacheManager(spillDir, Long.MAX_VALUE);
+		ObjectId blobId = ObjectId.fromString("1111111111111111111111111111111111111111");
+		List<String> lines = Lists.newArrayList("public class A {", "}");
+		
+		List<Tokenized> tokenizedLines = diffCacheManager.getTokenizedLines(blobId, "A.java", lines);
+		assertEquals(2, tokenizedLines.size());
+		assertEquals("public class A {", tokenizedLines.get(0).getText());
+		assertTrue(tokenizedLines.get(0).getTokens().length > 1);
+		
+		// same blob viewed at another path of same language
+		assertSame(tokenizedLines, diffCacheManager.getTokenizedLines(blobId, "dir/A.java", lines));
+		
+		// same blob tokenized without syntax
+		List<Tokenized> plainLines = diffCacheManager.getTokenizedLines(blobId, null, lines);
+		assertNotSame(tokenizedLines, plainLines);
+		assertEquals(2, plainLines.size());
+		assertSame(plainLines, diffCacheManager.getTokenizedLines(blobId, null, lines));
+		
+		assertTrue(diffCacheManager.getTokenizedLines(ObjectId.zeroId(), "A.java", Lists.newArrayList()).isEmpty());
+	}
+	
+	@Test
+	public void shouldCacheDiffBlocksPerWhitespaceOption() {
+		DefaultDiffCacheManager diffCacheManager = new DefaultDiffCacheManager(spillDir, Long.MAX_VALUE);
+		ObjectId oldBlobId = ObjectId.fromString("1111111111111111111111111111111111111111");
+		ObjectId newBlobId = ObjectId.fromString("2222222222222222222222222222222222222222");
+		List<String> oldLines = Lists.newArrayList("public class A {", "  int a;", "}");
+		List<String> newLines = Lists.newArrayList("public class A {", "    int a;", "  int b;", "}");
+		
+		List<DiffBlock<Tokenized>> diffBlocks = diffCacheManager.getDiffBlocks(oldBlobId, "A.java", oldLines, 
+				newBlobId, "A.java", newLines, WhitespaceOption.DEFAULT);
+		assertSame(diffBlocks, diffCacheManager.getDiffBlocks(oldBlobId, "A.java", oldLines, 
+				newBlobId, "A.java", newLines, WhitespaceOption.DEFAULT));
+		
+		int oldCount = 0, newCount = 0;
+		for (DiffBlock<Tokenized> block: diffBlocks) {
+			oldCount = Math.max(oldCount, block.getOldEnd());
+			newCount = Math.max(newCount, block.getNewEnd());
+		}
+		assertEquals(oldLines.size(), oldCount);
+		assertEquals(newLines.size(), newCount);
+		
+		// diff blocks reference lines of tokenized lines cache
+		List<Tokenized> newTokenizedLines = diffCacheManager.getTokenizedLines(newBlobId, "A.java", newLines);
+		assertSame(newTokenizedLines.get(0), diffBlocks.get(0).getUnits().get(0));
+		
+		List<DiffBlock<Tokenized>> ignoreAllBlocks = diffCacheManager.getDiffBlocks(oldBlobId, "A.java", oldLines, 
+				newBlobId, "A.java", newLines, WhitespaceOption.IGNORE_ALL);
+		assertNotSame(diffBlocks, ignoreAllBlocks);
+		assertSame(ignoreAllBlocks, diffCacheManager.getDiffBlocks(oldBlobId, "A.java", oldLines, 
+				newBlobId, "A.java", newLines, WhitespaceOption.IGNORE_ALL));
+		
+		diffCacheManager.on((SystemStopping) null);
+		assertNotSame(diffBlocks, diffCacheManager.getDiffBlocks(oldBlobId, "A.java", oldLines, 
+				newBlobId, "A.java", newLines, WhitespaceOption.DEFAULT));
+	}
+	
+}
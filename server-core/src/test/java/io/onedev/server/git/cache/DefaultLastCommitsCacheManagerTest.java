@@ -0,0 +1,206 @@
+package io.onedev.server.git.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.RefsUpdated;
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.concurrent.Prioritized;
+import io.onedev.server.util.work.BatchWorkManager;
+import io.onedev.server.util.work.BatchWorker;
+
+public class DefaultLastCommitsCacheManagerTest extends AbstractGitTest {
+
+	private File infoDir;
+	
+	private Project project;
+	
+	private List<BatchWorker> submittedWorkers;
+	
+	@Override
+	protected void setup() {
+		super.setup();
+		infoDir = FileUtils.createTempDir();
+		project = newProject(true);
+		submittedWorkers = new ArrayList<>();
+	}
+
+	@Override
+	protected void teardown() {
+		FileUtils.deleteDir(infoDir);
+		super.teardown();
+	}
+	
+	private Project newProject(boolean withRepository) {
+		Project project = mock(Project.class);
+		when(project.getId()).thenReturn(1L);
+		when(project.getName()).thenReturn("test");
+		when(project.getDefaultBranch()).thenReturn("master");
+		if (withRepository) {
+			when(project.getRepository()).thenReturn(git.getRepository());
+			when(project.getObjectId(anyString(), anyBoolean())).thenAnswer(
+					invocation -> git.getRepository().resolve((String) invocation.getArguments()[0]));
+		}
+		return project;
+	}
+	
+	private DefaultLastCommitsCacheManager newLastCommitsCacheManager(Project project) {
+		StorageManager storageManager = mock(StorageManager.class);
+		when(storageManager.getProjectInfoDir(1L)).thenReturn(infoDir);
+		
+		ProjectManager projectManager = mock(ProjectManager.class);
+		when(projectManager.get(1L)).thenReturn(project);
+		
+		SessionManager sessionManager = mock(SessionManager.class);
+		doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(sessionManager).run(any(Runnable.class));
+		
+		BatchWorkManager batchWorkManager = mock(BatchWorkManager.class);
+		doAnswer(invocation -> {
+			submittedWorkers.add((BatchWorker) invocation.getArguments()[0]);
+			return null;
+		}).when(batchWorkManager).submit(any(BatchWorker.class), any(Prioritized.class));
+		
+		return new DefaultLastCommitsCacheManager(storageManager, projectManager, sessionManager, batchWorkManager);
+	}
+	
+	private void push(DefaultLastCommitsCacheManager lastCommitsCacheManager, String commitId) {
+		RefUpdated refUpdated = new RefUpdated(project, "refs/heads/master", ObjectId.zeroId(), 
+				ObjectId.fromString(commitId), true);
+		lastCommitsCacheManager.on(new RefsUpdated(project, Lists.newArrayList(refUpdated)));
+		for (BatchWorker worker: submittedWorkers)
+			worker.doWorks(new ArrayList<>());
+		submittedWorkers.clear();
+	}
+	
+	private File getPathDir(String path) {
+		return new File(new File(infoDir, "last_commits_cache"), DigestUtils.md5Hex(path));
+	}
+	
+	private void assertLastCommits(Map<String, Value> expected, Map<String, Value> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, Value> entry: expected.entrySet()) {
+			Value expectedValue = entry.getValue();
+			Value actualValue = actual.get(entry.getKey());
+			assertEquals(expectedValue.getId(), actualValue.getId());
+			assertEquals(expectedValue.getSummary(), actualValue.getSummary());
+			assertEquals(expectedValue.getAuthor(), actualValue.getAuthor());
+			assertEquals(expectedValue.getAuthor().getTimeZoneOffset(), actualValue.getAuthor().getTimeZoneOffset());
+			assertEquals(expectedValue.getCommitDate(), actualValue.getCommitDate());
+		}
+	}
+	
+	@Test
+	public void shouldStoreAndReadPrecomputedLastCommits() throws Exception {
+		addFileAndCommit("file1", "1", "initial");
+		addFileAndCommit("dir/file2", "2", "add file2");
+		String commitId = addFileAndCommit("dir/file3", "3", "add file3");
+		
+		push(newLastCommitsCacheManager(project), commitId);
+		
+		File rootFile = new File(getPathDir(""), commitId);
+		assertTrue(rootFile.exists());
+		assertTrue(new File(getPathDir("dir"), commitId).exists());
+		try (DataInputStream is = new DataInputStream(new GZIPInputStream(new FileInputStream(rootFile)))) {
+			assertEquals(1, is.readInt());
+			// "file1" and "dir" are changed by different commits
+			assertEquals(2, is.readInt());
+		}
+		
+		// read stored result without accessing repository
+		Project projectWithoutRepository = newProject(false);
+		DefaultLastCommitsCacheManager lastCommitsCacheManager = newLastCommitsCacheManager(projectWithoutRepository);
+		ObjectId objectId = ObjectId.fromString(commitId);
+		assertLastCommits(new LastCommitsOfChildren(git.getRepository(), objectId), 
+				lastCommitsCacheManager.getLastCommitsOfChildren(projectWithoutRepository, objectId, null));
+		assertLastCommits(new LastCommitsOfChildren(git.getRepository(), objectId, "dir"), 
+				lastCommitsCacheManager.getLastCommitsOfChildren(projectWithoutRepository, objectId, "dir"));
+		verify(projectWithoutRepository, never()).getRepository();
+	}
+	
+	@Test
+	public void shouldRecalculateLastCommitsStoredInUnknownFormat() throws Exception {
+		String commitId = addFileAndCommit("file1", "1", "initial");
+		
+		File pathDir = getPathDir("");
+		FileUtils.createDir(pathDir);
+		try (DataOutputStream os = new DataOutputStream(new GZIPOutputStream(
+				new FileOutputStream(new File(pathDir, commitId))))) {
+			os.writeInt(0);
+		}
+		
+		ObjectId objectId = ObjectId.fromString(commitId);
+		Map<String, Value> lastCommits = newLastCommitsCacheManager(project).getLastCommitsOfChildren(
+				project, objectId, null);
+		assertNotNull(lastCommits.get("file1"));
+		assertLastCommits(new LastCommitsOfChildren(git.getRepository(), objectId), lastCommits);
+	}
+	
+	@Test
+	public void shouldPruneLeastRecentlyStoredCommitsOfPath() throws Exception {
+		DefaultLastCommitsCacheManager lastCommitsCacheManager = newLastCommitsCacheManager(project);
+		
+		List<String> commitIds = new ArrayList<>();
+		for (int i=0; i<10; i++) {
+			String commitId = addFileAndCommit("file" + i, String.valueOf(i), "commit " + i);
+			commitIds.add(commitId);
+			push(lastCommitsCacheManager, commitId);
+			
+			// make store order deterministic regardless of file system timestamp granularity
+			File storedFile = new File(getPathDir(""), commitId);
+			assertTrue(storedFile.setLastModified(1000000000000L + i*1000L));
+		}
+		
+		String[] fileNames = getPathDir("").list();
+		assertEquals(8, fileNames.length);
+		for (String fileName: fileNames)
+			assertTrue(ObjectId.isId(fileName));
+		assertFalse(new File(getPathDir(""), commitIds.get(0)).exists());
+		assertFalse(new File(getPathDir(""), commitIds.get(1)).exists());
+		for (String commitId: commitIds.subList(2, 10))
+			assertTrue(new File(getPathDir(""), commitId).exists());
+		
+		// pruned result is calculated again
+		ObjectId objectId = ObjectId.fromString(commitIds.get(0));
+		assertLastCommits(new LastCommitsOfChildren(git.getRepository(), objectId), 
+				newLastCommitsCacheManager(project).getLastCommitsOfChildren(project, objectId, null));
+	}
+	
+}
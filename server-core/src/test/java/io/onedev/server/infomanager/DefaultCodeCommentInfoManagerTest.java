@@ -0,0 +1,144 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.PlanarRange;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.model.CodeComment;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.storage.StorageManager;
+
+public class DefaultCodeCommentInfoManagerTest {
+
+	private static final ObjectId BLOB1 = ObjectId.fromString("1111111111111111111111111111111111111111");
+
+	private static final ObjectId BLOB2 = ObjectId.fromString("2222222222222222222222222222222222222222");
+
+	private static final ObjectId COMMIT = ObjectId.fromString("3333333333333333333333333333333333333333");
+
+	private static final ObjectId HISTORY_COMMIT1 = ObjectId.fromString("4444444444444444444444444444444444444444");
+
+	private static final ObjectId HISTORY_COMMIT2 = ObjectId.fromString("5555555555555555555555555555555555555555");
+
+	private static final ObjectId HISTORY_COMMIT3 = ObjectId.fromString("6666666666666666666666666666666666666666");
+
+	private File infoDir;
+
+	private Project project;
+
+	private DefaultCodeCommentInfoManager codeCommentInfoManager;
+
+	@Before
+	public void before() {
+		infoDir = FileUtils.createTempDir();
+
+		project = new Project();
+		project.setId(1L);
+
+		StorageManager storageManager = mock(StorageManager.class);
+		when(storageManager.getProjectInfoDir(1L)).thenReturn(infoDir);
+
+		TransactionManager transactionManager = mock(TransactionManager.class);
+		doAnswer(invocation -> {
+			((Runnable) invocation.getArguments()[0]).run();
+			return null;
+		}).when(transactionManager).runAfterCommit(any(Runnable.class));
+
+		codeCommentInfoManager = new DefaultCodeCommentInfoManager(storageManager,
+				mock(ProjectManager.class), transactionManager);
+	}
+
+	@After
+	public void after() {
+		codeCommentInfoManager.on((SystemStopping) null);
+		FileUtils.deleteDir(infoDir);
+	}
+
+	@Test
+	public void shouldSaveAndGetMappedRanges() {
+		Map<Long, PlanarRange> mappedRanges = new HashMap<>();
+		mappedRanges.put(1L, new PlanarRange(1, 2, 3, 4));
+		mappedRanges.put(2L, null);
+		codeCommentInfoManager.saveMappedRanges(project, BLOB1, mappedRanges);
+
+		Map<Long, PlanarRange> savedRanges = codeCommentInfoManager.getMappedRanges(
+				project, BLOB1, Lists.newArrayList(1L, 2L, 3L));
+		assertEquals(2, savedRanges.size());
+		PlanarRange range = savedRanges.get(1L);
+		assertEquals(1, range.getFromRow());
+		assertEquals(2, range.getFromColumn());
+		assertEquals(3, range.getToRow());
+		assertEquals(4, range.getToColumn());
+
+		// comment can not be mapped
+		assertTrue(savedRanges.containsKey(2L));
+		assertNull(savedRanges.get(2L));
+
+		// comment not mapped yet
+		assertFalse(savedRanges.containsKey(3L));
+
+		assertTrue(codeCommentInfoManager.getMappedRanges(project, BLOB2, Lists.newArrayList(1L, 2L)).isEmpty());
+	}
+
+	@Test
+	public void shouldSaveAndGetReachabilities() {
+		Map<ObjectId, Boolean> reachabilities = new HashMap<>();
+		reachabilities.put(HISTORY_COMMIT1, true);
+		reachabilities.put(HISTORY_COMMIT2, false);
+		codeCommentInfoManager.saveReachabilities(project, COMMIT, reachabilities);
+
+		Map<ObjectId, Boolean> savedReachabilities = codeCommentInfoManager.getReachabilities(project, COMMIT,
+				Lists.newArrayList(HISTORY_COMMIT1, HISTORY_COMMIT2, HISTORY_COMMIT3));
+		assertEquals(2, savedReachabilities.size());
+		assertTrue(savedReachabilities.get(HISTORY_COMMIT1));
+		assertFalse(savedReachabilities.get(HISTORY_COMMIT2));
+		assertFalse(savedReachabilities.containsKey(HISTORY_COMMIT3));
+
+		assertTrue(codeCommentInfoManager.getReachabilities(project, HISTORY_COMMIT1,
+				Lists.newArrayList(HISTORY_COMMIT2)).isEmpty());
+	}
+
+	@Test
+	public void shouldRemoveMappedRangesOfDeletedComment() {
+		Map<Long, PlanarRange> mappedRanges = new HashMap<>();
+		mappedRanges.put(1L, new PlanarRange(1, 2, 3, 4));
+		mappedRanges.put(2L, new PlanarRange(5, 6, 7, 8));
+		codeCommentInfoManager.saveMappedRanges(project, BLOB1, mappedRanges);
+		codeCommentInfoManager.saveMappedRanges(project, BLOB2, mappedRanges);
+
+		CodeComment comment = new CodeComment();
+		comment.setId(1L);
+		comment.setProject(project);
+		codeCommentInfoManager.on(new EntityRemoved(comment));
+
+		for (ObjectId blobId: Lists.newArrayList(BLOB1, BLOB2)) {
+			Map<Long, PlanarRange> savedRanges = codeCommentInfoManager.getMappedRanges(
+					project, blobId, Lists.newArrayList(1L, 2L));
+			assertEquals(1, savedRanges.size());
+			assertEquals(5, savedRanges.get(2L).getFromRow());
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+package io.onedev.server.migration;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dom4j.Element;
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class XmlRowReaderTest {
+
+	private VersionedXmlDoc newRow(int index) {
+		VersionedXmlDoc row = new VersionedXmlDoc();
+		Element rowElement = row.addElement("io.onedev.server.model.Issue");
+		rowElement.addAttribute("revision", "1");
+		rowElement.addElement("id").setText(String.valueOf(index));
+		// character invalid in xml 1.0 should be readable as with VersionedXmlDoc.fromFile
+		rowElement.addElement("title").setText("issue \u0001 <" + index + ">");
+		return row;
+	}
+
+	@Test
+	public void shouldReadRowsWrittenByRowWriterAndDocument() {
+		File tempDir = FileUtils.createTempDir();
+		try {
+			File streamedFile = new File(tempDir, "Issues.xml");
+			try (XmlRowWriter writer = new XmlRowWriter(streamedFile)) {
+				for (int i=1; i<=100; i++)
+					writer.write(newRow(i));
+			}
+
+			VersionedXmlDoc dom = new VersionedXmlDoc();
+			Element rootElement = dom.addElement("list");
+			for (int i=1; i<=100; i++)
+				rootElement.appendContent(newRow(i));
+			File documentFile = new File(tempDir, "Issues.xml.2");
+			dom.writeToFile(documentFile, true);
+
+			for (File file: new File[] {streamedFile, documentFile}) {
+				List<VersionedXmlDoc> rows = new ArrayList<>();
+				XmlRowReader.read(file, rows::add);
+				assertEquals(100, rows.size());
+				for (int i=1; i<=100; i++) {
+					Element rowElement = rows.get(i-1).getRootElement();
+					assertEquals("1", rows.get(i-1).getVersion());
+					assertEquals(String.valueOf(i), rowElement.elementText("id"));
+					assertEquals("issue \u0001 <" + i + ">", rowElement.elementText("title"));
+				}
+
+				List<Element> elements = VersionedXmlDoc.fromFile(file).getRootElement().elements();
+				assertEquals(100, elements.size());
+				assertEquals("100", elements.get(99).elementText("id"));
+			}
+		} finally {
+			FileUtils.deleteDir(tempDir);
+		}
+	}
+
+}
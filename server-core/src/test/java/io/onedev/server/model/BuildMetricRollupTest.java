@@ -0,0 +1,43 @@
+package io.onedev.server.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.onedev.server.model.BuildMetricRollup.Granularity;
+import io.onedev.server.util.Day;
+
+public class BuildMetricRollupTest {
+
+	private int day(int year, int month, int dayOfMonth) {
+		return new Day(year, month-1, dayOfMonth).getValue();
+	}
+
+	@Test
+	public void shouldCalculatePeriods() {
+		// 2020-03-04 is a Wednesday
+		assertEquals(day(2020, 3, 4), Granularity.DAY.getPeriod(day(2020, 3, 4)));
+		assertEquals(day(2020, 3, 2), Granularity.WEEK.getPeriod(day(2020, 3, 4)));
+		assertEquals(day(2020, 3, 2), Granularity.WEEK.getPeriod(day(2020, 3, 8)));
+		assertEquals(day(2019, 12, 30), Granularity.WEEK.getPeriod(day(2020, 1, 1)));
+		assertEquals(day(2020, 3, 1), Granularity.MONTH.getPeriod(day(2020, 3, 31)));
+
+		assertEquals(day(2020, 3, 1), Granularity.DAY.getNextPeriod(day(2020, 2, 29)));
+		assertEquals(day(2020, 1, 6), Granularity.WEEK.getNextPeriod(day(2019, 12, 30)));
+		assertEquals(day(2021, 1, 1), Granularity.MONTH.getNextPeriod(day(2020, 12, 1)));
+	}
+
+	@Test
+	public void shouldKeepPeriodsOrderedByDayValue() {
+		for (Granularity granularity: Granularity.values()) {
+			int period = granularity.getPeriod(day(2019, 11, 15));
+			for (int i=0; i<30; i++) {
+				int nextPeriod = granularity.getNextPeriod(period);
+				assertEquals(nextPeriod, granularity.getPeriod(nextPeriod));
+				assertEquals(true, nextPeriod > period);
+				period = nextPeriod;
+			}
+		}
+	}
+
+}
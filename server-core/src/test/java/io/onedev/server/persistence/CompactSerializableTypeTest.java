@@ -0,0 +1,172 @@
+package io.onedev.server.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.hibernate.internal.util.SerializationHelper;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.server.model.support.BranchProtection;
+import io.onedev.server.model.support.FileProtection;
+import io.onedev.server.model.support.TagProtection;
+import io.onedev.server.model.support.build.ProjectBuildSetting;
+import io.onedev.server.model.support.issue.ProjectIssueSetting;
+import io.onedev.server.model.support.pullrequest.ProjectPullRequestSetting;
+
+public class CompactSerializableTypeTest {
+
+	private static final int PROJECTS = 5000;
+
+	private List<Serializable> newSettings(int index) {
+		ArrayList<BranchProtection> branchProtections = new ArrayList<>();
+		for (int i=0; i<3; i++) {
+			BranchProtection protection = new BranchProtection();
+			protection.setBranches("release-" + index + "-" + i + "/**");
+			protection.setReviewRequirement("user(admin):2");
+			protection.setJobNames(Lists.newArrayList("ci", "release"));
+			FileProtection fileProtection = new FileProtection();
+			fileProtection.setPaths("**/*.java");
+			fileProtection.setReviewRequirement("user(admin)");
+			protection.setFileProtections(Lists.newArrayList(fileProtection));
+			branchProtections.add(protection);
+		}
+		ArrayList<TagProtection> tagProtections = new ArrayList<>();
+		TagProtection tagProtection = new TagProtection();
+		tagProtection.setTags("v*");
+		tagProtections.add(tagProtection);
+
+		return Lists.newArrayList(branchProtections, tagProtections, new ProjectIssueSetting(),
+				new ProjectBuildSetting(), new ProjectPullRequestSetting());
+	}
+
+	@Test
+	public void shouldRoundTripAndDetectChanges() {
+		for (Serializable value: newSettings(0)) {
+			byte[] serialized = SerializationHelper.serialize(value);
+			Serializable decoded = CompactSerializableTypeDescriptor.decode(CompactSerializableTypeDescriptor.encode(value));
+			assertArrayEquals(serialized, SerializationHelper.serialize(decoded));
+
+			// values stored as plain java serialization should still be readable
+			decoded = CompactSerializableTypeDescriptor.decode(serialized);
+			assertArrayEquals(serialized, SerializationHelper.serialize(decoded));
+		}
+
+		@SuppressWarnings("unchecked")
+		ArrayList<BranchProtection> branchProtections = (ArrayList<BranchProtection>) CompactSerializableTypeDescriptor.decode(
+				CompactSerializableTypeDescriptor.encode(newSettings(0).get(0)));
+		assertTrue(CompactSerializableTypeDescriptor.INSTANCE.areEqual(branchProtections, branchProtections));
+		branchProtections.get(0).setBranches("master");
+		assertFalse(CompactSerializableTypeDescriptor.INSTANCE.areEqual(branchProtections, branchProtections));
+		CompactSerializableTypeDescriptor.encode(branchProtections);
+		assertTrue(CompactSerializableTypeDescriptor.INSTANCE.areEqual(branchProtections, branchProtections));
+	}
+
+	@Test
+	public void shouldNotBeDirtyIfLoadedFromLegacyRow() {
+		/*
+		 * Serialized form of a hash map created with large capacity differs from serialized 
+		 * form of the deserialized map, just like rows written by older versions of classes
+		 */
+		HashMap<String, String> map = new HashMap<>(1024);
+		map.put("key", "value");
+		byte[] legacy = SerializationHelper.serialize(map);
+
+		Serializable loaded = CompactSerializableTypeDescriptor.decode(legacy);
+		assertFalse(Arrays.equals(legacy, SerializationHelper.serialize(loaded)));
+		assertTrue(CompactSerializableTypeDescriptor.INSTANCE.areEqual(loaded, loaded));
+
+		@SuppressWarnings("unchecked")
+		HashMap<String, String> loadedMap = (HashMap<String, String>) loaded;
+		loadedMap.put("key", "changed");
+		assertFalse(CompactSerializableTypeDescriptor.INSTANCE.areEqual(loaded, loaded));
+	}
+
+	@Test
+	public void shouldNotBeDirtyIfLoadedFromCompactRow() {
+		for (Serializable value: newSettings(0)) {
+			Serializable loaded = CompactSerializableTypeDescriptor.decode(CompactSerializableTypeDescriptor.encode(value));
+			assertTrue(CompactSerializableTypeDescriptor.INSTANCE.areEqual(loaded, loaded));
+		}
+	}
+
+	@Test
+	public void shouldShareValueWithSnapshot() {
+		Serializable value = CompactSerializableTypeDescriptor.decode(
+				CompactSerializableTypeDescriptor.encode(newSettings(0).get(0)));
+		assertFalse(CompactSerializableTypeDescriptor.INSTANCE.getMutabilityPlan().isMutable());
+		assertSame(value, CompactSerializableTypeDescriptor.INSTANCE.getMutabilityPlan().deepCopy(value));
+	}
+
+	@Test
+	public void shouldBeSmallerThanPlainSerialization() {
+		long plainSize = 0;
+		long compactSize = 0;
+		for (Serializable value: newSettings(0)) {
+			plainSize += SerializationHelper.serialize(value).length;
+			compactSize += CompactSerializableTypeDescriptor.encode(value).length;
+		}
+		assertTrue(compactSize < plainSize);
+	}
+
+	private long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/*
+	 * Compare loading lob settings of 5000 projects stored as plain java serialization
+	 * (deserialize, and deep copy as snapshot for dirty checking), against compact form
+	 */
+	@Ignore("Benchmark, run manually to compare load time and allocation")
+	@Test
+	public void benchmarkProjectListLoad() {
+		List<byte[]> plainRows = new ArrayList<>();
+		List<byte[]> compactRows = new ArrayList<>();
+		long plainSize = 0;
+		long compactSize = 0;
+		for (int i=0; i<PROJECTS; i++) {
+			for (Serializable value: newSettings(i)) {
+				byte[] plain = SerializationHelper.serialize(value);
+				byte[] compact = CompactSerializableTypeDescriptor.encode(value);
+				plainRows.add(plain);
+				compactRows.add(compact);
+				plainSize += plain.length;
+				compactSize += compact.length;
+			}
+		}
+		System.out.println(String.format("Lob settings of %d projects: plain %d KB, compact %d KB",
+				PROJECTS, plainSize/1024, compactSize/1024));
+
+		for (int round=0; round<3; round++) {
+			long allocated = getAllocatedBytes();
+			long time = System.currentTimeMillis();
+			for (byte[] row: plainRows)
+				SerializationHelper.clone((Serializable) SerializationHelper.deserialize(row));
+			long plainTime = System.currentTimeMillis() - time;
+			long plainAllocated = getAllocatedBytes() - allocated;
+
+			allocated = getAllocatedBytes();
+			time = System.currentTimeMillis();
+			for (byte[] row: compactRows)
+				CompactSerializableTypeDescriptor.decode(row);
+			long compactTime = System.currentTimeMillis() - time;
+			long compactAllocated = getAllocatedBytes() - allocated;
+
+			System.out.println(String.format("Load of %d projects: plain %d ms/%d KB allocated, compact %d ms/%d KB allocated",
+					PROJECTS, plainTime, plainAllocated/1024, compactTime, compactAllocated/1024));
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+package io.onedev.server.search.buildmetric;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Root;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.server.model.BuildMetricRollup;
+import io.onedev.server.model.BuildMetricRollup.Granularity;
+
+public class NotBuildMetricCriteriaTest {
+
+	@SuppressWarnings("unchecked")
+	private final Root<BuildMetricRollup> rollupRoot = mock(Root.class, RETURNS_MOCKS);
+	
+	private final CriteriaBuilder builder = mock(CriteriaBuilder.class, RETURNS_MOCKS);
+	
+	@Test
+	public void shouldOnlyNegateDateCriteriaAgainstDailyRollups() {
+		BuildMetricCriteria since = new DateCriteria("2020-01-15", BuildMetricQueryLexer.Since);
+		BuildMetricCriteria job = new JobCriteria("ci");
+		
+		NotBuildMetricCriteria notSince = new NotBuildMetricCriteria(since);
+		assertNotNull(notSince.getRollupPredicate(rollupRoot, Granularity.DAY, builder));
+		assertNull(notSince.getRollupPredicate(rollupRoot, Granularity.WEEK, builder));
+		assertNull(notSince.getRollupPredicate(rollupRoot, Granularity.MONTH, builder));
+		
+		NotBuildMetricCriteria notJobAndSince = new NotBuildMetricCriteria(
+				new AndBuildMetricCriteria(Lists.newArrayList(job, since)));
+		assertNull(notJobAndSince.getRollupPredicate(rollupRoot, Granularity.MONTH, builder));
+		
+		// date criteria not negated includes partially covered periods
+		assertNotNull(new AndBuildMetricCriteria(Lists.newArrayList(job, since))
+				.getRollupPredicate(rollupRoot, Granularity.MONTH, builder));
+		assertNotNull(new NotBuildMetricCriteria(job).getRollupPredicate(rollupRoot, Granularity.MONTH, builder));
+		
+		// double negation still goes through raw metrics 
+		assertNull(new NotBuildMetricCriteria(notSince).getRollupPredicate(rollupRoot, Granularity.WEEK, builder));
+	}
+	
+}
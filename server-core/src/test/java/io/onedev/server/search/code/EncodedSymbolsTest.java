@@ -0,0 +1,178 @@
+package io.onedev.server.search.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Test;
+
+import io.onedev.commons.jsymbol.Symbol;
+import io.onedev.commons.jsymbol.SymbolExtractor;
+import io.onedev.commons.jsymbol.SymbolExtractorRegistry;
+
+public class EncodedSymbolsTest {
+
+	private List<Symbol> extract() throws Exception {
+		StringBuilder source = new StringBuilder();
+		for (int i=0; i<3; i++) {
+			source.append("class Type").append(i).append(" {\n");
+			for (int j=0; j<50; j++)
+				source.append("  int field").append(j).append(";\n");
+			source.append("  void method() {}\n");
+			source.append("}\n");
+		}
+		SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor("Test.java");
+		return extractor.extract("Test.java", source.toString());
+	}
+
+	private void assertSymbolsEqual(List<Symbol> expected, List<Symbol> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i=0; i<expected.size(); i++) {
+			Symbol expectedSymbol = expected.get(i);
+			Symbol actualSymbol = actual.get(i);
+			assertEquals(expectedSymbol.getName(), actualSymbol.getName());
+			assertEquals(expectedSymbol.isPrimary(), actualSymbol.isPrimary());
+			assertEquals(expectedSymbol.isSearchable(), actualSymbol.isSearchable());
+			if (expectedSymbol.getParent() != null)
+				assertEquals(expectedSymbol.getParent().getName(), actualSymbol.getParent().getName());
+			else
+				assertEquals(null, actualSymbol.getParent());
+		}
+	}
+
+	@Test
+	public void shouldRoundTrip() throws Exception {
+		List<Symbol> symbols = extract();
+		assertTrue(symbols.size() > 150);
+
+		EncodedSymbols decoded = EncodedSymbols.decode(EncodedSymbols.encode(symbols));
+		assertEquals(symbols.size(), decoded.getEntries().size());
+		for (int i=0; i<symbols.size(); i++) {
+			EncodedSymbols.Entry entry = decoded.getEntries().get(i);
+			assertEquals(i, entry.getIndex());
+			assertEquals(symbols.get(i).getName(), entry.getName());
+			assertEquals(symbols.get(i).isPrimary(), entry.isPrimary());
+			assertEquals(symbols.get(i).isSearchable(), entry.isSearchable());
+			assertEquals(symbols.get(i).isLocalInHierarchy(), entry.isLocalInHierarchy());
+		}
+		assertSymbolsEqual(symbols, decoded.getSymbols());
+	}
+
+	@Test
+	public void shouldDecodeSingleSymbolWithItsParent() throws Exception {
+		List<Symbol> symbols = extract();
+		EncodedSymbols decoded = EncodedSymbols.decode(EncodedSymbols.encode(symbols));
+
+		EncodedSymbols.Entry last = decoded.getEntries().get(symbols.size()-1);
+		Symbol symbol = decoded.getSymbol(last);
+		assertEquals(symbols.get(symbols.size()-1).getName(), symbol.getName());
+		assertEquals(symbols.get(symbols.size()-1).getParent().getName(), symbol.getParent().getName());
+
+		// symbols of same tree are decoded from same group and share parent instances
+		for (EncodedSymbols.Entry entry: decoded.getEntries()) {
+			Symbol each = decoded.getSymbol(entry);
+			if (each.getParent() != null && each.getParent().getName().equals(symbol.getParent().getName()))
+				assertSame(symbol.getParent(), each.getParent());
+		}
+	}
+
+	@Test
+	public void shouldDecodeWithOffset() throws Exception {
+		List<Symbol> symbols = extract();
+		byte[] encoded = EncodedSymbols.encode(symbols);
+		byte[] padded = new byte[encoded.length + 20];
+		System.arraycopy(encoded, 0, padded, 10, encoded.length);
+		assertSymbolsEqual(symbols, EncodedSymbols.decode(padded, 10, encoded.length).getSymbols());
+	}
+
+	@Test
+	public void shouldFallBackToLegacyFormat() throws Exception {
+		List<Symbol> symbols = extract();
+		byte[] legacy = SerializationUtils.serialize((Serializable) new ArrayList<>(symbols));
+
+		EncodedSymbols decoded = EncodedSymbols.decode(legacy);
+		assertEquals(symbols.size(), decoded.getEntries().size());
+		for (int i=0; i<symbols.size(); i++) {
+			EncodedSymbols.Entry entry = decoded.getEntries().get(i);
+			assertEquals(symbols.get(i).getName(), entry.getName());
+			assertEquals(symbols.get(i).isPrimary(), entry.isPrimary());
+			assertEquals(symbols.get(i).getName(), decoded.getSymbol(entry).getName());
+		}
+		assertSymbolsEqual(symbols, decoded.getSymbols());
+	}
+
+	@Test
+	public void shouldEncodeEmptySymbols() {
+		EncodedSymbols decoded = EncodedSymbols.decode(EncodedSymbols.encode(new ArrayList<>()));
+		assertTrue(decoded.getEntries().isEmpty());
+		assertTrue(decoded.getSymbols().isEmpty());
+	}
+
+	@Test
+	public void shouldKeepOutlineInfoInSymbolTable() throws Exception {
+		List<Symbol> symbols = extract();
+		EncodedSymbols decoded = EncodedSymbols.decode(EncodedSymbols.encode(symbols));
+
+		assertTrue(decoded.hasOutline());
+		for (int i=0; i<symbols.size(); i++) {
+			Symbol symbol = symbols.get(i);
+			EncodedSymbols.Entry entry = decoded.getEntries().get(i);
+			assertEquals(symbol.isDisplayInOutline(), entry.isDisplayInOutline());
+			if (symbol.getOutlineParent() != null)
+				assertSame(symbol.getOutlineParent(), symbols.get(entry.getOutlineParentIndex()));
+			else
+				assertEquals(-1, entry.getOutlineParentIndex());
+			if (symbol.getScope() != null) {
+				assertEquals(symbol.getScope().getFromRow(), entry.getScope().getFromRow());
+				assertEquals(symbol.getScope().getToRow(), entry.getScope().getToRow());
+				assertEquals(symbol.getScope().getToColumn(), entry.getScope().getToColumn());
+			} else {
+				assertEquals(null, entry.getScope());
+			}
+		}
+
+		// outline structure and scopes are available without decoding any group
+		assertEquals(0, decoded.getDecodedGroupCount());
+	}
+
+	@Test
+	public void shouldDecodeOnlyGroupsOfRequestedSymbols() throws Exception {
+		List<Symbol> symbols = extract();
+		EncodedSymbols decoded = EncodedSymbols.decode(EncodedSymbols.encode(symbols));
+
+		decoded.getSymbol(0);
+		assertEquals(1, decoded.getDecodedGroupCount());
+		decoded.getSymbol(1);
+		assertEquals(1, decoded.getDecodedGroupCount());
+		decoded.getSymbols();
+		assertTrue(decoded.getDecodedGroupCount() > 1);
+	}
+
+	@Test
+	public void shouldSerializeWithoutDecodedGroups() throws Exception {
+		List<Symbol> symbols = extract();
+		EncodedSymbols decoded = EncodedSymbols.decode(EncodedSymbols.encode(symbols));
+		decoded.getSymbols();
+
+		EncodedSymbols copy = (EncodedSymbols) SerializationUtils.clone(decoded);
+		assertEquals(0, copy.getDecodedGroupCount());
+		assertSymbolsEqual(symbols, copy.getSymbols());
+	}
+
+	@Test
+	public void shouldWrapExtractedSymbols() throws Exception {
+		List<Symbol> symbols = extract();
+		EncodedSymbols wrapped = EncodedSymbols.of(symbols);
+		assertEquals(symbols.size(), wrapped.getEntries().size());
+		assertSame(symbols.get(3), wrapped.getSymbol(3));
+		assertEquals(symbols.get(3).isDisplayInOutline(), wrapped.getEntries().get(3).isDisplayInOutline());
+		assertFalse(EncodedSymbols.of(new ArrayList<>()).hasOutline());
+	}
+
+}
@@ -0,0 +1,64 @@
+package io.onedev.server.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.server.persistence.TransactionManager;
+
+public class DefaultVerifiedCredentialManagerTest {
+
+	private DefaultVerifiedCredentialManager credentialManager;
+
+	@Before
+	public void before() {
+		credentialManager = new DefaultVerifiedCredentialManager(mock(TransactionManager.class));
+	}
+
+	@Test
+	public void shouldCacheVerifiedCredential() {
+		credentialManager.cache("Robin", "secret", 1L, credentialManager.getGeneration());
+		assertEquals(1L, credentialManager.getUserId("robin", "secret").longValue());
+		assertNull(credentialManager.getUserId("robin", "wrong"));
+		assertNull(credentialManager.getUserId("other", "secret"));
+	}
+
+	@Test
+	public void shouldDropCachedCredentialOnInvalidation() {
+		credentialManager.cache("robin", "secret", 1L, credentialManager.getGeneration());
+		credentialManager.cache("alex", "secret", 2L, credentialManager.getGeneration());
+
+		credentialManager.invalidate(1L);
+		assertNull(credentialManager.getUserId("robin", "secret"));
+		assertEquals(2L, credentialManager.getUserId("alex", "secret").longValue());
+	}
+
+	@Test
+	public void shouldNotCacheCredentialVerifiedBeforeInvalidation() {
+		// verification starts
+		long generation = credentialManager.getGeneration();
+
+		// user is changed while verifying
+		credentialManager.invalidate(1L);
+
+		// verification finishes with the old credential
+		credentialManager.cache("robin", "secret", 1L, generation);
+		assertNull(credentialManager.getUserId("robin", "secret"));
+
+		// credential verified after the change is cached as usual
+		credentialManager.cache("robin", "secret", 1L, credentialManager.getGeneration());
+		assertEquals(1L, credentialManager.getUserId("robin", "secret").longValue());
+	}
+
+	@Test
+	public void shouldCacheCredentialIfOtherUserIsInvalidated() {
+		long generation = credentialManager.getGeneration();
+		credentialManager.invalidate(2L);
+		credentialManager.cache("robin", "secret", 1L, generation);
+		assertEquals(1L, credentialManager.getUserId("robin", "secret").longValue());
+	}
+
+}
@@ -0,0 +1,160 @@
+package io.onedev.server.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.util.patternset.PatternSet;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+public class DefaultArtifactStorageManagerTest {
+
+	private static final PatternSet ALL_FILES = new PatternSet(Sets.newHashSet("**"), Sets.newHashSet());
+
+	private File tempDir;
+
+	private DefaultArtifactStorageManager artifactStorageManager;
+
+	@Before
+	public void before() {
+		assumeFalse(SystemUtils.IS_OS_WINDOWS);
+		tempDir = FileUtils.createTempDir();
+		artifactStorageManager = new DefaultArtifactStorageManager(mock(TaskScheduler.class), 
+				new File(tempDir, "blobs"));
+	}
+
+	@After
+	public void after() {
+		if (tempDir != null)
+			FileUtils.deleteDir(tempDir);
+	}
+
+	private File newDir(String name, String... pathsAndContents) throws IOException {
+		File dir = new File(tempDir, name);
+		for (int i=0; i<pathsAndContents.length; i+=2)
+			FileUtils.writeStringToFile(new File(dir, pathsAndContents[i]), pathsAndContents[i+1], StandardCharsets.UTF_8);
+		return dir;
+	}
+
+	private File getBlobFile(String content) {
+		return artifactStorageManager.getBlobFile(DigestUtils.sha256Hex(content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private int getLinkCount(File file) throws IOException {
+		return (Integer) Files.getAttribute(file.toPath(), "unix:nlink");
+	}
+
+	private String read(File file) throws IOException {
+		return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void shouldDeduplicatePublishedFiles() throws Exception {
+		File artifactsDir1 = new File(tempDir, "artifacts1");
+		File artifactsDir2 = new File(tempDir, "artifacts2");
+		artifactStorageManager.publish(newDir("workspace1", "lib/shared.jar", "shared", "app.jar", "app1"), 
+				ALL_FILES, artifactsDir1);
+		artifactStorageManager.publish(newDir("workspace2", "lib/shared.jar", "shared", "app.jar", "app2"), 
+				ALL_FILES, artifactsDir2);
+
+		assertEquals("shared", read(new File(artifactsDir1, "lib/shared.jar")));
+		assertEquals("app2", read(new File(artifactsDir2, "app.jar")));
+
+		// linked by pool and both artifacts directories
+		assertEquals(3, getLinkCount(getBlobFile("shared")));
+		assertTrue(Files.isSameFile(getBlobFile("shared").toPath(), new File(artifactsDir2, "lib/shared.jar").toPath()));
+		assertEquals(2, getLinkCount(getBlobFile("app1")));
+
+		assertEquals(20, artifactStorageManager.getPublishedBytes());
+		assertEquals(6, artifactStorageManager.getDeduplicatedBytes());
+	}
+
+	@Test
+	public void shouldRetrieveArtifactsAsLinks() throws Exception {
+		File artifactsDir = new File(tempDir, "artifacts");
+		artifactStorageManager.publish(newDir("workspace", "dist/app.jar", "app", "readme", "readme"), 
+				ALL_FILES, artifactsDir);
+
+		File toDir = newDir("toDir", "dist/app.jar", "old");
+		artifactStorageManager.retrieve(artifactsDir, new PatternSet(Sets.newHashSet("dist/**"), Sets.newHashSet()), toDir);
+
+		File retrieved = new File(toDir, "dist/app.jar");
+		assertEquals("app", read(retrieved));
+		assertTrue(Files.isSameFile(new File(artifactsDir, "dist/app.jar").toPath(), retrieved.toPath()));
+		assertFalse(new File(toDir, "readme").exists());
+	}
+
+	@Test
+	public void shouldCopyIfUnableToLink() throws Exception {
+		// simulate blob pool and artifacts on different file systems
+		artifactStorageManager = new DefaultArtifactStorageManager(mock(TaskScheduler.class), new File(tempDir, "blobs")) {
+
+			@Override
+			boolean link(File target, File source) {
+				return false;
+			}
+
+		};
+
+		File artifactsDir = new File(tempDir, "artifacts");
+		artifactStorageManager.publish(newDir("workspace", "app.jar", "app"), ALL_FILES, artifactsDir);
+
+		File artifactFile = new File(artifactsDir, "app.jar");
+		assertEquals("app", read(artifactFile));
+		assertFalse(Files.isSameFile(getBlobFile("app").toPath(), artifactFile.toPath()));
+		assertEquals(1, getLinkCount(getBlobFile("app")));
+
+		// blob not referenced by any artifact is cleaned up, while copied artifact is intact
+		artifactStorageManager.execute();
+		assertFalse(getBlobFile("app").exists());
+		assertEquals("app", read(artifactFile));
+	}
+
+	@Test
+	public void shouldCleanupUnreferencedBlobs() throws Exception {
+		File artifactsDir1 = new File(tempDir, "artifacts1");
+		File artifactsDir2 = new File(tempDir, "artifacts2");
+		artifactStorageManager.publish(newDir("workspace1", "shared.jar", "shared", "app.jar", "app1"), 
+				ALL_FILES, artifactsDir1);
+		artifactStorageManager.publish(newDir("workspace2", "shared.jar", "shared"), ALL_FILES, artifactsDir2);
+
+		File prefixDir = getBlobFile("shared").getParentFile();
+		File staleTempFile = new File(prefixDir, "temp-stale");
+		FileUtils.writeStringToFile(staleTempFile, "stale", StandardCharsets.UTF_8);
+		assertTrue(staleTempFile.setLastModified(System.currentTimeMillis() - 48*3600*1000L));
+		File tempFile = new File(prefixDir, "temp-publishing");
+		FileUtils.writeStringToFile(tempFile, "publishing", StandardCharsets.UTF_8);
+
+		// build of artifactsDir1 is deleted
+		FileUtils.deleteDir(artifactsDir1);
+		artifactStorageManager.execute();
+
+		assertFalse(getBlobFile("app1").exists());
+		assertTrue(getBlobFile("shared").exists());
+		assertEquals(2, getLinkCount(getBlobFile("shared")));
+		assertEquals("shared", read(new File(artifactsDir2, "shared.jar")));
+		assertFalse(staleTempFile.exists());
+		assertTrue(tempFile.exists());
+
+		FileUtils.deleteDir(artifactsDir2);
+		artifactStorageManager.execute();
+		assertFalse(getBlobFile("shared").exists());
+	}
+
+}
@@ -0,0 +1,124 @@
+package io.onedev.server.util.beanclass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.Setting;
+import io.onedev.server.model.support.inputspec.InputSpec;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.util.IssueUtils;
+
+public class DefaultBeanClassManagerTest {
+
+	private List<String> compiled;
+	
+	private List<Runnable> afterCommitWorks;
+	
+	private DefaultBeanClassManager beanClassManager;
+	
+	@Before
+	public void before() {
+		compiled = new ArrayList<>();
+		afterCommitWorks = new ArrayList<>();
+		
+		TransactionManager transactionManager = mock(TransactionManager.class);
+		doAnswer(invocation -> {
+			afterCommitWorks.add((Runnable) invocation.getArguments()[0]);
+			return null;
+		}).when(transactionManager).runAfterCommit(any(Runnable.class));
+		
+		beanClassManager = new DefaultBeanClassManager(transactionManager) {
+
+			@Override
+			protected Class<?> compile(String className, String description, Collection<? extends InputSpec> inputs) {
+				compiled.add(className);
+				// a new class object for each compilation to be able to tell them apart
+				return new Object() {}.getClass();
+			}
+			
+		};
+	}
+	
+	private Class<?> define(String className) {
+		return beanClassManager.defineClass(className, "description", new ArrayList<>());
+	}
+	
+	@Test
+	public void shouldReuseDefinedClasses() {
+		Class<?> paramBeanClass = define("ParamSupplyBean_0001");
+		Class<?> fieldBeanClass = define(IssueUtils.FIELD_BEAN_PREFIX + 1);
+		for (int i=0; i<3; i++) {
+			assertSame(paramBeanClass, define("ParamSupplyBean_0001"));
+			assertSame(fieldBeanClass, define(IssueUtils.FIELD_BEAN_PREFIX + 1));
+		}
+		assertEquals(2, compiled.size());
+		assertEquals(2, beanClassManager.getMissCount());
+		assertEquals(6, beanClassManager.getHitCount());
+	}
+	
+	@Test
+	public void shouldNotEvictFieldBeanClassesBySize() {
+		for (int i=0; i<2000; i++) 
+			define(IssueUtils.FIELD_BEAN_PREFIX + i);
+		for (int i=0; i<2000; i++)
+			define(IssueUtils.FIELD_BEAN_PREFIX + i);
+		assertEquals(2000, compiled.size());
+	}
+	
+	@Test
+	public void shouldInvalidateFieldBeanClassesWhenIssueSettingChanges() {
+		Class<?> fieldBeanClass = define(IssueUtils.FIELD_BEAN_PREFIX + 1);
+		Class<?> paramBeanClass = define("ParamSupplyBean_0001");
+		
+		Setting setting = new Setting();
+		setting.setKey(Setting.Key.ISSUE);
+		beanClassManager.on(new EntityPersisted(setting, true));
+		
+		assertNotSame(fieldBeanClass, define(IssueUtils.FIELD_BEAN_PREFIX + 1));
+		assertSame(paramBeanClass, define("ParamSupplyBean_0001"));
+		assertEquals(3, compiled.size());
+	}
+	
+	@Test
+	public void shouldInvalidateFieldBeanClassesAgainAfterCommit() {
+		Setting setting = new Setting();
+		setting.setKey(Setting.Key.ISSUE);
+		beanClassManager.on(new EntityPersisted(setting, true));
+		
+		// defined by another request before the setting change is committed
+		Class<?> fieldBeanClass = define(IssueUtils.FIELD_BEAN_PREFIX + 1);
+		
+		assertEquals(1, afterCommitWorks.size());
+		afterCommitWorks.get(0).run();
+		
+		assertNotSame(fieldBeanClass, define(IssueUtils.FIELD_BEAN_PREFIX + 1));
+	}
+	
+	@Test
+	public void shouldInvalidateFieldBeanClassWhenProjectIsRemoved() {
+		Class<?> fieldBeanClass1 = define(IssueUtils.FIELD_BEAN_PREFIX + 1);
+		Class<?> fieldBeanClass2 = define(IssueUtils.FIELD_BEAN_PREFIX + 2);
+		
+		Project project = new Project();
+		project.setId(1L);
+		beanClassManager.on(new EntityRemoved(project));
+		
+		assertNotSame(fieldBeanClass1, define(IssueUtils.FIELD_BEAN_PREFIX + 1));
+		assertSame(fieldBeanClass2, define(IssueUtils.FIELD_BEAN_PREFIX + 2));
+	}
+	
+}
@@ -2,12 +2,22 @@ package io.onedev.server.util.diff;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.junit.Ignore;
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
 
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+
 public class DiffUtilsTest extends DiffUtils {
 
 	@Test
@@ -54,4 +64,166 @@ public class DiffUtilsTest extends DiffUtils {
 		assertFalse(DiffUtils.isVisible(diffBlocks, false, 18, 3));
 	}
 
+	@Test
+	public void testLinearDiff() {
+		List<String> oldLines = Lists.newArrayList("1", "2", "3", "4a", "5a", "6", "7", "8");
+		List<String> newLines = Lists.newArrayList("1", "2", "3", "4b", "5b", "7", "8", "9", "10");
+		List<DiffBlock<String>> diffBlocks = DiffUtils.linearDiff(oldLines, newLines, oldLines, newLines);
+		assertEquals(5, diffBlocks.size());
+		assertEquals(Operation.DELETE, diffBlocks.get(1).getOperation());
+		assertEquals(Lists.newArrayList("4a", "5a", "6"), diffBlocks.get(1).getUnits());
+		assertEquals(Operation.INSERT, diffBlocks.get(2).getOperation());
+		assertEquals(Lists.newArrayList("4b", "5b"), diffBlocks.get(2).getUnits());
+		assertEquals(Operation.INSERT, diffBlocks.get(4).getOperation());
+		assertEquals(oldLines, getOldLines(diffBlocks));
+		assertEquals(newLines, getNewLines(diffBlocks));
+		
+		oldLines = generateLines(1000, 0);
+		newLines = modifyLines(oldLines, 1);
+		diffBlocks = DiffUtils.linearDiff(oldLines, newLines, oldLines, newLines);
+		assertEquals(oldLines, getOldLines(diffBlocks));
+		assertEquals(newLines, getNewLines(diffBlocks));
+	}
+	
+	@Test
+	public void testEngineSelection() {
+		List<String> oldLines = generateLines(100, 0);
+		List<String> newLines = modifyLines(oldLines, 1);
+		List<DiffBlock<String>> diffBlocks = DiffUtils.diff(oldLines, newLines);
+		assertFalse(diffBlocks instanceof LazyDiffBlocks);
+		
+		oldLines = generateLines(MAX_CHAR_DIFF_SIZE/2 + 100, 0);
+		newLines = modifyLines(oldLines, 1);
+		assertTrue(oldLines.size() + newLines.size() > MAX_CHAR_DIFF_SIZE);
+		diffBlocks = DiffUtils.diff(oldLines, newLines);
+		assertTrue(diffBlocks instanceof LazyDiffBlocks);
+		assertEquals(oldLines, getOldLines(diffBlocks));
+		assertEquals(newLines, getNewLines(diffBlocks));
+	}
+	
+	@Test
+	public void testUnitCount() {
+		List<String> oldLines = generateLines(MAX_CHAR_DIFF_SIZE/2 + 100, 0);
+		List<String> newLines = modifyLines(oldLines, 1);
+		List<DiffBlock<String>> diffBlocks = DiffUtils.diff(oldLines, newLines);
+		assertTrue(diffBlocks instanceof LazyDiffBlocks);
+		
+		int insertions = DiffUtils.getUnitCount(diffBlocks, Operation.INSERT);
+		int deletions = DiffUtils.getUnitCount(diffBlocks, Operation.DELETE);
+		
+		List<DiffBlock<String>> materialized = new ArrayList<>(diffBlocks);
+		assertEquals(insertions, DiffUtils.getUnitCount(materialized, Operation.INSERT));
+		assertEquals(deletions, DiffUtils.getUnitCount(materialized, Operation.DELETE));
+		assertEquals(newLines.size() - oldLines.size(), insertions - deletions);
+	}
+	
+	@Test
+	public void testConcurrentMaterialization() throws Exception {
+		List<String> oldLines = generateLines(MAX_CHAR_DIFF_SIZE/2 + 100, 0);
+		List<String> newLines = modifyLines(oldLines, 1);
+		List<DiffBlock<String>> diffBlocks = DiffUtils.diff(oldLines, newLines);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<DiffBlock<String>>>> futures = new ArrayList<>();
+			for (int i=0; i<4; i++) {
+				futures.add(executor.submit(new Callable<List<DiffBlock<String>>>() {
+
+					@Override
+					public List<DiffBlock<String>> call() throws Exception {
+						return new ArrayList<>(diffBlocks);
+					}
+					
+				}));
+			}
+			List<DiffBlock<String>> blocks = futures.get(0).get();
+			for (Future<List<DiffBlock<String>>> future: futures) {
+				List<DiffBlock<String>> blocksOfThread = future.get();
+				for (int i=0; i<blocks.size(); i++)
+					assertSame(blocks.get(i), blocksOfThread.get(i));
+			}
+			assertEquals(oldLines, getOldLines(blocks));
+			assertEquals(newLines, getNewLines(blocks));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Ignore("Benchmark, run manually to check time of diffing large files")
+	@Test
+	public void benchmarkLinearDiff() {
+		for (int size: new int[] {100000, 1000000}) {
+			List<String> oldLines = generateLines(size, 0);
+			List<String> newLines = modifyLines(oldLines, 1);
+			
+			long time = System.currentTimeMillis();
+			List<DiffBlock<String>> diffBlocks = DiffUtils.diff(oldLines, newLines);
+			long diffTime = System.currentTimeMillis() - time;
+			
+			time = System.currentTimeMillis();
+			int insertions = DiffUtils.getUnitCount(diffBlocks, Operation.INSERT);
+			int deletions = DiffUtils.getUnitCount(diffBlocks, Operation.DELETE);
+			long countTime = System.currentTimeMillis() - time;
+			
+			assertEquals(oldLines, getOldLines(diffBlocks));
+			assertEquals(newLines, getNewLines(diffBlocks));
+			System.out.println(String.format("Linear diff of %d lines: %d blocks in %d ms, "
+					+ "%d insertions and %d deletions counted in %d ms", 
+					size, diffBlocks.size(), diffTime, insertions, deletions, countTime));
+		}
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testDiffSizeLimit() {
+		List<String> oldLines = Collections.nCopies(MAX_DIFF_SIZE/2 + 1, "line");
+		DiffUtils.diff(oldLines, oldLines);
+	}
+	
+	private List<String> generateLines(int count, long seed) {
+		Random random = new Random(seed);
+		List<String> lines = new ArrayList<>(count);
+		for (int i=0; i<count; i++) 
+			lines.add("INSERT INTO t VALUES (" + random.nextInt(count) + ", 'value" + random.nextInt(100) + "');");
+		return lines;
+	}
+	
+	private List<String> modifyLines(List<String> lines, long seed) {
+		Random random = new Random(seed);
+		List<String> modified = new ArrayList<>(lines.size());
+		for (String line: lines) {
+			int dice = random.nextInt(100);
+			if (dice == 0) {
+				modified.add(line + " -- modified");
+			} else if (dice == 1) {
+				modified.add(line);
+				modified.add("-- added");
+			} else if (dice != 2) {
+				modified.add(line);
+			}
+		}
+		return modified;
+	}
+	
+	private <T> List<T> getOldLines(List<DiffBlock<T>> diffBlocks) {
+		List<T> lines = new ArrayList<>();
+		for (DiffBlock<T> block: diffBlocks) {
+			if (block.getOperation() != Operation.INSERT) {
+				assertEquals(lines.size(), block.getOldStart());
+				lines.addAll(block.getUnits());
+			}
+		}
+		return lines;
+	}
+	
+	private <T> List<T> getNewLines(List<DiffBlock<T>> diffBlocks) {
+		List<T> lines = new ArrayList<>();
+		for (DiffBlock<T> block: diffBlocks) {
+			if (block.getOperation() != Operation.DELETE) {
+				assertEquals(lines.size(), block.getNewStart());
+				lines.addAll(block.getUnits());
+			}
+		}
+		return lines;
+	}
+	
 }
@@ -0,0 +1,175 @@
+package io.onedev.server.util.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.util.ServerConfig;
+import io.onedev.server.util.concurrent.Prioritized;
+
+public class DefaultBatchWorkManagerTest {
+
+	private DefaultBatchWorkManager batchWorkManager;
+
+	@Before
+	public void before() {
+		ThreadContext.bind(mock(Subject.class));
+		ServerConfig serverConfig = mock(ServerConfig.class);
+		when(serverConfig.getBatchWorkConcurrency()).thenReturn(2);
+		batchWorkManager = new DefaultBatchWorkManager(serverConfig);
+	}
+
+	@After
+	public void after() {
+		batchWorkManager.on((SystemStopping) null);
+		ThreadContext.unbindSubject();
+	}
+
+	@Test
+	public void shouldCoalesceWorksOfSameWorker() throws InterruptedException {
+		List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch done = new CountDownLatch(10);
+		BatchWorker worker = new BatchWorker("coalesce") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				batchSizes.add(works.size());
+				for (int i=0; i<works.size(); i++)
+					done.countDown();
+			}
+
+		};
+
+		// submitted before start, so all works should be picked up as one batch
+		for (int i=0; i<10; i++)
+			batchWorkManager.submit(worker, new Prioritized(i));
+		assertEquals(10, batchWorkManager.getQueueDepths().get("coalesce").intValue());
+
+		batchWorkManager.on((SystemStarted) null);
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList(10), batchSizes);
+		assertEquals(10, batchWorkManager.getStats().getProcessedWorks());
+		assertEquals(0, batchWorkManager.getStats().getQueuedWorks());
+	}
+
+	@Test
+	public void shouldRespectMaxConcurrencyOfWorker() throws InterruptedException {
+		batchWorkManager.on((SystemStarted) null);
+
+		AtomicInteger running = new AtomicInteger(0);
+		AtomicInteger maxRunning = new AtomicInteger(0);
+		CountDownLatch done = new CountDownLatch(20);
+		BatchWorker worker = new BatchWorker("serial", 1) {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+				}
+				running.decrementAndGet();
+				done.countDown();
+			}
+
+		};
+		for (int i=0; i<20; i++)
+			batchWorkManager.submit(worker, new Prioritized(0));
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test
+	public void shouldNotBlockOtherWorkersBehindSlowWorker() throws InterruptedException {
+		batchWorkManager.on((SystemStarted) null);
+
+		CountDownLatch slowStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		BatchWorker slowWorker = new BatchWorker("project-1-slow", 1) {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				slowStarted.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+
+		};
+		batchWorkManager.submit(slowWorker, new Prioritized(0));
+		batchWorkManager.submit(slowWorker, new Prioritized(0));
+		assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+
+		CountDownLatch done = new CountDownLatch(5);
+		BatchWorker fastWorker = new BatchWorker("project-2-fast", 1) {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				done.countDown();
+			}
+
+		};
+		for (int i=0; i<5; i++)
+			batchWorkManager.submit(fastWorker, new Prioritized(0));
+
+		try {
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals(1, batchWorkManager.getQueueDepths().get("project-1-slow").intValue());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void shouldWaitForRunningBatchesWhenStopping() throws InterruptedException {
+		batchWorkManager.on((SystemStarted) null);
+
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean finished = new AtomicBoolean(false);
+		AtomicBoolean interrupted = new AtomicBoolean(false);
+		BatchWorker worker = new BatchWorker("slow") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				started.countDown();
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					interrupted.set(true);
+				}
+				finished.set(true);
+			}
+
+		};
+		batchWorkManager.submit(worker, new Prioritized(0));
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		batchWorkManager.on((SystemStopping) null);
+		assertTrue(finished.get());
+		assertFalse(interrupted.get());
+		assertEquals(0, batchWorkManager.getStats().getRunningBatches());
+		assertEquals(1, batchWorkManager.getStats().getProcessedBatches());
+	}
+
+}
@@ -0,0 +1,123 @@
+package io.onedev.server.web.pagestore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class DefaultPageStoreManagerTest {
+
+	private static final int PAGE_SIZE = 1000;
+
+	private final Random random = new Random(0);
+
+	private File storeDir;
+
+	@Before
+	public void before() {
+		storeDir = FileUtils.createTempDir();
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(storeDir);
+	}
+
+	// random data is not compressible, so that stored pages are of predictable size
+	private byte[] newPage() {
+		byte[] data = new byte[PAGE_SIZE];
+		random.nextBytes(data);
+		return data;
+	}
+
+	@Test
+	public void shouldCompressStoredPages() {
+		DefaultPageStoreManager pageStoreManager = new DefaultPageStoreManager(storeDir, Long.MAX_VALUE);
+
+		StringBuilder builder = new StringBuilder();
+		for (int i=0; i<10000; i++)
+			builder.append("serialized page content ").append(i % 10);
+		byte[] data = builder.toString().getBytes();
+		pageStoreManager.storeData("session", 1, data);
+
+		assertArrayEquals(data, pageStoreManager.getData("session", 1));
+		assertNull(pageStoreManager.getData("session", 2));
+		assertNull(pageStoreManager.getData("other", 1));
+
+		assertEquals(data.length, pageStoreManager.getStoredBytes());
+		assertTrue(pageStoreManager.getCompressedBytes() < data.length / 10);
+		assertEquals(pageStoreManager.getCompressedBytes(), pageStoreManager.getDiskUsage());
+		assertEquals(pageStoreManager.getDiskUsage(), new File(new File(storeDir, "session"), "1").length());
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedPagesAcrossSessions() {
+		// room for two pages
+		DefaultPageStoreManager pageStoreManager = new DefaultPageStoreManager(storeDir, PAGE_SIZE * 5 / 2);
+
+		byte[] page1 = newPage();
+		byte[] page2 = newPage();
+		byte[] page3 = newPage();
+		pageStoreManager.storeData("session1", 1, page1);
+		pageStoreManager.storeData("session2", 1, page2);
+
+		// page of session1 is now more recently used than page of session2
+		assertArrayEquals(page1, pageStoreManager.getData("session1", 1));
+
+		pageStoreManager.storeData("session3", 1, page3);
+
+		assertNull(pageStoreManager.getData("session2", 1));
+		assertArrayEquals(page1, pageStoreManager.getData("session1", 1));
+		assertArrayEquals(page3, pageStoreManager.getData("session3", 1));
+		assertEquals(1, pageStoreManager.getEvictedPages());
+		assertTrue(pageStoreManager.getDiskUsage() <= PAGE_SIZE * 5 / 2);
+		assertFalse(new File(storeDir, "session2").exists());
+		assertTrue(new File(storeDir, "session1").exists());
+	}
+
+	@Test
+	public void shouldRemovePagesOfSession() {
+		DefaultPageStoreManager pageStoreManager = new DefaultPageStoreManager(storeDir, Long.MAX_VALUE);
+
+		pageStoreManager.storeData("session1", 1, newPage());
+		pageStoreManager.storeData("session1", 2, newPage());
+		byte[] page = newPage();
+		pageStoreManager.storeData("session2", 1, page);
+
+		pageStoreManager.removeData("session1", 1);
+		assertNull(pageStoreManager.getData("session1", 1));
+		assertTrue(pageStoreManager.getDiskUsage() > 0);
+
+		pageStoreManager.removeData("session1");
+		assertNull(pageStoreManager.getData("session1", 2));
+		assertArrayEquals(page, pageStoreManager.getData("session2", 1));
+		assertEquals(new File(new File(storeDir, "session2"), "1").length(), pageStoreManager.getDiskUsage());
+		assertFalse(new File(storeDir, "session1").exists());
+	}
+
+	@Test
+	public void shouldNotStorePageOfRemovedSession() {
+		DefaultPageStoreManager pageStoreManager = new DefaultPageStoreManager(storeDir, Long.MAX_VALUE);
+
+		pageStoreManager.storeData("session", 1, newPage());
+		pageStoreManager.removeData("session");
+
+		// store scheduled asynchronously before removal of the session
+		pageStoreManager.storeData("session", 2, newPage());
+
+		assertNull(pageStoreManager.getData("session", 2));
+		assertEquals(0, pageStoreManager.getDiskUsage());
+		assertFalse(new File(storeDir, "session").exists());
+	}
+
+}
@@ -0,0 +1,191 @@
+package io.onedev.server.web.resource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import org.apache.http.client.utils.DateUtils;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.util.time.Time;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class ArtifactResourceTest {
+
+	private File tempDir;
+
+	@Before
+	public void before() {
+		tempDir = FileUtils.createTempDir();
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(tempDir);
+	}
+
+	private File newFile(String name, byte[] content) throws IOException {
+		File file = new File(tempDir, name);
+		FileUtils.writeByteArrayToFile(file, content);
+		return file;
+	}
+
+	@Test
+	public void shouldGenerateETagFromBuildSizeAndModificationTime() throws IOException {
+		File file = newFile("file", new byte[] {1, 2, 3});
+		assertTrue(file.setLastModified(1000000));
+		String etag = ArtifactResource.getETag(1L, file);
+		assertEquals(etag, ArtifactResource.getETag(1L, file));
+		assertNotEquals(etag, ArtifactResource.getETag(2L, file));
+
+		assertTrue(file.setLastModified(2000000));
+		assertNotEquals(etag, ArtifactResource.getETag(1L, file));
+	}
+
+	@Test
+	public void shouldHandleConditionalHeaders() {
+		String etag = "\"1-3-f4240\"";
+		long lastModified = 1000500;
+
+		assertTrue(ArtifactResource.matches(etag, etag));
+		assertTrue(ArtifactResource.matches("\"other\", W/" + etag, etag));
+		assertTrue(ArtifactResource.matches("*", etag));
+		assertFalse(ArtifactResource.matches("\"other\"", etag));
+		assertFalse(ArtifactResource.matches(null, etag));
+
+		WebRequest request = mock(WebRequest.class);
+		when(request.getHeader("If-None-Match")).thenReturn(etag);
+		assertTrue(ArtifactResource.isNotModified(request, etag, lastModified));
+
+		// If-None-Match takes precedence over If-Modified-Since
+		when(request.getHeader("If-None-Match")).thenReturn("\"other\"");
+		when(request.getIfModifiedSinceHeader()).thenReturn(Time.millis(1000000));
+		assertFalse(ArtifactResource.isNotModified(request, etag, lastModified));
+
+		// Last-Modified header has a precision of one second
+		when(request.getHeader("If-None-Match")).thenReturn(null);
+		assertTrue(ArtifactResource.isNotModified(request, etag, lastModified));
+		when(request.getIfModifiedSinceHeader()).thenReturn(Time.millis(999000));
+		assertFalse(ArtifactResource.isNotModified(request, etag, lastModified));
+
+		assertTrue(ArtifactResource.isRangeApplicable(null, etag, lastModified));
+		assertTrue(ArtifactResource.isRangeApplicable(etag, etag, lastModified));
+		assertFalse(ArtifactResource.isRangeApplicable("\"other\"", etag, lastModified));
+		assertTrue(ArtifactResource.isRangeApplicable(DateUtils.formatDate(new Date(1000000)), etag, lastModified));
+		assertFalse(ArtifactResource.isRangeApplicable(DateUtils.formatDate(new Date(2000000)), etag, lastModified));
+	}
+
+	@Test
+	public void shouldTransferRequestedRange() throws IOException {
+		byte[] content = new byte[3*1024*1024 + 17];
+		new Random(0).nextBytes(content);
+		File file = newFile("file", content);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ArtifactResource.transfer(file, 0, content.length, baos);
+		assertArrayEquals(content, baos.toByteArray());
+
+		baos = new ByteArrayOutputStream();
+		ArtifactResource.transfer(file, 1024*1024 - 5, 1024*1024 + 10, baos);
+		assertArrayEquals(Arrays.copyOfRange(content, 1024*1024 - 5, 2*1024*1024 + 5), baos.toByteArray());
+
+		baos = new ByteArrayOutputStream();
+		ArtifactResource.transfer(file, content.length - 1, 1, baos);
+		assertArrayEquals(new byte[] {content[content.length - 1]}, baos.toByteArray());
+	}
+
+	@Test
+	public void shouldRejectPathOutsideArtifactsDir() throws IOException {
+		File artifactsDir = new File(tempDir, "artifacts");
+		newFile("artifacts/dir/file", new byte[] {1});
+		newFile("secret", new byte[] {2});
+
+		assertTrue(ArtifactResource.isInside(artifactsDir, new File(artifactsDir, "dir/file")));
+		assertTrue(ArtifactResource.isInside(artifactsDir, new File(artifactsDir, "dir/../dir")));
+		assertTrue(ArtifactResource.isInside(artifactsDir, new File(artifactsDir, ".")));
+		assertFalse(ArtifactResource.isInside(artifactsDir, new File(artifactsDir, "../secret")));
+		assertFalse(ArtifactResource.isInside(artifactsDir, new File(artifactsDir, "dir/../..")));
+		assertFalse(ArtifactResource.isInside(artifactsDir, new File(artifactsDir, "../artifacts2/file")));
+	}
+
+	@Test
+	public void shouldServeSmallFileConditionallyAndByRange() throws IOException {
+		byte[] content = "0123456789abcdef".getBytes();
+		File file = newFile("small", content);
+		assertTrue(file.setLastModified(1000000));
+		String etag = ArtifactResource.getETag(1L, file);
+
+		// client holding current ETag gets 304
+		WebRequest request = mock(WebRequest.class);
+		when(request.getHeader("If-None-Match")).thenReturn(etag);
+		assertTrue(ArtifactResource.isNotModified(request, etag, file.lastModified()));
+
+		// re-published artifact gets a new ETag, so the client downloads it again
+		FileUtils.writeByteArrayToFile(file, "re-published".getBytes());
+		assertTrue(file.setLastModified(2000000));
+		String newETag = ArtifactResource.getETag(1L, file);
+		assertNotEquals(etag, newETag);
+		assertFalse(ArtifactResource.isNotModified(request, newETag, file.lastModified()));
+
+		// range is only honored if If-Range matches current ETag
+		assertFalse(ArtifactResource.isRangeApplicable(etag, newETag, file.lastModified()));
+		assertTrue(ArtifactResource.isRangeApplicable(newETag, newETag, file.lastModified()));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ArtifactResource.transfer(file, 3, 7, baos);
+		assertArrayEquals("publish".getBytes(), baos.toByteArray());
+	}
+
+	@Ignore("Benchmark, run manually to measure transfer throughput")
+	@Test
+	public void benchmarkLargeFileTransfer() throws IOException {
+		File file = new File(tempDir, "large");
+		long size = 512L*1024*1024;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(size);
+		}
+
+		CountingOutputStream os = new CountingOutputStream();
+		long time = System.nanoTime();
+		ArtifactResource.transfer(file, 0, size, os);
+		long elapsed = Math.max(1, (System.nanoTime() - time) / 1000000);
+
+		assertEquals(size, os.count);
+		System.out.println(String.format("Transferred %d MB in %d ms (%d MB/s)",
+				size/1024/1024, elapsed, size/1024/1024*1000/elapsed));
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+
+	}
+
+}
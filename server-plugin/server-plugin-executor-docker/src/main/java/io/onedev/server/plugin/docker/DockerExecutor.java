@@ -1,11 +1,10 @@
 package io.onedev.server.plugin.docker;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
@@ -14,6 +13,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -73,6 +73,9 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 	private static final long serialVersionUID = 1L;
 	
 	private static final Logger logger = LoggerFactory.getLogger(DockerExecutor.class);
+	
+	// image caches by docker executable, shared by executors using the same executable
+	private static final Map<String, ImageCache> imageCaches = new ConcurrentHashMap<>();
 
 	private List<RegistryLogin> registryLogins = new ArrayList<>();
 	
@@ -82,6 +85,10 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 	
 	private String dockerExecutable;
 	
+	private int sourceMirrorSize = 10;
+	
+	private int imageFreshness = 60;
+	
 	private transient CapacityRunner capacityRunner;
 	
 	private transient volatile String outerInstallPath;
@@ -126,11 +133,41 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 		this.dockerExecutable = dockerExecutable;
 	}
 
-	private Commandline newDocker() {
+	@Editable(order=50200, group="More Settings", description="Source of projects is mirrored on server to speed up "
+			+ "source retrieval of jobs not specifying clone depth. Specify max total size of these mirrors in giga bytes. "
+			+ "Least recently used mirrors will be removed if exceeded. Use <tt>0</tt> to disable source mirrors")
+	public int getSourceMirrorSize() {
+		return sourceMirrorSize;
+	}
+
+	public void setSourceMirrorSize(int sourceMirrorSize) {
+		this.sourceMirrorSize = sourceMirrorSize;
+	}
+
+	@Editable(order=50300, group="More Settings", description="An image pulled within specified number of seconds "
+			+ "will not be pulled again for subsequent jobs. Use <tt>0</tt> to always pull image tags. Images referenced "
+			+ "by digest are only pulled if not available locally")
+	public int getImageFreshness() {
+		return imageFreshness;
+	}
+
+	public void setImageFreshness(int imageFreshness) {
+		this.imageFreshness = imageFreshness;
+	}
+
+	private String getDockerCommand() {
 		if (getDockerExecutable() != null)
-			return new Commandline(getDockerExecutable());
+			return getDockerExecutable();
 		else
-			return new Commandline("docker");
+			return "docker";
+	}
+	
+	private ImageCache getImageCache() {
+		return imageCaches.computeIfAbsent(getDockerCommand(), ImageCache::new);
+	}
+	
+	private Commandline newDocker() {
+		return new Commandline(getDockerCommand());
 	}
 	
 	private String getImageOS(SimpleLogger jobLogger, String image) {
@@ -304,28 +341,12 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 	@SuppressWarnings("resource")
 	private void startService(String network, JobService jobService, SimpleLogger jobLogger) {
 		jobLogger.log("Pulling service image...") ;
-		Commandline docker = newDocker();
-		docker.addArgs("pull", jobService.getImage());
-		docker.execute(new LineConsumer() {
-
-			@Override
-			public void consume(String line) {
-				logger.debug(line);
-			}
-			
-		}, new LineConsumer() {
-
-			@Override
-			public void consume(String line) {
-				jobLogger.log(line);
-			}
-			
-		}).checkReturnCode();
+		pullImage(jobService.getImage(), jobLogger);
 		
 		jobLogger.log("Creating service container...");
 		
 		String containerName = network + "-service-" + jobService.getName();
-		docker.clearArgs();
+		Commandline docker = newDocker();
 		docker.addArgs("run", "-d", "--name=" + containerName, "--network=" + network, 
 				"--network-alias=" + jobService.getName());
 		for (EnvVar var: jobService.getEnvVars()) 
@@ -478,23 +499,8 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 					login(jobLogger);
 
 					jobLogger.log("Pulling job image...") ;
+					pullImage(jobContext.getImage(), jobLogger);
 					Commandline docker = newDocker();
-					docker.addArgs("pull", jobContext.getImage());
-					docker.execute(new LineConsumer() {
-
-						@Override
-						public void consume(String line) {
-							logger.debug(line);
-						}
-						
-					}, new LineConsumer() {
-
-						@Override
-						public void consume(String line) {
-							jobLogger.log(line);
-						}
-						
-					}).checkReturnCode();
 					
 					boolean isWindows = getImageOS(jobLogger, jobContext.getImage()).equalsIgnoreCase("windows");
 
@@ -562,8 +568,17 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 
 								Integer cloneDepth = jobContext.getCloneDepth();
 								
-								KubernetesHelper.clone(hostWorkspace, jobContext.getProjectGitDir().getAbsolutePath(), 
-										jobContext.getCommitId().name(), cloneDepth, git, logger, logger);
+								String[] workspaceFiles = hostWorkspace.list();
+								if (cloneDepth == null && getSourceMirrorSize() > 0 && workspaceFiles != null && workspaceFiles.length == 0) {
+									SourceMirrorManager mirrorManager = OneDev.getInstance(SourceMirrorManager.class);
+									long saved = mirrorManager.clone(jobContext.getProjectGitDir(), jobContext.getCommitId(), 
+											hostWorkspace, git, getSourceMirrorSize()*1024L*1024L*1024L, logger, logger);
+									DockerExecutor.logger.debug("Retrieved source of build {}#{} from mirror ({} ms saved)", 
+											jobContext.getProjectName(), jobContext.getBuildNumber(), saved);
+								} else {
+									KubernetesHelper.clone(hostWorkspace, jobContext.getProjectGitDir().getAbsolutePath(), 
+											jobContext.getCommitId().name(), cloneDepth, git, logger, logger);
+								}
 								
 								git.clearArgs();
 								git.addArgs("remote", "add", "origin", jobContext.getCloneInfo().getCloneUrl());
@@ -742,7 +757,11 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 								int baseLen = hostWorkspace.getAbsolutePath().length()+1;
 								for (File file: jobContext.getCollectFiles().listFiles(hostWorkspace)) {
 									try {
-										FileUtils.copyFile(file, new File(jobContext.getServerWorkspace(), file.getAbsolutePath().substring(baseLen)));
+										// server workspace may contain hard links to published artifacts, replace 
+										// instead of overwriting them
+										File serverFile = new File(jobContext.getServerWorkspace(), file.getAbsolutePath().substring(baseLen));
+										Files.deleteIfExists(serverFile.toPath());
+										FileUtils.copyFile(file, serverFile);
 									} catch (IOException e) {
 										throw new RuntimeException(e);
 									}
@@ -777,17 +796,8 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 				jobLogger.log(String.format("Login to docker registry '%s'...", login.getRegistryUrl()));
 			else
 				jobLogger.log("Login to official docker registry...");
-			Commandline cmd = newDocker();
-			cmd.addArgs("login", "-u", login.getUserName(), "--password-stdin");
-			if (login.getRegistryUrl() != null)
-				cmd.addArgs(login.getRegistryUrl());
-			ByteArrayInputStream input;
-			try {
-				input = new ByteArrayInputStream(login.getPassword().getBytes(StandardCharsets.UTF_8.name()));
-			} catch (UnsupportedEncodingException e) {
-				throw new RuntimeException(e);
-			}
-			cmd.execute(new LineConsumer() {
+			getImageCache().login(login.getRegistryUrl(), login.getUserName(), login.getPassword(), 
+					new LineConsumer() {
 
 				@Override
 				public void consume(String line) {
@@ -801,10 +811,28 @@ public class DockerExecutor extends JobExecutor implements Testable<TestData>, V
 					jobLogger.log(line);
 				}
 				
-			}, input).checkReturnCode();
+			});
 		}
 	}
 	
+	private void pullImage(String image, SimpleLogger jobLogger) {
+		getImageCache().pull(image, getImageFreshness()*1000L, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.debug(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				jobLogger.log(line);
+			}
+			
+		});
+	}
+	
 	private boolean hasOptions(String[] arguments, String... options) {
 		for (String argument: arguments) {
 			for (String option: options) {
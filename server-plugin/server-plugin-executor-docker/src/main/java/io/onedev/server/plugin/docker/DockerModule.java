@@ -23,6 +23,8 @@ public class DockerModule extends AbstractPluginModule {
 		super.configure();
 		
 		// put your guice bindings here
+		bind(SourceMirrorManager.class);
+		
 		contribute(ImplementationProvider.class, new ImplementationProvider() {
 
 			@Override
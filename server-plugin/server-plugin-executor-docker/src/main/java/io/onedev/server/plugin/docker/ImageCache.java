@@ -0,0 +1,228 @@
+package io.onedev.server.plugin.docker;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+
+/**
+ * Tracks images pulled and registries logged in via a docker executable, so that:
+ * <ul>
+ * <li>Concurrent pulls of the same image are coalesced into a single pull
+ * <li>An image pulled within freshness window is not pulled again
+ * <li>Images referenced by digest are pulled only if not available locally
+ * <li>Login to a registry with same credential is performed only once
+ * </ul>
+ */
+public class ImageCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(ImageCache.class);
+
+	private final String dockerExecutable;
+
+	private final Map<String, PulledImage> pulledImages = new ConcurrentHashMap<>();
+
+	private final Map<String, CompletableFuture<String>> pullingImages = new ConcurrentHashMap<>();
+
+	private final Map<String, String> loggedInRegistries = new ConcurrentHashMap<>();
+
+	private final AtomicLong pulls = new AtomicLong(0);
+
+	private final AtomicLong skippedPulls = new AtomicLong(0);
+
+	private final AtomicLong coalescedPulls = new AtomicLong(0);
+
+	private final AtomicLong logins = new AtomicLong(0);
+
+	public ImageCache(String dockerExecutable) {
+		this.dockerExecutable = dockerExecutable;
+	}
+
+	private Commandline newDocker() {
+		return new Commandline(dockerExecutable);
+	}
+
+	public static boolean isDigestPinned(String image) {
+		return image.contains("@sha256:");
+	}
+
+	/**
+	 * Login to specified registry unless already logged in with the same credential.
+	 *
+	 * @param registryUrl
+	 * 			url of the registry, <tt>null</tt> for official docker registry
+	 */
+	public synchronized void login(@Nullable String registryUrl, String userName, String password,
+			LineConsumer infoLogger, LineConsumer errorLogger) {
+		String registryKey = registryUrl != null? registryUrl: "";
+		String credential = DigestUtils.sha256Hex(userName + ":" + password);
+		if (credential.equals(loggedInRegistries.get(registryKey)))
+			return;
+
+		Commandline docker = newDocker();
+		docker.addArgs("login", "-u", userName, "--password-stdin");
+		if (registryUrl != null)
+			docker.addArgs(registryUrl);
+		ByteArrayInputStream input = new ByteArrayInputStream(password.getBytes(StandardCharsets.UTF_8));
+		docker.execute(infoLogger, errorLogger, input).checkReturnCode();
+		logins.incrementAndGet();
+		loggedInRegistries.put(registryKey, credential);
+	}
+
+	/**
+	 * Make sure specified image is available locally.
+	 *
+	 * @param image
+	 * 			image to pull
+	 * @param freshness
+	 * 			an image pulled within this number of milliseconds will not be pulled again
+	 * @return
+	 * 			id of the image
+	 */
+	public String pull(String image, long freshness, LineConsumer infoLogger, LineConsumer errorLogger) {
+		String imageId = getFreshImageId(image, freshness);
+		if (imageId != null) {
+			skippedPulls.incrementAndGet();
+			return imageId;
+		}
+
+		CompletableFuture<String> future = new CompletableFuture<>();
+		CompletableFuture<String> pullingFuture = pullingImages.putIfAbsent(image, future);
+		if (pullingFuture != null) {
+			coalescedPulls.incrementAndGet();
+			try {
+				return pullingFuture.get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw ExceptionUtils.unchecked(e.getCause());
+			}
+		}
+
+		try {
+			// check again in case pulled by others after our first check
+			imageId = getFreshImageId(image, freshness);
+			if (imageId == null) {
+				if (isDigestPinned(image))
+					imageId = inspect(image);
+				if (imageId == null) {
+					Commandline docker = newDocker();
+					docker.addArgs("pull", image);
+					try {
+						docker.execute(infoLogger, errorLogger).checkReturnCode();
+					} catch (Exception e) {
+						// login session may have expired, login again next time
+						loggedInRegistries.clear();
+						throw e;
+					}
+					pulls.incrementAndGet();
+					imageId = inspect(image);
+					if (imageId == null)
+						throw new IllegalStateException("Unable to find pulled image: " + image);
+				} else {
+					skippedPulls.incrementAndGet();
+				}
+				pulledImages.put(image, new PulledImage(imageId, System.currentTimeMillis()));
+			} else {
+				skippedPulls.incrementAndGet();
+			}
+			future.complete(imageId);
+			return imageId;
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+			throw ExceptionUtils.unchecked(e);
+		} finally {
+			pullingImages.remove(image, future);
+		}
+	}
+
+	@Nullable
+	private String getFreshImageId(String image, long freshness) {
+		PulledImage pulledImage = pulledImages.get(image);
+		if (pulledImage != null
+				&& (isDigestPinned(image) || System.currentTimeMillis() - pulledImage.timestamp < freshness)) {
+			return pulledImage.id;
+		} else {
+			return null;
+		}
+	}
+
+	@Nullable
+	private String inspect(String image) {
+		Commandline docker = newDocker();
+		docker.addArgs("image", "inspect", "-f", "{{.Id}}", image);
+		AtomicReference<String> idRef = new AtomicReference<>(null);
+		int returnCode = docker.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				idRef.set(line.trim());
+			}
+
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.debug(line);
+			}
+
+		}).getReturnCode();
+		if (returnCode == 0)
+			return idRef.get();
+		else
+			return null;
+	}
+
+	/**
+	 * Forget pulled images and logged in registries, for instance after images are
+	 * removed via docker command line
+	 */
+	public void clear() {
+		pulledImages.clear();
+		loggedInRegistries.clear();
+	}
+
+	public long getPulls() {
+		return pulls.get();
+	}
+
+	public long getSkippedPulls() {
+		return skippedPulls.get();
+	}
+
+	public long getCoalescedPulls() {
+		return coalescedPulls.get();
+	}
+
+	public long getLogins() {
+		return logins.get();
+	}
+
+	private static class PulledImage {
+
+		final String id;
+
+		final long timestamp;
+
+		PulledImage(String id, long timestamp) {
+			this.id = id;
+			this.timestamp = timestamp;
+		}
+
+	}
+
+}
@@ -0,0 +1,298 @@
+package io.onedev.server.plugin.docker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.bootstrap.Bootstrap;
+import io.onedev.commons.launcher.loader.AppLoader;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+import io.onedev.server.git.config.GitConfig;
+
+/**
+ * Maintains a bare mirror of each project repository used by docker executors, so that
+ * source of a job can be retrieved by cloning from the mirror. Objects of the mirror are
+ * hard linked into job workspace when possible, instead of being packed and copied
+ * again for each job.
+ * <p>
+ * Mirror of a project is updated under write lock of the project, and is cloned under
+ * read lock so that concurrent jobs of the same project clone concurrently. Least
+ * recently used mirrors not being cloned are evicted if total size exceeds the limit.
+ */
+@Singleton
+public class SourceMirrorManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(SourceMirrorManager.class);
+
+	private static final String MIRROR_SUFFIX = ".git";
+
+	// records time to fetch full source of the project without mirror
+	private static final String CLONE_MILLIS_FILE = "onedev-clone-millis";
+
+	private final Map<String, ReentrantReadWriteLock> locks = new ConcurrentHashMap<>();
+
+	private final Map<String, Long> mirrorSizes = new ConcurrentHashMap<>();
+
+	private final AtomicLong mirrorClones = new AtomicLong(0);
+
+	private final AtomicLong mirrorCloneMillis = new AtomicLong(0);
+
+	private final AtomicLong savedCloneMillis = new AtomicLong(0);
+
+	private final File mirrorsDir;
+
+	private final String gitExecutable;
+
+	@Inject
+	public SourceMirrorManager() {
+		this(null, null);
+	}
+
+	/**
+	 * @param mirrorsDir
+	 * 			directory to hold mirrors, or <tt>null</tt> to use directory under site
+	 * @param gitExecutable
+	 * 			git executable to maintain mirrors, or <tt>null</tt> to use the one 
+	 * 			specified in system setting
+	 */
+	SourceMirrorManager(@Nullable File mirrorsDir, @Nullable String gitExecutable) {
+		this.mirrorsDir = mirrorsDir;
+		this.gitExecutable = gitExecutable;
+	}
+
+	private File getMirrorsDir() {
+		if (mirrorsDir != null)
+			return mirrorsDir;
+		else
+			return new File(Bootstrap.getSiteDir(), "source-mirror");
+	}
+
+	ReentrantReadWriteLock getLock(String mirrorName) {
+		return locks.computeIfAbsent(mirrorName, key -> new ReentrantReadWriteLock());
+	}
+
+	private Commandline newGit() {
+		if (gitExecutable != null)
+			return new Commandline(gitExecutable);
+		else
+			return new Commandline(AppLoader.getInstance(GitConfig.class).getExecutable());
+	}
+
+	private boolean hasCommit(File mirrorDir, ObjectId commitId) {
+		Commandline git = newGit();
+		git.workingDir(mirrorDir).addArgs("cat-file", "-e", commitId.name() + "^{commit}");
+		return git.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+			}
+
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+			}
+
+		}).getReturnCode() == 0;
+	}
+
+	private long getSize(File dir) {
+		try (Stream<Path> paths = Files.walk(dir.toPath())) {
+			return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void updateMirror(File projectGitDir, ObjectId commitId, File mirrorDir,
+			LineConsumer infoLogger, LineConsumer errorLogger) {
+		Commandline git = newGit();
+		if (!mirrorDir.exists()) {
+			/*
+			 * Clone mirror with --no-local to have separate objects from project repository.
+			 * This also tells us how long it takes to fetch full source without mirror
+			 */
+			File tempDir = new File(mirrorDir.getAbsolutePath() + ".tmp");
+			FileUtils.deleteDir(tempDir);
+			FileUtils.createDir(tempDir.getParentFile());
+			long time = System.currentTimeMillis();
+			git.workingDir(tempDir.getParentFile());
+			git.addArgs("clone", "--mirror", "--no-local", "--quiet", projectGitDir.getAbsolutePath(), tempDir.getName());
+			git.execute(infoLogger, errorLogger).checkReturnCode();
+			try {
+				FileUtils.writeFile(new File(tempDir, CLONE_MILLIS_FILE),
+						String.valueOf(System.currentTimeMillis()-time));
+				Files.move(tempDir.toPath(), mirrorDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		if (!hasCommit(mirrorDir, commitId)) {
+			git.clearArgs();
+			git.workingDir(mirrorDir).addArgs("fetch", "--quiet", "--prune", "origin");
+			git.execute(infoLogger, errorLogger).checkReturnCode();
+
+			// commit may not be reachable from any ref, fetch it directly in that case
+			if (!hasCommit(mirrorDir, commitId)) {
+				git.clearArgs();
+				git.addArgs("fetch", "--quiet", "origin", commitId.name());
+				git.execute(infoLogger, errorLogger).checkReturnCode();
+			}
+		}
+		mirrorDir.setLastModified(System.currentTimeMillis());
+		mirrorSizes.put(mirrorDir.getName(), getSize(mirrorDir));
+	}
+
+	private long getCloneMillis(File mirrorDir) {
+		File file = new File(mirrorDir, CLONE_MILLIS_FILE);
+		if (file.exists()) {
+			try {
+				return Long.parseLong(FileUtils.readFileToString(file, StandardCharsets.UTF_8).trim());
+			} catch (Exception e) {
+				logger.error("Error reading clone time of mirror '" + mirrorDir.getName() + "'", e);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Retrieve source of specified commit into specified workspace via mirror of
+	 * specified project repository.
+	 *
+	 * @param projectGitDir
+	 * 			git directory of the project
+	 * @param commitId
+	 * 			commit to check out
+	 * @param workspace
+	 * 			workspace to retrieve source into. Should be an empty directory
+	 * @param git
+	 * 			git command line to run in workspace
+	 * @param maxSize
+	 * 			max total size of mirrors in bytes, least recently used mirrors will be
+	 * 			evicted if exceeded
+	 * @return
+	 * 			estimated milliseconds saved compared to fetching full source directly
+	 * 			from project repository
+	 */
+	public long clone(File projectGitDir, ObjectId commitId, File workspace, Commandline git,
+			long maxSize, LineConsumer infoLogger, LineConsumer errorLogger) {
+		String mirrorName = projectGitDir.getParentFile().getName() + MIRROR_SUFFIX;
+		File mirrorDir = new File(getMirrorsDir(), mirrorName);
+
+		long saved;
+		ReentrantReadWriteLock lock = getLock(mirrorName);
+		lock.writeLock().lock();
+		try {
+			updateMirror(projectGitDir, commitId, mirrorDir, infoLogger, errorLogger);
+
+			// downgrade to read lock to allow concurrent clones of the mirror
+			lock.readLock().lock();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		try {
+			long time = System.currentTimeMillis();
+			git.workingDir(workspace);
+
+			git.clearArgs();
+			git.addArgs("clone", "--no-checkout", "--quiet", mirrorDir.getAbsolutePath(), ".");
+			git.execute(infoLogger, errorLogger).checkReturnCode();
+
+			// origin will be added later pointing to project url
+			git.clearArgs();
+			git.addArgs("remote", "remove", "origin");
+			git.execute(infoLogger, errorLogger).checkReturnCode();
+
+			git.clearArgs();
+			git.addArgs("checkout", "--quiet", commitId.name());
+			git.execute(infoLogger, errorLogger).checkReturnCode();
+
+			long elapsed = System.currentTimeMillis() - time;
+			saved = Math.max(0, getCloneMillis(mirrorDir) - elapsed);
+			mirrorClones.incrementAndGet();
+			mirrorCloneMillis.addAndGet(elapsed);
+			savedCloneMillis.addAndGet(saved);
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		evict(maxSize);
+		return saved;
+	}
+
+	private synchronized void evict(long maxSize) {
+		File[] mirrorDirs = getMirrorsDir().listFiles(file -> file.isDirectory() && file.getName().endsWith(MIRROR_SUFFIX));
+		if (mirrorDirs == null)
+			return;
+
+		List<File> candidates = new ArrayList<>();
+		long totalSize = 0;
+		for (File mirrorDir: mirrorDirs) {
+			Long size = mirrorSizes.get(mirrorDir.getName());
+			if (size == null) {
+				size = getSize(mirrorDir);
+				mirrorSizes.put(mirrorDir.getName(), size);
+			}
+			totalSize += size;
+			candidates.add(mirrorDir);
+		}
+
+		candidates.sort(Comparator.comparing(File::lastModified));
+		for (File mirrorDir: candidates) {
+			if (totalSize <= maxSize)
+				break;
+			ReentrantReadWriteLock lock = getLock(mirrorDir.getName());
+			// skip mirrors being updated or cloned
+			if (lock.writeLock().tryLock()) {
+				try {
+					logger.debug("Evicting source mirror '{}'", mirrorDir.getName());
+					FileUtils.deleteDir(mirrorDir);
+					Long size = mirrorSizes.remove(mirrorDir.getName());
+					if (size != null)
+						totalSize -= size;
+				} finally {
+					lock.writeLock().unlock();
+				}
+			}
+		}
+	}
+
+	public long getMirrorClones() {
+		return mirrorClones.get();
+	}
+
+	public long getMirrorCloneMillis() {
+		return mirrorCloneMillis.get();
+	}
+
+	/**
+	 * @return
+	 * 			estimated milliseconds saved by cloning from mirrors, compared to fetching
+	 * 			full source from project repositories
+	 */
+	public long getSavedCloneMillis() {
+		return savedCloneMillis.get();
+	}
+
+}
@@ -0,0 +1,146 @@
+package io.onedev.server.plugin.docker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.command.LineConsumer;
+
+/**
+ * Run image cache against a stub docker command line recording its invocations.
+ */
+public class ImageCacheTest {
+
+	private File tempDir;
+
+	private File invocationsFile;
+
+	private ImageCache imageCache;
+
+	@Before
+	public void before() throws IOException {
+		assumeFalse(SystemUtils.IS_OS_WINDOWS);
+
+		tempDir = FileUtils.createTempDir();
+		invocationsFile = new File(tempDir, "invocations");
+		File dockerFile = new File(tempDir, "docker");
+		FileUtils.writeLines(dockerFile, Lists.newArrayList(
+				"#!/bin/sh",
+				"echo \"$@\" >> '" + invocationsFile.getAbsolutePath() + "'",
+				"case \"$1\" in",
+				"  pull) sleep 1; touch '" + tempDir.getAbsolutePath() + "/pulled' ;;",
+				"  login) cat > /dev/null ;;",
+				"  image) if [ -f '" + tempDir.getAbsolutePath() + "/pulled' ]; then echo sha256:1234; else exit 1; fi ;;",
+				"esac"), "\n");
+		assertTrue(dockerFile.setExecutable(true));
+		imageCache = new ImageCache(dockerFile.getAbsolutePath());
+	}
+
+	@After
+	public void after() {
+		if (tempDir != null)
+			FileUtils.deleteDir(tempDir);
+	}
+
+	private List<String> getInvocations(String command) throws IOException {
+		List<String> invocations = new ArrayList<>();
+		if (invocationsFile.exists()) {
+			for (String line: FileUtils.readLines(invocationsFile, StandardCharsets.UTF_8)) {
+				if (line.startsWith(command + " "))
+					invocations.add(line);
+			}
+		}
+		return invocations;
+	}
+
+	private LineConsumer newLogger() {
+		return new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+			}
+
+		};
+	}
+
+	@Test
+	public void shouldCoalesceConcurrentPulls() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(10);
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i=0; i<10; i++) {
+				futures.add(executor.submit(new Callable<String>() {
+
+					@Override
+					public String call() {
+						return imageCache.pull("ubuntu:20.04", 60000, newLogger(), newLogger());
+					}
+
+				}));
+			}
+			for (Future<String> future: futures)
+				assertEquals("sha256:1234", future.get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, getInvocations("pull").size());
+		assertEquals(1, imageCache.getPulls());
+		assertEquals(9, imageCache.getCoalescedPulls() + imageCache.getSkippedPulls());
+	}
+
+	@Test
+	public void shouldHonorFreshnessWindow() throws Exception {
+		imageCache.pull("ubuntu:20.04", 60000, newLogger(), newLogger());
+		imageCache.pull("ubuntu:20.04", 60000, newLogger(), newLogger());
+		assertEquals(1, getInvocations("pull").size());
+
+		imageCache.pull("ubuntu:20.04", 0, newLogger(), newLogger());
+		assertEquals(2, getInvocations("pull").size());
+	}
+
+	@Test
+	public void shouldSkipPullOfDigestPinnedImages() throws Exception {
+		String image = "ubuntu@sha256:1234";
+		imageCache.pull(image, 0, newLogger(), newLogger());
+		assertEquals(1, getInvocations("pull").size());
+
+		imageCache.pull(image, 0, newLogger(), newLogger());
+		assertEquals(1, getInvocations("pull").size());
+
+		// available locally, for instance pulled by other means
+		imageCache.clear();
+		imageCache.pull(image, 0, newLogger(), newLogger());
+		assertEquals(1, getInvocations("pull").size());
+	}
+
+	@Test
+	public void shouldCacheLogins() throws Exception {
+		imageCache.login("registry.example.com", "robin", "secret", newLogger(), newLogger());
+		imageCache.login("registry.example.com", "robin", "secret", newLogger(), newLogger());
+		imageCache.login(null, "robin", "secret", newLogger(), newLogger());
+		assertEquals(2, getInvocations("login").size());
+
+		imageCache.login("registry.example.com", "robin", "changed", newLogger(), newLogger());
+		assertEquals(3, getInvocations("login").size());
+		assertEquals(3, imageCache.getLogins());
+	}
+
+}
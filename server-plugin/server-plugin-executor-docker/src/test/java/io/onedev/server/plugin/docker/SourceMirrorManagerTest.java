@@ -0,0 +1,191 @@
+package io.onedev.server.plugin.docker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+
+/**
+ * Run source mirror manager against repositories created in a temp directory, with git
+ * executable found in path.
+ */
+public class SourceMirrorManagerTest {
+
+	private File tempDir;
+
+	private File mirrorsDir;
+
+	private SourceMirrorManager mirrorManager;
+
+	private final AtomicInteger workspaceIndex = new AtomicInteger(0);
+
+	@Before
+	public void before() {
+		tempDir = FileUtils.createTempDir();
+		mirrorsDir = new File(tempDir, "mirrors");
+		mirrorManager = new SourceMirrorManager(mirrorsDir, "git");
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(tempDir);
+	}
+
+	private LineConsumer newLogger() {
+		return new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+			}
+
+		};
+	}
+
+	// mirror of a project is named after parent of its git directory, just like project storage
+	private Git createProject(String projectId) throws Exception {
+		return Git.init().setDirectory(new File(new File(tempDir, "projects"), projectId)).call();
+	}
+
+	private ObjectId commit(Git git, String path, String content) throws Exception {
+		FileUtils.writeFile(new File(git.getRepository().getWorkTree(), path), content);
+		git.add().addFilepattern(path).call();
+		return git.commit().setMessage("update " + path).call().copy();
+	}
+
+	private File clone(Git git, ObjectId commitId, long maxSize) {
+		File workspace = new File(tempDir, "workspace-" + workspaceIndex.incrementAndGet());
+		FileUtils.createDir(workspace);
+		mirrorManager.clone(git.getRepository().getDirectory(), commitId, workspace, new Commandline("git"),
+				maxSize, newLogger(), newLogger());
+		return workspace;
+	}
+
+	private String read(File workspace, String path) throws IOException {
+		return FileUtils.readFileToString(new File(workspace, path), StandardCharsets.UTF_8);
+	}
+
+	private long getSize(File dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir.toPath())) {
+			return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+		}
+	}
+
+	@Test
+	public void shouldCloneViaMirrorAndFetchNewCommits() throws Exception {
+		try (Git git = createProject("1")) {
+			ObjectId commit1 = commit(git, "file", "1");
+			File workspace = clone(git, commit1, Long.MAX_VALUE);
+			assertEquals("1", read(workspace, "file"));
+			assertTrue(new File(mirrorsDir, "1.git").exists());
+			assertTrue(new File(new File(mirrorsDir, "1.git"), "onedev-clone-millis").exists());
+
+			// origin is added later by executor pointing to project url
+			assertFalse(read(new File(workspace, ".git"), "config").contains("[remote \"origin\"]"));
+
+			ObjectId commit2 = commit(git, "file", "2");
+			assertEquals("2", read(clone(git, commit2, Long.MAX_VALUE), "file"));
+
+			// older commit is still available in mirror
+			assertEquals("1", read(clone(git, commit1, Long.MAX_VALUE), "file"));
+			assertEquals(3, mirrorManager.getMirrorClones());
+		}
+	}
+
+	@Test
+	public void shouldCloneSameMirrorConcurrently() throws Exception {
+		try (Git git = createProject("1")) {
+			ObjectId commitId = commit(git, "file", "content");
+			ExecutorService executor = Executors.newFixedThreadPool(5);
+			try {
+				List<Future<File>> futures = new ArrayList<>();
+				for (int i=0; i<5; i++) {
+					futures.add(executor.submit(new Callable<File>() {
+
+						@Override
+						public File call() {
+							return clone(git, commitId, Long.MAX_VALUE);
+						}
+
+					}));
+				}
+				for (Future<File> future: futures)
+					assertEquals("content", read(future.get(), "file"));
+			} finally {
+				executor.shutdown();
+			}
+			assertEquals(5, mirrorManager.getMirrorClones());
+			assertFalse(new File(mirrorsDir, "1.git.tmp").exists());
+		}
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedMirrors() throws Exception {
+		try (Git git1 = createProject("1"); Git git2 = createProject("2")) {
+			ObjectId commitId1 = commit(git1, "file", "1");
+			ObjectId commitId2 = commit(git2, "file", "2");
+			clone(git1, commitId1, Long.MAX_VALUE);
+			clone(git2, commitId2, Long.MAX_VALUE);
+
+			File mirrorDir1 = new File(mirrorsDir, "1.git");
+			File mirrorDir2 = new File(mirrorsDir, "2.git");
+			assertTrue(mirrorDir1.setLastModified(System.currentTimeMillis() - 3600000L));
+
+			// room for one mirror only, the one just used is kept
+			clone(git2, commitId2, getSize(mirrorDir2));
+			assertFalse(mirrorDir1.exists());
+			assertTrue(mirrorDir2.exists());
+
+			// evicted mirror is created again when used
+			assertEquals("1", read(clone(git1, commitId1, Long.MAX_VALUE), "file"));
+			assertTrue(mirrorDir1.exists());
+		}
+	}
+
+	@Test
+	public void shouldNotEvictMirrorBeingCloned() throws Exception {
+		try (Git git1 = createProject("1"); Git git2 = createProject("2")) {
+			ObjectId commitId1 = commit(git1, "file", "1");
+			ObjectId commitId2 = commit(git2, "file", "2");
+			clone(git1, commitId1, Long.MAX_VALUE);
+
+			// clones of a mirror hold read lock of it after updating it under write lock
+			ReentrantReadWriteLock lock = mirrorManager.getLock("1.git");
+			lock.readLock().lock();
+			try {
+				clone(git2, commitId2, 0);
+				assertTrue(new File(mirrorsDir, "1.git").exists());
+				assertFalse(new File(mirrorsDir, "2.git").exists());
+			} finally {
+				lock.readLock().unlock();
+			}
+
+			clone(git2, commitId2, 0);
+			assertFalse(new File(mirrorsDir, "1.git").exists());
+		}
+	}
+
+}
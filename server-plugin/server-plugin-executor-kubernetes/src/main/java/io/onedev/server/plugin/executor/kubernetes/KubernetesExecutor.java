@@ -19,6 +19,7 @@ import java.util.Map;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
@@ -524,7 +525,7 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 		}
 	}
 	
-	private void startService(String namespace, JobContext jobContext, JobService jobService, 
+	private void startService(String namespace, PodWatcher podWatcher, JobContext jobContext, JobService jobService, 
 			@Nullable String imagePullSecretName, SimpleLogger jobLogger) {
 		jobLogger.log("Creating service pod from image " + jobService.getImage() + "...");
 		
@@ -595,82 +596,73 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 		checkEventError(namespace, podName, jobLogger);
 
 		OsInfo baselineOsInfo = getBaselineOsInfo(nodeSelector, jobLogger);
-		ObjectMapper mapper = OneDev.getInstance(ObjectMapper.class);
 		while (true) {
-			Commandline kubectl = newKubeCtl();
-			kubectl.addArgs("get", "pod", podName, "-n", namespace, "-o", "json");
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			kubectl.execute(baos, new LineConsumer() {
+			// wait until service container is running or terminated
+			JsonNode stateNode = podWatcher.waitFor(podName, new Function<JsonNode, JsonNode>() {
 
 				@Override
-				public void consume(String line) {
-					jobLogger.log("Kubernetes: " + line);
+				public JsonNode apply(JsonNode podNode) {
+					JsonNode containerStatusesNode = podNode.get("status").get("containerStatuses");
+					if (containerStatusesNode != null) {
+						JsonNode containerStateNode = containerStatusesNode.iterator().next().get("state");
+						if (containerStateNode.get("running") != null || containerStateNode.get("terminated") != null)
+							return containerStateNode;
+					}
+					return null;
 				}
 				
-			}).checkReturnCode();
-
-			JsonNode statusNode;
-			try {
-				statusNode = mapper.readTree(baos.toString()).get("status");
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
+			});
 			
-			JsonNode containerStatusesNode = statusNode.get("containerStatuses");
-			if (containerStatusesNode != null) {
-				JsonNode containerStatusNode = containerStatusesNode.iterator().next();
-				JsonNode stateNode = containerStatusNode.get("state");
-				if (stateNode.get("running") != null) {
-					kubectl.clearArgs();
-					kubectl.addArgs("exec", podName, "-n", namespace, "--");
-					if (baselineOsInfo.isLinux())
-						kubectl.addArgs("bash", "-c");
-					else 
-						kubectl.addArgs("cmd.exe", "/c");
-					kubectl.addArgs(jobService.getReadinessCheckCommand());
-					ExecutionResult result = kubectl.execute(new LineConsumer() {
-
-						@Override
-						public void consume(String line) {
-							jobLogger.log("Service readiness check: " + line);
-						}
-						
-					}, new LineConsumer() {
+			if (stateNode.get("running") != null) {
+				Commandline kubectl = newKubeCtl();
+				kubectl.addArgs("exec", podName, "-n", namespace, "--");
+				if (baselineOsInfo.isLinux())
+					kubectl.addArgs("bash", "-c");
+				else 
+					kubectl.addArgs("cmd.exe", "/c");
+				kubectl.addArgs(jobService.getReadinessCheckCommand());
+				ExecutionResult result = kubectl.execute(new LineConsumer() {
 
-						@Override
-						public void consume(String line) {
-							jobLogger.log("Service readiness check: " + line);
-						}
-						
-					});
-					if (result.getReturnCode() == 0) {
-						jobLogger.log("Service is ready");
-						break;
+					@Override
+					public void consume(String line) {
+						jobLogger.log("Service readiness check: " + line);
 					}
-				} else if (stateNode.get("terminated") != null) {
-					JsonNode terminatedNode = stateNode.get("terminated");							
-					JsonNode reasonNode = terminatedNode.get("reason");
-					String reason = null;
-					if (reasonNode != null && !reasonNode.asText().equals("Error") && !reasonNode.asText().equals("Completed"))
-						reason = reasonNode.asText();
+					
+				}, new LineConsumer() {
 
-					JsonNode messageNode = terminatedNode.get("message");
-					if (messageNode != null) { 
-						if (reason != null)
-							reason += ": " + messageNode.asText();
-						else
-							reason = messageNode.asText();
+					@Override
+					public void consume(String line) {
+						jobLogger.log("Service readiness check: " + line);
 					}
 					
+				});
+				if (result.getReturnCode() == 0) {
+					jobLogger.log("Service is ready");
+					break;
+				}
+			} else if (stateNode.get("terminated") != null) {
+				JsonNode terminatedNode = stateNode.get("terminated");							
+				JsonNode reasonNode = terminatedNode.get("reason");
+				String reason = null;
+				if (reasonNode != null && !reasonNode.asText().equals("Error") && !reasonNode.asText().equals("Completed"))
+					reason = reasonNode.asText();
+
+				JsonNode messageNode = terminatedNode.get("message");
+				if (messageNode != null) { 
 					if (reason != null)
-						jobLogger.log(reason);
-					
-					collectContainerLog(namespace, podName, "default", null, jobLogger);
-					String message = "Service '" + jobService.getName() + "' is stopped unexpectedly";
-					throw new ExplicitException(message);
+						reason += ": " + messageNode.asText();
+					else
+						reason = messageNode.asText();
 				}
+				
+				if (reason != null)
+					jobLogger.log(reason);
+				
+				collectContainerLog(namespace, podName, "default", null, jobLogger);
+				String message = "Service '" + jobService.getName() + "' is stopped unexpectedly";
+				throw new ExplicitException(message);
 			}
-			
+
 			try {
 				Thread.sleep(10000);
 			} catch (InterruptedException e) {
@@ -721,12 +713,13 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 			
 			jobLogger.log(String.format("Executing job (executor: %s, namespace: %s, image: %s)...", 
 					getName(), namespace, dockerImage));
+			PodWatcher podWatcher = new PodWatcher(namespace, this::newKubeCtl, OneDev.getInstance(ObjectMapper.class));
 			try {
 				String imagePullSecretName = createImagePullSecret(namespace, jobLogger);
 				if (jobContext != null) {
 					for (JobService jobService: jobContext.getServices()) {
 						jobLogger.log("Starting service (name: " + jobService.getName() + ", image: " + jobService.getImage() + ")...");
-						startService(namespace, jobContext, jobService, imagePullSecretName, jobLogger);
+						startService(namespace, podWatcher, jobContext, jobService, imagePullSecretName, jobLogger);
 					}
 				}
 				
@@ -902,7 +895,7 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 				checkEventError(namespace, podName, jobLogger);
 				
 				logger.debug("Waiting for init container to start (pod: {})...", podFQN);
-				watchPod(namespace, podName, new StatusChecker() {
+				watchPod(podWatcher, podName, new StatusChecker() {
 
 					@Override
 					public StopWatch check(JsonNode statusNode) {
@@ -918,27 +911,15 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 				if (jobContext != null)
 					jobContext.notifyJobRunning();
 				
-				AtomicReference<String> nodeNameRef = new AtomicReference<>(null);
-				
-				kubectl.clearArgs();
-				kubectl.addArgs("get", "pod", podName, "-n", namespace, "-o", "jsonpath={.spec.nodeName}");
-				kubectl.execute(new LineConsumer() {
+				String nodeName = podWatcher.waitFor(podName, new Function<JsonNode, String>() {
 
 					@Override
-					public void consume(String line) {
-						nodeNameRef.set(line);
+					public String apply(JsonNode podNode) {
+						JsonNode nodeNameNode = podNode.get("spec").get("nodeName");
+						return nodeNameNode != null? nodeNameNode.asText(): null;
 					}
 					
-				}, new LineConsumer() {
-
-					@Override
-					public void consume(String line) {
-						jobLogger.log("Kubernetes: " + line);
-					}
-					
-				}).checkReturnCode();
-				
-				String nodeName = Preconditions.checkNotNull(nodeNameRef.get());
+				});
 				jobLogger.log("Running job pod on node " + nodeName + "...");
 				
 				logger.debug("Collecting init container log (pod: {})...", podFQN);
@@ -948,7 +929,7 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 					updateCacheLabels(nodeName, jobContext, jobLogger);
 				
 				logger.debug("Waiting for main container to start (pod: {})...", podFQN);
-				watchPod(namespace, podName, new StatusChecker() {
+				watchPod(podWatcher, podName, new StatusChecker() {
 
 					@Override
 					public StopWatch check(JsonNode statusNode) {
@@ -970,7 +951,7 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 				collectContainerLog(namespace, podName, "main", KubernetesHelper.LOG_END_MESSAGE, jobLogger);
 				
 				logger.debug("Waiting for sidecar container to start (pod: {})...", podFQN);
-				watchPod(namespace, podName, new StatusChecker() {
+				watchPod(podWatcher, podName, new StatusChecker() {
 
 					@Override
 					public StopWatch check(JsonNode statusNode) {
@@ -987,7 +968,7 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 				collectContainerLog(namespace, podName, "sidecar", KubernetesHelper.LOG_END_MESSAGE, jobLogger);
 				
 				logger.debug("Checking execution result (pod: {})...", podFQN);
-				watchPod(namespace, podName, new StatusChecker() {
+				watchPod(podWatcher, podName, new StatusChecker() {
 
 					@Override
 					public StopWatch check(JsonNode statusNode) {
@@ -1011,6 +992,7 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 				if (jobContext != null && isCreateCacheLabels()) 
 					updateCacheLabels(nodeName, jobContext, jobLogger);
 			} finally {
+				podWatcher.close();
 				deleteNamespace(namespace, jobLogger);
 			}			
 		} finally {
@@ -1167,108 +1149,62 @@ public class KubernetesExecutor extends JobExecutor implements Testable<TestData
 		}
 	}
 	
-	private void watchPod(String namespace, String podName, StatusChecker statusChecker, SimpleLogger jobLogger) {
-		Commandline kubectl = newKubeCtl();
-		
-		ObjectMapper mapper = OneDev.getInstance(ObjectMapper.class);
-		
-		AtomicReference<StopWatch> stopWatchRef = new AtomicReference<>(null); 
-		
-		StringBuilder json = new StringBuilder();
-		kubectl.addArgs("get", "pod", podName, "-n", namespace, "--watch", "-o", "json");
-		
-		Thread thread = Thread.currentThread();
-		try {
-			kubectl.execute(new LineConsumer() {
-	
-				@Override
-				public void consume(String line) {
-					if (line.startsWith("{")) {
-						json.append("{").append("\n");
-					} else if (line.startsWith("}")) {
-						json.append("}");
-						logger.trace("Pod watching output:\n" + json.toString());
-						try {
-							process(mapper.readTree(json.toString()));
-						} catch (Exception e) {
-							logger.error("Error processing pod watching output", e);
-						}
-						json.setLength(0);
-					} else {
-						json.append(line).append("\n");
-					}
-				}
+	private void watchPod(PodWatcher podWatcher, String podName, StatusChecker statusChecker, SimpleLogger jobLogger) {
+		StopWatch stopWatch = podWatcher.waitFor(podName, new Function<JsonNode, StopWatch>() {
 
-				private void process(JsonNode podNode) {
-					String errorMessage = null;
-					JsonNode statusNode = podNode.get("status");
-					JsonNode conditionsNode = statusNode.get("conditions");
-					if (conditionsNode != null) {
-						for (JsonNode conditionNode: conditionsNode) {
-							if (conditionNode.get("type").asText().equals("PodScheduled") 
-									&& conditionNode.get("status").asText().equals("False")
-									&& conditionNode.get("reason").asText().equals("Unschedulable")) {
-								jobLogger.log("Kubernetes: " + conditionNode.get("message").asText());
-							}
+			@Override
+			public StopWatch apply(JsonNode podNode) {
+				String errorMessage = null;
+				JsonNode statusNode = podNode.get("status");
+				JsonNode conditionsNode = statusNode.get("conditions");
+				if (conditionsNode != null) {
+					for (JsonNode conditionNode: conditionsNode) {
+						if (conditionNode.get("type").asText().equals("PodScheduled") 
+								&& conditionNode.get("status").asText().equals("False")
+								&& conditionNode.get("reason").asText().equals("Unschedulable")) {
+							jobLogger.log("Kubernetes: " + conditionNode.get("message").asText());
 						}
 					}
-					
-					Collection<JsonNode> containerStatusNodes = new ArrayList<>();
-					JsonNode initContainerStatusesNode = statusNode.get("initContainerStatuses");
-					if (initContainerStatusesNode != null) {
-						for (JsonNode containerStatusNode: initContainerStatusesNode)
-							containerStatusNodes.add(containerStatusNode);
-					}
-					JsonNode containerStatusesNode = statusNode.get("containerStatuses");
-					if (containerStatusesNode != null) {
-						for (JsonNode containerStatusNode: containerStatusesNode)
-							containerStatusNodes.add(containerStatusNode);
-					}
-					
-					for (JsonNode containerStatusNode: containerStatusNodes) {
-						JsonNode stateNode = containerStatusNode.get("state");
-						JsonNode waitingNode = stateNode.get("waiting");
-						if (waitingNode != null) {
-							String reason = waitingNode.get("reason").asText();
-							if (reason.equals("ErrImagePull") || reason.equals("InvalidImageName") 
-									|| reason.equals("ImageInspectError") || reason.equals("ErrImageNeverPull")
-									|| reason.equals("RegistryUnavailable")) {
-								JsonNode messageNode = waitingNode.get("message");
-								if (messageNode != null)
-									errorMessage = messageNode.asText();
-								else
-									errorMessage = reason;
-								break;
-							}
-						} 
-					}
-					if (errorMessage != null) 
-						stopWatchRef.set(new StopWatch(new ExplicitException(errorMessage)));
-					else 
-						stopWatchRef.set(statusChecker.check(statusNode));
-					if (stopWatchRef.get() != null) 
-						thread.interrupt();
 				}
 				
-			}, new LineConsumer() {
-	
-				@Override
-				public void consume(String line) {
-					jobLogger.log("Kubernetes: " + line);
+				Collection<JsonNode> containerStatusNodes = new ArrayList<>();
+				JsonNode initContainerStatusesNode = statusNode.get("initContainerStatuses");
+				if (initContainerStatusesNode != null) {
+					for (JsonNode containerStatusNode: initContainerStatusesNode)
+						containerStatusNodes.add(containerStatusNode);
+				}
+				JsonNode containerStatusesNode = statusNode.get("containerStatuses");
+				if (containerStatusesNode != null) {
+					for (JsonNode containerStatusNode: containerStatusesNode)
+						containerStatusNodes.add(containerStatusNode);
 				}
 				
-			}).checkReturnCode();
-			
-			throw new ExplicitException("Unexpected end of pod watching");
-		} catch (Exception e) {
-			StopWatch stopWatch = stopWatchRef.get();
-			if (stopWatch != null) {
-				if (stopWatch.getException() != null)
-					throw stopWatch.getException();
-			} else { 
-				throw ExceptionUtils.unchecked(e);
+				for (JsonNode containerStatusNode: containerStatusNodes) {
+					JsonNode stateNode = containerStatusNode.get("state");
+					JsonNode waitingNode = stateNode.get("waiting");
+					if (waitingNode != null) {
+						String reason = waitingNode.get("reason").asText();
+						if (reason.equals("ErrImagePull") || reason.equals("InvalidImageName") 
+								|| reason.equals("ImageInspectError") || reason.equals("ErrImageNeverPull")
+								|| reason.equals("RegistryUnavailable")) {
+							JsonNode messageNode = waitingNode.get("message");
+							if (messageNode != null)
+								errorMessage = messageNode.asText();
+							else
+								errorMessage = reason;
+							break;
+						}
+					} 
+				}
+				if (errorMessage != null) 
+					return new StopWatch(new ExplicitException(errorMessage));
+				else 
+					return statusChecker.check(statusNode);
 			}
-		}		
+			
+		});
+		if (stopWatch.getException() != null)
+			throw stopWatch.getException();
 	}
 	
 	private void checkEventError(String namespace, String podName, SimpleLogger jobLogger) {
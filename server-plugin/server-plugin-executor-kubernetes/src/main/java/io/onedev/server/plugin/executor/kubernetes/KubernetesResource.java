@@ -1,14 +1,18 @@
 package io.onedev.server.plugin.executor.kubernetes;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -30,6 +34,7 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 
 import io.onedev.commons.utils.ExplicitException;
+import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.commons.utils.TarUtils;
 import io.onedev.k8shelper.CacheAllocationRequest;
@@ -117,7 +122,34 @@ public class KubernetesResource {
 	@Consumes(MediaType.APPLICATION_OCTET_STREAM)	
 	public Response uploadOutcomes(InputStream is) {
 		JobContext context = jobManager.getJobContext(getJobToken(), true);
-		TarUtils.untar(is, context.getServerWorkspace());
+		
+		/*
+		 * Server workspace may contain hard links to published artifacts, so we untar into 
+		 * a separate directory and move extracted files over, instead of overwriting them 
+		 * in place
+		 */
+		File serverWorkspace = context.getServerWorkspace();
+		File outcomesDir = new File(serverWorkspace.getParentFile(), 
+				serverWorkspace.getName() + "-outcomes-" + UUID.randomUUID().toString());
+		FileUtils.createDir(outcomesDir);
+		try {
+			TarUtils.untar(is, outcomesDir);
+			java.nio.file.Path outcomesPath = outcomesDir.toPath();
+			java.nio.file.Path serverWorkspacePath = serverWorkspace.toPath();
+			try (Stream<java.nio.file.Path> paths = Files.walk(outcomesPath)) {
+				for (java.nio.file.Path path: (Iterable<java.nio.file.Path>) paths::iterator) {
+					if (!Files.isDirectory(path)) {
+						java.nio.file.Path target = serverWorkspacePath.resolve(outcomesPath.relativize(path));
+						Files.createDirectories(target.getParent());
+						Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			FileUtils.deleteDir(outcomesDir);
+		}
 		return Response.ok().build();
 	}
 	
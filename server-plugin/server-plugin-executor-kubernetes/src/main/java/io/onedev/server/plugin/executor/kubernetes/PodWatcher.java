@@ -0,0 +1,201 @@
+package io.onedev.server.plugin.executor.kubernetes;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+
+/**
+ * Tracks pods of a namespace with a single long-lived <tt>kubectl get pods --watch</tt>
+ * process, and dispatches pod changes to threads waiting for certain pod status.
+ * <p>
+ * Watch process is restarted if it ends, for instance due to api server timeout or
+ * network issues. As kubectl outputs all existing pods when watch starts, state of
+ * pods is re-synced upon each reconnection.
+ */
+public class PodWatcher implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(PodWatcher.class);
+
+	private static final int MAX_CONNECT_FAILURES = 5;
+
+	private static final long RECONNECT_DELAY = 1000;
+
+	private final String namespace;
+
+	private final Supplier<Commandline> kubectlSupplier;
+
+	private final ObjectMapper mapper;
+
+	private final Map<String, JsonNode> pods = new HashMap<>();
+
+	private final AtomicInteger connects = new AtomicInteger(0);
+
+	private final Thread thread;
+
+	private volatile boolean closed;
+
+	private RuntimeException failure;
+
+	public PodWatcher(String namespace, Supplier<Commandline> kubectlSupplier, ObjectMapper mapper) {
+		this.namespace = namespace;
+		this.kubectlSupplier = kubectlSupplier;
+		this.mapper = mapper;
+
+		thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				watch();
+			}
+
+		}, "pod-watcher-" + namespace);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void watch() {
+		int failures = 0;
+		while (!closed) {
+			AtomicBoolean received = new AtomicBoolean(false);
+			StringBuilder errors = new StringBuilder();
+			Commandline kubectl = kubectlSupplier.get();
+			kubectl.addArgs("get", "pods", "-n", namespace, "--watch", "-o", "json");
+			connects.incrementAndGet();
+			try {
+				StringBuilder json = new StringBuilder();
+				kubectl.execute(new LineConsumer() {
+
+					@Override
+					public void consume(String line) {
+						if (line.startsWith("{")) {
+							json.append("{").append("\n");
+						} else if (line.startsWith("}")) {
+							json.append("}");
+							logger.trace("Pod watching output:\n" + json.toString());
+							try {
+								update(mapper.readTree(json.toString()));
+								received.set(true);
+							} catch (Exception e) {
+								logger.error("Error processing pod watching output", e);
+							}
+							json.setLength(0);
+						} else {
+							json.append(line).append("\n");
+						}
+					}
+
+				}, new LineConsumer() {
+
+					@Override
+					public void consume(String line) {
+						logger.debug("Pod watching of namespace '{}': {}", namespace, line);
+						errors.append(line).append("\n");
+					}
+
+				});
+			} catch (Exception e) {
+				if (closed)
+					break;
+				logger.debug("Error watching pods of namespace '" + namespace + "'", e);
+				errors.append(e.getMessage()).append("\n");
+			}
+			if (closed)
+				break;
+
+			if (received.get())
+				failures = 0;
+			else
+				failures++;
+			if (failures >= MAX_CONNECT_FAILURES) {
+				fail(new ExplicitException("Error watching pods: " + errors.toString().trim()));
+				break;
+			}
+
+			logger.debug("Pod watching of namespace '{}' ended, reconnecting...", namespace);
+			try {
+				Thread.sleep(RECONNECT_DELAY);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+
+	private synchronized void update(JsonNode podNode) {
+		pods.put(podNode.get("metadata").get("name").asText(), podNode);
+		notifyAll();
+	}
+
+	private synchronized void fail(RuntimeException failure) {
+		this.failure = failure;
+		notifyAll();
+	}
+
+	/**
+	 * Wait until specified checker returns a non-null result for specified pod. The
+	 * checker is called with latest state of the pod each time the pod changes.
+	 *
+	 * @param podName
+	 * 			name of the pod to wait for
+	 * @param checker
+	 * 			checker to be called with json node of the pod. Return <tt>null</tt>
+	 * 			to continue waiting
+	 * @return
+	 * 			result of the checker
+	 */
+	public synchronized <T> T waitFor(String podName, Function<JsonNode, T> checker) {
+		JsonNode checkedNode = null;
+		while (true) {
+			JsonNode podNode = pods.get(podName);
+			if (podNode != null && podNode != checkedNode) {
+				checkedNode = podNode;
+				T result = checker.apply(podNode);
+				if (result != null)
+					return result;
+			}
+			if (failure != null)
+				throw failure;
+			if (closed)
+				throw new IllegalStateException("Pod watcher of namespace '" + namespace + "' is closed");
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	@Nullable
+	public synchronized JsonNode getPod(String podName) {
+		return pods.get(podName);
+	}
+
+	public int getConnects() {
+		return connects.get();
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		thread.interrupt();
+	}
+
+}
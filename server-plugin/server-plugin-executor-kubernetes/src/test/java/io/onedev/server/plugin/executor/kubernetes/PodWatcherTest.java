@@ -0,0 +1,150 @@
+package io.onedev.server.plugin.executor.kubernetes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.command.Commandline;
+
+/**
+ * Run pod watcher against a fake kubectl emitting scripted watch events. Each run of the
+ * fake kubectl outputs events of next script, and the last script keeps the watch open.
+ */
+public class PodWatcherTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private File tempDir;
+
+	@Before
+	public void before() {
+		assumeFalse(SystemUtils.IS_OS_WINDOWS);
+		tempDir = FileUtils.createTempDir();
+	}
+
+	@After
+	public void after() {
+		if (tempDir != null)
+			FileUtils.deleteDir(tempDir);
+	}
+
+	private String newPod(String name, String containerState) throws IOException {
+		ObjectNode podNode = mapper.createObjectNode();
+		podNode.putObject("metadata").put("name", name);
+		podNode.putObject("spec").put("nodeName", "node1");
+		ObjectNode containerStatusNode = podNode.putObject("status").putArray("containerStatuses").addObject();
+		containerStatusNode.put("name", "main");
+		containerStatusNode.putObject("state").putObject(containerState);
+		return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(podNode);
+	}
+
+	private Supplier<Commandline> newKubeCtl(List<String> scripts) throws IOException {
+		for (int i=0; i<scripts.size(); i++)
+			FileUtils.writeFile(new File(tempDir, "events" + (i+1)), scripts.get(i));
+
+		File kubectlFile = new File(tempDir, "kubectl");
+		String dir = tempDir.getAbsolutePath();
+		FileUtils.writeLines(kubectlFile, Lists.newArrayList(
+				"#!/bin/sh",
+				"count=$(cat '" + dir + "/count' 2>/dev/null || echo 0)",
+				"count=$((count+1))",
+				"echo $count > '" + dir + "/count'",
+				"if [ $count -lt " + scripts.size() + " ]; then",
+				"  cat '" + dir + "/events'$count",
+				"else",
+				"  cat '" + dir + "/events" + scripts.size() + "'",
+				"  exec sleep 60",
+				"fi"), "\n");
+		assertTrue(kubectlFile.setExecutable(true));
+		return new Supplier<Commandline>() {
+
+			@Override
+			public Commandline get() {
+				return new Commandline(kubectlFile.getAbsolutePath());
+			}
+
+		};
+	}
+
+	private Function<JsonNode, String> stateOf(String containerState) {
+		return new Function<JsonNode, String>() {
+
+			@Override
+			public String apply(JsonNode podNode) {
+				JsonNode stateNode = podNode.get("status").get("containerStatuses").get(0).get("state");
+				return stateNode.get(containerState) != null? containerState: null;
+			}
+
+		};
+	}
+
+	@Test(timeout=30000)
+	public void shouldReconnectAndResync() throws Exception {
+		// watch ends after pod is reported waiting, and running state is only seen after reconnect
+		Supplier<Commandline> kubectl = newKubeCtl(Lists.newArrayList(
+				newPod("job", "waiting") + "\n",
+				newPod("service", "running") + "\n" + newPod("job", "running") + "\n"));
+		try (PodWatcher watcher = new PodWatcher("test", kubectl, mapper)) {
+			assertEquals("running", watcher.waitFor("job", stateOf("running")));
+			assertEquals("running", watcher.waitFor("service", stateOf("running")));
+			assertEquals(2, watcher.getConnects());
+		}
+	}
+
+	@Test(timeout=30000)
+	public void shouldDispatchChangesToWaitingThreads() throws Exception {
+		Supplier<Commandline> kubectl = newKubeCtl(Lists.newArrayList(
+				newPod("job", "waiting") + "\n" + newPod("service", "waiting") + "\n",
+				newPod("job", "waiting") + "\n",
+				newPod("service", "terminated") + "\n" + newPod("job", "terminated") + "\n"));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try (PodWatcher watcher = new PodWatcher("test", kubectl, mapper)) {
+			Future<String> jobFuture = executor.submit(() -> watcher.waitFor("job", stateOf("terminated")));
+			Future<String> serviceFuture = executor.submit(() -> watcher.waitFor("service", stateOf("terminated")));
+			assertEquals("terminated", jobFuture.get());
+			assertEquals("terminated", serviceFuture.get());
+			assertEquals("node1", watcher.getPod("job").get("spec").get("nodeName").asText());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(timeout=30000)
+	public void shouldFailIfWatchCanNotBeEstablished() throws Exception {
+		File kubectlFile = new File(tempDir, "kubectl");
+		FileUtils.writeLines(kubectlFile, Lists.newArrayList(
+				"#!/bin/sh",
+				"echo 'Unable to connect to the server' >&2",
+				"exit 1"), "\n");
+		assertTrue(kubectlFile.setExecutable(true));
+		try (PodWatcher watcher = new PodWatcher("test", () -> new Commandline(kubectlFile.getAbsolutePath()), mapper)) {
+			watcher.waitFor("job", stateOf("running"));
+			fail("Watch failure should be reported");
+		} catch (ExplicitException e) {
+			assertTrue(e.getMessage().contains("Unable to connect to the server"));
+		}
+	}
+
+}
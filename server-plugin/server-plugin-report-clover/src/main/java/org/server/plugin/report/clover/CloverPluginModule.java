@@ -1,8 +1,6 @@
 package org.server.plugin.report.clover;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -10,7 +8,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
@@ -93,13 +90,9 @@ public class CloverPluginModule extends AbstractPluginModule {
 								if (SecurityUtils.canAccessReport(build, reportDir.getName())) { 
 									File lineCoverageFile = new File(reportDir, JobCloverReport.LINE_COVERAGES_DIR + "/" + blobPath);
 									if (lineCoverageFile.exists()) {
-										try (InputStream is = new FileInputStream(lineCoverageFile)) {
-											@SuppressWarnings("unchecked")
-											Map<Integer, Integer> deserialized = (Map<Integer, Integer>) SerializationUtils.deserialize(is);
-											deserialized.forEach((key, value) -> {
-												coverages.merge(key, value, (v1, v2) -> v1+v2);
-											});
-										}
+										LineCoverageData.readFrom(lineCoverageFile).forEach((key, value) -> {
+											coverages.merge(key, value, (v1, v2) -> v1+v2);
+										});
 									}
 								}
 							}
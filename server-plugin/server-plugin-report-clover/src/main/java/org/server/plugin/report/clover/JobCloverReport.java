@@ -1,16 +1,11 @@
 package org.server.plugin.report.clover;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.dom4j.Document;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
@@ -121,11 +116,7 @@ public class JobCloverReport extends JobReport {
 										
 										File lineCoverateFile = new File(reportDir, LINE_COVERAGES_DIR + "/" + path);
 										FileUtils.createDir(lineCoverateFile.getParentFile());
-										try (OutputStream os = new FileOutputStream(lineCoverateFile)) {
-											SerializationUtils.serialize((Serializable) lineCoverages, os);
-										} catch (IOException e) {
-											throw new RuntimeException(e);
-										};
+										LineCoverageData.writeTo(lineCoverateFile, lineCoverages);
 									}
 								}
 							}
@@ -0,0 +1,66 @@
+package org.server.plugin.report.clover;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang.SerializationUtils;
+
+/**
+ * Line coverages of a source file stored as two columns of line numbers and test counts.
+ * Files written by previous versions as serialized maps are still readable.
+ */
+public class LineCoverageData {
+
+	private static final int MAGIC = 0x4c434f56;
+
+	private static final int SERIALIZATION_MAGIC = 0xaced;
+
+	public static void writeTo(File file, Map<Integer, Integer> lineCoverages) {
+		Map<Integer, Integer> sorted = new TreeMap<>(lineCoverages);
+		try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			os.writeInt(MAGIC);
+			os.writeInt(sorted.size());
+			for (int lineNum: sorted.keySet())
+				os.writeInt(lineNum);
+			for (int testCount: sorted.values())
+				os.writeInt(testCount);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public static Map<Integer, Integer> readFrom(File file) {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+			is.mark(2);
+			int header = (is.read() << 8) | is.read();
+			is.reset();
+			if (header == SERIALIZATION_MAGIC)
+				return (Map<Integer, Integer>) SerializationUtils.deserialize(is);
+
+			DataInputStream dis = new DataInputStream(is);
+			if (dis.readInt() != MAGIC)
+				throw new IOException("Unrecognized line coverage file: " + file.getAbsolutePath());
+			int[] lineNums = new int[dis.readInt()];
+			for (int i=0; i<lineNums.length; i++)
+				lineNums[i] = dis.readInt();
+			Map<Integer, Integer> lineCoverages = new HashMap<>();
+			for (int lineNum: lineNums)
+				lineCoverages.put(lineNum, dis.readInt());
+			return lineCoverages;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
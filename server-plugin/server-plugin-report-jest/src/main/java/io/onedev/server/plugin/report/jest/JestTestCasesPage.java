@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -42,14 +43,13 @@ import org.eclipse.jgit.lib.FileMode;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 
 import io.onedev.commons.codeassist.InputSuggestion;
 import io.onedev.commons.codeassist.parser.TerminalExpect;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.model.Build;
 import io.onedev.server.plugin.report.jest.JestTestReportData.Status;
-import io.onedev.server.plugin.report.jest.JestTestReportData.TestCase;
+import io.onedev.server.plugin.report.jest.JestTestReport.TestCase;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.patternset.PatternSet;
 import io.onedev.server.web.WebConstants;
@@ -79,14 +79,14 @@ public class JestTestCasesPage extends JestTestReportPage {
 	
 	private Optional<PatternSet> namePatterns;
 	
-	private final IModel<List<TestCase>> testCasesModel = new LoadableDetachableModel<List<TestCase>>() {
+	private final IModel<int[]> testCasesModel = new LoadableDetachableModel<int[]>() {
 
 		@Override
-		protected List<TestCase> load() {
+		protected int[] load() {
 			if (filePatterns != null && namePatterns != null)
-				return getReportData().getTestCases(filePatterns.orNull(), namePatterns.orNull(), state.statuses);
+				return getReportData().queryTestCases(filePatterns.orNull(), namePatterns.orNull(), state.statuses);
 			else
-				return new ArrayList<>();
+				return new int[0];
 		}
 		
 	};
@@ -247,7 +247,7 @@ public class JestTestCasesPage extends JestTestReportPage {
 				@Override
 				protected List<InputSuggestion> suggest(String matchWith) {
 					return SuggestionUtils.suggest(
-							getReportData().getTestCases(null, null, null).stream().map(it->it.getName()).distinct().collect(Collectors.toList()), 
+							getReportData().getTestCaseNames().stream().distinct().collect(Collectors.toList()), 
 							matchWith);
 				}
 				
@@ -309,10 +309,10 @@ public class JestTestCasesPage extends JestTestReportPage {
 				protected List<PieSlice> load() {
 					if (filePatterns != null && namePatterns != null) {
 						List<PieSlice> slices = new ArrayList<>();
+						Map<Status, Integer> counts = getReportData().countTestCases(
+								filePatterns.orNull(), namePatterns.orNull());
 						for (Status status: Status.values()) {
-							int numOfTestCases = getReportData().getTestCases(
-									filePatterns.orNull(), namePatterns.orNull(), Sets.newHashSet(status)).size();
-							slices.add(new PieSlice(status.name().toLowerCase(), numOfTestCases, 
+							slices.add(new PieSlice(status.name().toLowerCase(), counts.get(status), 
 									status.getColor(), state.statuses.contains(status)));
 						}
 						return slices;
@@ -396,15 +396,14 @@ public class JestTestCasesPage extends JestTestReportPage {
 
 				@Override
 				public Iterator<? extends TestCase> iterator(long first, long count) {
-					if (getTestCases().size() > first+count)
-						return getTestCases().subList((int)first, (int)(first+count)).iterator();
-					else
-						return getTestCases().subList((int)first, getTestCases().size()).iterator();
+					int[] testCases = getTestCases();
+					int to = (int) Math.min(first+count, testCases.length);
+					return getReportData().readTestCases(testCases, (int)first, to).iterator();
 				}
 
 				@Override
 				public long calcSize() {
-					return getTestCases().size();
+					return getTestCases().length;
 				}
 
 				@Override
@@ -461,7 +460,7 @@ public class JestTestCasesPage extends JestTestReportPage {
 		}
 	}
 	
-	private List<TestCase> getTestCases() {
+	private int[] getTestCases() {
 		return testCasesModel.getObject();
 	}
 
@@ -0,0 +1,569 @@
+package io.onedev.server.plugin.report.jest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang.SerializationUtils;
+
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.plugin.report.jest.JestTestReportData.Status;
+import io.onedev.server.util.match.Matcher;
+import io.onedev.server.util.match.PathMatcher;
+import io.onedev.server.util.patternset.PatternSet;
+
+/**
+ * Jest test report stored in columnar form. Summary statistics are kept in a small header,
+ * and test suites are loaded as a whole as there are not many of them. Each attribute of
+ * test cases is stored in a separate column file, so that only columns involved in current
+ * filter are read. Names and messages of test cases are indexed by offset, so that test
+ * cases being displayed are read row by row instead of reading whole columns.
+ */
+public class JestTestReport {
+
+	private static final String HEADER_FILE = "header.ser";
+
+	private static final String SUITES_FILE = "suites.bin";
+
+	private static final String CASE_SUITES_FILE = "case-suites.bin";
+
+	private static final String CASE_STATUSES_FILE = "case-statuses.bin";
+
+	private static final String CASE_NAMES_INDEX_FILE = "case-names.idx";
+
+	private static final String CASE_NAMES_FILE = "case-names.bin";
+
+	private static final String CASE_MESSAGES_INDEX_FILE = "case-messages.idx";
+
+	private static final String CASE_MESSAGES_FILE = "case-messages.bin";
+
+	private static final Status[] STATUSES = Status.values();
+
+	private final File reportDir;
+
+	private final String lockKey;
+
+	private final Header header;
+
+	private List<TestSuite> testSuites;
+
+	private int[] caseSuites;
+
+	private byte[] caseStatuses;
+
+	private String[] caseNames;
+
+	private JestTestReport(File reportDir, String lockKey, Header header) {
+		this.reportDir = reportDir;
+		this.lockKey = lockKey;
+		this.header = header;
+	}
+
+	/**
+	 * Read report from specified directory. Only header of the report is read, and other
+	 * data is read on demand
+	 *
+	 * @param reportDir
+	 * 			directory of the report
+	 * @param lockKey
+	 * 			key of the lock protecting the report directory
+	 * @return
+	 * 			report read from specified directory, or <tt>null</tt> if report does not
+	 * 			exist or is stored in legacy format
+	 */
+	@Nullable
+	public static JestTestReport readFrom(File reportDir, String lockKey) {
+		File headerFile = new File(reportDir, HEADER_FILE);
+		if (headerFile.exists()) {
+			try (InputStream is = new FileInputStream(headerFile)) {
+				return new JestTestReport(reportDir, lockKey, (Header) SerializationUtils.deserialize(is));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Convert report stored in legacy format (a single serialized object) in specified directory
+	 * to columnar format. Caller should hold write lock of the report directory
+	 */
+	public static void convertIfNecessary(File reportDir) {
+		if (!new File(reportDir, HEADER_FILE).exists()) {
+			JestTestReportData data = JestTestReportData.readFrom(reportDir);
+			if (data != null) {
+				writeTo(data, reportDir);
+				new File(reportDir, JestTestReportData.FILE_NAME).delete();
+			}
+		}
+	}
+
+	public static void writeTo(JestTestReportData data, File reportDir) {
+		List<JestTestReportData.TestSuite> testSuites = data.getTestSuites();
+		int[] testSuiteStatusCounts = new int[STATUSES.length];
+		int[] testCaseStatusCounts = new int[STATUSES.length];
+
+		try (	DataOutputStream suitesOut = newOutput(reportDir, SUITES_FILE);
+				DataOutputStream caseSuitesOut = newOutput(reportDir, CASE_SUITES_FILE);
+				DataOutputStream caseStatusesOut = newOutput(reportDir, CASE_STATUSES_FILE);
+				DataOutputStream caseNamesIndexOut = newOutput(reportDir, CASE_NAMES_INDEX_FILE);
+				DataOutputStream caseNamesOut = newOutput(reportDir, CASE_NAMES_FILE);
+				DataOutputStream caseMessagesIndexOut = newOutput(reportDir, CASE_MESSAGES_INDEX_FILE);
+				DataOutputStream caseMessagesOut = newOutput(reportDir, CASE_MESSAGES_FILE)) {
+			suitesOut.writeInt(testSuites.size());
+			for (JestTestReportData.TestSuite testSuite: testSuites)
+				writeString(suitesOut, testSuite.getName());
+			for (JestTestReportData.TestSuite testSuite: testSuites) {
+				suitesOut.writeByte(testSuite.getStatus().ordinal());
+				testSuiteStatusCounts[testSuite.getStatus().ordinal()]++;
+			}
+			for (JestTestReportData.TestSuite testSuite: testSuites)
+				suitesOut.writeLong(testSuite.getDuration());
+			for (JestTestReportData.TestSuite testSuite: testSuites)
+				suitesOut.writeInt(testSuite.getTestCases().size());
+			for (JestTestReportData.TestSuite testSuite: testSuites) {
+				suitesOut.writeBoolean(testSuite.getMessage() != null);
+				if (testSuite.getMessage() != null)
+					writeString(suitesOut, testSuite.getMessage());
+			}
+
+			long nameOffset = 0;
+			long offset = 0;
+			for (int i=0; i<testSuites.size(); i++) {
+				for (JestTestReportData.TestCase testCase: testSuites.get(i).getTestCases()) {
+					caseSuitesOut.writeInt(i);
+					caseStatusesOut.writeByte(testCase.getStatus().ordinal());
+					testCaseStatusCounts[testCase.getStatus().ordinal()]++;
+
+					caseNamesIndexOut.writeLong(nameOffset);
+					nameOffset += writeString(caseNamesOut, testCase.getName());
+
+					caseMessagesIndexOut.writeLong(offset);
+					caseMessagesOut.writeInt(testCase.getMessages().size());
+					offset += 4;
+					for (String message: testCase.getMessages())
+						offset += writeString(caseMessagesOut, message);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		// Header is written last so that report is only visible when all columns are written
+		Header header = new Header(data.getNumOfTestSuites(), data.getNumOfTestCases(),
+				data.getTotalTestDuration(), testSuiteStatusCounts, testCaseStatusCounts);
+		try (OutputStream os = new FileOutputStream(new File(reportDir, HEADER_FILE))) {
+			SerializationUtils.serialize(header, os);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static DataOutputStream newOutput(File reportDir, String fileName) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(reportDir, fileName))));
+	}
+
+	private DataInputStream newInput(String fileName) throws IOException {
+		return new DataInputStream(new BufferedInputStream(new FileInputStream(new File(reportDir, fileName))));
+	}
+
+	private static int writeString(DataOutput out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		return bytes.length + 4;
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private <T> T read(Callable<T> callable) {
+		return LockUtils.read(lockKey, callable);
+	}
+
+	public Header getHeader() {
+		return header;
+	}
+
+	public List<TestSuite> getTestSuites() {
+		if (testSuites == null) {
+			testSuites = read(new Callable<List<TestSuite>>() {
+
+				@Override
+				public List<TestSuite> call() throws Exception {
+					try (DataInputStream in = newInput(SUITES_FILE)) {
+						int count = in.readInt();
+						String[] names = new String[count];
+						for (int i=0; i<count; i++)
+							names[i] = readString(in);
+						Status[] statuses = new Status[count];
+						for (int i=0; i<count; i++)
+							statuses[i] = STATUSES[in.readByte()];
+						long[] durations = new long[count];
+						for (int i=0; i<count; i++)
+							durations[i] = in.readLong();
+						int[] numsOfTestCases = new int[count];
+						for (int i=0; i<count; i++)
+							numsOfTestCases[i] = in.readInt();
+
+						List<TestSuite> testSuites = new ArrayList<>();
+						for (int i=0; i<count; i++) {
+							String message = in.readBoolean()? readString(in): null;
+							testSuites.add(new TestSuite(names[i], statuses[i], durations[i],
+									numsOfTestCases[i], message));
+						}
+						return Collections.unmodifiableList(testSuites);
+					}
+				}
+
+			});
+		}
+		return testSuites;
+	}
+
+	public List<TestSuite> getTestSuites(@Nullable PatternSet filePatterns, @Nullable Collection<Status> statuses) {
+		Matcher matcher = new PathMatcher();
+		return getTestSuites().stream().filter(it->{
+			return (filePatterns == null || filePatterns.matches(matcher, it.getName()))
+					&& (statuses == null || statuses.contains(it.getStatus()));
+		}).collect(Collectors.toList());
+	}
+
+	private int[] getCaseSuites() {
+		if (caseSuites == null) {
+			caseSuites = read(new Callable<int[]>() {
+
+				@Override
+				public int[] call() throws Exception {
+					try (DataInputStream in = newInput(CASE_SUITES_FILE)) {
+						int[] caseSuites = new int[header.getNumOfTestCases()];
+						for (int i=0; i<caseSuites.length; i++)
+							caseSuites[i] = in.readInt();
+						return caseSuites;
+					}
+				}
+
+			});
+		}
+		return caseSuites;
+	}
+
+	private byte[] getCaseStatuses() {
+		if (caseStatuses == null) {
+			caseStatuses = read(new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws Exception {
+					try (DataInputStream in = newInput(CASE_STATUSES_FILE)) {
+						byte[] caseStatuses = new byte[header.getNumOfTestCases()];
+						in.readFully(caseStatuses);
+						return caseStatuses;
+					}
+				}
+
+			});
+		}
+		return caseStatuses;
+	}
+
+	private String[] getCaseNames() {
+		if (caseNames == null) {
+			caseNames = read(new Callable<String[]>() {
+
+				@Override
+				public String[] call() throws Exception {
+					try (DataInputStream in = newInput(CASE_NAMES_FILE)) {
+						String[] caseNames = new String[header.getNumOfTestCases()];
+						for (int i=0; i<caseNames.length; i++)
+							caseNames[i] = readString(in);
+						return caseNames;
+					}
+				}
+
+			});
+		}
+		return caseNames;
+	}
+
+	public List<String> getTestCaseNames() {
+		return Collections.unmodifiableList(Arrays.asList(getCaseNames()));
+	}
+
+	/**
+	 * Query test cases matching specified criterias. Only columns involved in specified
+	 * criterias are read
+	 *
+	 * @return
+	 * 			indexes of matching test cases, which can be passed to {@link #readTestCases(int[], int, int)}
+	 * 			to read test cases of a particular page
+	 */
+	public int[] queryTestCases(@Nullable PatternSet filePatterns, @Nullable PatternSet namePatterns,
+			@Nullable Collection<Status> statuses) {
+		Matcher matcher = new PathMatcher();
+
+		boolean[] suiteMatches = null;
+		if (filePatterns != null) {
+			List<TestSuite> testSuites = getTestSuites();
+			suiteMatches = new boolean[testSuites.size()];
+			for (int i=0; i<suiteMatches.length; i++)
+				suiteMatches[i] = filePatterns.matches(matcher, testSuites.get(i).getName());
+		}
+		int[] caseSuites = suiteMatches != null? getCaseSuites(): null;
+		byte[] caseStatuses = statuses != null? getCaseStatuses(): null;
+		String[] caseNames = namePatterns != null? getCaseNames(): null;
+
+		int[] indexes = new int[header.getNumOfTestCases()];
+		int count = 0;
+		for (int i=0; i<indexes.length; i++) {
+			if ((suiteMatches == null || suiteMatches[caseSuites[i]])
+					&& (statuses == null || statuses.contains(STATUSES[caseStatuses[i]]))
+					&& (namePatterns == null || namePatterns.matches(matcher, caseNames[i]))) {
+				indexes[count++] = i;
+			}
+		}
+		return Arrays.copyOf(indexes, count);
+	}
+
+	public Map<Status, Integer> countTestCases(@Nullable PatternSet filePatterns, @Nullable PatternSet namePatterns) {
+		Map<Status, Integer> counts = new EnumMap<>(Status.class);
+		if (filePatterns == null && namePatterns == null) {
+			for (Status status: STATUSES)
+				counts.put(status, header.getTestCaseStatusCounts()[status.ordinal()]);
+		} else {
+			for (Status status: STATUSES)
+				counts.put(status, 0);
+			byte[] caseStatuses = getCaseStatuses();
+			for (int index: queryTestCases(filePatterns, namePatterns, null))
+				counts.merge(STATUSES[caseStatuses[index]], 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	/**
+	 * Read test cases at specified range of specified indexes. Columns already loaded for
+	 * querying are used as is, and other columns are only read at rows of these test cases
+	 *
+	 * @param indexes
+	 * 			indexes of test cases, normally returned from {@link #queryTestCases(PatternSet, PatternSet, Collection)}
+	 * @param from
+	 * 			position in indexes to read from, inclusive
+	 * @param to
+	 * 			position in indexes to read to, exclusive
+	 */
+	public List<TestCase> readTestCases(int[] indexes, int from, int to) {
+		List<TestSuite> testSuites = getTestSuites();
+		int[] caseSuites = this.caseSuites;
+		byte[] caseStatuses = this.caseStatuses;
+
+		// reports converted before names are indexed
+		String[] caseNames = new File(reportDir, CASE_NAMES_INDEX_FILE).exists()? this.caseNames: getCaseNames();
+
+		return read(new Callable<List<TestCase>>() {
+
+			@Override
+			public List<TestCase> call() throws Exception {
+				List<TestCase> testCases = new ArrayList<>();
+				try (	RandomAccessFile suitesFile = new RandomAccessFile(new File(reportDir, CASE_SUITES_FILE), "r");
+						RandomAccessFile statusesFile = new RandomAccessFile(new File(reportDir, CASE_STATUSES_FILE), "r");
+						RandomAccessFile namesIndexFile = caseNames == null? new RandomAccessFile(new File(reportDir, CASE_NAMES_INDEX_FILE), "r"): null;
+						RandomAccessFile namesFile = caseNames == null? new RandomAccessFile(new File(reportDir, CASE_NAMES_FILE), "r"): null;
+						RandomAccessFile indexFile = new RandomAccessFile(new File(reportDir, CASE_MESSAGES_INDEX_FILE), "r");
+						RandomAccessFile messagesFile = new RandomAccessFile(new File(reportDir, CASE_MESSAGES_FILE), "r")) {
+					for (int i=from; i<to; i++) {
+						int index = indexes[i];
+
+						int suite;
+						if (caseSuites != null) {
+							suite = caseSuites[index];
+						} else {
+							suitesFile.seek(index*4L);
+							suite = suitesFile.readInt();
+						}
+
+						byte status;
+						if (caseStatuses != null) {
+							status = caseStatuses[index];
+						} else {
+							statusesFile.seek(index);
+							status = statusesFile.readByte();
+						}
+
+						String name;
+						if (caseNames != null) {
+							name = caseNames[index];
+						} else {
+							namesIndexFile.seek(index*8L);
+							namesFile.seek(namesIndexFile.readLong());
+							name = readString(namesFile);
+						}
+
+						indexFile.seek(index*8L);
+						messagesFile.seek(indexFile.readLong());
+						int numOfMessages = messagesFile.readInt();
+						List<String> messages = new ArrayList<>(numOfMessages);
+						for (int j=0; j<numOfMessages; j++)
+							messages.add(readString(messagesFile));
+						testCases.add(new TestCase(testSuites.get(suite), name, STATUSES[status], messages));
+					}
+				}
+				return testCases;
+			}
+
+		});
+	}
+
+	public static class Header implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int numOfTestSuites;
+
+		private final int numOfTestCases;
+
+		private final int totalTestDuration;
+
+		private final int[] testSuiteStatusCounts;
+
+		private final int[] testCaseStatusCounts;
+
+		public Header(int numOfTestSuites, int numOfTestCases, int totalTestDuration,
+				int[] testSuiteStatusCounts, int[] testCaseStatusCounts) {
+			this.numOfTestSuites = numOfTestSuites;
+			this.numOfTestCases = numOfTestCases;
+			this.totalTestDuration = totalTestDuration;
+			this.testSuiteStatusCounts = testSuiteStatusCounts;
+			this.testCaseStatusCounts = testCaseStatusCounts;
+		}
+
+		public int getNumOfTestSuites() {
+			return numOfTestSuites;
+		}
+
+		public int getNumOfTestCases() {
+			return numOfTestCases;
+		}
+
+		public int getTotalTestDuration() {
+			return totalTestDuration;
+		}
+
+		public int[] getTestSuiteStatusCounts() {
+			return testSuiteStatusCounts;
+		}
+
+		public int[] getTestCaseStatusCounts() {
+			return testCaseStatusCounts;
+		}
+
+	}
+
+	public static class TestSuite implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		private final Status status;
+
+		private final long duration;
+
+		private final int numOfTestCases;
+
+		private final String message;
+
+		public TestSuite(String name, Status status, long duration, int numOfTestCases, @Nullable String message) {
+			this.name = name;
+			this.status = status;
+			this.duration = duration;
+			this.numOfTestCases = numOfTestCases;
+			this.message = message;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+
+		public int getNumOfTestCases() {
+			return numOfTestCases;
+		}
+
+		@Nullable
+		public String getMessage() {
+			return message;
+		}
+
+	}
+
+	public static class TestCase implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final TestSuite testSuite;
+
+		private final String name;
+
+		private final Status status;
+
+		private final List<String> messages;
+
+		public TestCase(TestSuite testSuite, String name, Status status, List<String> messages) {
+			this.testSuite = testSuite;
+			this.name = name;
+			this.status = status;
+			this.messages = messages;
+		}
+
+		public TestSuite getTestSuite() {
+			return testSuite;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public List<String> getMessages() {
+			return messages;
+		}
+
+	}
+
+}
@@ -2,10 +2,8 @@ package io.onedev.server.plugin.report.jest;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -44,7 +42,7 @@ public class JestTestReportData implements Serializable {
 		
 	};
 	
-	private static final String FILE_NAME = "data.ser";
+	static final String FILE_NAME = "data.ser";
 			
 	private final List<TestSuite> testSuites;
 	
@@ -79,6 +77,9 @@ public class JestTestReportData implements Serializable {
 		return testSuites;
 	}
 
+	/**
+	 * Read report data stored in legacy format. New reports are stored with {@link JestTestReport}
+	 */
 	@Nullable
 	public static JestTestReportData readFrom(File reportDir) {
 		File dataFile = new File(reportDir, FILE_NAME);
@@ -93,15 +94,6 @@ public class JestTestReportData implements Serializable {
 		}
 	}
 	
-	public void writeTo(File reportDir) {
-		File dataFile = new File(reportDir, FILE_NAME);
-		try (OutputStream os = new FileOutputStream(dataFile)) {
-			SerializationUtils.serialize(this, os);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		};
-	}
-	
 	public int getNumOfTestSuites() {
 		return testSuites.size();
 	}
@@ -37,19 +37,32 @@ public abstract class JestTestReportPage extends BuildDetailPage {
 
 	private final String reportName;
 	
-	private final IModel<JestTestReportData> reportDataModel = new LoadableDetachableModel<JestTestReportData>() {
+	private final IModel<JestTestReport> reportDataModel = new LoadableDetachableModel<JestTestReport>() {
 
 		@Override
-		protected JestTestReportData load() {
-			return LockUtils.read(getBuild().getReportLockKey(JobJestReport.DIR), new Callable<JestTestReportData>() {
+		protected JestTestReport load() {
+			String lockKey = getBuild().getReportLockKey(JobJestReport.DIR);
+			File reportDir = new File(getBuild().getReportDir(JobJestReport.DIR), reportName);				
+			JestTestReport report = LockUtils.read(lockKey, new Callable<JestTestReport>() {
 
 				@Override
-				public JestTestReportData call() throws Exception {
-					File reportsDir = new File(getBuild().getReportDir(JobJestReport.DIR), reportName);				
-					return JestTestReportData.readFrom(reportsDir);
+				public JestTestReport call() throws Exception {
+					return JestTestReport.readFrom(reportDir, lockKey);
 				}
 				
 			});
+			if (report == null) {
+				report = LockUtils.write(lockKey, new Callable<JestTestReport>() {
+
+					@Override
+					public JestTestReport call() throws Exception {
+						JestTestReport.convertIfNecessary(reportDir);
+						return JestTestReport.readFrom(reportDir, lockKey);
+					}
+					
+				});
+			}
+			return report;
 		}
 		
 	};
@@ -78,7 +91,7 @@ public abstract class JestTestReportPage extends BuildDetailPage {
 	}
 	
 	@Nullable
-	protected JestTestReportData getReportData() {
+	protected JestTestReport getReportData() {
 		return reportDataModel.getObject();
 	}
 
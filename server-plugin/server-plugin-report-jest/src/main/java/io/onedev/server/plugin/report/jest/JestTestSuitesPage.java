@@ -49,7 +49,7 @@ import io.onedev.commons.codeassist.parser.TerminalExpect;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.model.Build;
 import io.onedev.server.plugin.report.jest.JestTestReportData.Status;
-import io.onedev.server.plugin.report.jest.JestTestReportData.TestSuite;
+import io.onedev.server.plugin.report.jest.JestTestReport.TestSuite;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.DateUtils;
 import io.onedev.server.util.patternset.PatternSet;
@@ -76,7 +76,7 @@ public class JobJestReport extends JobReport {
 				if (!rootNodes.isEmpty()) {
 					FileUtils.createDir(reportDir);
 					JestTestReportData report = new JestTestReportData(build, rootNodes);
-					report.writeTo(reportDir);
+					JestTestReport.writeTo(report, reportDir);
 					return report;
 				} else {
 					return null;
@@ -0,0 +1,146 @@
+package io.onedev.server.plugin.report.jest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Sets;
+import com.google.common.io.Resources;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.model.Build;
+import io.onedev.server.plugin.report.jest.JestTestReport.TestCase;
+import io.onedev.server.plugin.report.jest.JestTestReportData.Status;
+import io.onedev.server.util.patternset.PatternSet;
+
+public class JestTestReportTest {
+
+	private File reportDir;
+
+	private JestTestReportData reportData;
+
+	@Before
+	public void before() throws IOException {
+		reportDir = FileUtils.createTempDir();
+		try (InputStream is = Resources.getResource(JestTestReportTest.class, "testResults.json").openStream()) {
+			Collection<JsonNode> rootNodes = new ArrayList<>();
+			rootNodes.add(new ObjectMapper().readTree(is));
+			Build build = new Build();
+			build.setJobWorkspace("/Users/robin/Projects/onedev/reports/jest-demo");
+			reportData = new JestTestReportData(build, rootNodes);
+		}
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(reportDir);
+	}
+
+	private PatternSet patterns(String include) {
+		return new PatternSet(Sets.newHashSet(include), new HashSet<>());
+	}
+
+	private void assertSameAsReportData(JestTestReport report, PatternSet filePatterns,
+			PatternSet namePatterns, Collection<Status> statuses) {
+		List<JestTestReportData.TestCase> expected = reportData.getTestCases(filePatterns, namePatterns, statuses);
+		int[] indexes = report.queryTestCases(filePatterns, namePatterns, statuses);
+		List<TestCase> actual = report.readTestCases(indexes, 0, indexes.length);
+		assertEquals(expected.size(), actual.size());
+		for (int i=0; i<expected.size(); i++) {
+			assertEquals(expected.get(i).getName(), actual.get(i).getName());
+			assertEquals(expected.get(i).getStatus(), actual.get(i).getStatus());
+			assertEquals(expected.get(i).getMessages(), actual.get(i).getMessages());
+			assertEquals(expected.get(i).getTestSuite().getName(), actual.get(i).getTestSuite().getName());
+		}
+	}
+
+	@Test
+	public void shouldQueryAndPageTestCases() {
+		JestTestReport.writeTo(reportData, reportDir);
+		JestTestReport report = JestTestReport.readFrom(reportDir, "jest-report-test");
+		assertNotNull(report);
+
+		assertEquals(reportData.getNumOfTestSuites(), report.getHeader().getNumOfTestSuites());
+		assertEquals(reportData.getNumOfTestCases(), report.getHeader().getNumOfTestCases());
+		assertEquals(reportData.getTotalTestDuration(), report.getHeader().getTotalTestDuration());
+
+		assertSameAsReportData(report, null, null, null);
+		assertSameAsReportData(report, null, null, Sets.newHashSet(Status.FAILED));
+		assertSameAsReportData(report, patterns("src/utils/"), patterns("mul"), null);
+		assertSameAsReportData(report, patterns("src/"), patterns("NewsContent/"), Sets.newHashSet(Status.PASSED));
+		assertSameAsReportData(report, null, new PatternSet(new HashSet<>(), Sets.newHashSet("NewsContent/")), null);
+
+		int[] indexes = report.queryTestCases(null, null, null);
+		List<TestCase> page = report.readTestCases(indexes, 2, 5);
+		assertEquals(3, page.size());
+		assertEquals(reportData.getTestCases(null, null, null).get(2).getName(), page.get(0).getName());
+
+		Map<Status, Integer> counts = report.countTestCases(null, null);
+		assertEquals(4, counts.get(Status.PASSED).intValue());
+		assertEquals(1, counts.get(Status.FAILED).intValue());
+		counts = report.countTestCases(patterns("src/"), patterns("NewsContent/"));
+		assertEquals(2, counts.values().stream().mapToInt(it->it).sum());
+
+		assertEquals(1, report.getTestSuites(null, Sets.newHashSet(Status.FAILED)).size());
+		assertEquals(1, report.getTestSuites(patterns("src/components/"), null).size());
+		assertEquals(7, report.getTestCaseNames().size());
+	}
+
+	@Test
+	public void shouldReadTestCasesRowByRow() {
+		JestTestReport.writeTo(reportData, reportDir);
+
+		// no columns are loaded when querying without criterias
+		assertSameAsReportData(JestTestReport.readFrom(reportDir, "jest-report-test"), null, null, null);
+
+		JestTestReport report = JestTestReport.readFrom(reportDir, "jest-report-test");
+		int[] indexes = report.queryTestCases(null, null, null);
+		List<TestCase> page = report.readTestCases(indexes, 4, 7);
+		List<JestTestReportData.TestCase> expected = reportData.getTestCases(null, null, null);
+		for (int i=0; i<page.size(); i++) {
+			assertEquals(expected.get(i+4).getName(), page.get(i).getName());
+			assertEquals(expected.get(i+4).getStatus(), page.get(i).getStatus());
+			assertEquals(expected.get(i+4).getTestSuite().getName(), page.get(i).getTestSuite().getName());
+		}
+
+		// names are read as a whole column for reports written before names are indexed
+		assertTrue(new File(reportDir, "case-names.idx").delete());
+		assertSameAsReportData(JestTestReport.readFrom(reportDir, "jest-report-test"), null, null, null);
+	}
+
+	@Test
+	public void shouldConvertLegacyReport() throws IOException {
+		try (OutputStream os = new FileOutputStream(new File(reportDir, JestTestReportData.FILE_NAME))) {
+			SerializationUtils.serialize(reportData, os);
+		}
+		assertNull(JestTestReport.readFrom(reportDir, "jest-report-test"));
+
+		JestTestReport.convertIfNecessary(reportDir);
+		assertFalse(new File(reportDir, JestTestReportData.FILE_NAME).exists());
+		JestTestReport report = JestTestReport.readFrom(reportDir, "jest-report-test");
+		assertNotNull(report);
+		assertSameAsReportData(report, null, null, null);
+		assertTrue(report.getTestSuites().stream().anyMatch(it->it.getStatus() == Status.FAILED));
+	}
+
+}
@@ -35,6 +35,8 @@ public class DefaultServerConfig implements ServerConfig {
 	
 	private static final String PROP_SESSION_TIMEOUT = "session_timeout";
 	
+	private static final String PROP_BATCH_WORK_CONCURRENCY = "batch_work_concurrency";
+	
 	private int httpPort;
 	
 	private int sessionTimeout;
@@ -49,6 +51,8 @@ public class DefaultServerConfig implements ServerConfig {
 	
 	private String keystorePassword;
 	
+	private int batchWorkConcurrency;
+	
 	@Inject
 	public DefaultServerConfig(ServerProperties props) {
 		String httpPortStr = System.getenv(PROP_HTTPPORT);
@@ -127,6 +131,16 @@ public class DefaultServerConfig implements ServerConfig {
 			sessionTimeout = Integer.parseInt(sessionTimeoutStr.trim());
 		else
 			throw new ExplicitException(PROP_SESSION_TIMEOUT + " should be specified");
+		
+		String batchWorkConcurrencyStr = System.getenv(PROP_BATCH_WORK_CONCURRENCY);
+		if (StringUtils.isBlank(batchWorkConcurrencyStr))
+			batchWorkConcurrencyStr = props.getProperty(PROP_BATCH_WORK_CONCURRENCY);
+		if (StringUtils.isNotBlank(batchWorkConcurrencyStr))
+			batchWorkConcurrency = Integer.parseInt(batchWorkConcurrencyStr.trim());
+		else
+			batchWorkConcurrency = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		if (batchWorkConcurrency < 1)
+			throw new ExplicitException(PROP_BATCH_WORK_CONCURRENCY + " should be at least 1");
 	}
 	
 	@Override
@@ -163,5 +177,10 @@ public class DefaultServerConfig implements ServerConfig {
     public int getSshPort() {
         return sshPort;
     }
+
+	@Override
+	public int getBatchWorkConcurrency() {
+		return batchWorkConcurrency;
+	}
 	
 }